@@ -25,23 +25,34 @@
  */
 package com.avcomfova.sbs;
 
+import com.avcomfova.sbs.datagram.ADatagram;
 import com.avcomfova.sbs.datagram.Datagram;
+import com.avcomfova.sbs.datagram.DatagramPool;
 import com.avcomfova.sbs.datagram.IDatagram;
 import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
 import com.avcomofva.sbs.datagram.read.ErrorResponse;
 import com.avcomofva.sbs.datagram.read.HardwareDescriptionResponse;
-import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
 import com.avcomofva.sbs.datagram.write.HardwareDescriptionRequest;
 import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.datagram.write.Waveform12BitRequest;
 import com.avcomofva.sbs.datagram.write.Waveform8BitRequest;
 import com.avcomofva.sbs.enumerated.DatagramType;
-import com.avcomofva.utility.StopWatch;
+import com.avcomofva.sbs.enumerated.ErrorType;
+import com.avcomofva.sbs.enumerated.OverlapPolicy;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.SweepPhase;
+import com.avcomofva.utility.IClock;
+import com.avcomofva.utility.LatencyHistogram;
 import com.ftdichip.usb.FTDI;
 import com.ftdichip.usb.enumerated.FlowControl;
 import com.ftdichip.usb.enumerated.LineDatabit;
 import com.ftdichip.usb.enumerated.LineParity;
 import com.ftdichip.usb.enumerated.LineStopbit;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +61,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.usb3.exception.UsbException;
 import javax.usb3.utility.ByteUtility;
 
@@ -106,6 +120,12 @@ public class AvcomSBS implements Runnable {
    * Avcom datagram is read from the device represented by this instance.
    */
   private final List<IDatagramListener> datagramListeners;
+  /**
+   * A set of IDatagramListener instances. These will be notified with each
+   * waveform response (sweep segment) as soon as it is read, before the sweep
+   * is complete.
+   */
+  private final List<IDatagramListener> segmentListeners;
 
   /**
    * A thread-safe queue of device tuning configurations.
@@ -124,28 +144,86 @@ public class AvcomSBS implements Runnable {
    * scan it will be interrupted if the settings queue is updated.
    * <p>
    * SettingsRequest entries are stored using the sample center frequency (MHz)
-   * as a key.
+   * as a key. Each device has its own queue.
    */
-  private static final ConcurrentMap<Double, SettingsRequest> SETTINGS_REQUEST_QUEUE = new ConcurrentSkipListMap<>();
-  /**
-   * A thread-safe queue of device sense data.
-   * <p>
-   * This queue stores piecewise sampled trace data corresponding to each entry
-   * in the SettingsRequest queue.
-   * <p>
-   * Waveform8BitResponse (8 or 12-bit) entries are stored using their center
-   * frequency (MHz) as a key. An interface is required in this map since the
-   * READ method does not return type-specific datagram instances.
-   */
-  private static final ConcurrentMap<Double, IDatagram> WAVEFORM_QUEUE = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<Double, SettingsRequest> settingsRequestQueue = new ConcurrentSkipListMap<>();
   /**
    * Tread helper flag to indicate that new settings have been requested and any
    * current scans (especially a wide-band scan) should be immediately
    * interrupted and the new settings should be used. As wide-band scans can
    * take some time (up to 15 or 20 seconds) this thread interrupt is
    * particularly important to ensure a responsive user interface.
+   * <p>
+   * Volatile as it is set by the caller thread and polled by the data capture
+   * thread.
+   */
+  private volatile boolean newSettings = false;
+  /**
+   * The waveform request written to the device for each sweep segment. This is
+   * either a Waveform8BitRequest (the default) or a Waveform12BitRequest. Both
+   * serialize to a constant message so a single instance is reused.
+   */
+  private IDatagram waveformRequest = new Waveform8BitRequest();
+  /**
+   * The (optional) pool of reusable waveform datagrams. Null unless pooled
+   * mode is enabled.
+   */
+  private volatile DatagramPool pool;
+  /**
+   * The policy used to resolve waveform bins covered by more than one sweep
+   * segment.
+   */
+  private OverlapPolicy overlapPolicy = OverlapPolicy.PREFER_CENTER;
+  /**
+   * A reusable datagram read buffer. Only used in pooled mode, where each
+   * datagram is copied out of this buffer into a recycled instance.
+   */
+  private byte[] frameBuffer;
+  /**
+   * The (optional) per-segment reference level auto-ranging. Null unless
+   * auto-ranging is enabled.
+   */
+  private volatile ReferenceLevelRanger ranger;
+  /**
+   * The settings request written for an auto-ranged segment: a copy of the
+   * segment request at its ranged reference level. The shared sweep plan
+   * entries are never modified by auto-ranging. Reused for every segment.
+   */
+  private final SettingsRequest rangedRequest = new SettingsRequest();
+  /**
+   * The (optional) amplitude calibration table of this device. Null unless a
+   * table is set or loaded.
+   */
+  private volatile CalibrationTable calibrationTable;
+  /**
+   * The zero-span time series. Created when zero-span settings are first set.
+   */
+  private volatile TimeSeriesBuffer timeSeries;
+  /**
+   * The clock used to timestamp acquisitions.
+   */
+  private volatile IClock clock = IClock.SYSTEM;
+  /**
+   * The data capture metrics of this device. These are kept when the device is
+   * re-initialized.
    */
-  private boolean newSettings = false;
+  private final DeviceMetrics metrics = new DeviceMetrics();
+  /**
+   * Indicator that data capture is paused. The capture thread waits on the
+   * pause monitor while paused.
+   */
+  private volatile boolean paused;
+  private final Object pauseMonitor = new Object();
+  /**
+   * The JMX name of this device while it is registered.
+   */
+  private ObjectName objectName;
+  /**
+   * The monotonic times (nanoseconds) at which the first and last bytes of the
+   * most recent datagram were read, and the time taken to parse it. Set by the
+   * read method.
+   */
+  private long firstByteNanos, lastByteNanos, parseNanos;
 
   /**
    * Construct a new AvcomSBS instance connected via the indicated USB device
@@ -170,6 +248,7 @@ public class AvcomSBS implements Runnable {
      * Initialize the Datagram listeners.
      */
     this.datagramListeners = new ArrayList<>();
+    this.segmentListeners = new ArrayList<>();
     /**
      * Initialize the device. This sends a few HardwareDescriptionRequests and
      * attempts to populate the internal HardwareDescriptionResponse field.
@@ -195,8 +274,21 @@ public class AvcomSBS implements Runnable {
      * Purge the current SettingsRequest queue. The Trace data queue will be
      * cleared by the data collector thread.
      */
-    synchronized (SETTINGS_REQUEST_QUEUE) {
-      SETTINGS_REQUEST_QUEUE.clear();
+    synchronized (settingsRequestQueue) {
+      settingsRequestQueue.clear();
+    }
+    /**
+     * Zero-span measurements are streamed into the time series buffer.
+     */
+    if (settingsRequest.isZeroSpan() && timeSeries == null) {
+      timeSeries = new TimeSeriesBuffer();
+    }
+    /**
+     * Learned reference levels apply to the previous sweep plan segments.
+     */
+    ReferenceLevelRanger referenceLevelRanger = ranger;
+    if (referenceLevelRanger != null) {
+      referenceLevelRanger.clear();
     }
     /**
      * If the SettingsRequest span and RBW require more data points than a
@@ -220,14 +312,14 @@ public class AvcomSBS implements Runnable {
      *  cf_i = w * (1/2 + i) + start
      * </pre>
      */
-    if (settingsRequest.getSpanMHz() > Waveform8BitResponse.DATAGRAM_PAYLOAD_LENGTH * settingsRequest.getResolutionBandwidth().getMHz()) {
+    if (settingsRequest.getSpanMHz() > AWaveformResponse.WAVEFORM_POINTS * settingsRequest.getResolutionBandwidth().getMHz()) {
       LOGGER.log(Level.FINE, "Avcom settings must be split into multiples {0}", settingsRequest);
       /**
        * The request requires more data points than a single Trace can carry.
        */
       double startMHz = settingsRequest.getCenterFrequencyMHz() - settingsRequest.getSpanMHz() / 2;
       double stopMHz = settingsRequest.getCenterFrequencyMHz() + settingsRequest.getSpanMHz() / 2;
-      double sampleSpanMHz = Waveform8BitResponse.DATAGRAM_PAYLOAD_LENGTH * settingsRequest.getResolutionBandwidth().getMHz();
+      double sampleSpanMHz = AWaveformResponse.WAVEFORM_POINTS * settingsRequest.getResolutionBandwidth().getMHz();
       int numSettings = (int) (settingsRequest.getSpanMHz() / sampleSpanMHz) + 1;
       LOGGER.log(Level.FINE, "Avcom set {0} to {1} MHz, span {2}, {3} passes", new Object[]{startMHz, stopMHz, sampleSpanMHz, numSettings});
       for (int iterator = 0; iterator < numSettings; iterator++) {
@@ -247,8 +339,8 @@ public class AvcomSBS implements Runnable {
          */
         if (sr.getStartFrequencyMHz() > hardwareDescription.getProductId().getMinFrequency()
           && sr.getStopFrequencyMHz() < hardwareDescription.getProductId().getMaxFrequency()) {
-          synchronized (SETTINGS_REQUEST_QUEUE) {
-            SETTINGS_REQUEST_QUEUE.put(cfiMHz, sr);
+          synchronized (settingsRequestQueue) {
+            settingsRequestQueue.put(cfiMHz, sr);
           }
         } else if (sr.getStartFrequencyMHz() < hardwareDescription.getProductId().getMinFrequency()
           && sr.getStopFrequencyMHz() > hardwareDescription.getProductId().getMinFrequency()) {
@@ -261,8 +353,8 @@ public class AvcomSBS implements Runnable {
           sr.setCenterFrequencyMHz(newcf);
           sr.setSpanMHz(span);
           LOGGER.log(Level.FINER, "Avcom adjusted lower value to {0} MHz", sr);
-          synchronized (SETTINGS_REQUEST_QUEUE) {
-            SETTINGS_REQUEST_QUEUE.put(newcf, sr);
+          synchronized (settingsRequestQueue) {
+            settingsRequestQueue.put(newcf, sr);
           }
         } else if (sr.getStartFrequencyMHz() < hardwareDescription.getProductId().getMaxFrequency()
           && sr.getStopFrequencyMHz() > hardwareDescription.getProductId().getMaxFrequency()) {
@@ -275,8 +367,8 @@ public class AvcomSBS implements Runnable {
           sr.setCenterFrequencyMHz(newcf);
           sr.setSpanMHz(span);
           LOGGER.log(Level.FINER, "Avcom adjusted upper value to {0} MHz", sr);
-          synchronized (SETTINGS_REQUEST_QUEUE) {
-            SETTINGS_REQUEST_QUEUE.put(newcf, sr);
+          synchronized (settingsRequestQueue) {
+            settingsRequestQueue.put(newcf, sr);
           }
         } else {
           LOGGER.log(Level.WARNING, "Avcom settings out of bounds. Discard {0}", sr);
@@ -301,8 +393,8 @@ public class AvcomSBS implements Runnable {
         sr.setCenterFrequencyMHz(newcf);
         sr.setSpanMHz(span);
       }
-      synchronized (SETTINGS_REQUEST_QUEUE) {
-        SETTINGS_REQUEST_QUEUE.put(settingsRequest.getCenterFrequencyMHz(), sr);
+      synchronized (settingsRequestQueue) {
+        settingsRequestQueue.put(settingsRequest.getCenterFrequencyMHz(), sr);
       }
     }  // end else
     /**
@@ -312,6 +404,246 @@ public class AvcomSBS implements Runnable {
     newSettings = true;
   }
 
+  /**
+   * Set the waveform sample resolution. 12-bit waveforms provide 16x finer
+   * amplitude resolution than 8-bit waveforms at the cost of 50% more bytes
+   * per segment. 12-bit waveforms require device firmware &ge; v2.10.
+   *
+   * @param twelveBit true to request 12-bit waveforms, false (default) for
+   *                  8-bit
+   * @throws Exception if 12-bit waveforms are requested and the device firmware
+   *                   does not support them
+   */
+  public void setTwelveBitResolution(boolean twelveBit) throws Exception {
+    if (twelveBit && hardwareDescription != null
+      && (hardwareDescription.getFirmwareVersionMajor() < 2
+          || (hardwareDescription.getFirmwareVersionMajor() == 2 && hardwareDescription.getFirmwareVersionMinor() < 10))) {
+      throw new Exception("12-bit waveforms require firmware v2.10 or later. Have v"
+        + hardwareDescription.getFirmwareVersionMajor() + "." + hardwareDescription.getFirmwareVersionMinor());
+    }
+    this.waveformRequest = twelveBit ? new Waveform12BitRequest() : new Waveform8BitRequest();
+    /**
+     * Restart the sweep so that 8-bit and 12-bit segments are not mixed.
+     */
+    newSettings = true;
+  }
+
+  /**
+   * Determine if the device is configured to produce 12-bit waveforms.
+   *
+   * @return true if 12-bit waveforms are requested
+   */
+  public boolean isTwelveBitResolution() {
+    return waveformRequest instanceof Waveform12BitRequest;
+  }
+
+  public OverlapPolicy getOverlapPolicy() {
+    return overlapPolicy;
+  }
+
+  /**
+   * Set the policy used to resolve waveform bins covered by more than one
+   * sweep segment. The new policy is applied from the next sweep.
+   *
+   * @param overlapPolicy the overlap policy. Default is PREFER_CENTER.
+   */
+  public void setOverlapPolicy(OverlapPolicy overlapPolicy) {
+    if (overlapPolicy == null) {
+      throw new IllegalArgumentException("Overlap policy is required.");
+    }
+    this.overlapPolicy = overlapPolicy;
+  }
+
+  /**
+   * Enable or disable reference level auto-ranging. When enabled each sweep
+   * segment is requested at its own reference level, which is stepped up when
+   * the segment saturates and down when its trace sits near the bottom of the
+   * 8-bit range, and is remembered across sweeps. See
+   * {@link ReferenceLevelRanger}.
+   * <p>
+   * The reference level of the current settings is the starting level of each
+   * segment. The ranged level is applied to the request as it is written; the
+   * sweep plan (see {@link #getSweepPlan()}) is not modified. Stitched
+   * Waveforms may then mix segments taken at different reference levels.
+   *
+   * @param autoRanging true to enable auto-ranging, false (default) to request
+   *                    every segment at the settings reference level
+   */
+  public void setAutoRanging(boolean autoRanging) {
+    if (autoRanging && ranger == null) {
+      ranger = new ReferenceLevelRanger();
+    } else if (!autoRanging) {
+      ranger = null;
+    }
+  }
+
+  /**
+   * Determine if reference level auto-ranging is enabled.
+   *
+   * @return true if each segment reference level is auto-ranged
+   */
+  public boolean isAutoRanging() {
+    return ranger != null;
+  }
+
+  /**
+   * Get the reference level ranger. This may be inspected for the learned
+   * reference level of each segment.
+   *
+   * @return the reference level ranger, null if auto-ranging is not enabled
+   */
+  public ReferenceLevelRanger getReferenceLevelRanger() {
+    return ranger;
+  }
+
+  /**
+   * Set the amplitude calibration table. When set, the per-bin correction for
+   * the current sweep plan and input connector is added to each assembled
+   * Waveform before it is delivered to the datagram listeners. Segment
+   * listeners and compact Waveforms receive uncorrected data.
+   *
+   * @param calibrationTable the calibration table, null to disable calibration
+   */
+  public void setCalibrationTable(CalibrationTable calibrationTable) {
+    this.calibrationTable = calibrationTable;
+  }
+
+  /**
+   * Load and set the amplitude calibration table of this device from a
+   * directory of calibration tables. The table is selected by the device
+   * serial number. See {@link CalibrationTable#load(Path, String)}.
+   *
+   * @param directory the calibration table directory
+   * @return true if a table was found for this device
+   * @throws IOException if the table file cannot be read or parsed
+   */
+  public boolean loadCalibrationTable(Path directory) throws IOException {
+    CalibrationTable table = CalibrationTable.load(directory, hardwareDescription.getSerialNumber());
+    if (table == null) {
+      LOGGER.log(Level.WARNING, "AvcomSBS has no calibration table for serial number {0} in {1}", new Object[]{hardwareDescription.getSerialNumber().trim(), directory});
+      return false;
+    }
+    this.calibrationTable = table;
+    return true;
+  }
+
+  /**
+   * Get the amplitude calibration table.
+   *
+   * @return the calibration table, null if calibration is not enabled
+   */
+  public CalibrationTable getCalibrationTable() {
+    return calibrationTable;
+  }
+
+  /**
+   * Set the clock used to timestamp acquisitions. Each waveform response and
+   * each assembled Waveform carries its wall clock and monotonic acquisition
+   * start and end times from this clock. Simulations and tests may inject a
+   * manual clock.
+   *
+   * @param clock the clock, default {@link IClock#SYSTEM}
+   */
+  public void setClock(IClock clock) {
+    if (clock == null) {
+      throw new IllegalArgumentException("Clock is required.");
+    }
+    this.clock = clock;
+    this.metrics.setClock(clock);
+  }
+
+  /**
+   * Get the data capture metrics of this device: datagram and byte counts,
+   * errors by type, resynchronizations, and segment, sweep and phase latency
+   * histograms.
+   *
+   * @return the device metrics
+   */
+  public DeviceMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the latency histogram of a sweep segment acquisition phase. Each phase
+   * of each segment is recorded in nanoseconds; the SWEEP_DISPATCH histogram
+   * records the datagram listener dispatch of each completed sweep.
+   *
+   * @param phase the acquisition phase
+   * @return the latency histogram
+   */
+  public LatencyHistogram getPhaseLatency(SweepPhase phase) {
+    return metrics.getPhaseLatency(phase);
+  }
+
+  /**
+   * Set the zero-span time series buffer. This may be used to configure the
+   * buffer capacity before zero-span settings are set; otherwise a buffer with
+   * the default capacity is created.
+   *
+   * @param timeSeries the time series buffer
+   */
+  public void setTimeSeries(TimeSeriesBuffer timeSeries) {
+    if (timeSeries == null) {
+      throw new IllegalArgumentException("Time series buffer is required.");
+    }
+    this.timeSeries = timeSeries;
+  }
+
+  /**
+   * Get the zero-span time series buffer. When the settings are zero-span (see
+   * {@link SettingsRequest#getZeroSpanInstance(double, com.avcomofva.sbs.enumerated.ReferenceLevel, com.avcomofva.sbs.enumerated.ResolutionBandwidth)})
+   * the power level at the center frequency of each waveform response is
+   * added to this buffer; no Waveforms are assembled and the datagram and
+   * segment listeners are not notified.
+   *
+   * @return the time series buffer, null if zero-span settings have not been
+   *         set
+   */
+  public TimeSeriesBuffer getTimeSeries() {
+    return timeSeries;
+  }
+
+  /**
+   * Enable or disable pooled mode. In pooled mode waveform responses and
+   * assembled Waveforms are recycled through a {@link DatagramPool} owned by
+   * this instance so that steady-state sweeping allocates (almost) nothing.
+   * <p>
+   * Important: In pooled mode a Waveform delivered to a listener is only valid
+   * for the duration of the {@code onDatagram} call. A listener that keeps the
+   * Waveform (e.g. hands it to another thread) must call
+   * {@link IDatagram#retain()} before returning and {@link IDatagram#release()}
+   * when done with it.
+   *
+   * @param pooled true to enable pooled mode, false (default) to allocate new
+   *               datagrams for every segment and sweep
+   */
+  public void setPooled(boolean pooled) {
+    if (pooled && pool == null) {
+      pool = new DatagramPool();
+    } else if (!pooled) {
+      pool = null;
+    }
+  }
+
+  /**
+   * Determine if pooled mode is enabled.
+   *
+   * @return true if waveform datagrams are recycled
+   */
+  public boolean isPooled() {
+    return pool != null;
+  }
+
+  /**
+   * Get the datagram pool. This may be inspected for outstanding (leaked)
+   * datagrams.
+   *
+   * @return the datagram pool, null if pooled mode is not enabled
+   */
+  public DatagramPool getPool() {
+    return pool;
+  }
+
   /**
    * Get the device configuration. This returns a sorted map of device
    * configuration names and their corresponding values.
@@ -319,7 +651,46 @@ public class AvcomSBS implements Runnable {
    * @return a non-null Map instance.
    */
   public Map<String, String> getConfiguration() {
-    return hardwareDescription != null ? hardwareDescription.getConfiguration() : new HashMap<>();
+    Map<String, String> configuration = hardwareDescription != null ? hardwareDescription.getConfiguration() : new HashMap<>();
+    /**
+     * The device status metrics are kept by the device metrics registry.
+     */
+    DeviceMetrics.Snapshot snapshot = metrics.getSnapshot();
+    configuration.put("datagramReadCount", String.valueOf(snapshot.getDatagramsRead()));
+    configuration.put("datagramWriteCount", String.valueOf(snapshot.getDatagramsWritten()));
+    configuration.put("datagramErrorCount", String.valueOf(snapshot.getErrorCount()));
+    configuration.put("elapsedTimeAve", String.valueOf((long) snapshot.getSegmentLatency().getMean() / 1000000));
+    configuration.put("elapsedTimeMax", String.valueOf(snapshot.getSegmentLatency().getMax() / 1000000));
+    configuration.put("elapsedTimeMin", String.valueOf(snapshot.getSegmentLatency().getMin() / 1000000));
+    return configuration;
+  }
+
+  /**
+   * Get the hardware description of the attached device.
+   *
+   * @return the hardware description response
+   */
+  public HardwareDescriptionResponse getHardwareDescription() {
+    return hardwareDescription;
+  }
+
+  /**
+   * Get the current settings.
+   *
+   * @return the current settings request
+   */
+  public SettingsRequest getSettings() {
+    return settingsRequest;
+  }
+
+  /**
+   * Get the active sweep plan: the segment settings requests derived from the
+   * current settings, in sweep (ascending center frequency) order.
+   *
+   * @return a copy of the sweep plan
+   */
+  public List<SettingsRequest> getSweepPlan() {
+    return new ArrayList<>(settingsRequestQueue.values());
   }
 
   /**
@@ -408,12 +779,6 @@ public class AvcomSBS implements Runnable {
    */
   @SuppressWarnings({"NestedAssignment", "ValueOfIncrementOrDecrementUsed"})
   private IDatagram read() throws Exception {
-    /**
-     * Make a note of the (attempted) read operation.
-     */
-    if (hardwareDescription != null) {
-      hardwareDescription.setDatagramRead();
-    }
     /**
      * Initialize the first USB packet and the bytesRead indicator. These are
      * used in the first iteration of the while-loop below.
@@ -452,8 +817,12 @@ public class AvcomSBS implements Runnable {
      * [SYNC][PID][DATA].
      */
     byte[] avcomDatagram = null;
+    int avcomDatagramLength = 0;
     int avcomDatagramIndex = 0;
+    DatagramPool datagramPool = pool;
+    IClock readClock = clock;
     int readLoop = 0;
+    int bytesRead = 0;
     /**
      * The return value will indicate the number of bytes successfully
      * transferred from the target endpoint. The return value will never exceed
@@ -465,7 +834,10 @@ public class AvcomSBS implements Runnable {
      */
     byte[] usbFrame = ftdi.read();
     while (usbFrame.length > 0) {
-      LOGGER.log(Level.FINEST, "Avcom READ [{0}] {1}", new Object[]{usbFrame.length, ByteUtility.toString(usbFrame)});
+      bytesRead += usbFrame.length;
+      if (LOGGER.isLoggable(Level.FINEST)) {
+        LOGGER.log(Level.FINEST, "Avcom READ [{0}] {1}", new Object[]{usbFrame.length, ByteUtility.toString(usbFrame)});
+      }
       /**
        * Developer note: There is a race condition with the FTDI chip where it
        * will produce infinite zeros if the settings are not configured properly
@@ -479,6 +851,7 @@ public class AvcomSBS implements Runnable {
        * of the WHILE READ loop.
        */
       if (avcomDatagram == null && readLoop++ > 10) {
+        metrics.recordResync();
         break;
       }
       /**
@@ -492,6 +865,13 @@ public class AvcomSBS implements Runnable {
        * packet byte (index = 5).
        */
       if (usbFrame[0] == IDatagram.STX && DatagramType.fromByteCode(usbFrame[3]) != null) {
+        /**
+         * A new datagram before the current datagram is complete means the
+         * stream has been resynchronized and the partial datagram discarded.
+         */
+        if (avcomDatagram != null && avcomDatagramIndex < avcomDatagramLength) {
+          metrics.recordResync();
+        }
         /**
          * Initialize the Avcom datagram byte buffer to the length indicated in
          * the datagram packet header (Avcom datagram byte index 1 and 2). The
@@ -500,14 +880,26 @@ public class AvcomSBS implements Runnable {
          * Add four additional bytes the Avcom datagram byte array to include
          * the Avcom packet header information, which is not included in the
          * Avcom datagram length number.
+         * <p>
+         * In pooled mode the datagram is read into a reusable buffer, which may
+         * be longer than the datagram.
          */
-        avcomDatagram = new byte[ByteUtility.twoByteIntFromBytes(usbFrame, 3) + 4];
+        avcomDatagramLength = ByteUtility.twoByteIntFromBytes(usbFrame, 3) + 4;
+        if (datagramPool == null) {
+          avcomDatagram = new byte[avcomDatagramLength];
+        } else {
+          if (frameBuffer == null || frameBuffer.length < avcomDatagramLength) {
+            frameBuffer = new byte[avcomDatagramLength];
+          }
+          avcomDatagram = frameBuffer;
+        }
         /**
          * Important: Initialize the Avcom Datagram byte buffer index to zero.
          * The avcomDatagramIndex is used to copy fresh data into the byte
          * buffer from subsequent USB packets.
          */
         avcomDatagramIndex = 0;
+        firstByteNanos = readClock.nanoTime();
       }
       /**
        * If the Avcom datagram byte buffer has been initialized then copy the
@@ -541,15 +933,17 @@ public class AvcomSBS implements Runnable {
         /**
          * copyLength is the number of array elements to be copied.
          */
-        int copyLength = (usbFrame.length + avcomDatagramIndex > avcomDatagram.length
-                          ? avcomDatagram.length - avcomDatagramIndex
+        int copyLength = (usbFrame.length + avcomDatagramIndex > avcomDatagramLength
+                          ? avcomDatagramLength - avcomDatagramIndex
                           : usbFrame.length);
         /**
          * DEBUG output. This dumps the bytes read to the console for analysis.
          */
-        LOGGER.log(Level.FINEST,
-                   "Avcom USB PIPE READ {0} [{1}]  length [{2}] index [{3}] length [{4}]",
-                   new Object[]{usbFrame.length, ByteUtility.toString(usbFrame), avcomDatagram.length, avcomDatagramIndex, copyLength});
+        if (LOGGER.isLoggable(Level.FINEST)) {
+          LOGGER.log(Level.FINEST,
+                     "Avcom USB PIPE READ {0} [{1}]  length [{2}] index [{3}] length [{4}]",
+                     new Object[]{usbFrame.length, ByteUtility.toString(usbFrame), avcomDatagramLength, avcomDatagramIndex, copyLength});
+        }
         /**
          * Read out data from the USB packet into an Avcom datagram.
          */
@@ -559,6 +953,9 @@ public class AvcomSBS implements Runnable {
                          avcomDatagramIndex,
                          copyLength);
         avcomDatagramIndex += copyLength;
+        if (copyLength > 0 && avcomDatagramIndex == avcomDatagramLength) {
+          lastByteNanos = readClock.nanoTime();
+        }
       }
       /**
        * Important: READ new data into the usbPacket byte array.
@@ -583,7 +980,25 @@ public class AvcomSBS implements Runnable {
      * from the data collection RUN process, which assembles and distributes
      * TraceDatagram instances.
      */
-    return avcomDatagram == null ? null : Datagram.getInstance(avcomDatagram);
+    if (avcomDatagram == null) {
+      return null;
+    }
+    /**
+     * If the USB read ended before the datagram was completely read then the
+     * datagram is truncated. Discard it: in pooled mode the unread bytes of
+     * the reused buffer still hold the previous datagram.
+     */
+    if (avcomDatagramIndex < avcomDatagramLength) {
+      metrics.recordResync();
+      return null;
+    }
+    long parseStart = readClock.nanoTime();
+    IDatagram datagram = datagramPool == null
+                         ? Datagram.getInstance(avcomDatagram)
+                         : datagramPool.parse(avcomDatagram, avcomDatagramIndex);
+    parseNanos = readClock.nanoTime() - parseStart;
+    metrics.recordRead(bytesRead);
+    return datagram;
   }
 
   /**
@@ -599,10 +1014,13 @@ public class AvcomSBS implements Runnable {
      * port. Both methods achieve the same result. In this case since all
      * datagrams have a serialize method writing bytes is easier to code.
      */
-    ftdi.write(datagram.serialize());
-    LOGGER.log(Level.FINE,
-               "Avcom WRITE [{0}] {1}",
-               new Object[]{datagram.serialize().length, ByteUtility.toString(datagram.serialize())});
+    byte[] bytes = datagram.serialize();
+    ftdi.write(bytes);
+    if (LOGGER.isLoggable(Level.FINE)) {
+      LOGGER.log(Level.FINE,
+                 "Avcom WRITE [{0}] {1}",
+                 new Object[]{datagram.serialize().length, ByteUtility.toString(datagram.serialize())});
+    }
     /**
      * Developer note: Important: Wait a bit for the datagram to be processed
      * (especially new settings) to take effect. Avcom devices need about 2 to 5
@@ -619,9 +1037,7 @@ public class AvcomSBS implements Runnable {
     /**
      * Finally make a note of the write operation.
      */
-    if (hardwareDescription != null) {
-      hardwareDescription.setDatagramWrite();
-    }
+    metrics.recordWrite(bytes.length);
   }
 
   //<editor-fold defaultstate="collapsed" desc="IDatagramListener Manager methods">
@@ -637,6 +1053,41 @@ public class AvcomSBS implements Runnable {
     }
   }
 
+  /**
+   * Internal method called when a waveform response (sweep segment) has been
+   * read off the device.
+   *
+   * @param datagram the waveform response to forward
+   */
+  private void notifySegmentListeners(IDatagram datagram) {
+    for (IDatagramListener iDatagramListener : segmentListeners) {
+      iDatagramListener.onDatagram(datagram);
+    }
+  }
+
+  /**
+   * Add a Datagram Listener to receive each waveform response (sweep segment)
+   * as soon as it is read. This allows segment-level processing (e.g. alarms)
+   * to run without waiting for a complete (possibly wide-band) sweep.
+   * <p>
+   * In pooled mode the waveform response is recycled after the listener
+   * returns.
+   *
+   * @param listener the listener instance
+   */
+  public synchronized void addSegmentListener(IDatagramListener listener) {
+    this.segmentListeners.add(listener);
+  }
+
+  /**
+   * Remove a segment DatagramListener
+   *
+   * @param listener the listener instance
+   */
+  public synchronized void removeSegmentListener(IDatagramListener listener) {
+    this.segmentListeners.remove(listener);
+  }
+
   /**
    * Add a Datagram Listener to receive datagrams when ready
    *
@@ -685,20 +1136,36 @@ public class AvcomSBS implements Runnable {
    */
   @Override
   public void run() {
-    StopWatch stopwatch = new StopWatch();
     while (run) {
+      if (paused) {
+        awaitResume();
+        continue;
+      }
+      if (settingsRequest.isZeroSpan()) {
+        runZeroSpan();
+        continue;
+      }
+      Waveform waveform = null;
       try {
         /**
-         * Clear the datagram queue to be filled with new entries.
+         * Initialize the Waveform to be filled with new entries. Each waveform
+         * response is stitched into the Waveform as soon as it is read, so
+         * responses are not retained between segments.
          */
-        WAVEFORM_QUEUE.clear();
-        for (Map.Entry<Double, SettingsRequest> settingsEntry : SETTINGS_REQUEST_QUEUE.entrySet()) {
+        DatagramPool datagramPool = pool;
+        waveform = datagramPool == null
+                   ? Waveform.getInstance(settingsRequest)
+                   : datagramPool.acquireWaveform(settingsRequest);
+        waveform.setOverlapPolicy(overlapPolicy);
+        ReferenceLevelRanger referenceLevelRanger = ranger;
+        IClock acquisitionClock = clock;
+        long sweepStart = acquisitionClock.nanoTime();
+        int segments = 0;
+        boolean interrupted = false;
+        for (SettingsRequest segmentRequest : settingsRequestQueue.values()) {
           /**
            * Write the SettingsRequest, then immediately request and read a new
-           * TRACE. READ will notify any listeners of the new data Trace.
-           * <p>
-           * The new Trace is stored in the Trace Data Queue until all the
-           * settings have been run. Then a final Trace is assembled.
+           * TRACE.
            * <p>
            * The following blocks until completed.
            * <p>
@@ -706,28 +1173,77 @@ public class AvcomSBS implements Runnable {
            * write so we can write the SettingsRequest immediately followed by a
            * TraceRequest.
            */
-          stopwatch.startTimer();
-          write(settingsEntry.getValue());
-          write(new Waveform8BitRequest());
+          SettingsRequest request = referenceLevelRanger == null
+                                    ? segmentRequest
+                                    : rangedRequest(segmentRequest, referenceLevelRanger.getReferenceLevel(segmentRequest));
+          long startMillis = acquisitionClock.currentTimeMillis();
+          long startNanos = acquisitionClock.nanoTime();
+          write(request);
+          long settingsNanos = acquisitionClock.nanoTime();
+          write(waveformRequest);
+          long requestNanos = acquisitionClock.nanoTime();
           IDatagram datagram = read();
-          datagram.setElapsedTime(stopwatch.getElapsedTimeMillis());
+          long endNanos = acquisitionClock.nanoTime();
+          if (datagram == null) {
+            /**
+             * Discard the partial sweep.
+             */
+            metrics.recordError(ErrorType.NO_RESPONSE);
+            interrupted = true;
+            break;
+          }
           /**
-           * Developer note: Important: READ can return any type of datagram,
-           * including a NULL value. Always inspect the returned datagram to
-           * ensure it is not null and is actually a TraceResponse.
+           * The wall clock is read once per segment; the end time follows
+           * from the monotonic duration so the two clocks always agree.
            */
-          if (datagram instanceof Waveform8BitResponse) {
-            WAVEFORM_QUEUE.put(settingsEntry.getKey(), datagram);
-            hardwareDescription.setElapsedTime(datagram.getElapsedTime());
-          } else if (datagram instanceof ErrorResponse) {
-            hardwareDescription.setDatagramError();
+          try {
+            datagram.setElapsedTime((endNanos - startNanos) / 1000000);
+            if (datagram instanceof ADatagram) {
+              ((ADatagram) datagram).setAcquisitionTime(startMillis, startNanos,
+                                                        startMillis + (endNanos - startNanos) / 1000000, endNanos);
+            }
+            /**
+             * Developer note: Important: READ can return any type of datagram,
+             * including a NULL value. Always inspect the returned datagram to
+             * ensure it is not null and is actually a TraceResponse.
+             */
+            if (datagram instanceof AWaveformResponse) {
+              recordPhase(SweepPhase.SETTINGS_WRITE, settingsNanos - startNanos);
+              recordPhase(SweepPhase.WAVEFORM_REQUEST_WRITE, requestNanos - settingsNanos);
+              recordPhase(SweepPhase.FIRST_BYTE, firstByteNanos - requestNanos);
+              recordPhase(SweepPhase.LAST_BYTE, lastByteNanos - firstByteNanos);
+              recordPhase(SweepPhase.PARSE, parseNanos);
+              long stitchStart = acquisitionClock.nanoTime();
+              waveform.addData((AWaveformResponse) datagram);
+              segments++;
+              if (referenceLevelRanger != null) {
+                referenceLevelRanger.update(segmentRequest, (AWaveformResponse) datagram);
+              }
+              long dispatchStart = acquisitionClock.nanoTime();
+              recordPhase(SweepPhase.STITCH, dispatchStart - stitchStart);
+              notifySegmentListeners(datagram);
+              recordPhase(SweepPhase.DISPATCH, acquisitionClock.nanoTime() - dispatchStart);
+              metrics.recordSegment(endNanos - startNanos);
+            } else if (datagram instanceof ErrorResponse) {
+              metrics.recordError(ErrorType.ERROR_RESPONSE);
 //            LOG.log(Level.WARNING, "AvcomSBS data capture received error response: {0}", ((ErrorResponse) datagram).getErrorMessage());
+            } else {
+              metrics.recordError(ErrorType.UNEXPECTED_RESPONSE);
+            }
+          } finally {
+            /**
+             * The response data has been copied into the Waveform. Return
+             * pooled responses for reuse.
+             */
+            if (datagram != null) {
+              datagram.release();
+            }
           }
           /**
            * Update the percent complete. This is used to provide user interface
            * progress and feedback.
            */
-          percentComplete = (double) WAVEFORM_QUEUE.size() / (double) SETTINGS_REQUEST_QUEUE.size();
+          percentComplete = (double) segments / (double) settingsRequestQueue.size();
           /**
            * Fire a progress change event. This is picked up by any UI widgets
            * watching this instance.
@@ -738,18 +1254,15 @@ public class AvcomSBS implements Runnable {
           /**
            * If new settings were set then break out of the current FOR loop and
            * restart a new FOR loop with the new settings (we are still within
-           * the WHILE loop).
+           * the WHILE loop). The partial Waveform with the previous settings is
+           * discarded. A pause likewise discards the partial Waveform.
            */
-          if (newSettings) {
+          if (newSettings || paused) {
             /**
              * Reset the new settings flag.
              */
             newSettings = false;
-            /**
-             * Clear the datagram queue of all trace entries with the previous
-             * settings.
-             */
-            WAVEFORM_QUEUE.clear();
+            interrupted = true;
             /**
              * Break out of the current FOR loop and start a new one with the
              * new settings.
@@ -758,16 +1271,28 @@ public class AvcomSBS implements Runnable {
           }
         }
         /**
-         * Assemble a final Trace from the collected Trace Data Queue.
+         * Apply the amplitude calibration. The per-bin correction is
+         * interpolated once per sweep plan and cached by the table.
          */
-        Waveform traceDatagram = Waveform.getInstance(settingsRequest);
-        for (Map.Entry<Double, IDatagram> entry : WAVEFORM_QUEUE.entrySet()) {
-          traceDatagram.addData((Waveform8BitResponse) entry.getValue());
+        CalibrationTable table = calibrationTable;
+        if (!interrupted && table != null && !waveform.isCompact()) {
+          double[] correction = table.getCorrection(settingsRequest.getInputConnector(),
+                                                    waveform.getStartFrequency(),
+                                                    waveform.getStep(),
+                                                    waveform.size());
+          if (correction != null) {
+            waveform.addCorrection(correction);
+          }
         }
         /**
-         * Notify all listeners with the assembled TraceDatagram.
+         * Notify all listeners with the assembled Waveform.
          */
-        notifyListeners(traceDatagram);
+        if (!interrupted) {
+          long dispatchStart = acquisitionClock.nanoTime();
+          metrics.recordSweep(dispatchStart - sweepStart);
+          notifyListeners(waveform);
+          recordPhase(SweepPhase.SWEEP_DISPATCH, acquisitionClock.nanoTime() - dispatchStart);
+        }
       } catch (Exception exception) {
         /**
          * Since we are typically operating in a rapid loop ignore individual
@@ -777,20 +1302,122 @@ public class AvcomSBS implements Runnable {
 //        LOG.log(Level.WARNING, "AvcomSBS data capture run error: {0}", exception.getMessage());
 //        LOG.log(Level.SEVERE, null, exception);
         /**
-         * Note the error in the hardware description queue.
+         * Note the error in the device metrics.
+         */
+        metrics.recordError(exception instanceof UsbException ? ErrorType.USB : ErrorType.CAPTURE);
+      } finally {
+        /**
+         * Release the controller reference to the Waveform. Pooled Waveforms
+         * retained by a listener are recycled when that listener releases
+         * them.
          */
-        hardwareDescription.setDatagramError();
+        if (waveform != null) {
+          waveform.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Record the duration of a sweep segment acquisition phase.
+   *
+   * @param phase the acquisition phase
+   * @param nanos the duration (nanoseconds)
+   */
+  private void recordPhase(SweepPhase phase, long nanos) {
+    metrics.recordPhase(phase, nanos);
+  }
+
+  /**
+   * Zero-span data capture. The settings are written once, then waveforms are
+   * requested back to back and the center sample of each response is added to
+   * the time series until new settings are set or the capture is stopped.
+   */
+  private void runZeroSpan() {
+    newSettings = false;
+    TimeSeriesBuffer buffer = timeSeries;
+    IClock acquisitionClock = clock;
+    int center = AWaveformResponse.WAVEFORM_POINTS / 2;
+    try {
+      for (SettingsRequest segmentRequest : settingsRequestQueue.values()) {
+        write(segmentRequest);
+      }
+      while (run && !newSettings && !paused) {
+        /**
+         * Samples are timestamped when requested.
+         */
+        long timestamp = acquisitionClock.nanoTime();
+        write(waveformRequest);
+        IDatagram datagram = read();
+        try {
+          if (datagram instanceof AWaveformResponse) {
+            buffer.add(timestamp, ((AWaveformResponse) datagram).getPower(center));
+            metrics.recordSegment(acquisitionClock.nanoTime() - timestamp);
+          } else if (datagram instanceof ErrorResponse) {
+            metrics.recordError(ErrorType.ERROR_RESPONSE);
+          } else {
+            metrics.recordError(datagram == null ? ErrorType.NO_RESPONSE : ErrorType.UNEXPECTED_RESPONSE);
+          }
+        } finally {
+          if (datagram != null) {
+            datagram.release();
+          }
+        }
+      }
+      /**
+       * Reset the new settings flag: the new settings are used by the next
+       * sweep, which must not discard its first segment.
+       */
+      newSettings = false;
+    } catch (Exception exception) {
+      metrics.recordError(exception instanceof UsbException ? ErrorType.USB : ErrorType.CAPTURE);
+    }
+  }
+
+  /**
+   * Copy a sweep plan segment request into the reusable ranged request at the
+   * indicated reference level.
+   *
+   * @param segmentRequest the sweep plan segment request
+   * @param referenceLevel the ranged reference level
+   * @return the ranged request, valid until the next segment is written
+   */
+  private SettingsRequest rangedRequest(SettingsRequest segmentRequest, ReferenceLevel referenceLevel) {
+    rangedRequest.setCenterFrequencyMHz(segmentRequest.getCenterFrequencyMHz());
+    rangedRequest.setSpanMHz(segmentRequest.getSpanMHz());
+    rangedRequest.setResolutionBandwidth(segmentRequest.getResolutionBandwidth());
+    rangedRequest.setInputConnector(segmentRequest.getInputConnector());
+    rangedRequest.setLnbPower(segmentRequest.getLnbPower());
+    rangedRequest.setReferenceLevel(referenceLevel);
+    return rangedRequest;
+  }
+
+  /**
+   * Block the data capture thread until data capture is resumed or stopped.
+   */
+  private void awaitResume() {
+    synchronized (pauseMonitor) {
+      while (paused && run) {
+        try {
+          pauseMonitor.wait();
+        } catch (InterruptedException interruptedException) {
+          return;
+        }
       }
     }
   }
 
   /**
    * Start the Avcom SBS data capture. Data capture runs in a separate thread.
+   * <p>
+   * The device is also registered with the platform MBean server (see
+   * {@link AvcomSBSStatusMBean}) until it is stopped.
    */
   public void start() {
     this.run = true;
     this.runThread = new Thread(this, ftdi.toString());
     this.runThread.start();
+    registerMBean();
   }
 
   /**
@@ -799,5 +1426,94 @@ public class AvcomSBS implements Runnable {
   public void stop() {
     this.run = false;
     this.runThread.interrupt();
+    unregisterMBean();
+  }
+
+  /**
+   * Pause data capture. The sweep in progress is discarded after its current
+   * segment. The capture thread keeps running and waits until data capture is
+   * resumed.
+   */
+  public void pause() {
+    paused = true;
+  }
+
+  /**
+   * Resume paused data capture. A new sweep is started.
+   */
+  public void resume() {
+    synchronized (pauseMonitor) {
+      paused = false;
+      pauseMonitor.notifyAll();
+    }
+  }
+
+  /**
+   * Determine if data capture is paused.
+   *
+   * @return true if data capture is paused
+   */
+  public boolean isPaused() {
+    return paused;
+  }
+
+  /**
+   * Determine if the data capture thread is running.
+   *
+   * @return true if data capture has been started and not stopped
+   */
+  public boolean isRunning() {
+    return run;
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="JMX Registration">
+  /**
+   * Register this device with the platform MBean server. The object name is
+   * {@code com.avcomfova.sbs:type=AvcomSBS,name=<serial number>}. If another
+   * device is already registered under that name (e.g. a device with the same
+   * or no serial number) an {@code instance=<n>} key is added to make the name
+   * unique; the other device is never replaced. Registration failures are
+   * logged and otherwise ignored.
+   */
+  private synchronized void registerMBean() {
+    if (objectName != null) {
+      return;
+    }
+    try {
+      String serialNumber = hardwareDescription.getSerialNumber();
+      String name = "com.avcomfova.sbs:type=AvcomSBS,name="
+                    + ObjectName.quote(serialNumber == null || serialNumber.trim().isEmpty() ? ftdi.toString() : serialNumber.trim());
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      AvcomSBSStatus status = new AvcomSBSStatus(this);
+      for (int instance = 1; objectName == null; instance++) {
+        ObjectName candidate = new ObjectName(instance == 1 ? name : name + ",instance=" + instance);
+        try {
+          server.registerMBean(status, candidate);
+          objectName = candidate;
+        } catch (InstanceAlreadyExistsException exception) {
+          LOGGER.log(Level.FINE, "AvcomSBS JMX name {0} is in use", candidate);
+        }
+      }
+    } catch (Exception exception) {
+      LOGGER.log(Level.WARNING, "AvcomSBS JMX registration failed: {0}", exception.getMessage());
+    }
+  }
+
+  /**
+   * Unregister this device from the platform MBean server.
+   */
+  private synchronized void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (Exception exception) {
+      LOGGER.log(Level.WARNING, "AvcomSBS JMX unregistration failed: {0}", exception.getMessage());
+    }
+    objectName = null;
   }//</editor-fold>
 }
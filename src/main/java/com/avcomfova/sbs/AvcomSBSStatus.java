@@ -0,0 +1,348 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.datagram.read.HardwareDescriptionResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ErrorType;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import com.avcomofva.sbs.enumerated.SweepPhase;
+import com.avcomofva.utility.LatencyHistogram;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JMX management bean of an AvcomSBS device. This adapts the AvcomSBS
+ * hardware description, settings and {@link DeviceMetrics} to the
+ * {@link AvcomSBSStatusMBean} interface.
+ * <p>
+ * Metrics attributes are read from a device metrics snapshot taken at most once
+ * per attribute read; rates are measured against a baseline snapshot that is
+ * advanced at most once per second.
+ *
+ * @author Key Bridge LLC
+ */
+public class AvcomSBSStatus implements AvcomSBSStatusMBean {
+
+  /**
+   * The minimum rate measurement interval (nanoseconds).
+   */
+  private static final long RATE_INTERVAL_NANOS = 1000000000L;
+
+  /**
+   * The managed device.
+   */
+  private final AvcomSBS avcomSBS;
+  /**
+   * The rate measurement baseline snapshot.
+   */
+  private DeviceMetrics.Snapshot baseline;
+  /**
+   * The most recently measured rates (per second).
+   */
+  private double sweepRate, segmentRate;
+
+  /**
+   * Construct a new management bean for an AvcomSBS device.
+   *
+   * @param avcomSBS the AvcomSBS device
+   */
+  public AvcomSBSStatus(AvcomSBS avcomSBS) {
+    this.avcomSBS = avcomSBS;
+    this.baseline = avcomSBS.getMetrics().getSnapshot();
+  }
+
+  private DeviceMetrics.Snapshot snapshot() {
+    return avcomSBS.getMetrics().getSnapshot();
+  }
+
+  private static double millis(double nanos) {
+    return nanos / 1e6;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Hardware Description">
+  @Override
+  public String getProductId() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null ? null : String.valueOf(hardwareDescription.getProductId());
+  }
+
+  @Override
+  public String getSerialNumber() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null ? null : hardwareDescription.getSerialNumber().trim();
+  }
+
+  @Override
+  public String getFirmwareVersion() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null
+           ? null
+           : hardwareDescription.getFirmwareVersionMajor() + "." + hardwareDescription.getFirmwareVersionMinor();
+  }
+
+  @Override
+  public String getPcbRevision() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null ? null : String.valueOf(hardwareDescription.getPcbRevision());
+  }
+
+  @Override
+  public int getBoardTemperature() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null ? 0 : hardwareDescription.getBoardTemperature();
+  }
+
+  @Override
+  public int getAvailableRFInputs() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    return hardwareDescription == null ? 0 : hardwareDescription.getAvailableRFInputs();
+  }
+
+  @Override
+  public String[] getHardwareDescription() {
+    HardwareDescriptionResponse hardwareDescription = avcomSBS.getHardwareDescription();
+    if (hardwareDescription == null) {
+      return new String[0];
+    }
+    Map<String, String> configuration = hardwareDescription.getConfiguration();
+    String[] entries = new String[configuration.size()];
+    int i = 0;
+    for (Map.Entry<String, String> entry : configuration.entrySet()) {
+      entries[i++] = entry.getKey() + " = " + entry.getValue();
+    }
+    return entries;
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Sweep Plan">
+  @Override
+  public double getCenterFrequencyMHz() {
+    SettingsRequest settings = avcomSBS.getSettings();
+    return settings == null ? 0 : settings.getCenterFrequencyMHz();
+  }
+
+  @Override
+  public double getSpanMHz() {
+    SettingsRequest settings = avcomSBS.getSettings();
+    return settings == null ? 0 : settings.getSpanMHz();
+  }
+
+  @Override
+  public String getReferenceLevel() {
+    SettingsRequest settings = avcomSBS.getSettings();
+    return settings == null ? null : String.valueOf(settings.getReferenceLevel());
+  }
+
+  @Override
+  public String getResolutionBandwidth() {
+    SettingsRequest settings = avcomSBS.getSettings();
+    return settings == null ? null : String.valueOf(settings.getResolutionBandwidth());
+  }
+
+  @Override
+  public boolean isZeroSpan() {
+    SettingsRequest settings = avcomSBS.getSettings();
+    return settings != null && settings.isZeroSpan();
+  }
+
+  @Override
+  public String[] getSweepPlan() {
+    List<SettingsRequest> sweepPlan = avcomSBS.getSweepPlan();
+    String[] entries = new String[sweepPlan.size()];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = sweepPlan.get(i).toString();
+    }
+    return entries;
+  }
+
+  @Override
+  public int getPercentComplete() {
+    return avcomSBS.getPercentComplete();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return avcomSBS.isRunning();
+  }
+
+  @Override
+  public boolean isPaused() {
+    return avcomSBS.isPaused();
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Throughput">
+  /**
+   * Advance the rate baseline if at least the rate interval has elapsed.
+   */
+  private synchronized void updateRates() {
+    DeviceMetrics.Snapshot current = snapshot();
+    if (current.getNanoTime() - baseline.getNanoTime() >= RATE_INTERVAL_NANOS) {
+      sweepRate = current.getSweepRate(baseline);
+      segmentRate = current.getSegmentRate(baseline);
+      baseline = current;
+    }
+  }
+
+  @Override
+  public synchronized double getSweepsPerSecond() {
+    updateRates();
+    return sweepRate;
+  }
+
+  @Override
+  public synchronized double getSegmentsPerSecond() {
+    updateRates();
+    return segmentRate;
+  }
+
+  @Override
+  public long getSweeps() {
+    return snapshot().getSweeps();
+  }
+
+  @Override
+  public long getSegments() {
+    return snapshot().getSegments();
+  }
+
+  @Override
+  public long getDatagramsRead() {
+    return snapshot().getDatagramsRead();
+  }
+
+  @Override
+  public long getDatagramsWritten() {
+    return snapshot().getDatagramsWritten();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return snapshot().getBytesRead();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return snapshot().getBytesWritten();
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Latency">
+  @Override
+  public double getSegmentLatencyMeanMillis() {
+    return millis(avcomSBS.getMetrics().getSegmentLatency().getSnapshot().getMean());
+  }
+
+  @Override
+  public double getSegmentLatency50thPercentileMillis() {
+    return millis(avcomSBS.getMetrics().getSegmentLatency().getSnapshot().getPercentile(50));
+  }
+
+  @Override
+  public double getSegmentLatency99thPercentileMillis() {
+    return millis(avcomSBS.getMetrics().getSegmentLatency().getSnapshot().getPercentile(99));
+  }
+
+  @Override
+  public double getSegmentLatencyMaxMillis() {
+    return millis(avcomSBS.getMetrics().getSegmentLatency().getSnapshot().getMax());
+  }
+
+  @Override
+  public double getSweepLatency50thPercentileMillis() {
+    return millis(avcomSBS.getMetrics().getSweepLatency().getSnapshot().getPercentile(50));
+  }
+
+  @Override
+  public double getSweepLatency99thPercentileMillis() {
+    return millis(avcomSBS.getMetrics().getSweepLatency().getSnapshot().getPercentile(99));
+  }
+
+  @Override
+  public double getSweepLatencyMaxMillis() {
+    return millis(avcomSBS.getMetrics().getSweepLatency().getSnapshot().getMax());
+  }
+
+  @Override
+  public String[] getPhaseLatency() {
+    SweepPhase[] phases = SweepPhase.values();
+    String[] entries = new String[phases.length];
+    for (int i = 0; i < phases.length; i++) {
+      LatencyHistogram.Snapshot latency = avcomSBS.getMetrics().getPhaseLatency(phases[i]).getSnapshot();
+      entries[i] = String.format("%s: mean %.3f ms, p50 %.3f ms, p99 %.3f ms",
+                                 phases[i], millis(latency.getMean()), millis(latency.getPercentile(50)), millis(latency.getPercentile(99)));
+    }
+    return entries;
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Errors">
+  @Override
+  public long getErrorCount() {
+    return snapshot().getErrorCount();
+  }
+
+  @Override
+  public String[] getErrors() {
+    Map<ErrorType, Long> errors = snapshot().getErrors();
+    String[] entries = new String[errors.size()];
+    int i = 0;
+    for (Map.Entry<ErrorType, Long> entry : errors.entrySet()) {
+      entries[i++] = entry.getKey() + " = " + entry.getValue();
+    }
+    return entries;
+  }
+
+  @Override
+  public long getResyncs() {
+    return snapshot().getResyncs();
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Operations">
+  @Override
+  public void pause() {
+    avcomSBS.pause();
+  }
+
+  @Override
+  public void resume() {
+    avcomSBS.resume();
+  }
+
+  @Override
+  public void setSettings(double centerFrequencyMHz, double spanMHz, String referenceLevel, String resolutionBandwidth) {
+    SettingsRequest settings = new SettingsRequest(centerFrequencyMHz, spanMHz,
+                                                   ReferenceLevel.valueOf(referenceLevel.trim().toUpperCase()),
+                                                   ResolutionBandwidth.valueOf(resolutionBandwidth.trim().toUpperCase()));
+    avcomSBS.setSettings(settings);
+  }
+
+  @Override
+  public synchronized void resetMetrics() {
+    avcomSBS.getMetrics().reset();
+    baseline = snapshot();
+    sweepRate = 0;
+    segmentRate = 0;
+  }//</editor-fold>
+}
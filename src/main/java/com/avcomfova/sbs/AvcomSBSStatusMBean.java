@@ -0,0 +1,163 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+/**
+ * JMX management interface of an AvcomSBS device. Each running AvcomSBS is
+ * registered with the platform MBean server as
+ * {@code com.avcomfova.sbs:type=AvcomSBS,name=<serial number>} so that the
+ * device status, throughput, latency and errors may be inspected, and data
+ * capture controlled, with standard JVM tools (e.g. JConsole or VisualVM).
+ * <p>
+ * Latencies are reported in milliseconds. Throughput is measured between
+ * successive reads of the rate attributes, over at least one second.
+ *
+ * @author Key Bridge LLC
+ */
+public interface AvcomSBSStatusMBean {
+
+  //<editor-fold defaultstate="collapsed" desc="Hardware Description">
+  public String getProductId();
+
+  public String getSerialNumber();
+
+  public String getFirmwareVersion();
+
+  public String getPcbRevision();
+
+  public int getBoardTemperature();
+
+  public int getAvailableRFInputs();
+
+  /**
+   * Get all hardware description fields.
+   *
+   * @return the hardware description as "name = value" entries
+   */
+  public String[] getHardwareDescription();//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Sweep Plan">
+  public double getCenterFrequencyMHz();
+
+  public double getSpanMHz();
+
+  public String getReferenceLevel();
+
+  public String getResolutionBandwidth();
+
+  public boolean isZeroSpan();
+
+  /**
+   * Get the active sweep plan.
+   *
+   * @return the segment settings, in sweep order
+   */
+  public String[] getSweepPlan();
+
+  public int getPercentComplete();
+
+  public boolean isRunning();
+
+  public boolean isPaused();//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Throughput">
+  public double getSweepsPerSecond();
+
+  public double getSegmentsPerSecond();
+
+  public long getSweeps();
+
+  public long getSegments();
+
+  public long getDatagramsRead();
+
+  public long getDatagramsWritten();
+
+  public long getBytesRead();
+
+  public long getBytesWritten();//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Latency">
+  public double getSegmentLatencyMeanMillis();
+
+  public double getSegmentLatency50thPercentileMillis();
+
+  public double getSegmentLatency99thPercentileMillis();
+
+  public double getSegmentLatencyMaxMillis();
+
+  public double getSweepLatency50thPercentileMillis();
+
+  public double getSweepLatency99thPercentileMillis();
+
+  public double getSweepLatencyMaxMillis();
+
+  /**
+   * Get the segment acquisition phase latencies.
+   *
+   * @return one entry per phase with the phase mean, 50th and 99th percentile
+   *         latencies
+   */
+  public String[] getPhaseLatency();//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Errors">
+  public long getErrorCount();
+
+  /**
+   * Get the error counts by type.
+   *
+   * @return "type = count" entries
+   */
+  public String[] getErrors();
+
+  public long getResyncs();//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Operations">
+  /**
+   * Pause data capture.
+   */
+  public void pause();
+
+  /**
+   * Resume paused data capture.
+   */
+  public void resume();
+
+  /**
+   * Change the device settings.
+   *
+   * @param centerFrequencyMHz  the center frequency (MHz)
+   * @param spanMHz             the span (MHz); zero for a zero-span time series
+   * @param referenceLevel      the reference level name, e.g. MINUS_50
+   * @param resolutionBandwidth the resolution bandwidth name, e.g. ONE_MHZ
+   */
+  public void setSettings(double centerFrequencyMHz, double spanMHz, String referenceLevel, String resolutionBandwidth);
+
+  /**
+   * Reset the device metrics: counters, errors and latency histograms.
+   */
+  public void resetMetrics();//</editor-fold>
+}
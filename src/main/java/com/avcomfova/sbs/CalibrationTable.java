@@ -0,0 +1,324 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A frequency-dependent amplitude calibration table for one device, identified
+ * by its serial number. The table holds correction points (dB to add to the
+ * measured power level) versus frequency, either for all input connectors or
+ * for one input connector. Corrections between points are linearly
+ * interpolated; beyond the first and last point the end correction is used.
+ * <p>
+ * Corrections are interpolated onto a sweep frequency grid once and the
+ * resulting per-bin array is cached (for the most recently used grids), so that
+ * applying calibration to each sweep is a single per-bin add.
+ * <p>
+ * Table files are plain text, one point per line, with '#' comments:
+ * <pre>
+ * # frequency (MHz), correction (dB)         all input connectors
+ * 950.0, 1.25
+ * # input, frequency (MHz), correction (dB)  one input connector
+ * 2, 950.0, 1.40
+ * </pre>
+ *
+ * @author Key Bridge LLC
+ */
+public class CalibrationTable {
+
+  /**
+   * The table file name extension.
+   */
+  public static final String FILE_EXTENSION = ".cal";
+  /**
+   * The input connector key for points that apply to all input connectors.
+   */
+  private static final int ALL_INPUTS = 0;
+  /**
+   * The number of sweep grid correction arrays cached.
+   */
+  private static final int CACHE_SIZE = 16;
+
+  /**
+   * The device serial number.
+   */
+  private final String serialNumber;
+  /**
+   * The correction points (frequency MHz to correction dB) by input connector.
+   */
+  private final Map<Integer, TreeMap<Double, Double>> points = new TreeMap<>();
+  /**
+   * The cached sweep grid correction arrays, in access order.
+   */
+  private final Map<Grid, double[]> cache = new LinkedHashMap<Grid, double[]>(CACHE_SIZE, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Grid, double[]> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * Construct a new, empty calibration table.
+   *
+   * @param serialNumber the device serial number
+   */
+  public CalibrationTable(String serialNumber) {
+    this.serialNumber = serialNumber;
+  }
+
+  /**
+   * Load the calibration table of a device from a directory of table files.
+   * The file name is the device serial number with the {@code .cal}
+   * extension.
+   *
+   * @param directory    the table directory
+   * @param serialNumber the device serial number, e.g. from
+   *                     {@link com.avcomofva.sbs.datagram.read.HardwareDescriptionResponse#getSerialNumber()}
+   * @return the calibration table, null if the directory has no table for the
+   *         device
+   * @throws IOException if the table file cannot be read or parsed
+   */
+  public static CalibrationTable load(Path directory, String serialNumber) throws IOException {
+    Path file = directory.resolve(serialNumber.trim() + FILE_EXTENSION);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return load(reader, serialNumber);
+    }
+  }
+
+  /**
+   * Load a calibration table.
+   *
+   * @param reader       the table source
+   * @param serialNumber the device serial number
+   * @return the calibration table
+   * @throws IOException if the table cannot be read or parsed
+   */
+  public static CalibrationTable load(Reader reader, String serialNumber) throws IOException {
+    CalibrationTable table = new CalibrationTable(serialNumber.trim());
+    BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    String line;
+    int number = 0;
+    while ((line = lines.readLine()) != null) {
+      number++;
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\\s*[,;\\s]\\s*");
+      try {
+        if (fields.length == 2) {
+          table.addPoint(ALL_INPUTS, Double.parseDouble(fields[0]), Double.parseDouble(fields[1]));
+        } else if (fields.length == 3) {
+          table.addPoint(Integer.parseInt(fields[0]), Double.parseDouble(fields[1]), Double.parseDouble(fields[2]));
+        } else {
+          throw new IOException("Calibration line " + number + " must have 2 or 3 fields: " + line);
+        }
+      } catch (IllegalArgumentException ex) {
+        throw new IOException("Calibration line " + number + " is not valid: " + line, ex);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Add a correction point.
+   *
+   * @param inputConnector the input connector, or zero for all input connectors
+   * @param frequencyMHz   the frequency (MHz)
+   * @param correction     the correction (dB) to add to the measured power
+   *                       level
+   */
+  public synchronized void addPoint(int inputConnector, double frequencyMHz, double correction) {
+    if (inputConnector < 0) {
+      throw new IllegalArgumentException("Input connector must not be negative: " + inputConnector);
+    }
+    TreeMap<Double, Double> map = points.get(inputConnector);
+    if (map == null) {
+      map = new TreeMap<>();
+      points.put(inputConnector, map);
+    }
+    map.put(frequencyMHz, correction);
+    cache.clear();
+  }
+
+  public String getSerialNumber() {
+    return serialNumber;
+  }
+
+  /**
+   * Get the interpolated correction at one frequency.
+   *
+   * @param inputConnector the input connector
+   * @param frequencyMHz   the frequency (MHz)
+   * @return the correction (dB), zero if the table has no points for the
+   *         input connector
+   */
+  public synchronized double getCorrection(int inputConnector, double frequencyMHz) {
+    TreeMap<Double, Double> map = getPoints(inputConnector);
+    if (map == null) {
+      return 0;
+    }
+    Map.Entry<Double, Double> below = map.floorEntry(frequencyMHz);
+    Map.Entry<Double, Double> above = map.ceilingEntry(frequencyMHz);
+    if (below == null) {
+      return above.getValue();
+    }
+    if (above == null || above.getKey().equals(below.getKey())) {
+      return below.getValue();
+    }
+    double fraction = (frequencyMHz - below.getKey()) / (above.getKey() - below.getKey());
+    return below.getValue() + fraction * (above.getValue() - below.getValue());
+  }
+
+  /**
+   * Get the per-bin corrections for a sweep grid. The array is computed on
+   * first use and cached; it must not be modified.
+   *
+   * @param inputConnector the input connector
+   * @param startFrequency the frequency (MHz) of the first bin
+   * @param step           the frequency step (MHz) between adjacent bins
+   * @param size           the number of bins
+   * @return the correction (dB) of each bin, null if the table has no points
+   *         for the input connector
+   */
+  public synchronized double[] getCorrection(int inputConnector, double startFrequency, double step, int size) {
+    TreeMap<Double, Double> map = getPoints(inputConnector);
+    if (map == null) {
+      return null;
+    }
+    Grid grid = new Grid(inputConnector, startFrequency, step, size);
+    double[] correction = cache.get(grid);
+    if (correction == null) {
+      correction = interpolate(map, startFrequency, step, size);
+      cache.put(grid, correction);
+    }
+    return correction;
+  }
+
+  /**
+   * Get the points for an input connector, falling back to the points for all
+   * input connectors.
+   */
+  private TreeMap<Double, Double> getPoints(int inputConnector) {
+    TreeMap<Double, Double> map = points.get(inputConnector);
+    if (map == null || map.isEmpty()) {
+      map = points.get(ALL_INPUTS);
+    }
+    return map == null || map.isEmpty() ? null : map;
+  }
+
+  /**
+   * Interpolate correction points onto a sweep grid in a single merge pass.
+   */
+  private static double[] interpolate(TreeMap<Double, Double> map, double startFrequency, double step, int size) {
+    int count = map.size();
+    double[] frequency = new double[count];
+    double[] value = new double[count];
+    int k = 0;
+    for (Map.Entry<Double, Double> entry : map.entrySet()) {
+      frequency[k] = entry.getKey();
+      value[k++] = entry.getValue();
+    }
+    double[] correction = new double[size];
+    int segment = 0;
+    for (int i = 0; i < size; i++) {
+      double f = startFrequency + i * step;
+      while (segment < count - 1 && frequency[segment + 1] <= f) {
+        segment++;
+      }
+      if (f <= frequency[0]) {
+        correction[i] = value[0];
+      } else if (segment == count - 1) {
+        correction[i] = value[count - 1];
+      } else {
+        double fraction = (f - frequency[segment]) / (frequency[segment + 1] - frequency[segment]);
+        correction[i] = value[segment] + fraction * (value[segment + 1] - value[segment]);
+      }
+    }
+    return correction;
+  }
+
+  @Override
+  public String toString() {
+    return "CalibrationTable [" + serialNumber + ", " + points.size() + " input connector tables]";
+  }
+
+  /**
+   * A sweep grid cache key.
+   */
+  private static final class Grid {
+
+    private final int inputConnector;
+    private final double startFrequency;
+    private final double step;
+    private final int size;
+
+    Grid(int inputConnector, double startFrequency, double step, int size) {
+      this.inputConnector = inputConnector;
+      this.startFrequency = startFrequency;
+      this.step = step;
+      this.size = size;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = 7;
+      hash = 41 * hash + inputConnector;
+      hash = 41 * hash + Double.hashCode(startFrequency);
+      hash = 41 * hash + Double.hashCode(step);
+      hash = 41 * hash + size;
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Grid)) {
+        return false;
+      }
+      Grid other = (Grid) obj;
+      return inputConnector == other.inputConnector
+             && size == other.size
+             && Double.compare(startFrequency, other.startFrequency) == 0
+             && Double.compare(step, other.step) == 0;
+    }
+  }
+}
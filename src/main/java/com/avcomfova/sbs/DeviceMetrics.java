@@ -0,0 +1,403 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.enumerated.ErrorType;
+import com.avcomofva.sbs.enumerated.SweepPhase;
+import com.avcomofva.utility.IClock;
+import com.avcomofva.utility.LatencyHistogram;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The data capture metrics of one AvcomSBS device: datagram and byte counts,
+ * errors by type, stream resynchronizations, sweep and segment counts, and
+ * latency histograms.
+ * <p>
+ * Counters are {@link LongAdder} instances and histograms are lock-free, so
+ * metrics are recorded by the data capture thread without contention and may
+ * be read from any thread at any time. The registry belongs to the AvcomSBS
+ * controller and is kept when the device is re-initialized.
+ * <p>
+ * A {@link Snapshot} is a cheap, immutable copy of the counters and of the
+ * segment and sweep latency histograms. Throughput is calculated from two
+ * snapshots with {@link Snapshot#getSweepRate(Snapshot)} and
+ * {@link Snapshot#getSegmentRate(Snapshot)}.
+ *
+ * @author Key Bridge LLC
+ */
+public class DeviceMetrics {
+
+  private final LongAdder datagramsRead = new LongAdder();
+  private final LongAdder datagramsWritten = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder resyncs = new LongAdder();
+  private final LongAdder segments = new LongAdder();
+  private final LongAdder sweeps = new LongAdder();
+  /**
+   * The error counters, by type.
+   */
+  private final Map<ErrorType, LongAdder> errors = new EnumMap<>(ErrorType.class);
+  /**
+   * The segment acquisition latency: from the settings write to the end of the
+   * response read.
+   */
+  private final LatencyHistogram segmentLatency = new LatencyHistogram();
+  /**
+   * The sweep acquisition latency: from the first settings write to the end of
+   * stitching the last segment.
+   */
+  private final LatencyHistogram sweepLatency = new LatencyHistogram();
+  /**
+   * The segment acquisition latency histograms, by phase.
+   */
+  private final Map<SweepPhase, LatencyHistogram> phaseLatency = new EnumMap<>(SweepPhase.class);
+  /**
+   * The clock used to timestamp snapshots.
+   */
+  private volatile IClock clock = IClock.SYSTEM;
+
+  /**
+   * Construct a new, empty metrics registry.
+   */
+  public DeviceMetrics() {
+    for (ErrorType errorType : ErrorType.values()) {
+      errors.put(errorType, new LongAdder());
+    }
+    for (SweepPhase phase : SweepPhase.values()) {
+      phaseLatency.put(phase, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * Set the clock used to timestamp snapshots.
+   *
+   * @param clock the clock, default {@link IClock#SYSTEM}
+   */
+  public void setClock(IClock clock) {
+    if (clock == null) {
+      throw new IllegalArgumentException("Clock is required.");
+    }
+    this.clock = clock;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Recording Methods">
+  /**
+   * Record a datagram read from the device.
+   *
+   * @param bytes the number of bytes read
+   */
+  public void recordRead(int bytes) {
+    datagramsRead.increment();
+    bytesRead.add(bytes);
+  }
+
+  /**
+   * Record a datagram written to the device.
+   *
+   * @param bytes the number of bytes written
+   */
+  public void recordWrite(int bytes) {
+    datagramsWritten.increment();
+    bytesWritten.add(bytes);
+  }
+
+  /**
+   * Record a data capture error.
+   *
+   * @param errorType the error type
+   */
+  public void recordError(ErrorType errorType) {
+    errors.get(errorType).increment();
+  }
+
+  /**
+   * Record a stream resynchronization: bytes discarded to realign the read
+   * with a datagram boundary.
+   */
+  public void recordResync() {
+    resyncs.increment();
+  }
+
+  /**
+   * Record a segment acquisition.
+   *
+   * @param nanos the segment latency (nanoseconds)
+   */
+  public void recordSegment(long nanos) {
+    segments.increment();
+    segmentLatency.record(nanos);
+  }
+
+  /**
+   * Record a completed sweep.
+   *
+   * @param nanos the sweep latency (nanoseconds)
+   */
+  public void recordSweep(long nanos) {
+    sweeps.increment();
+    sweepLatency.record(nanos);
+  }
+
+  /**
+   * Record the duration of a sweep segment acquisition phase.
+   *
+   * @param phase the acquisition phase
+   * @param nanos the duration (nanoseconds)
+   */
+  public void recordPhase(SweepPhase phase, long nanos) {
+    phaseLatency.get(phase).record(nanos);
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public LatencyHistogram getSegmentLatency() {
+    return segmentLatency;
+  }
+
+  public LatencyHistogram getSweepLatency() {
+    return sweepLatency;
+  }
+
+  /**
+   * Get the latency histogram of a sweep segment acquisition phase.
+   *
+   * @param phase the acquisition phase
+   * @return the latency histogram
+   */
+  public LatencyHistogram getPhaseLatency(SweepPhase phase) {
+    return phaseLatency.get(phase);
+  }
+
+  /**
+   * Get the number of errors of a type.
+   *
+   * @param errorType the error type
+   * @return the error count
+   */
+  public long getErrorCount(ErrorType errorType) {
+    return errors.get(errorType).sum();
+  }//</editor-fold>
+
+  /**
+   * Take a snapshot of the counters and the segment and sweep latency
+   * histograms. Values recorded concurrently with the snapshot may or may not
+   * be included.
+   *
+   * @return a snapshot
+   */
+  public Snapshot getSnapshot() {
+    Map<ErrorType, Long> errorCounts = new EnumMap<>(ErrorType.class);
+    for (Map.Entry<ErrorType, LongAdder> entry : errors.entrySet()) {
+      errorCounts.put(entry.getKey(), entry.getValue().sum());
+    }
+    return new Snapshot(clock.nanoTime(),
+                        datagramsRead.sum(), datagramsWritten.sum(),
+                        bytesRead.sum(), bytesWritten.sum(),
+                        resyncs.sum(), segments.sum(), sweeps.sum(),
+                        Collections.unmodifiableMap(errorCounts),
+                        segmentLatency.getSnapshot(), sweepLatency.getSnapshot());
+  }
+
+  /**
+   * Reset all counters and histograms. Values recorded concurrently with the
+   * reset may or may not be removed.
+   */
+  public void reset() {
+    datagramsRead.reset();
+    datagramsWritten.reset();
+    bytesRead.reset();
+    bytesWritten.reset();
+    resyncs.reset();
+    segments.reset();
+    sweeps.reset();
+    for (LongAdder adder : errors.values()) {
+      adder.reset();
+    }
+    segmentLatency.reset();
+    sweepLatency.reset();
+    for (LatencyHistogram histogram : phaseLatency.values()) {
+      histogram.reset();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getSnapshot().toString();
+  }
+
+  /**
+   * An immutable snapshot of the device metrics.
+   */
+  public static final class Snapshot {
+
+    private final long nanoTime;
+    private final long datagramsRead;
+    private final long datagramsWritten;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long resyncs;
+    private final long segments;
+    private final long sweeps;
+    private final Map<ErrorType, Long> errors;
+    private final LatencyHistogram.Snapshot segmentLatency;
+    private final LatencyHistogram.Snapshot sweepLatency;
+
+    private Snapshot(long nanoTime, long datagramsRead, long datagramsWritten, long bytesRead, long bytesWritten,
+                     long resyncs, long segments, long sweeps, Map<ErrorType, Long> errors,
+                     LatencyHistogram.Snapshot segmentLatency, LatencyHistogram.Snapshot sweepLatency) {
+      this.nanoTime = nanoTime;
+      this.datagramsRead = datagramsRead;
+      this.datagramsWritten = datagramsWritten;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+      this.resyncs = resyncs;
+      this.segments = segments;
+      this.sweeps = sweeps;
+      this.errors = errors;
+      this.segmentLatency = segmentLatency;
+      this.sweepLatency = sweepLatency;
+    }
+
+    //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+    /**
+     * Get the time the snapshot was taken.
+     *
+     * @return the monotonic time (nanoseconds)
+     */
+    public long getNanoTime() {
+      return nanoTime;
+    }
+
+    public long getDatagramsRead() {
+      return datagramsRead;
+    }
+
+    public long getDatagramsWritten() {
+      return datagramsWritten;
+    }
+
+    public long getBytesRead() {
+      return bytesRead;
+    }
+
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    public long getResyncs() {
+      return resyncs;
+    }
+
+    public long getSegments() {
+      return segments;
+    }
+
+    public long getSweeps() {
+      return sweeps;
+    }
+
+    /**
+     * Get the error counts by type.
+     *
+     * @return an unmodifiable map of error type to error count
+     */
+    public Map<ErrorType, Long> getErrors() {
+      return errors;
+    }
+
+    /**
+     * Get the number of errors of a type.
+     *
+     * @param errorType the error type
+     * @return the error count
+     */
+    public long getErrorCount(ErrorType errorType) {
+      return errors.get(errorType);
+    }
+
+    /**
+     * Get the total number of errors of all types.
+     *
+     * @return the error count
+     */
+    public long getErrorCount() {
+      long count = 0;
+      for (Long value : errors.values()) {
+        count += value;
+      }
+      return count;
+    }
+
+    public LatencyHistogram.Snapshot getSegmentLatency() {
+      return segmentLatency;
+    }
+
+    public LatencyHistogram.Snapshot getSweepLatency() {
+      return sweepLatency;
+    }//</editor-fold>
+
+    /**
+     * Get the sweep rate between an earlier snapshot and this snapshot.
+     *
+     * @param earlier an earlier snapshot of the same metrics
+     * @return the sweep rate (sweeps per second), zero if no time has elapsed
+     */
+    public double getSweepRate(Snapshot earlier) {
+      return rate(sweeps - earlier.sweeps, earlier);
+    }
+
+    /**
+     * Get the segment rate between an earlier snapshot and this snapshot.
+     *
+     * @param earlier an earlier snapshot of the same metrics
+     * @return the segment rate (segments per second), zero if no time has
+     *         elapsed
+     */
+    public double getSegmentRate(Snapshot earlier) {
+      return rate(segments - earlier.segments, earlier);
+    }
+
+    private double rate(long count, Snapshot earlier) {
+      long nanos = nanoTime - earlier.nanoTime;
+      return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return "DeviceMetrics [read " + datagramsRead + " (" + bytesRead + " B)"
+             + ", written " + datagramsWritten + " (" + bytesWritten + " B)"
+             + ", segments " + segments
+             + ", sweeps " + sweeps
+             + ", resyncs " + resyncs
+             + ", errors " + errors
+             + ", segment latency " + segmentLatency
+             + ", sweep latency " + sweepLatency + "]";
+    }
+  }
+}
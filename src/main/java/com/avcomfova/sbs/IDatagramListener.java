@@ -36,6 +36,15 @@ import java.util.EventListener;
  */
 public interface IDatagramListener extends EventListener {
 
+  /**
+   * Called when a datagram is received from a sensor device.
+   * <p>
+   * If the sensor is in pooled mode the datagram is recycled after this method
+   * returns. A listener that keeps the datagram must {@link IDatagram#retain()}
+   * it before returning and {@link IDatagram#release()} it when done.
+   *
+   * @param datagram the datagram
+   */
   public void onDatagram(IDatagram datagram);
 //  public void onDatagram(Datagram d);
 }
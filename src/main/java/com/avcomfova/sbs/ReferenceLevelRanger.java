@@ -0,0 +1,155 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Automatic reference level ranging per sweep segment.
+ * <p>
+ * The learned reference level of each segment (keyed by segment center
+ * frequency) is cached across sweeps and used for the next request of that
+ * segment. After each response the level is adjusted by one step:
+ * <ul>
+ * <li>up (less sensitive) if the response is saturated,</li>
+ * <li>down (more sensitive) if the strongest sample of the response would
+ * still be at least the headroom below saturation at the next lower level,
+ * i.e. the trace sits near the bottom of the 8-bit range.</li>
+ * </ul>
+ * Because a step down is only taken with headroom to spare, the level does
+ * not oscillate between adjacent steps, and each segment settles within a few
+ * sweeps at the most sensitive level that does not saturate.
+ * <p>
+ * This class is not thread safe; it is used by the AvcomSBS data capture
+ * thread. The learned levels may be read from any thread with
+ * {@link #getReferenceLevels()}.
+ *
+ * @author Key Bridge LLC
+ */
+public class ReferenceLevelRanger {
+
+  /**
+   * The default headroom (dB) below saturation required to step down.
+   */
+  public static final double DEFAULT_HEADROOM = 6.0;
+
+  /**
+   * The headroom (dB) below saturation required to step down.
+   */
+  private double headroom = DEFAULT_HEADROOM;
+  /**
+   * The learned reference level of each segment, keyed by segment center
+   * frequency (MHz).
+   */
+  private volatile Map<Double, ReferenceLevel> levels = new TreeMap<>();
+
+  public double getHeadroom() {
+    return headroom;
+  }
+
+  /**
+   * Set the headroom: the margin below saturation that the strongest sample
+   * must keep at the next lower reference level before stepping down.
+   *
+   * @param headroom the headroom (dB). Default is 6 dB.
+   */
+  public void setHeadroom(double headroom) {
+    if (headroom < 0) {
+      throw new IllegalArgumentException("Headroom must not be negative: " + headroom);
+    }
+    this.headroom = headroom;
+  }
+
+  /**
+   * Get the reference level to request for a segment: the learned level, or
+   * the requested level if none has been learned.
+   *
+   * @param segment the segment settings request
+   * @return the reference level to request
+   */
+  public ReferenceLevel getReferenceLevel(SettingsRequest segment) {
+    ReferenceLevel learned = levels.get(segment.getCenterFrequencyMHz());
+    return learned != null ? learned : segment.getReferenceLevel();
+  }
+
+  /**
+   * Learn from a segment response: step the segment reference level up on
+   * saturation or down when the trace sits near the bottom of the range.
+   *
+   * @param segment  the segment settings request
+   * @param response the segment response
+   * @return the reference level to request for the segment next sweep
+   */
+  public ReferenceLevel update(SettingsRequest segment, AWaveformResponse response) {
+    ReferenceLevel current = response.getReferenceLevel();
+    ReferenceLevel next = current;
+    ReferenceLevel[] values = ReferenceLevel.values();
+    if (response.isSaturated()) {
+      if (current.ordinal() > 0) {
+        next = values[current.ordinal() - 1];
+      }
+    } else if (current.ordinal() < values.length - 1) {
+      double max = Double.NEGATIVE_INFINITY;
+      for (double value : response.getData()) {
+        if (value > max) {
+          max = value;
+        }
+      }
+      ReferenceLevel lower = values[current.ordinal() + 1];
+      if (max <= AWaveformResponse.getSaturationLevel(lower) - headroom) {
+        next = lower;
+      }
+    }
+    if (next != levels.get(segment.getCenterFrequencyMHz())) {
+      Map<Double, ReferenceLevel> copy = new TreeMap<>(levels);
+      copy.put(segment.getCenterFrequencyMHz(), next);
+      levels = copy;
+    }
+    return next;
+  }
+
+  /**
+   * Get the learned reference level of each segment.
+   *
+   * @return an unmodifiable map of segment center frequency (MHz) to reference
+   *         level
+   */
+  public Map<Double, ReferenceLevel> getReferenceLevels() {
+    return Collections.unmodifiableMap(levels);
+  }
+
+  /**
+   * Forget all learned reference levels.
+   */
+  public void clear() {
+    levels = new TreeMap<>();
+  }
+}
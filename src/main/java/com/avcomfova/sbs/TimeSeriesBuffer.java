@@ -0,0 +1,203 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+/**
+ * A fixed-capacity ring buffer of timestamped power level samples, used to
+ * stream zero-span (fixed frequency) measurements.
+ * <p>
+ * Samples are held in primitive arrays; adding a sample overwrites the oldest
+ * sample when the buffer is full and allocates nothing. Every sample is given a
+ * sequence number, counting from zero, so that a consumer may read all samples
+ * added since its previous read with {@link #read(long, long[], double[])} and
+ * detect samples lost to overwriting.
+ * <p>
+ * Samples are indexed from zero (oldest) to {@link #size()} - 1 (newest). The
+ * buffer may be read from any thread while samples are added.
+ *
+ * @author Key Bridge LLC
+ */
+public class TimeSeriesBuffer {
+
+  /**
+   * The default capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 65536;
+
+  /**
+   * The maximum number of samples.
+   */
+  private final int capacity;
+  /**
+   * The sample timestamps (monotonic nanoseconds), by ring slot.
+   */
+  private final long[] timestamps;
+  /**
+   * The sample power levels (dBm), by ring slot.
+   */
+  private final double[] power;
+  /**
+   * The sequence number of the next sample. This is also the total number of
+   * samples added.
+   */
+  private long sequence;
+
+  /**
+   * Construct a new time series buffer with the default capacity.
+   */
+  public TimeSeriesBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct a new time series buffer.
+   *
+   * @param capacity the maximum number of samples. Must be positive.
+   */
+  public TimeSeriesBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Time series capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.timestamps = new long[capacity];
+    this.power = new double[capacity];
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the number of samples held.
+   *
+   * @return the number of samples
+   */
+  public synchronized int size() {
+    return (int) Math.min(sequence, capacity);
+  }
+
+  /**
+   * Get the sequence number of the next sample to be added. This is the total
+   * number of samples added since the buffer was created or cleared.
+   *
+   * @return the next sequence number
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Get the sequence number of the oldest sample held.
+   *
+   * @return the oldest sequence number
+   */
+  public synchronized long getOldestSequence() {
+    return Math.max(0, sequence - capacity);
+  }
+
+  /**
+   * Get the timestamp of a sample.
+   *
+   * @param index the sample index, from zero (oldest) to size - 1 (newest)
+   * @return the sample timestamp (monotonic nanoseconds)
+   */
+  public synchronized long getTimestamp(int index) {
+    return timestamps[slot(index)];
+  }
+
+  /**
+   * Get the power level of a sample.
+   *
+   * @param index the sample index, from zero (oldest) to size - 1 (newest)
+   * @return the sample power level (dBm)
+   */
+  public synchronized double getPower(int index) {
+    return power[slot(index)];
+  }//</editor-fold>
+
+  /**
+   * Add a sample, overwriting the oldest sample if the buffer is full.
+   *
+   * @param timestamp the sample timestamp (monotonic nanoseconds)
+   * @param level     the sample power level (dBm)
+   */
+  public synchronized void add(long timestamp, double level) {
+    int slot = (int) (sequence % capacity);
+    timestamps[slot] = timestamp;
+    power[slot] = level;
+    sequence++;
+  }
+
+  /**
+   * Copy the samples from a sequence number onward into caller-supplied
+   * arrays. If the indicated sample has already been overwritten the copy
+   * starts at the oldest sample held; compare {@link #getOldestSequence()} to
+   * detect lost samples. At most the length of the shorter array is copied.
+   * <p>
+   * A consumer streams the time series by reading from the sequence number it
+   * last read plus the number of samples returned.
+   *
+   * @param from       the sequence number of the first sample to copy
+   * @param timestamp  the destination timestamp array (monotonic nanoseconds)
+   * @param powerLevel the destination power level array (dBm)
+   * @return the number of samples copied
+   */
+  public synchronized int read(long from, long[] timestamp, double[] powerLevel) {
+    long first = Math.max(from, Math.max(0, sequence - capacity));
+    int count = (int) Math.max(0, Math.min(sequence - first, Math.min(timestamp.length, powerLevel.length)));
+    int slot = (int) (first % capacity);
+    int tail = Math.min(count, capacity - slot);
+    System.arraycopy(timestamps, slot, timestamp, 0, tail);
+    System.arraycopy(power, slot, powerLevel, 0, tail);
+    System.arraycopy(timestamps, 0, timestamp, tail, count - tail);
+    System.arraycopy(power, 0, powerLevel, tail, count - tail);
+    return count;
+  }
+
+  /**
+   * Remove all samples and reset the sequence number.
+   */
+  public synchronized void clear() {
+    sequence = 0;
+  }
+
+  /**
+   * Get the ring slot of a sample index.
+   */
+  private int slot(int index) {
+    int size = size();
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Sample " + index + " of " + size);
+    }
+    return (int) ((sequence - size + index) % capacity);
+  }
+
+  @Override
+  public String toString() {
+    return "TimeSeriesBuffer [" + size() + " of " + capacity + " samples]";
+  }
+}
@@ -27,6 +27,7 @@ package com.avcomfova.sbs.datagram;
 
 import com.avcomofva.sbs.enumerated.DatagramType;
 import com.avcomofva.utility.SerialNumber;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * An abstract Datagram implementation with basic methods and variables common
@@ -54,11 +55,38 @@ public abstract class ADatagram implements IDatagram {
    * (in milliseconds).
    */
   protected long elapsedTimeMillis;
+  /**
+   * The acquisition start and end times on the wall clock (milliseconds since
+   * the epoch).
+   */
+  protected long acquisitionStartMillis, acquisitionEndMillis;
+  /**
+   * The acquisition start and end times on the monotonic clock (nanoseconds).
+   */
+  protected long acquisitionStartNanos, acquisitionEndNanos;
+  /**
+   * Indicator that the acquisition times have been set.
+   */
+  protected boolean timestamped;
   /**
    * A (optional) transaction identifier. This is used by a device controller to
    * correlate {@code REQUEST} and {@code RESPONSE} datagrams.
    */
   protected Long transactionId;
+  /**
+   * The pool to which this datagram is returned when its reference count
+   * reaches zero. Null if this datagram is not pooled.
+   */
+  DatagramPool pool;
+  /**
+   * The reference count of a pooled datagram.
+   */
+  private volatile int referenceCount;
+  /**
+   * Atomic updater for the reference count. This avoids allocating an
+   * AtomicInteger per datagram.
+   */
+  private static final AtomicIntegerFieldUpdater<ADatagram> REFERENCE_COUNT = AtomicIntegerFieldUpdater.newUpdater(ADatagram.class, "referenceCount");
 
   /**
    * Construct a new ADatagram instance, setting the datagram type.
@@ -73,6 +101,10 @@ public abstract class ADatagram implements IDatagram {
   /**
    * Get the datagram raw data contents. The byte array may be raw or cooked
    * depending upon the implementation.
+   * <p>
+   * The returned array is the internal array, not a copy, and must be treated
+   * as read-only. Waveforms and waveform responses provide a
+   * {@link WaveformView} for sharing trace data safely between consumers.
    *
    * @return the raw data array returned from the sensor
    */
@@ -110,6 +142,119 @@ public abstract class ADatagram implements IDatagram {
     this.elapsedTimeMillis = elapsedTimeMS;
   }
 
+  /**
+   * Determine if the acquisition times of this Datagram have been set.
+   *
+   * @return true if the acquisition times are set
+   */
+  public boolean isTimestamped() {
+    return timestamped;
+  }
+
+  /**
+   * Get the time the acquisition of this Datagram started, e.g. when the
+   * request was written to the device.
+   *
+   * @return the wall clock time (milliseconds since the epoch), zero if not
+   *         timestamped
+   */
+  public long getAcquisitionStartMillis() {
+    return acquisitionStartMillis;
+  }
+
+  /**
+   * Get the time the acquisition of this Datagram ended, e.g. when the
+   * response was read from the device.
+   *
+   * @return the wall clock time (milliseconds since the epoch), zero if not
+   *         timestamped
+   */
+  public long getAcquisitionEndMillis() {
+    return acquisitionEndMillis;
+  }
+
+  /**
+   * Get the time the acquisition of this Datagram started on the monotonic
+   * clock. This is only comparable with other monotonic times from the same
+   * clock.
+   *
+   * @return the monotonic time (nanoseconds), zero if not timestamped
+   */
+  public long getAcquisitionStartNanos() {
+    return acquisitionStartNanos;
+  }
+
+  /**
+   * Get the time the acquisition of this Datagram ended on the monotonic clock.
+   *
+   * @return the monotonic time (nanoseconds), zero if not timestamped
+   */
+  public long getAcquisitionEndNanos() {
+    return acquisitionEndNanos;
+  }
+
+  /**
+   * Set the acquisition times of this Datagram.
+   *
+   * @param startMillis the wall clock start time (milliseconds since the
+   *                    epoch)
+   * @param startNanos  the monotonic start time (nanoseconds)
+   * @param endMillis   the wall clock end time (milliseconds since the epoch)
+   * @param endNanos    the monotonic end time (nanoseconds)
+   */
+  public void setAcquisitionTime(long startMillis, long startNanos, long endMillis, long endNanos) {
+    this.acquisitionStartMillis = startMillis;
+    this.acquisitionStartNanos = startNanos;
+    this.acquisitionEndMillis = endMillis;
+    this.acquisitionEndNanos = endNanos;
+    this.timestamped = true;
+  }
+
+  /**
+   * Copy the acquisition times of another Datagram, e.g. the source of a
+   * derived Datagram.
+   *
+   * @param source the Datagram to copy
+   */
+  public void copyAcquisitionTime(ADatagram source) {
+    this.acquisitionStartMillis = source.acquisitionStartMillis;
+    this.acquisitionStartNanos = source.acquisitionStartNanos;
+    this.acquisitionEndMillis = source.acquisitionEndMillis;
+    this.acquisitionEndNanos = source.acquisitionEndNanos;
+    this.timestamped = source.timestamped;
+  }
+
+  /**
+   * Extend the acquisition times of this Datagram to include a component (e.g.
+   * segment) Datagram. The first timestamped component sets the start time and
+   * each timestamped component sets the end time.
+   *
+   * @param component the component Datagram
+   */
+  protected void extendAcquisitionTime(ADatagram component) {
+    if (!component.timestamped) {
+      return;
+    }
+    if (!timestamped) {
+      this.acquisitionStartMillis = component.acquisitionStartMillis;
+      this.acquisitionStartNanos = component.acquisitionStartNanos;
+      this.timestamped = true;
+    }
+    this.acquisitionEndMillis = component.acquisitionEndMillis;
+    this.acquisitionEndNanos = component.acquisitionEndNanos;
+  }
+
+  /**
+   * Clear the acquisition times of this Datagram.
+   */
+  protected void clearAcquisitionTime() {
+    this.acquisitionStartMillis = 0;
+    this.acquisitionStartNanos = 0;
+    this.acquisitionEndMillis = 0;
+    this.acquisitionEndNanos = 0;
+    this.timestamped = false;
+  }
+
   /**
    * Set the serial number
    *
@@ -141,6 +286,47 @@ public abstract class ADatagram implements IDatagram {
     return this.valid;
   }
 
+  /**
+   * Increment the reference count of a pooled datagram. This is a no-op for
+   * datagrams that are not pooled.
+   */
+  @Override
+  public void retain() {
+    if (pool != null) {
+      REFERENCE_COUNT.incrementAndGet(this);
+    }
+  }
+
+  /**
+   * Decrement the reference count of a pooled datagram and return it to its
+   * pool when the count reaches zero. This is a no-op for datagrams that are
+   * not pooled.
+   *
+   * @throws IllegalStateException if the datagram has already been released
+   */
+  @Override
+  public void release() {
+    if (pool != null) {
+      int count = REFERENCE_COUNT.decrementAndGet(this);
+      if (count == 0) {
+        pool.recycle(this);
+      } else if (count < 0) {
+        REFERENCE_COUNT.incrementAndGet(this);
+        throw new IllegalStateException("Datagram already released: " + this);
+      }
+    }
+  }
+
+  /**
+   * Set the reference count of a pooled datagram when it is acquired from its
+   * pool.
+   *
+   * @param count the initial reference count
+   */
+  void setReferenceCount(int count) {
+    REFERENCE_COUNT.set(this, count);
+  }
+
   @Override
   public String toString() {
     return type + " ID: [" + transactionId + "]";
@@ -27,6 +27,7 @@ package com.avcomfova.sbs.datagram;
 
 import com.avcomofva.sbs.datagram.read.ErrorResponse;
 import com.avcomofva.sbs.datagram.read.HardwareDescriptionResponse;
+import com.avcomofva.sbs.datagram.read.Waveform12BitResponse;
 import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
 import com.avcomofva.sbs.enumerated.DatagramType;
 
@@ -45,6 +46,11 @@ public class Datagram {
    * <p>
    * The returned interface will likely need to be casted to gain access to its
    * type-specific methods and fields.
+   * <p>
+   * Waveform responses are parsed header-first: the header fields are
+   * available immediately while the trace samples are decoded on first access
+   * from the (retained) input byte array. The input array must therefore not be
+   * modified after this call.
    *
    * @param data the Avcom datagram raw byte array. This will be inspected and
    *             parsed
@@ -81,8 +87,11 @@ public class Datagram {
       case WAVEFORM_8BIT_RESPONSE:
         return new Waveform8BitResponse(data);
       case WAVEFORM_12BIT_RESPONSE:
-        throw new UnsupportedOperationException(datagramType + " not yet implemented.");
-//          return new Waveform12BitResponse(data);
+        return new Waveform12BitResponse(data);
+      case SIGNAL_DETECTIONS:
+        return new SignalDetections(data);
+      case WAVEFORM_DELTA:
+        return new WaveformDelta(data);
       default:
         throw new AssertionError(datagramType.name());
     }
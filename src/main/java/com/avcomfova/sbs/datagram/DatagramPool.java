@@ -0,0 +1,282 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
+import com.avcomofva.sbs.datagram.read.Waveform12BitResponse;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.DatagramType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A per-controller pool of reusable waveform datagrams. Pooling is opt-in (see
+ * {@code AvcomSBS.setPooled}) and allows steady-state sweeping with near-zero
+ * allocation: waveform responses and assembled Waveforms are recycled together
+ * with their datagram and trace data arrays.
+ * <p>
+ * Pooled datagrams are reference counted. A datagram is acquired with a
+ * reference count of one and is returned to this pool when the count reaches
+ * zero. A listener that keeps a pooled datagram beyond its
+ * {@code onDatagram} call must {@link IDatagram#retain()} it and later
+ * {@link IDatagram#release()} it; the controller releases its own reference
+ * once all listeners have been notified. A datagram must not be used after it
+ * has been released.
+ * <p>
+ * Leak detection: when Java assertions are enabled (or the system property
+ * {@code avcom.pool.debug} is set) the pool records where each outstanding
+ * datagram was acquired, and {@link #checkLeaks()} logs the acquisition stack
+ * trace of every datagram that has not been released.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Jesse Caulfield
+ */
+public class DatagramPool {
+
+  private static final Logger LOGGER = Logger.getLogger(DatagramPool.class.getName());
+
+  /**
+   * Indicator that leak detection is enabled. True when Java assertions are
+   * enabled or the system property {@code avcom.pool.debug} is set.
+   */
+  public static final boolean DEBUG;
+
+  static {
+    boolean debug = Boolean.getBoolean("avcom.pool.debug");
+    assert debug = true; // intentional side effect: enabled with -ea
+    DEBUG = debug;
+  }
+
+  /**
+   * The default maximum number of idle instances retained per datagram type.
+   */
+  public static final int DEFAULT_CAPACITY = 8;
+
+  /**
+   * The maximum number of idle instances retained per datagram type. Instances
+   * released when the pool is full are left to the garbage collector.
+   */
+  private final int capacity;
+  /**
+   * Idle 8-bit waveform responses.
+   */
+  private final ArrayDeque<Waveform8BitResponse> waveform8Bit;
+  /**
+   * Idle 12-bit waveform responses.
+   */
+  private final ArrayDeque<Waveform12BitResponse> waveform12Bit;
+  /**
+   * Idle assembled waveforms.
+   */
+  private final ArrayDeque<Waveform> waveforms;
+  /**
+   * The acquisition stack trace of each outstanding datagram. Only populated
+   * when {@link #DEBUG} is enabled.
+   */
+  private final Map<ADatagram, Throwable> acquired;
+  /**
+   * The number of datagrams acquired and not yet released.
+   */
+  private int outstanding;
+  /**
+   * The total number of datagram instances created by this pool.
+   */
+  private long created;
+
+  /**
+   * Construct a new pool with the default capacity.
+   */
+  public DatagramPool() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct a new pool.
+   *
+   * @param capacity the maximum number of idle instances retained per datagram
+   *                 type
+   */
+  public DatagramPool(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.waveform8Bit = new ArrayDeque<>(capacity);
+    this.waveform12Bit = new ArrayDeque<>(capacity);
+    this.waveforms = new ArrayDeque<>(capacity);
+    this.acquired = DEBUG ? new IdentityHashMap<>() : null;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the number of datagrams acquired from this pool and not yet released.
+   *
+   * @return the number of outstanding datagrams
+   */
+  public synchronized int getOutstanding() {
+    return outstanding;
+  }
+
+  /**
+   * Get the total number of datagram instances created by this pool. In steady
+   * state this value should not increase.
+   *
+   * @return the number of instances created
+   */
+  public synchronized long getCreated() {
+    return created;
+  }//</editor-fold>
+
+  /**
+   * Parse a datagram held in a transient (e.g. reused read) buffer. Waveform
+   * responses are parsed into recycled instances; all other datagram types
+   * are copied and parsed by {@link Datagram#getInstance(byte[])}.
+   *
+   * @param frame  the datagram buffer
+   * @param length the number of datagram bytes read into the buffer. A
+   *               waveform response shorter than its fixed length is rejected.
+   * @return an Avcom IDatagram instance, which must be released when no longer
+   *         required
+   * @throws Exception if the datagram type cannot be interpreted or if the data
+   *                   cannot be parsed.
+   */
+  public IDatagram parse(byte[] frame, int length) throws Exception {
+    /**
+     * The datagram type is always at byte address 3.
+     */
+    DatagramType datagramType = DatagramType.fromByteCode(frame[3]);
+    AWaveformResponse response;
+    if (datagramType == DatagramType.WAVEFORM_8BIT_RESPONSE) {
+      response = acquire(waveform8Bit, Waveform8BitResponse::new);
+    } else if (datagramType == DatagramType.WAVEFORM_12BIT_RESPONSE) {
+      response = acquire(waveform12Bit, Waveform12BitResponse::new);
+    } else {
+      return Datagram.getInstance(Arrays.copyOf(frame, length));
+    }
+    try {
+      response.parseCopy(frame, length);
+    } catch (Exception exception) {
+      response.release();
+      throw exception;
+    }
+    return response;
+  }
+
+  /**
+   * Acquire a Waveform initialized from the input SettingsRequest. This is the
+   * pooled equivalent of {@link Waveform#getInstance(SettingsRequest)}.
+   *
+   * @param settingsRequest the settings request instance to copy values from.
+   * @return an empty Waveform instance, which must be released when no longer
+   *         required
+   */
+  public Waveform acquireWaveform(SettingsRequest settingsRequest) {
+    Waveform waveform = acquire(waveforms, Waveform::new);
+    waveform.initialize(settingsRequest);
+    return waveform;
+  }
+
+  /**
+   * Log the acquisition stack trace of every outstanding datagram. Stack
+   * traces are only available when {@link #DEBUG} is enabled.
+   *
+   * @return the number of outstanding datagrams
+   */
+  public synchronized int checkLeaks() {
+    if (outstanding > 0) {
+      LOGGER.log(Level.WARNING, "{0} pooled datagrams have not been released.", outstanding);
+      if (acquired != null) {
+        for (Map.Entry<ADatagram, Throwable> entry : acquired.entrySet()) {
+          LOGGER.log(Level.WARNING, "Unreleased " + entry.getKey().getType() + " acquired at:", entry.getValue());
+        }
+      }
+    }
+    return outstanding;
+  }
+
+  /**
+   * Take an idle instance from the indicated free list, or create a new
+   * instance if none is available.
+   *
+   * @param free    the free list
+   * @param factory the instance factory
+   * @return an instance with a reference count of one
+   */
+  private synchronized <T extends ADatagram> T acquire(ArrayDeque<T> free, Supplier<T> factory) {
+    T datagram = free.pollFirst();
+    if (datagram == null) {
+      datagram = factory.get();
+      datagram.pool = this;
+      created++;
+    }
+    datagram.setReferenceCount(1);
+    outstanding++;
+    if (acquired != null) {
+      acquired.put(datagram, new Throwable("Acquired " + datagram.getType()));
+    }
+    return datagram;
+  }
+
+  /**
+   * Return a released datagram to its free list. Called by
+   * {@link ADatagram#release()} when the reference count reaches zero.
+   *
+   * @param datagram the released datagram
+   */
+  synchronized void recycle(ADatagram datagram) {
+    outstanding--;
+    if (acquired != null) {
+      acquired.remove(datagram);
+    }
+    if (datagram instanceof Waveform8BitResponse) {
+      offer(waveform8Bit, (Waveform8BitResponse) datagram);
+    } else if (datagram instanceof Waveform12BitResponse) {
+      offer(waveform12Bit, (Waveform12BitResponse) datagram);
+    } else if (datagram instanceof Waveform) {
+      offer(waveforms, (Waveform) datagram);
+    }
+  }
+
+  /**
+   * Add an idle instance to a free list if the list is not full.
+   */
+  private <T extends ADatagram> void offer(ArrayDeque<T> free, T datagram) {
+    if (free.size() < capacity) {
+      free.addFirst(datagram);
+    }
+  }
+}
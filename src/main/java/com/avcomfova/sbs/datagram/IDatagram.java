@@ -151,4 +151,21 @@ public interface IDatagram {
    */
   public void setTransactionId(Long transactionId);
 
+  /**
+   * Increment the reference count of a pooled datagram. A listener that keeps
+   * a pooled datagram beyond the {@code onDatagram} call must retain it and
+   * later {@link #release()} it. This is a no-op for datagrams that are not
+   * pooled.
+   */
+  public default void retain() {
+  }
+
+  /**
+   * Decrement the reference count of a pooled datagram. When the count reaches
+   * zero the datagram is returned to its pool and must no longer be used. This
+   * is a no-op for datagrams that are not pooled.
+   */
+  public default void release() {
+  }
+
 }
@@ -0,0 +1,247 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.enumerated.DatagramType;
+import java.util.Arrays;
+
+/**
+ * A Key Bridge extended datagram containing the signal intervals detected in
+ * one sweep. Each interval has a start and stop frequency (the outer edges of
+ * its first and last bin), the frequency and power of its strongest bin and
+ * its integrated power (the sum of its bin powers).
+ * <p>
+ * Intervals are held in a single primitive array and accessed by index. The
+ * {@link #getData()} array holds five values per interval in the order start
+ * frequency, stop frequency, peak frequency, peak power, integrated power.
+ * <p>
+ * The serialized form follows the Avcom datagram framing, so that detections
+ * can be forwarded in place of raw traces when bandwidth is limited:
+ * <pre>
+ * 0       STX
+ * 1-2     length (bytes 3 through ETX)
+ * 3       type (0xFE)
+ * 4-5     interval count
+ * then for each interval (16 bytes):
+ * 0-3     start frequency (MHz * 10,000)
+ * 4-7     stop frequency (MHz * 10,000)
+ * 8-11    peak frequency (MHz * 10,000)
+ * 12-13   peak power (dBm * 100, signed)
+ * 14-15   integrated power (dBm * 100, signed)
+ * last    ETX
+ * </pre>
+ *
+ * @author Key Bridge LLC
+ */
+public class SignalDetections extends ADatagram {
+
+  /**
+   * The number of values per interval in the data array.
+   */
+  private static final int FIELDS = 5;
+  /**
+   * The number of serialized bytes per interval.
+   */
+  private static final int INTERVAL_LENGTH = 16;
+  /**
+   * The maximum number of intervals that fit the two-byte datagram length.
+   */
+  public static final int MAX_INTERVALS = (0xffff - 4) / INTERVAL_LENGTH;
+
+  /**
+   * The number of intervals.
+   */
+  private int size;
+
+  /**
+   * Construct a new, empty signal detections datagram.
+   */
+  public SignalDetections() {
+    super(DatagramType.SIGNAL_DETECTIONS);
+    this.data = new double[FIELDS * 8];
+    this.valid = true;
+  }
+
+  /**
+   * Construct a new signal detections datagram from a serialized byte array.
+   *
+   * @param bytes the serialized datagram
+   * @throws Exception if the byte array cannot be parsed
+   */
+  public SignalDetections(byte[] bytes) throws Exception {
+    this();
+    parse(bytes);
+  }
+
+  /**
+   * Remove all intervals.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Add a detected signal interval.
+   *
+   * @param startFrequency  the interval start frequency (MHz)
+   * @param stopFrequency   the interval stop frequency (MHz)
+   * @param peakFrequency   the frequency of the strongest bin (MHz)
+   * @param peakPower       the power of the strongest bin (dBm)
+   * @param integratedPower the sum of the bin powers (dBm)
+   */
+  public void add(double startFrequency, double stopFrequency, double peakFrequency, double peakPower, double integratedPower) {
+    if (FIELDS * (size + 1) > data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    int offset = FIELDS * size++;
+    data[offset] = startFrequency;
+    data[offset + 1] = stopFrequency;
+    data[offset + 2] = peakFrequency;
+    data[offset + 3] = peakPower;
+    data[offset + 4] = integratedPower;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  /**
+   * Get the number of detected signal intervals.
+   *
+   * @return the number of intervals
+   */
+  public int size() {
+    return size;
+  }
+
+  public double getStartFrequency(int index) {
+    return data[FIELDS * checkIndex(index)];
+  }
+
+  public double getStopFrequency(int index) {
+    return data[FIELDS * checkIndex(index) + 1];
+  }
+
+  public double getPeakFrequency(int index) {
+    return data[FIELDS * checkIndex(index) + 2];
+  }
+
+  public double getPeakPower(int index) {
+    return data[FIELDS * checkIndex(index) + 3];
+  }
+
+  public double getIntegratedPower(int index) {
+    return data[FIELDS * checkIndex(index) + 4];
+  }//</editor-fold>
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Interval " + index + " of " + size);
+    }
+    return index;
+  }
+
+  /**
+   * Parse a serialized signal detections datagram, replacing the current
+   * intervals.
+   *
+   * @param bytes the serialized datagram
+   * @throws Exception if the byte array is not a valid signal detections
+   *                   datagram
+   */
+  @Override
+  public void parse(byte[] bytes) throws Exception {
+    if (bytes == null || bytes.length < 7 || bytes[0] != STX || bytes[3] != type.getByteCode()) {
+      throw new Exception("Not a " + type + " datagram.");
+    }
+    int count = ((bytes[4] & 0xff) << 8) | (bytes[5] & 0xff);
+    if (bytes.length < 7 + count * INTERVAL_LENGTH) {
+      throw new Exception("Truncated " + type + " datagram: " + bytes.length + " bytes for " + count + " intervals.");
+    }
+    clear();
+    int idx = 6;
+    for (int i = 0; i < count; i++, idx += INTERVAL_LENGTH) {
+      add(readInt(bytes, idx) / 10000d,
+          readInt(bytes, idx + 4) / 10000d,
+          readInt(bytes, idx + 8) / 10000d,
+          readShort(bytes, idx + 12) / 100d,
+          readShort(bytes, idx + 14) / 100d);
+    }
+  }
+
+  /**
+   * Serialize the intervals. Frequencies are rounded to 100 Hz and power
+   * levels to 0.01 dB.
+   *
+   * @return the serialized datagram
+   */
+  @Override
+  public byte[] serialize() {
+    int count = Math.min(size, MAX_INTERVALS);
+    int length = 4 + count * INTERVAL_LENGTH;
+    byte[] b = new byte[length + HEADER_SIZE];
+    b[0] = STX;
+    b[1] = (byte) (length >>> 8);
+    b[2] = (byte) length;
+    b[3] = type.getByteCode();
+    b[4] = (byte) (count >>> 8);
+    b[5] = (byte) count;
+    int idx = 6;
+    for (int i = 0; i < count; i++, idx += INTERVAL_LENGTH) {
+      int offset = FIELDS * i;
+      writeInt(b, idx, Math.round(data[offset] * 10000));
+      writeInt(b, idx + 4, Math.round(data[offset + 1] * 10000));
+      writeInt(b, idx + 8, Math.round(data[offset + 2] * 10000));
+      writeShort(b, idx + 12, Math.round(data[offset + 3] * 100));
+      writeShort(b, idx + 14, Math.round(data[offset + 4] * 100));
+    }
+    b[b.length - 1] = ETX;
+    return b;
+  }
+
+  private static int readInt(byte[] b, int idx) {
+    return ((b[idx] & 0xff) << 24) | ((b[idx + 1] & 0xff) << 16) | ((b[idx + 2] & 0xff) << 8) | (b[idx + 3] & 0xff);
+  }
+
+  private static short readShort(byte[] b, int idx) {
+    return (short) (((b[idx] & 0xff) << 8) | (b[idx + 1] & 0xff));
+  }
+
+  private static void writeInt(byte[] b, int idx, long value) {
+    b[idx] = (byte) (value >>> 24);
+    b[idx + 1] = (byte) (value >>> 16);
+    b[idx + 2] = (byte) (value >>> 8);
+    b[idx + 3] = (byte) value;
+  }
+
+  private static void writeShort(byte[] b, int idx, long value) {
+    long clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    b[idx] = (byte) (clamped >>> 8);
+    b[idx + 1] = (byte) clamped;
+  }
+
+  @Override
+  public String toString() {
+    return "SIGNAL DETECTIONS: [" + size + " intervals]";
+  }
+}
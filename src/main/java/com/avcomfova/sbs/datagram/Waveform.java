@@ -25,24 +25,48 @@
  */
 package com.avcomfova.sbs.datagram;
 
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
 import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
 import com.avcomofva.sbs.datagram.write.SettingsRequest;
 import com.avcomofva.sbs.enumerated.DatagramType;
+import com.avcomofva.sbs.enumerated.OverlapPolicy;
 import com.avcomofva.sbs.enumerated.ProductID;
 import com.avcomofva.sbs.enumerated.ReferenceLevel;
 import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * An extended Waveform data container used to exchange spectrum trace data
  * received from Avcom sensors. This Waveform supports serialization and
  * arbitrary sample size.
+ * <p>
+ * Trace data is stored on a uniform frequency grid: a start frequency, a
+ * frequency step between adjacent bins and a primitive array of power levels
+ * (dBm), one per bin. The frequency of bin {@code i} is
+ * {@code startFrequency + i * step}. Bins for which no sample has been received
+ * hold {@code Double.NaN}.
+ * <p>
+ * Compact storage mode: a compact Waveform keeps the raw unsigned 8-bit
+ * samples (one byte per bin) and the reference level instead of power levels
+ * (eight bytes per bin), and converts samples to dBm on access or in bulk via
+ * {@link #getData(double[], int)}. This reduces memory eight-fold for waveform
+ * history buffers. Compact Waveforms only accept 8-bit waveform responses.
  *
  * @author Jesse Caulfield
  */
 public class Waveform extends ADatagram {
 
+  /**
+   * The reference levels, indexed by ordinal.
+   */
+  private static final ReferenceLevel[] REFERENCE_LEVELS = ReferenceLevel.values();
+
   /**
    * Indicator that the sensor detect saturation somewhere within the trace.
    */
@@ -60,21 +84,80 @@ public class Waveform extends ADatagram {
    */
   private double span;
   /**
-   * The sweep reference level (dBm)
+   * The sweep reference level (dBm). For a sweep mixing segments taken at
+   * different reference levels this is the highest of them.
    */
   private ReferenceLevel referenceLevel;
+  /**
+   * Indicator that segments were taken at different reference levels (e.g.
+   * auto-ranging), in which case the level of each bin is held in the levels
+   * array.
+   */
+  private boolean mixedReferenceLevel;
+  /**
+   * The reference level ordinal of each bin. Only valid if the reference level
+   * is mixed. Reused across sweeps.
+   */
+  private byte[] levels;
   /**
    * The sweep resolution bandwidth (enumerated) (MHz)
    */
   private ResolutionBandwidth resolutionBandwidth;
   /**
-   * A map of center frequency (MHz) vs. power level (dBm).
+   * The frequency (MHz) of the first bin in the power level array.
+   */
+  private double startFrequency;
+  /**
+   * The frequency step (MHz) between adjacent bins in the power level array.
+   * Zero if the frequency grid has not yet been initialized.
+   */
+  private double step;
+  /**
+   * The raw unsigned 8-bit samples, one per bin. Only used in compact storage
+   * mode, in which case the power level array is null.
+   */
+  private byte[] samples;
+  /**
+   * A bitmap of the bins holding a sample. Only used in compact storage mode.
+   */
+  private long[] filled;
+  /**
+   * The policy used to resolve bins covered by more than one segment.
    */
-  private final Map<Double, Double> traceData;
+  private OverlapPolicy overlapPolicy = OverlapPolicy.PREFER_CENTER;
+  /**
+   * Per-bin overlap state: the number of samples merged (MEAN) or the center
+   * rank of the kept sample (PREFER_CENTER). Zero for an empty bin. Not used by
+   * the MAX policy.
+   */
+  private short[] overlap;
+  /**
+   * A reusable buffer into which each segment is decoded before it is merged.
+   */
+  private double[] segmentBuffer;
+  /**
+   * A cached read-only view of the trace data. Cleared whenever data is added.
+   */
+  private WaveformView view;
 
   public Waveform() {
     super(DatagramType.WAVEFORM);
-    this.traceData = new TreeMap<>();
+    this.data = new double[0];
+  }
+
+  /**
+   * Construct a new, empty Waveform.
+   *
+   * @param compact true to store raw 8-bit samples (compact storage mode),
+   *                false to store power levels
+   */
+  public Waveform(boolean compact) {
+    this();
+    if (compact) {
+      this.data = null;
+      this.samples = new byte[0];
+      this.filled = new long[0];
+    }
   }
 
   /**
@@ -91,13 +174,205 @@ public class Waveform extends ADatagram {
    * @return an empty Waveform instance.
    */
   public static Waveform getInstance(SettingsRequest settingsRequest) {
-    Waveform traceDatagram = new Waveform();
-    traceDatagram.centerFrequency = settingsRequest.getCenterFrequencyMHz();
-    traceDatagram.span = settingsRequest.getSpanMHz();
-    traceDatagram.transactionId = settingsRequest.getTransactionId();
+    return getInstance(settingsRequest, false);
+  }
+
+  /**
+   * Build and return a new Waveform instance with center frequency and span
+   * values from an input SettingsRequest instance.
+   *
+   * @param settingsRequest the settings request instance to copy values from.
+   * @param compact         true to store raw 8-bit samples (compact storage
+   *                        mode), false to store power levels
+   * @return an empty Waveform instance.
+   */
+  public static Waveform getInstance(SettingsRequest settingsRequest, boolean compact) {
+    Waveform traceDatagram = new Waveform(compact);
+    traceDatagram.initialize(settingsRequest);
     return traceDatagram;
   }
 
+  /**
+   * (Re-)initialize this Waveform with center frequency and span values from
+   * an input SettingsRequest instance, clearing all configuration and trace
+   * data. The power level array is reused if it is already the required size.
+   * This is used by {@link DatagramPool} to recycle Waveform instances.
+   *
+   * @param settingsRequest the settings request instance to copy values from.
+   */
+  void initialize(SettingsRequest settingsRequest) {
+    this.view = null;
+    this.centerFrequency = settingsRequest.getCenterFrequencyMHz();
+    this.span = settingsRequest.getSpanMHz();
+    this.transactionId = settingsRequest.getTransactionId();
+    this.saturated = false;
+    this.productId = null;
+    this.referenceLevel = null;
+    this.resolutionBandwidth = null;
+    this.elapsedTimeMillis = 0;
+    clearAcquisitionTime();
+    this.valid = false;
+    this.startFrequency = 0;
+    this.step = 0;
+    /**
+     * Initialize the frequency grid. Each waveform response carries a fixed
+     * number of points, so the bin step is the RBW for a piecewise sweep or
+     * the span divided across the points for a single narrow sweep.
+     */
+    if (settingsRequest.getResolutionBandwidth() != null && settingsRequest.getSpanMHz() > 0) {
+      double segmentSpan = Math.min(settingsRequest.getSpanMHz(),
+                                    AWaveformResponse.WAVEFORM_POINTS * settingsRequest.getResolutionBandwidth().getMHz());
+      this.step = segmentSpan / AWaveformResponse.WAVEFORM_POINTS;
+      this.startFrequency = settingsRequest.getStartFrequencyMHz();
+      allocate((int) Math.round(settingsRequest.getSpanMHz() / this.step));
+    } else {
+      allocate(0);
+    }
+  }
+
+  /**
+   * (Re-)initialize this Waveform with an explicit configuration and frequency
+   * grid, clearing all trace data. The power level array is reused if it is
+   * already the required size. This is used to rebuild a Waveform from a
+   * derived representation, such as a {@link WaveformDelta} stream; the bins
+   * are then filled with {@link #setPower(int, double)}.
+   *
+   * @param centerFrequency     the sweep center frequency (MHz)
+   * @param span                the sweep span (MHz)
+   * @param startFrequency      the frequency (MHz) of the first bin
+   * @param step                the frequency step (MHz) between adjacent bins
+   * @param size                the number of bins
+   * @param referenceLevel      the reference level
+   * @param resolutionBandwidth the resolution bandwidth
+   */
+  public void initialize(double centerFrequency, double span, double startFrequency, double step, int size,
+                         ReferenceLevel referenceLevel, ResolutionBandwidth resolutionBandwidth) {
+    this.view = null;
+    this.centerFrequency = centerFrequency;
+    this.span = span;
+    this.startFrequency = startFrequency;
+    this.step = step;
+    this.referenceLevel = referenceLevel;
+    this.resolutionBandwidth = resolutionBandwidth;
+    this.saturated = false;
+    this.productId = null;
+    this.elapsedTimeMillis = 0;
+    clearAcquisitionTime();
+    this.valid = true;
+    allocate(size);
+  }
+
+  /**
+   * Set the power level of one bin. Only available in power level (not
+   * compact) storage mode.
+   *
+   * @param index the bin index
+   * @param power the power level (dBm)
+   * @throws IllegalStateException if this is a compact Waveform
+   */
+  public void setPower(int index, double power) {
+    if (samples != null) {
+      throw new IllegalStateException("Cannot set power levels in a compact Waveform.");
+    }
+    data[index] = power;
+  }
+
+  /**
+   * Add a per-bin correction (dB) to the power levels, e.g. an amplitude
+   * calibration interpolated onto this Waveform frequency grid. Empty (NaN)
+   * bins remain empty. Only available in power level (not compact) storage
+   * mode.
+   * <p>
+   * The loop is a plain element-wise add with no branches so that the JIT may
+   * vectorize it.
+   *
+   * @param correction the correction of each bin (dB)
+   * @throws IllegalArgumentException if the correction size does not match
+   *                                  this Waveform
+   * @throws IllegalStateException    if this is a compact Waveform
+   */
+  public void addCorrection(double[] correction) {
+    if (samples != null) {
+      throw new IllegalStateException("Cannot correct power levels in a compact Waveform.");
+    }
+    if (correction.length != data.length) {
+      throw new IllegalArgumentException("Correction size " + correction.length + " does not match Waveform size " + data.length);
+    }
+    final double[] power = data;
+    for (int i = 0; i < power.length; i++) {
+      power[i] += correction[i];
+    }
+  }
+
+  /**
+   * Size the bin storage to the indicated number of bins and clear all bins.
+   * Existing arrays are reused if they are already the required size.
+   *
+   * @param length the number of bins
+   */
+  private void allocate(int length) {
+    mixedReferenceLevel = false;
+    if (overlap != null) {
+      if (overlap.length != length) {
+        overlap = new short[length];
+      } else {
+        Arrays.fill(overlap, (short) 0);
+      }
+    }
+    if (samples == null) {
+      if (data.length != length) {
+        data = new double[length];
+      }
+      Arrays.fill(data, Double.NaN);
+    } else {
+      if (samples.length != length) {
+        samples = new byte[length];
+        filled = new long[(length + 63) >>> 6];
+      }
+      Arrays.fill(filled, 0L);
+    }
+  }
+
+  /**
+   * Copy the configuration, frequency grid and trace data of another Waveform
+   * into this Waveform. The power level array is reused if it is already the
+   * required size. Compact source data is converted to power levels. This is
+   * used by processing stages that publish a derived trace without allocating
+   * a new Waveform per sweep.
+   *
+   * @param source the Waveform to copy
+   * @throws IllegalStateException if this is a compact Waveform
+   */
+  public void copyFrom(Waveform source) {
+    if (samples != null) {
+      throw new IllegalStateException("Cannot copy into a compact Waveform.");
+    }
+    this.saturated = source.saturated;
+    this.productId = source.productId;
+    this.centerFrequency = source.centerFrequency;
+    this.span = source.span;
+    this.referenceLevel = source.referenceLevel;
+    this.resolutionBandwidth = source.resolutionBandwidth;
+    this.mixedReferenceLevel = source.mixedReferenceLevel;
+    if (mixedReferenceLevel) {
+      if (levels == null || levels.length != source.levels.length) {
+        levels = new byte[source.levels.length];
+      }
+      System.arraycopy(source.levels, 0, levels, 0, levels.length);
+    }
+    this.startFrequency = source.startFrequency;
+    this.step = source.step;
+    this.transactionId = source.transactionId;
+    this.elapsedTimeMillis = source.elapsedTimeMillis;
+    copyAcquisitionTime(source);
+    this.valid = source.valid;
+    this.view = null;
+    if (data.length != source.size()) {
+      data = new double[source.size()];
+    }
+    source.getData(data, 0);
+  }
+
   //<editor-fold defaultstate="collapsed" desc="Getter Methods">
   public double getCenterFrequency() {
     return centerFrequency;
@@ -111,6 +386,28 @@ public class Waveform extends ADatagram {
     return referenceLevel;
   }
 
+  /**
+   * Determine if the segments of this sweep were taken at different reference
+   * levels (e.g. auto-ranging). If so each bin must be encoded as an 8-bit
+   * sample at its own level (see {@link #getReferenceLevel(int)}).
+   *
+   * @return true if the reference level varies from bin to bin
+   */
+  public boolean isMixedReferenceLevel() {
+    return mixedReferenceLevel;
+  }
+
+  /**
+   * Get the reference level at which the indicated bin was sampled.
+   *
+   * @param index the bin index
+   * @return the bin reference level; the sweep reference level unless the
+   *         reference level is mixed
+   */
+  public ReferenceLevel getReferenceLevel(int index) {
+    return mixedReferenceLevel ? REFERENCE_LEVELS[levels[index]] : referenceLevel;
+  }
+
   public ResolutionBandwidth getResolutionBandwidth() {
     return resolutionBandwidth;
   }
@@ -120,31 +417,251 @@ public class Waveform extends ADatagram {
   }
 
   /**
-   * Get a copy of the internal Trace data. Trace data is presented as a sorted
-   * map of center frequency (MHz) vs. power level (dBm).
+   * Get the frequency (MHz) of the first bin.
    *
-   * @return a non-null TreeMap instance.
+   * @return the start frequency (MHz)
+   */
+  public double getStartFrequency() {
+    return startFrequency;
+  }
+
+  /**
+   * Get the frequency (MHz) immediately above the last bin.
+   *
+   * @return the stop frequency (MHz)
+   */
+  public double getStopFrequency() {
+    return startFrequency + size() * step;
+  }
+
+  /**
+   * Get the frequency step (MHz) between adjacent bins.
+   *
+   * @return the bin step (MHz), zero if no data has been added
+   */
+  public double getStep() {
+    return step;
+  }
+
+  /**
+   * Get the number of bins in the power level array.
+   *
+   * @return the number of bins
+   */
+  public int size() {
+    return samples == null ? data.length : samples.length;
+  }
+
+  /**
+   * Determine if this Waveform stores raw 8-bit samples (compact storage mode).
+   *
+   * @return true if this is a compact Waveform
+   */
+  public boolean isCompact() {
+    return samples != null;
+  }
+
+  /**
+   * Get the frequency (MHz) of the indicated bin.
+   *
+   * @param index the bin index
+   * @return the bin frequency (MHz)
+   */
+  public double getFrequency(int index) {
+    return startFrequency + index * step;
+  }
+
+  /**
+   * Get the power level (dBm) of the indicated bin.
+   *
+   * @param index the bin index
+   * @return the power level (dBm), NaN if the bin has no sample
+   */
+  public double getPower(int index) {
+    if (samples == null) {
+      return data[index];
+    }
+    return isFilled(index) ? Waveform8BitResponse.decode(samples[index] & 0xff, referenceLevel) : Double.NaN;
+  }
+
+  /**
+   * Get the raw (unsigned 8-bit) sample of the indicated bin. Compact storage
+   * mode only.
+   *
+   * @param index the bin index
+   * @return the unsigned sample value, from 0 to 255, or -1 if the bin has no
+   *         sample
+   * @throws IllegalStateException if this is not a compact Waveform
+   */
+  public int getSample(int index) {
+    if (samples == null) {
+      throw new IllegalStateException("Raw samples are only available in compact storage mode.");
+    }
+    return isFilled(index) ? samples[index] & 0xff : -1;
+  }
+
+  /**
+   * Get the power level (dBm) trace data. Bins with no sample hold NaN.
+   * <p>
+   * In compact storage mode samples are converted on each call into a new
+   * array; use {@link #getData(double[], int)} to convert into a reusable
+   * array instead.
+   *
+   * @return the power level array (dBm)
+   */
+  @Override
+  public double[] getData() {
+    return samples == null ? data : getData(new double[samples.length], 0);
+  }
+
+  /**
+   * Copy (or, in compact storage mode, convert) the power level trace data
+   * into a caller-supplied array. Bins with no sample are set to NaN.
+   *
+   * @param output       the destination power level array (dBm), which must
+   *                     hold at least {@link #size()} values from the offset
+   * @param outputOffset the index of the first output value
+   * @return the output array
+   */
+  public double[] getData(double[] output, int outputOffset) {
+    if (samples == null) {
+      System.arraycopy(data, 0, output, outputOffset, data.length);
+      return output;
+    }
+    if (referenceLevel != null) {
+      Waveform8BitResponse.decode(samples, 0, output, outputOffset, samples.length, referenceLevel);
+    }
+    for (int word = 0; word < filled.length; word++) {
+      if (filled[word] != -1L) {
+        int end = Math.min(samples.length, (word + 1) << 6);
+        for (int i = word << 6; i < end; i++) {
+          if (!isFilled(i)) {
+            output[outputOffset + i] = Double.NaN;
+          }
+        }
+      }
+    }
+    return output;
+  }
+
+  /**
+   * Get the index of the bin nearest to the indicated frequency.
+   *
+   * @param frequencyMHz a frequency of interest (MHz)
+   * @return the nearest bin index, -1 if the frequency is outside this
+   *         waveform
+   */
+  public int indexOf(double frequencyMHz) {
+    if (step == 0) {
+      return -1;
+    }
+    int index = (int) Math.round((frequencyMHz - startFrequency) / step);
+    return index >= 0 && index < size() ? index : -1;
+  }
+
+  /**
+   * Get the power level (dBm) of the bin nearest to the indicated frequency.
+   *
+   * @param frequencyMHz a frequency of interest (MHz)
+   * @return the power level (dBm), NaN if the frequency is outside this
+   *         waveform or the bin has no sample
+   */
+  public double getPowerAt(double frequencyMHz) {
+    int index = indexOf(frequencyMHz);
+    return index < 0 ? Double.NaN : getPower(index);
+  }
+
+  /**
+   * Get the internal Trace data as a Map. Trace data is presented as a sorted
+   * map of center frequency (MHz) vs. power level (dBm). Bins with no sample
+   * are omitted.
+   * <p>
+   * The returned map is a read-only view backed by the internal power level
+   * array; no copy is made. (In compact storage mode the map is backed by a
+   * converted copy.) Copy the map into a new TreeMap if a modifiable instance
+   * is required.
+   *
+   * @return a non-null, read-only Map instance.
    */
   public Map<Double, Double> getTraceData() {
-    return traceData != null ? new TreeMap<>(traceData) : new TreeMap<Double, Double>();
+    return new TraceMap(startFrequency, step, getData());
+  }
+
+  /**
+   * Get a read-only view of the trace data. The view is backed by the internal
+   * power level array (no copy is made) and may be shared by any number of
+   * consumers and threads. The same view instance is returned until more data
+   * is added. In compact storage mode the view is backed by a converted copy.
+   *
+   * @return a non-null, read-only WaveformView
+   */
+  public WaveformView getView() {
+    WaveformView current = view;
+    if (current == null) {
+      current = new WaveformView(startFrequency, step, getData(), 0, size());
+      view = current;
+    }
+    return current;
   }
 
   public boolean isSaturated() {
     return saturated;
+  }
+
+  /**
+   * Set the saturated state, e.g. of a derived Waveform that accumulates
+   * several sweeps.
+   *
+   * @param saturated true if any bin of this Waveform is saturated
+   */
+  public void setSaturated(boolean saturated) {
+    this.saturated = saturated;
+  }
+
+  public OverlapPolicy getOverlapPolicy() {
+    return overlapPolicy;
+  }
+
+  /**
+   * Set the policy used to resolve bins covered by more than one segment. This
+   * should be set before any data is added.
+   *
+   * @param overlapPolicy the overlap policy. Default is PREFER_CENTER.
+   */
+  public void setOverlapPolicy(OverlapPolicy overlapPolicy) {
+    if (overlapPolicy == null) {
+      throw new IllegalArgumentException("Overlap policy is required.");
+    }
+    this.overlapPolicy = overlapPolicy;
   }//</editor-fold>
 
   /**
-   * Add data from a Waveform8BitResponse into this Waveform instance. The data,
+   * Add data from a Waveform8BitResponse or Waveform12BitResponse into this
+   * Waveform instance. 8-bit and 12-bit segments may be mixed, except in compact
+   * storage mode which only accepts 8-bit segments. The data,
    * reference level, resolutionBandwidth and saturated state are initialized
    * from the first datagram added. All subsequent datagrams must match the
-   * first datagram reference level, resolutionBandwidth and product ID.
+   * first datagram resolutionBandwidth and product ID.
+   * <p>
+   * Segments may be taken at different reference levels (see
+   * {@link com.avcomfova.sbs.AvcomSBS#setAutoRanging(boolean)}); the Waveform
+   * then reports the highest of them and records the level of each bin (see
+   * {@link #getReferenceLevel(int)}). Compact Waveforms store raw samples
+   * against a single reference level, so all segments must match the first.
+   * <p>
+   * The segment samples are written directly onto the frequency grid. Bins
+   * already holding a sample are resolved with the {@link OverlapPolicy}.
    *
-   * @param datagram the Waveform8BitResponse datagram to import
+   * @param datagram the waveform response datagram to import
    * @throws java.lang.Exception if the datagram configuration does not match
-   *                             the Waveform configuration (RBW, RL and Product
-   *                             ID)
+   *                             the Waveform configuration (RBW and Product
+   *                             ID, and RL for a compact Waveform) or a 12-bit
+   *                             datagram is added to a compact Waveform
    */
-  public void addData(Waveform8BitResponse datagram) throws Exception {
+  public void addData(AWaveformResponse datagram) throws Exception {
+    if (samples != null && !(datagram instanceof Waveform8BitResponse)) {
+      throw new Exception("Compact waveforms require 8-bit samples. Have " + datagram.getType());
+    }
     /**
      * Set the configuration values from the first datagram. All subsequent
      * datagram configurations must match.
@@ -157,32 +674,239 @@ public class Waveform extends ADatagram {
     if (referenceLevel == null) {
       referenceLevel = datagram.getReferenceLevel();
     } else if (!referenceLevel.equals(datagram.getReferenceLevel())) {
-      throw new Exception("Reference level values do not match. Have " + referenceLevel + " adding " + datagram.getReferenceLevel());
+      if (samples != null) {
+        throw new Exception("Reference level values do not match. Have " + referenceLevel + " adding " + datagram.getReferenceLevel());
+      }
+      /**
+       * Segments taken at different reference levels (auto-ranging) are each
+       * decoded at their own level, which is recorded per bin. Report the
+       * highest (least sensitive) one.
+       */
+      if (!mixedReferenceLevel) {
+        if (levels == null || levels.length != size()) {
+          levels = new byte[size()];
+        }
+        Arrays.fill(levels, (byte) referenceLevel.ordinal());
+        mixedReferenceLevel = true;
+      }
+      if (datagram.getReferenceLevel().ordinal() < referenceLevel.ordinal()) {
+        referenceLevel = datagram.getReferenceLevel();
+      }
     }
     if (productId == null) {
       productId = datagram.getProductId();
     } else if (!productId.equals(datagram.getProductId())) {
       throw new Exception("Product ID values do not match. Have " + productId + " adding " + datagram.getProductId());
     }
-    /**
-     * Set the saturated flag as the OR value of the current value and the new
-     * value.
-     */
-    this.saturated = this.saturated || datagram.isSaturated();
     /**
      * Add the elapsed time to the current elapsed time.
      */
     this.elapsedTimeMillis += datagram.getElapsedTime();
+    extendAcquisitionTime(datagram);
+    this.view = null;
+    /**
+     * Snap the segment onto the frequency grid. Segments from the sweep plan
+     * share the grid step so sample i maps exactly to bin (first + i) with no
+     * per-sample rounding. Segments with a different step (e.g. a span trimmed
+     * to the device frequency range) are resampled to the nearest bin.
+     */
+    int points = AWaveformResponse.WAVEFORM_POINTS;
+    double segmentStep = datagram.getSpan() / points;
+    double segmentStart = datagram.getCenterFrequency() - datagram.getSpan() / 2;
+    if (step == 0) {
+      step = segmentStep;
+      startFrequency = segmentStart;
+    }
+    boolean snapped = Math.abs(segmentStep - step) <= step * 1e-9;
+    int first = (int) Math.round((segmentStart - startFrequency) / step);
+    int last = snapped
+               ? first + points - 1
+               : (int) Math.round((segmentStart + (points - 1) * segmentStep - startFrequency) / step);
+    if (first < 0) {
+      ensureRange(first, last);
+      first = (int) Math.round((segmentStart - startFrequency) / step);
+    } else {
+      ensureRange(first, last);
+    }
+    if (overlapPolicy != OverlapPolicy.MAX && overlap == null) {
+      overlap = new short[size()];
+    }
     /**
-     * Add all the datagram data. This may overwrite some values but that is OK.
+     * Merge the segment samples into the bins, resolving bins already holding
+     * a sample with the overlap policy. Each sample is ranked by its distance
+     * from the segment center: rank = points - |2i - (points - 1)|, which is
+     * highest at the center.
      */
-    traceData.putAll(datagram.getTraceMap());
+    if (samples == null) {
+      /**
+       * Decode the segment into a reusable buffer. The response does not cache
+       * (or allocate) a decoded copy of its own.
+       */
+      if (segmentBuffer == null) {
+        segmentBuffer = new double[points];
+      }
+      this.saturated = datagram.decodeInto(segmentBuffer, 0) || this.saturated;
+      byte level = (byte) datagram.getReferenceLevel().ordinal();
+      for (int i = 0; i < points; i++) {
+        int bin = snapped ? first + i : (int) Math.round((segmentStart + i * segmentStep - startFrequency) / step);
+        if (mergePower(bin, segmentBuffer[i], points - Math.abs(2 * i - (points - 1))) && mixedReferenceLevel) {
+          levels[bin] = level;
+        }
+      }
+    } else {
+      /**
+       * Compact storage mode: copy the raw samples without decoding them and
+       * evaluate saturation from the maximum raw sample value.
+       */
+      Waveform8BitResponse response = (Waveform8BitResponse) datagram;
+      int max = 0;
+      for (int i = 0; i < points; i++) {
+        int bin = snapped ? first + i : (int) Math.round((segmentStart + i * segmentStep - startFrequency) / step);
+        int sample = response.getSample(i);
+        mergeSample(bin, sample, points - Math.abs(2 * i - (points - 1)));
+        max = Math.max(max, sample);
+      }
+      this.saturated = this.saturated || Waveform8BitResponse.isSaturated(max);
+    }
     /**
      * With data the TraceDatagram may be considered valid and ready for use.
      */
     this.valid = true;
   }
 
+  /**
+   * Grow the power level array (if required) so that the indicated bin indices
+   * are addressable. Growing below index zero shifts the start frequency down.
+   * New bins are initialized to NaN.
+   *
+   * @param first the lowest bin index required (may be negative)
+   * @param last  the highest bin index required
+   */
+  private void ensureRange(int first, int last) {
+    int size = size();
+    int shift = first < 0 ? -first : 0;
+    int length = Math.max(last + 1, size) + shift;
+    if (length == size) {
+      return;
+    }
+    if (samples == null) {
+      double[] grown = new double[length];
+      Arrays.fill(grown, Double.NaN);
+      System.arraycopy(data, 0, grown, shift, data.length);
+      data = grown;
+    } else {
+      byte[] grownSamples = new byte[length];
+      long[] grownFilled = new long[(length + 63) >>> 6];
+      System.arraycopy(samples, 0, grownSamples, shift, samples.length);
+      for (int i = 0; i < samples.length; i++) {
+        if (isFilled(i)) {
+          grownFilled[(i + shift) >>> 6] |= 1L << (i + shift);
+        }
+      }
+      samples = grownSamples;
+      filled = grownFilled;
+    }
+    if (mixedReferenceLevel) {
+      byte[] grownLevels = new byte[length];
+      System.arraycopy(levels, 0, grownLevels, shift, levels.length);
+      levels = grownLevels;
+    }
+    if (overlap != null) {
+      short[] grownOverlap = new short[length];
+      System.arraycopy(overlap, 0, grownOverlap, shift, overlap.length);
+      overlap = grownOverlap;
+    }
+    startFrequency -= shift * step;
+  }
+
+  /**
+   * Merge a power level into a bin according to the overlap policy.
+   *
+   * @param bin   the bin index
+   * @param value the power level (dBm)
+   * @param rank  the sample center rank, higher is nearer the segment center
+   * @return true if the bin value was set or changed by the value
+   */
+  private boolean mergePower(int bin, double value, int rank) {
+    double current = data[bin];
+    if (Double.isNaN(current)) {
+      data[bin] = value;
+      if (overlap != null) {
+        overlap[bin] = (short) (overlapPolicy == OverlapPolicy.MEAN ? 1 : rank);
+      }
+      return true;
+    }
+    switch (overlapPolicy) {
+      case MAX:
+        if (value > current) {
+          data[bin] = value;
+          return true;
+        }
+        return false;
+      case MEAN:
+        int count = Math.max(overlap[bin], 1);
+        data[bin] = current + (value - current) / (count + 1);
+        overlap[bin] = (short) (count + 1);
+        return true;
+      case PREFER_CENTER:
+        if (rank > overlap[bin]) {
+          data[bin] = value;
+          overlap[bin] = (short) rank;
+          return true;
+        }
+        return false;
+    }
+    return false;
+  }
+
+  /**
+   * Merge a raw sample into a bin according to the overlap policy. Compact
+   * storage mode only. The MEAN policy rounds to the nearest sample step.
+   *
+   * @param bin    the bin index
+   * @param sample the unsigned sample value
+   * @param rank   the sample center rank, higher is nearer the segment center
+   */
+  private void mergeSample(int bin, int sample, int rank) {
+    if (!isFilled(bin)) {
+      samples[bin] = (byte) sample;
+      filled[bin >>> 6] |= 1L << bin;
+      if (overlap != null) {
+        overlap[bin] = (short) (overlapPolicy == OverlapPolicy.MEAN ? 1 : rank);
+      }
+      return;
+    }
+    int current = samples[bin] & 0xff;
+    switch (overlapPolicy) {
+      case MAX:
+        if (sample > current) {
+          samples[bin] = (byte) sample;
+        }
+        break;
+      case MEAN:
+        int count = Math.max(overlap[bin], 1);
+        samples[bin] = (byte) Math.round(current + (sample - current) / (double) (count + 1));
+        overlap[bin] = (short) (count + 1);
+        break;
+      case PREFER_CENTER:
+        if (rank > overlap[bin]) {
+          samples[bin] = (byte) sample;
+          overlap[bin] = (short) rank;
+        }
+        break;
+    }
+  }
+
+  /**
+   * Determine if the indicated bin holds a sample. Compact storage mode only.
+   *
+   * @param index the bin index
+   * @return true if the bin holds a sample
+   */
+  private boolean isFilled(int index) {
+    return (filled[index >>> 6] & (1L << index)) != 0;
+  }
+
   //<editor-fold defaultstate="collapsed" desc="IDatagram Parse & Serialize are not supported">
   /**
    * Parse the byte array returned from the sensor and use it populate internal
@@ -209,7 +933,7 @@ public class Waveform extends ADatagram {
              + "\n --------------------------------"
              + "\n datagramType           " + type
              + "\n elapsedTimeMillis      " + elapsedTimeMillis
-             + "\n data length            " + traceData.size()
+             + "\n data length            " + size()
              + "\n centerFrequency MHz    " + centerFrequency
              + "\n span MHz               " + span
              + "\n referenceLevel         " + referenceLevel
@@ -226,11 +950,106 @@ public class Waveform extends ADatagram {
              + "] Span [" + span
              + "] RL [" + referenceLevel
              + "] RBW [" + resolutionBandwidth
-             + "] DATA [" + traceData.size() + " bytes"
+             + "] DATA [" + size() + " bytes"
              + "]";
     } else {
       return "Trace Datagram not initialized.";
     }
   }
 
+  /**
+   * A read-only Map adapter over a primitive power level array. Entries are
+   * presented in ascending frequency order and bins holding NaN are skipped.
+   * Key lookup is O(1) by computing the bin index from the frequency.
+   */
+  private static class TraceMap extends AbstractMap<Double, Double> {
+
+    private final double startFrequency;
+    private final double step;
+    private final double[] power;
+    private final int size;
+
+    TraceMap(double startFrequency, double step, double[] power) {
+      this.startFrequency = startFrequency;
+      this.step = step;
+      this.power = power;
+      int count = 0;
+      for (double p : power) {
+        if (!Double.isNaN(p)) {
+          count++;
+        }
+      }
+      this.size = count;
+    }
+
+    @Override
+    public Double get(Object key) {
+      int index = indexOf(key);
+      return index < 0 ? null : power[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return indexOf(key) >= 0;
+    }
+
+    /**
+     * Get the index of the bin exactly matching the key, or -1.
+     */
+    private int indexOf(Object key) {
+      if (!(key instanceof Double) || step == 0) {
+        return -1;
+      }
+      int index = (int) Math.round(((Double) key - startFrequency) / step);
+      if (index < 0 || index >= power.length || Double.isNaN(power[index])) {
+        return -1;
+      }
+      return startFrequency + index * step == (Double) key ? index : -1;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Set<Map.Entry<Double, Double>> entrySet() {
+      return new AbstractSet<Map.Entry<Double, Double>>() {
+        @Override
+        public Iterator<Map.Entry<Double, Double>> iterator() {
+          return new Iterator<Map.Entry<Double, Double>>() {
+            private int index = advance(0);
+
+            private int advance(int from) {
+              while (from < power.length && Double.isNaN(power[from])) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return index < power.length;
+            }
+
+            @Override
+            public Map.Entry<Double, Double> next() {
+              if (index >= power.length) {
+                throw new NoSuchElementException();
+              }
+              Map.Entry<Double, Double> entry = new AbstractMap.SimpleImmutableEntry<>(startFrequency + index * step, power[index]);
+              index = advance(index + 1);
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+  }
+
 }
@@ -0,0 +1,377 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.enumerated.DatagramType;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Arrays;
+
+/**
+ * A Key Bridge extended datagram carrying the bins of a sweep that changed
+ * since the previous datagram of a delta stream. A keyframe carries every
+ * bin. Each datagram also carries the sweep configuration and frequency grid
+ * and a sequence number, so that a consumer can detect a lost datagram and
+ * resynchronize at the next keyframe.
+ * <p>
+ * The length field limits a datagram to {@link #MAX_KEYFRAME_BINS} keyframe
+ * bins or {@link #MAX_DELTA_BINS} delta bins. A larger sweep is carried by
+ * several consecutive datagrams: every datagram but the last is flagged as
+ * partial, and the bins following a keyframe are carried as deltas.
+ * <p>
+ * The serialized form follows the Avcom datagram framing:
+ * <pre>
+ * 0       STX
+ * 1-2     length (bytes 3 through ETX)
+ * 3       type (0xFD)
+ * 4       flags (bit 0: keyframe; bit 1: partial, more bins of this sweep follow)
+ * 5-8     sequence number
+ * 9-12    center frequency (MHz * 10,000)
+ * 13-16   span (MHz * 10,000)
+ * 17-24   start frequency (MHz, IEEE 754 double)
+ * 25-32   step (MHz, IEEE 754 double)
+ * 33-34   number of bins in the sweep
+ * 35      reference level byte code (zero if none)
+ * 36      resolution bandwidth byte code (zero if none)
+ * 37-38   number of bins in this datagram
+ * then for each bin:
+ * 0-1     bin index (not present in a keyframe)
+ * 2-3     power (dBm * 100, signed; -32768 for no sample)
+ * last    ETX
+ * </pre>
+ *
+ * @author Key Bridge LLC
+ */
+public class WaveformDelta extends ADatagram {
+
+  /**
+   * The number of serialized bytes from the type through the bin count.
+   */
+  private static final int HEADER_LENGTH = 36;
+  /**
+   * The serialized power value for a bin with no sample.
+   */
+  private static final short NO_SAMPLE = Short.MIN_VALUE;
+  /**
+   * The maximum number of bins in a keyframe datagram.
+   */
+  public static final int MAX_KEYFRAME_BINS = (0xffff - HEADER_LENGTH - 1) / 2;
+  /**
+   * The maximum number of bins in a delta datagram.
+   */
+  public static final int MAX_DELTA_BINS = (0xffff - HEADER_LENGTH - 1) / 4;
+  /**
+   * The maximum number of bins in a sweep.
+   */
+  public static final int MAX_SWEEP_SIZE = 0xffff;
+
+  /**
+   * Indicator that this datagram carries every bin.
+   */
+  private boolean keyframe;
+  /**
+   * Indicator that more datagrams of the same sweep follow this one.
+   */
+  private boolean partial;
+  /**
+   * The datagram sequence number within the delta stream.
+   */
+  private long sequence;
+  /**
+   * The sweep configuration and frequency grid.
+   */
+  private double centerFrequency, span, startFrequency, step;
+  private int sweepSize;
+  private ReferenceLevel referenceLevel;
+  private ResolutionBandwidth resolutionBandwidth;
+  /**
+   * The number of bins in this datagram.
+   */
+  private int size;
+  /**
+   * The bin indices. The power levels are held in the data array.
+   */
+  private int[] index = new int[0];
+
+  /**
+   * Construct a new, empty waveform delta datagram.
+   */
+  public WaveformDelta() {
+    super(DatagramType.WAVEFORM_DELTA);
+    this.data = new double[0];
+  }
+
+  /**
+   * Construct a new waveform delta datagram from a serialized byte array.
+   *
+   * @param bytes the serialized datagram
+   * @throws Exception if the byte array cannot be parsed
+   */
+  public WaveformDelta(byte[] bytes) throws Exception {
+    this();
+    parse(bytes);
+  }
+
+  /**
+   * Start a new datagram for a sweep, removing all bins.
+   *
+   * @param waveform the sweep
+   * @param sequence the sequence number
+   * @param keyframe true if every bin will be added
+   */
+  public void initialize(Waveform waveform, long sequence, boolean keyframe) {
+    this.sequence = sequence;
+    this.keyframe = keyframe;
+    this.partial = false;
+    this.centerFrequency = waveform.getCenterFrequency();
+    this.span = waveform.getSpan();
+    this.startFrequency = waveform.getStartFrequency();
+    this.step = waveform.getStep();
+    this.sweepSize = waveform.size();
+    this.referenceLevel = waveform.getReferenceLevel();
+    this.resolutionBandwidth = waveform.getResolutionBandwidth();
+    this.elapsedTimeMillis = waveform.getElapsedTime();
+    copyAcquisitionTime(waveform);
+    this.transactionId = waveform.getTransactionId();
+    this.size = 0;
+    this.valid = true;
+  }
+
+  /**
+   * Add a bin.
+   *
+   * @param bin   the bin index
+   * @param power the bin power level (dBm). NaN for no sample.
+   */
+  public void add(int bin, double power) {
+    if (size == index.length) {
+      int capacity = Math.max(64, size * 2);
+      index = Arrays.copyOf(index, capacity);
+      data = Arrays.copyOf(data, capacity);
+    }
+    index[size] = bin;
+    data[size++] = power;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public boolean isKeyframe() {
+    return keyframe;
+  }
+
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /**
+   * Set whether more datagrams of the same sweep follow this one.
+   *
+   * @param partial true if this datagram does not complete the sweep
+   */
+  public void setPartial(boolean partial) {
+    this.partial = partial;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public double getCenterFrequency() {
+    return centerFrequency;
+  }
+
+  public double getSpan() {
+    return span;
+  }
+
+  public double getStartFrequency() {
+    return startFrequency;
+  }
+
+  public double getStep() {
+    return step;
+  }
+
+  /**
+   * Get the number of bins in the sweep.
+   *
+   * @return the sweep size
+   */
+  public int getSweepSize() {
+    return sweepSize;
+  }
+
+  public ReferenceLevel getReferenceLevel() {
+    return referenceLevel;
+  }
+
+  public ResolutionBandwidth getResolutionBandwidth() {
+    return resolutionBandwidth;
+  }
+
+  /**
+   * Get the number of bins in this datagram.
+   *
+   * @return the number of changed bins (every bin for a keyframe)
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the sweep bin index of a bin in this datagram.
+   *
+   * @param i the bin number in this datagram, from zero to size - 1
+   * @return the sweep bin index
+   */
+  public int getIndex(int i) {
+    return index[i];
+  }
+
+  /**
+   * Get the power level of a bin in this datagram.
+   *
+   * @param i the bin number in this datagram, from zero to size - 1
+   * @return the power level (dBm). NaN for no sample.
+   */
+  public double getPower(int i) {
+    return data[i];
+  }//</editor-fold>
+
+  /**
+   * Parse a serialized waveform delta datagram, replacing the current content.
+   *
+   * @param bytes the serialized datagram
+   * @throws Exception if the byte array is not a valid waveform delta datagram
+   */
+  @Override
+  public void parse(byte[] bytes) throws Exception {
+    if (bytes == null || bytes.length < HEADER_LENGTH + 4 || bytes[0] != STX || bytes[3] != type.getByteCode()) {
+      throw new Exception("Not a " + type + " datagram.");
+    }
+    keyframe = (bytes[4] & 0x01) != 0;
+    partial = (bytes[4] & 0x02) != 0;
+    sequence = readInt(bytes, 5) & 0xffffffffL;
+    centerFrequency = readInt(bytes, 9) / 10000d;
+    span = readInt(bytes, 13) / 10000d;
+    startFrequency = Double.longBitsToDouble(((long) readInt(bytes, 17) << 32) | (readInt(bytes, 21) & 0xffffffffL));
+    step = Double.longBitsToDouble(((long) readInt(bytes, 25) << 32) | (readInt(bytes, 29) & 0xffffffffL));
+    sweepSize = readShort(bytes, 33) & 0xffff;
+    referenceLevel = ReferenceLevel.fromByteCode(bytes[35]);
+    resolutionBandwidth = ResolutionBandwidth.fromByteCode(bytes[36]);
+    int count = readShort(bytes, 37) & 0xffff;
+    int entry = keyframe ? 2 : 4;
+    if (bytes.length < HEADER_LENGTH + 4 + count * entry) {
+      throw new Exception("Truncated " + type + " datagram: " + bytes.length + " bytes for " + count + " bins.");
+    }
+    size = 0;
+    int idx = 39;
+    for (int i = 0; i < count; i++) {
+      int bin = i;
+      if (!keyframe) {
+        bin = readShort(bytes, idx) & 0xffff;
+        idx += 2;
+      }
+      short power = readShort(bytes, idx);
+      idx += 2;
+      add(bin, power == NO_SAMPLE ? Double.NaN : power / 100d);
+    }
+    valid = true;
+  }
+
+  /**
+   * Serialize this datagram. Power levels are rounded to 0.01 dB.
+   *
+   * @return the serialized datagram
+   * @throws IllegalStateException if the sweep or the number of bins is too
+   *                               large for the datagram length field (see
+   *                               {@link #MAX_KEYFRAME_BINS} and
+   *                               {@link #MAX_DELTA_BINS})
+   */
+  @Override
+  public byte[] serialize() {
+    int entry = keyframe ? 2 : 4;
+    int length = HEADER_LENGTH + size * entry + 1;
+    if (length > 0xffff || sweepSize > MAX_SWEEP_SIZE) {
+      throw new IllegalStateException("Too many bins to serialize: " + size + " of " + sweepSize);
+    }
+    byte[] b = new byte[length + HEADER_SIZE];
+    b[0] = STX;
+    b[1] = (byte) (length >>> 8);
+    b[2] = (byte) length;
+    b[3] = type.getByteCode();
+    b[4] = (byte) ((keyframe ? 0x01 : 0x00) | (partial ? 0x02 : 0x00));
+    writeInt(b, 5, sequence);
+    writeInt(b, 9, Math.round(centerFrequency * 10000));
+    writeInt(b, 13, Math.round(span * 10000));
+    long bits = Double.doubleToLongBits(startFrequency);
+    writeInt(b, 17, bits >>> 32);
+    writeInt(b, 21, bits);
+    bits = Double.doubleToLongBits(step);
+    writeInt(b, 25, bits >>> 32);
+    writeInt(b, 29, bits);
+    writeShort(b, 33, sweepSize);
+    b[35] = (byte) (referenceLevel != null ? referenceLevel.getByteCode() : 0);
+    b[36] = (byte) (resolutionBandwidth != null ? resolutionBandwidth.getByteCode() : 0);
+    writeShort(b, 37, size);
+    int idx = 39;
+    for (int i = 0; i < size; i++) {
+      if (!keyframe) {
+        writeShort(b, idx, index[i]);
+        idx += 2;
+      }
+      double power = data[i];
+      writeShort(b, idx, power == power ? Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, Math.round(power * 100))) : NO_SAMPLE);
+      idx += 2;
+    }
+    b[b.length - 1] = ETX;
+    return b;
+  }
+
+  private static int readInt(byte[] b, int idx) {
+    return ((b[idx] & 0xff) << 24) | ((b[idx + 1] & 0xff) << 16) | ((b[idx + 2] & 0xff) << 8) | (b[idx + 3] & 0xff);
+  }
+
+  private static short readShort(byte[] b, int idx) {
+    return (short) (((b[idx] & 0xff) << 8) | (b[idx + 1] & 0xff));
+  }
+
+  private static void writeInt(byte[] b, int idx, long value) {
+    b[idx] = (byte) (value >>> 24);
+    b[idx + 1] = (byte) (value >>> 16);
+    b[idx + 2] = (byte) (value >>> 8);
+    b[idx + 3] = (byte) value;
+  }
+
+  private static void writeShort(byte[] b, int idx, long value) {
+    b[idx] = (byte) (value >>> 8);
+    b[idx + 1] = (byte) value;
+  }
+
+  @Override
+  public String toString() {
+    return "WAVEFORM DELTA: SEQ [" + sequence + "] " + (keyframe ? "KEYFRAME " : "") + (partial ? "PARTIAL " : "") + "[" + size + " of " + sweepSize + " bins]";
+  }
+}
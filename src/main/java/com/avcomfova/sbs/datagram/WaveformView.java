@@ -0,0 +1,237 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * An immutable, read-only view over waveform trace data on a uniform frequency
+ * grid. A view pairs a read-only DoubleBuffer of power levels (dBm) with the
+ * frequency of the first bin and the frequency step between adjacent bins.
+ * <p>
+ * Views do not copy: the buffer is backed by the trace data array of the
+ * Waveform (or waveform response) that created it, and sub-range views created
+ * by {@link #slice(int, int)} share that same array. A single view may
+ * therefore be handed to any number of consumers and read concurrently from
+ * any number of threads.
+ * <p>
+ * Important: A view reflects the backing array. It must not be used after its
+ * source Waveform has been re-filled or, in pooled mode, released.
+ *
+ * @author Key Bridge LLC
+ */
+public final class WaveformView {
+
+  /**
+   * The frequency (MHz) of the first bin in this view.
+   */
+  private final double startFrequency;
+  /**
+   * The frequency step (MHz) between adjacent bins.
+   */
+  private final double step;
+  /**
+   * The read-only power level buffer (dBm). Position zero is the first bin.
+   * Only absolute get methods are used internally so that the buffer position
+   * is never modified.
+   */
+  private final DoubleBuffer power;
+
+  /**
+   * Construct a view over a range of a power level array.
+   *
+   * @param startFrequency the frequency (MHz) of the array element at offset
+   * @param step           the frequency step (MHz) between adjacent bins
+   * @param power          the power level array (dBm)
+   * @param offset         the index of the first bin in the array
+   * @param length         the number of bins
+   */
+  public WaveformView(double startFrequency, double step, double[] power, int offset, int length) {
+    this(startFrequency, step, DoubleBuffer.wrap(power, offset, length).slice().asReadOnlyBuffer());
+  }
+
+  /**
+   * Construct a view over a read-only buffer.
+   */
+  private WaveformView(double startFrequency, double step, DoubleBuffer power) {
+    this.startFrequency = startFrequency;
+    this.step = step;
+    this.power = power;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  /**
+   * Get the frequency (MHz) of the first bin.
+   *
+   * @return the start frequency (MHz)
+   */
+  public double getStartFrequency() {
+    return startFrequency;
+  }
+
+  /**
+   * Get the frequency (MHz) immediately above the last bin.
+   *
+   * @return the stop frequency (MHz)
+   */
+  public double getStopFrequency() {
+    return startFrequency + power.limit() * step;
+  }
+
+  /**
+   * Get the frequency step (MHz) between adjacent bins.
+   *
+   * @return the bin step (MHz)
+   */
+  public double getStep() {
+    return step;
+  }
+
+  /**
+   * Get the number of bins in this view.
+   *
+   * @return the number of bins
+   */
+  public int size() {
+    return power.limit();
+  }//</editor-fold>
+
+  /**
+   * Get the frequency (MHz) of the indicated bin.
+   *
+   * @param index the bin index
+   * @return the bin frequency (MHz)
+   */
+  public double getFrequency(int index) {
+    return startFrequency + index * step;
+  }
+
+  /**
+   * Get the power level (dBm) of the indicated bin.
+   *
+   * @param index the bin index
+   * @return the power level (dBm), NaN if the bin has no sample
+   */
+  public double getPower(int index) {
+    return power.get(index);
+  }
+
+  /**
+   * Get the index of the bin nearest to the indicated frequency.
+   *
+   * @param frequencyMHz a frequency of interest (MHz)
+   * @return the nearest bin index, -1 if the frequency is outside this view
+   */
+  public int indexOf(double frequencyMHz) {
+    if (step == 0) {
+      return -1;
+    }
+    int index = (int) Math.round((frequencyMHz - startFrequency) / step);
+    return index >= 0 && index < power.limit() ? index : -1;
+  }
+
+  /**
+   * Get the power level (dBm) of the bin nearest to the indicated frequency.
+   *
+   * @param frequencyMHz a frequency of interest (MHz)
+   * @return the power level (dBm), NaN if the frequency is outside this view or
+   *         the bin has no sample
+   */
+  public double getPowerAt(double frequencyMHz) {
+    int index = indexOf(frequencyMHz);
+    return index < 0 ? Double.NaN : power.get(index);
+  }
+
+  /**
+   * Get a read-only buffer of the power levels (dBm). The returned buffer is an
+   * independent duplicate (with its own position and limit) sharing the
+   * backing array, so that relative reads by one consumer do not affect
+   * another.
+   *
+   * @return a read-only DoubleBuffer positioned at the first bin
+   */
+  public DoubleBuffer getBuffer() {
+    return power.duplicate();
+  }
+
+  /**
+   * Create a view of a sub-range of bins. No data is copied.
+   *
+   * @param fromIndex the first bin (inclusive)
+   * @param toIndex   the last bin (exclusive)
+   * @return a view of the indicated bins
+   * @throws IndexOutOfBoundsException if the range is outside this view
+   */
+  public WaveformView slice(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > power.limit() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("Invalid range [" + fromIndex + ", " + toIndex + ") of " + power.limit());
+    }
+    DoubleBuffer range = power.duplicate();
+    /**
+     * Developer note: Cast to Buffer so that the Java 8 method signatures are
+     * linked when compiled on a later JDK.
+     */
+    ((Buffer) range).limit(toIndex);
+    ((Buffer) range).position(fromIndex);
+    return new WaveformView(startFrequency + fromIndex * step, step, range.slice());
+  }
+
+  /**
+   * Create a view of the bins whose frequencies lie within the indicated
+   * range. No data is copied. The range is clipped to this view.
+   *
+   * @param fromMHz the lowest frequency (MHz, inclusive)
+   * @param toMHz   the highest frequency (MHz, inclusive)
+   * @return a view of the bins within the range, which may be empty
+   */
+  public WaveformView sliceMHz(double fromMHz, double toMHz) {
+    if (step == 0) {
+      return slice(0, 0);
+    }
+    int fromIndex = (int) Math.max(0, Math.ceil((fromMHz - startFrequency) / step - 1e-9));
+    int toIndex = (int) Math.min(power.limit(), Math.floor((toMHz - startFrequency) / step + 1e-9) + 1);
+    return toIndex <= fromIndex ? slice(0, 0) : slice(fromIndex, toIndex);
+  }
+
+  /**
+   * Copy the power levels (dBm) into a caller-supplied array.
+   *
+   * @param output       the destination array, which must hold at least
+   *                     {@link #size()} values from the offset
+   * @param outputOffset the index of the first output value
+   * @return the output array
+   */
+  public double[] copyTo(double[] output, int outputOffset) {
+    power.duplicate().get(output, outputOffset, power.limit());
+    return output;
+  }
+
+  @Override
+  public String toString() {
+    return "WaveformView [" + startFrequency + " to " + getStopFrequency() + " MHz, " + power.limit() + " bins]";
+  }
+}
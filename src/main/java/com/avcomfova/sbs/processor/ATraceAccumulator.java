@@ -0,0 +1,169 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An abstract streaming trace accumulator. Each incoming Waveform is folded
+ * into an accumulated trace in place and the accumulated trace is published to
+ * listeners as a Waveform at a configurable rate.
+ * <p>
+ * Accumulation state is (re-)allocated only when the frequency grid of the
+ * incoming Waveforms changes (e.g. new settings) or the accumulator is
+ * cleared. In steady state each sweep is an allocation-free primitive loop.
+ * <p>
+ * The published Waveform is reused for every publication; listeners must copy
+ * it if they need to keep it.
+ *
+ * @author Key Bridge LLC
+ */
+public abstract class ATraceAccumulator extends AWaveformProcessor {
+
+  /**
+   * The accumulated trace. Its power level array is updated in place and it is
+   * published to listeners.
+   */
+  protected final Waveform output = new Waveform();
+  /**
+   * The minimum period (nanoseconds) between publications. Zero publishes
+   * every sweep.
+   */
+  private long publishPeriodNanos;
+  /**
+   * The time (nanoseconds) of the last publication.
+   */
+  private long lastPublishNanos;
+  /**
+   * The number of sweeps accumulated since the last reset.
+   */
+  private int sweepCount;
+  /**
+   * Indicator that the accumulation should be reset on the next sweep.
+   */
+  private volatile boolean resetRequested = true;
+
+  /**
+   * Allocate (or re-allocate) the accumulation state for the indicated number
+   * of bins. Called before the first sweep and whenever the frequency grid
+   * changes.
+   *
+   * @param size the number of bins
+   */
+  protected abstract void reset(int size);
+
+  /**
+   * Fold one sweep into the accumulated trace.
+   *
+   * @param input      the incoming power levels (dBm). NaN bins have no
+   *                   sample.
+   * @param output     the accumulated power levels (dBm), updated in place
+   * @param sweepCount the number of sweeps accumulated before this one. Zero
+   *                   for the first sweep after a reset.
+   */
+  protected abstract void accumulate(double[] input, double[] output, int sweepCount);
+
+  @Override
+  protected void process(Waveform waveform) {
+    if (resetRequested
+      || waveform.size() != output.size()
+      || waveform.getStartFrequency() != output.getStartFrequency()
+      || waveform.getStep() != output.getStep()) {
+      resetRequested = false;
+      output.copyFrom(waveform);
+      reset(output.size());
+      sweepCount = 0;
+    }
+    accumulate(getPowerLevels(waveform), output.getData(), sweepCount);
+    sweepCount++;
+    /**
+     * The accumulated trace carries the times and transaction of the latest
+     * sweep, and is saturated if any sweep since the reset was saturated.
+     */
+    output.setElapsedTime(waveform.getElapsedTime());
+    output.copyAcquisitionTime(waveform);
+    output.setTransactionId(waveform.getTransactionId());
+    output.setSaturated(output.isSaturated() || waveform.isSaturated());
+    /**
+     * Publish the accumulated trace if the publication period has elapsed.
+     */
+    long now = clock.nanoTime();
+    if (publishPeriodNanos == 0 || now - lastPublishNanos >= publishPeriodNanos) {
+      lastPublishNanos = now;
+      notifyListeners(output);
+    }
+  }
+
+  /**
+   * Clear the accumulated trace. Accumulation restarts with the next sweep.
+   */
+  public void clear() {
+    resetRequested = true;
+  }
+
+  /**
+   * Get the number of sweeps accumulated since the last reset.
+   *
+   * @return the sweep count
+   */
+  public int getSweepCount() {
+    return sweepCount;
+  }
+
+  /**
+   * Get the accumulated trace. This is the Waveform published to listeners; it
+   * is updated in place by each sweep.
+   *
+   * @return the accumulated trace
+   */
+  public Waveform getOutput() {
+    return output;
+  }
+
+  /**
+   * Set the minimum period between publications of the accumulated trace.
+   * Sweeps arriving within the period are accumulated but not published.
+   *
+   * @param periodMillis the publication period (milliseconds). Zero (default)
+   *                     publishes every sweep.
+   */
+  public void setPublishPeriod(long periodMillis) {
+    if (periodMillis < 0) {
+      throw new IllegalArgumentException("Publish period must not be negative: " + periodMillis);
+    }
+    this.publishPeriodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+  }
+
+  /**
+   * Get the minimum period between publications of the accumulated trace.
+   *
+   * @return the publication period (milliseconds)
+   */
+  public long getPublishPeriod() {
+    return TimeUnit.NANOSECONDS.toMillis(publishPeriodNanos);
+  }
+}
@@ -0,0 +1,209 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.AvcomSBS;
+import com.avcomfova.sbs.IDatagramListener;
+import com.avcomfova.sbs.datagram.ADatagram;
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
+import com.avcomofva.utility.IClock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An abstract Waveform processing stage. A processor receives each stitched
+ * Waveform from an AvcomSBS (or from an upstream processor), updates its own
+ * state and may publish derived datagrams to its own listeners. Processors are
+ * IDatagramListener instances and so may be chained into a pipeline.
+ * <p>
+ * Processors that override {@link #processSegment(AWaveformResponse)} also
+ * receive each waveform response (sweep segment) as soon as it is read.
+ * <p>
+ * Processors are called on the AvcomSBS data capture thread. Implementations
+ * should update pre-allocated primitive state in place and must not block.
+ * Other datagram types are ignored.
+ * <p>
+ * A Waveform is only valid for the duration of the {@link #process(Waveform)}
+ * call (see {@link AvcomSBS#setPooled(boolean)}). Likewise, derived datagrams
+ * published by a processor may be reused by that processor and are only valid
+ * for the duration of the listener {@code onDatagram} call.
+ *
+ * @author Key Bridge LLC
+ */
+public abstract class AWaveformProcessor implements IDatagramListener {
+
+  /**
+   * A set of IDatagramListener instances. These will be notified when this
+   * processor publishes a datagram.
+   */
+  private final List<IDatagramListener> datagramListeners = new CopyOnWriteArrayList<>();
+  /**
+   * A reusable conversion buffer for compact Waveforms.
+   */
+  private double[] conversion = new double[0];
+  /**
+   * The clock read when a datagram carries no acquisition time, and for
+   * processing periods.
+   */
+  protected volatile IClock clock = IClock.SYSTEM;
+
+  /**
+   * Process a stitched Waveform.
+   *
+   * @param waveform the Waveform to process
+   */
+  protected abstract void process(Waveform waveform);
+
+  /**
+   * Process a waveform response (sweep segment) as soon as it is read. The
+   * default implementation does nothing.
+   *
+   * @param segment the waveform response to process
+   */
+  protected void processSegment(AWaveformResponse segment) {
+  }
+
+  /**
+   * Forward Waveforms to the {@link #process(Waveform)} method and waveform
+   * responses to the {@link #processSegment(AWaveformResponse)} method. All
+   * other datagram types are ignored.
+   *
+   * @param datagram the datagram
+   */
+  @Override
+  public void onDatagram(IDatagram datagram) {
+    if (datagram instanceof Waveform) {
+      process((Waveform) datagram);
+    } else if (datagram instanceof AWaveformResponse) {
+      processSegment((AWaveformResponse) datagram);
+    }
+  }
+
+  /**
+   * Get the power levels (dBm) of a Waveform. For a compact Waveform the raw
+   * samples are converted into a buffer owned by this processor, which is
+   * reused for the next call.
+   *
+   * @param waveform the Waveform
+   * @return the power level array (dBm), NaN for bins with no sample
+   */
+  protected double[] getPowerLevels(Waveform waveform) {
+    if (!waveform.isCompact()) {
+      return waveform.getData();
+    }
+    if (conversion.length != waveform.size()) {
+      conversion = new double[waveform.size()];
+    }
+    return waveform.getData(conversion, 0);
+  }
+
+  /**
+   * Set the clock. Simulations and tests may inject a manual clock.
+   *
+   * @param clock the clock, default {@link IClock#SYSTEM}
+   */
+  public void setClock(IClock clock) {
+    if (clock == null) {
+      throw new IllegalArgumentException("Clock is required.");
+    }
+    this.clock = clock;
+  }
+
+  /**
+   * Get the wall clock time of a datagram: its acquisition end time if it is
+   * timestamped, otherwise the current time.
+   *
+   * @param datagram the datagram
+   * @return the time (milliseconds since the epoch)
+   */
+  protected long getTimeMillis(ADatagram datagram) {
+    return datagram.isTimestamped() ? datagram.getAcquisitionEndMillis() : clock.currentTimeMillis();
+  }
+
+  /**
+   * Get the monotonic time of a datagram: its acquisition end time if it is
+   * timestamped, otherwise the current time.
+   *
+   * @param datagram the datagram
+   * @return the monotonic time (nanoseconds)
+   */
+  protected long getTimeNanos(ADatagram datagram) {
+    return datagram.isTimestamped() ? datagram.getAcquisitionEndNanos() : clock.nanoTime();
+  }
+
+  /**
+   * Attach this processor to an AvcomSBS instance. The processor will receive
+   * each waveform response and each stitched Waveform.
+   *
+   * @param avcomSBS the AvcomSBS instance
+   */
+  public void attach(AvcomSBS avcomSBS) {
+    avcomSBS.addSegmentListener(this);
+    avcomSBS.addListener(this);
+  }
+
+  /**
+   * Detach this processor from an AvcomSBS instance.
+   *
+   * @param avcomSBS the AvcomSBS instance
+   */
+  public void detach(AvcomSBS avcomSBS) {
+    avcomSBS.removeSegmentListener(this);
+    avcomSBS.removeListener(this);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="IDatagramListener Manager methods">
+  /**
+   * Publish a datagram to all listeners.
+   *
+   * @param datagram the datagram to publish
+   */
+  protected void notifyListeners(IDatagram datagram) {
+    for (IDatagramListener iDatagramListener : datagramListeners) {
+      iDatagramListener.onDatagram(datagram);
+    }
+  }
+
+  /**
+   * Add a Datagram Listener to receive published datagrams.
+   *
+   * @param listener the listener instance
+   */
+  public void addListener(IDatagramListener listener) {
+    this.datagramListeners.add(listener);
+  }
+
+  /**
+   * Remove a DatagramListener
+   *
+   * @param listener the listener instance
+   */
+  public void removeListener(IDatagramListener listener) {
+    this.datagramListeners.remove(listener);
+  }//</editor-fold>
+}
@@ -0,0 +1,232 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.SignalDetections;
+import com.avcomfova.sbs.datagram.Waveform;
+
+/**
+ * A cell-averaging constant false alarm rate (CA-CFAR) signal detector.
+ * <p>
+ * Each bin (the cell under test) is compared against the mean linear power of
+ * the training cells on either side of it, skipping the guard cells adjacent
+ * to it. A bin is detected if its power exceeds that local noise estimate by
+ * the threshold. Near the sweep edges only the training cells available on the
+ * sweep are used. Unfilled (NaN) bins are excluded from the training cells; a
+ * bin with no valid training cells is not detected. Contiguous detected bins
+ * are merged into one signal interval.
+ * <p>
+ * The training cell sums are computed from prefix sums of the linear power and
+ * of the valid bin count, so each sweep is processed in a single O(n) pass over
+ * primitive arrays regardless of the training window length. Nothing is
+ * allocated after the first sweep.
+ * <p>
+ * After each sweep the detected intervals are published to the listeners of
+ * this detector as a {@link SignalDetections} datagram (which is reused and is
+ * only valid for the duration of the listener call). The input Waveform is not
+ * passed through unless {@link #setPassThrough(boolean)} is set.
+ *
+ * @author Key Bridge LLC
+ */
+public class CfarDetector extends AWaveformProcessor {
+
+  /**
+   * The default threshold (dB) above the local noise estimate.
+   */
+  public static final double DEFAULT_THRESHOLD = 10.0;
+
+  /**
+   * The number of training cells on each side of the cell under test.
+   */
+  private final int trainingCells;
+  /**
+   * The number of guard cells on each side of the cell under test.
+   */
+  private final int guardCells;
+  /**
+   * The threshold (dB) above the local noise estimate.
+   */
+  private double threshold = DEFAULT_THRESHOLD;
+  /**
+   * The threshold as a linear power ratio.
+   */
+  private double thresholdRatio = Math.pow(10, DEFAULT_THRESHOLD / 10);
+  /**
+   * Indicator that the input Waveform is also passed through.
+   */
+  private boolean passThrough;
+  /**
+   * The linear power (mW) of each bin. NaN bins are zero.
+   */
+  private double[] linear = new double[0];
+  /**
+   * The prefix sum of the linear power: prefix[i] is the sum of bins 0 to i-1.
+   */
+  private double[] prefix = new double[1];
+  /**
+   * The prefix count of valid (not NaN) bins: validPrefix[i] is the number of
+   * valid bins from 0 to i-1.
+   */
+  private int[] validPrefix = new int[1];
+  /**
+   * The published detections.
+   */
+  private final SignalDetections detections = new SignalDetections();
+
+  /**
+   * Construct a new CA-CFAR detector.
+   *
+   * @param trainingCells the number of training cells on each side of the cell
+   *                      under test. Must be positive.
+   * @param guardCells    the number of guard cells on each side of the cell
+   *                      under test. Must not be negative.
+   */
+  public CfarDetector(int trainingCells, int guardCells) {
+    if (trainingCells < 1) {
+      throw new IllegalArgumentException("Training cells must be positive: " + trainingCells);
+    }
+    if (guardCells < 0) {
+      throw new IllegalArgumentException("Guard cells must not be negative: " + guardCells);
+    }
+    this.trainingCells = trainingCells;
+    this.guardCells = guardCells;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public int getTrainingCells() {
+    return trainingCells;
+  }
+
+  public int getGuardCells() {
+    return guardCells;
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Set the detection threshold above the local noise estimate.
+   *
+   * @param threshold the threshold (dB). Default is 10 dB.
+   */
+  public void setThreshold(double threshold) {
+    this.threshold = threshold;
+    this.thresholdRatio = Math.pow(10, threshold / 10);
+  }
+
+  public boolean isPassThrough() {
+    return passThrough;
+  }
+
+  /**
+   * Set whether the input Waveform is also passed through to the listeners of
+   * this detector, after the detections.
+   *
+   * @param passThrough true to pass the Waveform through. Default is false.
+   */
+  public void setPassThrough(boolean passThrough) {
+    this.passThrough = passThrough;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    detect(waveform);
+    notifyListeners(detections);
+    if (passThrough) {
+      notifyListeners(waveform);
+    }
+  }
+
+  /**
+   * Detect the signal intervals in a sweep.
+   *
+   * @param waveform the stitched sweep
+   * @return the detections. This instance is reused by the next call.
+   */
+  public SignalDetections detect(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    int n = power.length;
+    if (linear.length != n) {
+      linear = new double[n];
+      prefix = new double[n + 1];
+      validPrefix = new int[n + 1];
+    }
+    for (int i = 0; i < n; i++) {
+      double value = power[i];
+      boolean valid = value == value;
+      linear[i] = valid ? Math.pow(10, value / 10) : 0;
+      prefix[i + 1] = prefix[i] + linear[i];
+      validPrefix[i + 1] = validPrefix[i] + (valid ? 1 : 0);
+    }
+    double start = waveform.getStartFrequency();
+    double step = waveform.getStep();
+    detections.clear();
+    detections.setElapsedTime(waveform.getElapsedTime());
+    detections.copyAcquisitionTime(waveform);
+    int runStart = -1;
+    int peak = -1;
+    double sum = 0;
+    for (int i = 0; i <= n; i++) {
+      boolean detected = false;
+      if (i < n && power[i] == power[i]) {
+        /**
+         * Training cells: [i - g - t, i - g - 1] and [i + g + 1, i + g + t],
+         * clipped to the sweep. Only valid bins are counted.
+         */
+        int leftFrom = Math.max(0, i - guardCells - trainingCells);
+        int leftTo = Math.max(0, i - guardCells);
+        int rightFrom = Math.min(n, i + guardCells + 1);
+        int rightTo = Math.min(n, i + guardCells + trainingCells + 1);
+        int cells = validPrefix[leftTo] - validPrefix[leftFrom] + validPrefix[rightTo] - validPrefix[rightFrom];
+        if (cells > 0) {
+          double noise = (prefix[leftTo] - prefix[leftFrom] + prefix[rightTo] - prefix[rightFrom]) / cells;
+          detected = linear[i] > noise * thresholdRatio;
+        }
+      }
+      if (detected) {
+        if (runStart < 0) {
+          runStart = i;
+          peak = i;
+          sum = 0;
+        } else if (power[i] > power[peak]) {
+          peak = i;
+        }
+        sum += linear[i];
+      } else if (runStart >= 0) {
+        if (detections.size() < SignalDetections.MAX_INTERVALS) {
+          detections.add(start + (runStart - 0.5) * step,
+                         start + (i - 0.5) * step,
+                         start + peak * step,
+                         power[peak],
+                         10 * Math.log10(sum));
+        }
+        runStart = -1;
+      }
+    }
+    return detections;
+  }
+}
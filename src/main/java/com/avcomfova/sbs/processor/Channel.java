@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * A band plan channel: a named frequency range defined by its centre
+ * frequency and width. Channel instances are immutable.
+ *
+ * @author Key Bridge LLC
+ */
+public class Channel {
+
+  /**
+   * The channel name. May be null.
+   */
+  private final String name;
+  /**
+   * The channel centre frequency (MHz).
+   */
+  private final double centerFrequency;
+  /**
+   * The channel width (MHz).
+   */
+  private final double width;
+
+  /**
+   * Construct a new band plan channel.
+   *
+   * @param name            the channel name. May be null.
+   * @param centerFrequency the channel centre frequency (MHz)
+   * @param width           the channel width (MHz). Must be positive.
+   */
+  public Channel(String name, double centerFrequency, double width) {
+    if (!(width > 0)) {
+      throw new IllegalArgumentException("Channel width must be positive: " + width);
+    }
+    this.name = name;
+    this.centerFrequency = centerFrequency;
+    this.width = width;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public String getName() {
+    return name;
+  }
+
+  public double getCenterFrequency() {
+    return centerFrequency;
+  }
+
+  public double getWidth() {
+    return width;
+  }
+
+  public double getStartFrequency() {
+    return centerFrequency - width / 2;
+  }
+
+  public double getStopFrequency() {
+    return centerFrequency + width / 2;
+  }//</editor-fold>
+
+  @Override
+  public String toString() {
+    return "Channel [" + (name != null ? name + " " : "") + centerFrequency + " MHz, " + width + " MHz]";
+  }
+}
@@ -0,0 +1,123 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * A snapshot of the occupancy statistics of one band plan channel, as
+ * returned by {@link ChannelOccupancyMonitor#getOccupancy()}.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelOccupancy {
+
+  /**
+   * The channel.
+   */
+  private final Channel channel;
+  /**
+   * The number of sweeps in which the channel was observed.
+   */
+  private final long sweepCount;
+  /**
+   * The number of sweeps in which the channel power was above the threshold.
+   */
+  private final long occupiedCount;
+  /**
+   * The total time (nanoseconds) the channel power was above the threshold.
+   */
+  private final long timeAboveThreshold;
+  /**
+   * The mean channel power (dBm), averaged in linear units.
+   */
+  private final double meanPower;
+  /**
+   * The maximum channel power (dBm).
+   */
+  private final double maxPower;
+  /**
+   * The channel power (dBm) in the last sweep.
+   */
+  private final double lastPower;
+
+  ChannelOccupancy(Channel channel, long sweepCount, long occupiedCount, long timeAboveThreshold, double meanPower, double maxPower, double lastPower) {
+    this.channel = channel;
+    this.sweepCount = sweepCount;
+    this.occupiedCount = occupiedCount;
+    this.timeAboveThreshold = timeAboveThreshold;
+    this.meanPower = meanPower;
+    this.maxPower = maxPower;
+    this.lastPower = lastPower;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public Channel getChannel() {
+    return channel;
+  }
+
+  public long getSweepCount() {
+    return sweepCount;
+  }
+
+  public long getOccupiedCount() {
+    return occupiedCount;
+  }
+
+  /**
+   * Get the duty cycle: the fraction of observed sweeps in which the channel
+   * power was above the threshold.
+   *
+   * @return the duty cycle [0, 1]. Zero if the channel was never observed.
+   */
+  public double getDutyCycle() {
+    return sweepCount == 0 ? 0 : (double) occupiedCount / sweepCount;
+  }
+
+  /**
+   * Get the total time the channel power was above the threshold.
+   *
+   * @return the time above threshold (nanoseconds)
+   */
+  public long getTimeAboveThreshold() {
+    return timeAboveThreshold;
+  }
+
+  public double getMeanPower() {
+    return meanPower;
+  }
+
+  public double getMaxPower() {
+    return maxPower;
+  }
+
+  public double getLastPower() {
+    return lastPower;
+  }//</editor-fold>
+
+  @Override
+  public String toString() {
+    return "ChannelOccupancy [" + channel + ", duty cycle " + getDutyCycle() + ", mean " + meanPower + " dBm, max " + maxPower + " dBm]";
+  }
+}
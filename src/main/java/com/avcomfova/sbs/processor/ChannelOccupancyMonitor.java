@@ -0,0 +1,333 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A channel occupancy and duty cycle statistics engine. Each sweep the power
+ * in each channel of a band plan is compared against a noise-relative
+ * threshold and the per-channel statistics are updated in place:
+ * <ul>
+ * <li>duty cycle: the fraction of sweeps with channel power above the
+ * threshold,</li>
+ * <li>time above threshold: the sum of the sweep intervals in which the
+ * channel power was above the threshold,</li>
+ * <li>mean (in linear units), maximum and last channel power.</li>
+ * </ul>
+ * The channel power is the mean power of the bins whose centre frequency lies
+ * within the channel; a channel narrower than one bin uses the nearest bin.
+ * The channel-to-bin mapping is computed once for each sweep grid, so a sweep
+ * is processed in a single pass with no allocation. Memory use is fixed by the
+ * band plan and sweep size regardless of run time.
+ * <p>
+ * The noise floor is estimated from each sweep as a low percentile of the bin
+ * power levels; the threshold is the noise floor plus the threshold offset.
+ * <p>
+ * After each sweep the input Waveform is passed through to the listeners of
+ * this monitor, which may then read the statistics with
+ * {@link #getOccupancy()}.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelOccupancyMonitor extends AWaveformProcessor {
+
+  /**
+   * The default threshold offset above the noise floor (dB).
+   */
+  public static final double DEFAULT_THRESHOLD = 10.0;
+  /**
+   * The default noise floor percentile.
+   */
+  public static final double DEFAULT_NOISE_PERCENTILE = 0.25;
+
+  /**
+   * The band plan.
+   */
+  private final Channel[] channels;
+  /**
+   * The threshold offset above the noise floor (dB).
+   */
+  private double threshold = DEFAULT_THRESHOLD;
+  /**
+   * The sweep power level percentile [0, 1] taken as the noise floor.
+   */
+  private double noisePercentile = DEFAULT_NOISE_PERCENTILE;
+
+  /**
+   * The sweep grid the channel-to-bin mapping was computed for.
+   */
+  private double gridStart = Double.NaN, gridStep = Double.NaN;
+  private int gridSize = -1;
+  /**
+   * The first (inclusive) and last (exclusive) bin of each channel on the
+   * current grid. Equal if the channel is not on the grid.
+   */
+  private final int[] binStart, binStop;
+
+  /**
+   * Per-channel statistics, indexed by channel.
+   */
+  private final long[] sweepCount, occupiedCount, timeAboveThreshold;
+  private final double[] sumPower, maxPower, lastPower;
+  /**
+   * The noise floor (dBm) of the last sweep.
+   */
+  private double noiseFloor = Double.NaN;
+  /**
+   * The time (nanoseconds) of the last sweep. Zero if none.
+   */
+  private long lastSweepTime;
+  /**
+   * A scratch copy of the sweep for the noise floor selection.
+   */
+  private double[] scratch = new double[0];
+
+  /**
+   * Construct a new channel occupancy monitor.
+   *
+   * @param bandPlan the band plan channels. Must not be empty.
+   */
+  public ChannelOccupancyMonitor(List<Channel> bandPlan) {
+    if (bandPlan == null || bandPlan.isEmpty()) {
+      throw new IllegalArgumentException("A band plan is required.");
+    }
+    this.channels = bandPlan.toArray(new Channel[bandPlan.size()]);
+    int size = channels.length;
+    this.binStart = new int[size];
+    this.binStop = new int[size];
+    this.sweepCount = new long[size];
+    this.occupiedCount = new long[size];
+    this.timeAboveThreshold = new long[size];
+    this.sumPower = new double[size];
+    this.maxPower = new double[size];
+    this.lastPower = new double[size];
+    clear();
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Set the occupancy threshold relative to the noise floor.
+   *
+   * @param threshold the threshold offset (dB). Default is 10 dB.
+   */
+  public void setThreshold(double threshold) {
+    this.threshold = threshold;
+  }
+
+  public double getNoisePercentile() {
+    return noisePercentile;
+  }
+
+  /**
+   * Set the sweep power level percentile taken as the noise floor.
+   *
+   * @param noisePercentile the percentile [0, 1]. Default is 0.25.
+   */
+  public void setNoisePercentile(double noisePercentile) {
+    if (!(noisePercentile >= 0 && noisePercentile <= 1)) {
+      throw new IllegalArgumentException("Percentile must be within [0, 1]: " + noisePercentile);
+    }
+    this.noisePercentile = noisePercentile;
+  }
+
+  /**
+   * Get the noise floor estimated from the last sweep.
+   *
+   * @return the noise floor (dBm). NaN if no sweep has been processed.
+   */
+  public synchronized double getNoiseFloor() {
+    return noiseFloor;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    if (waveform.getStartFrequency() != gridStart || waveform.getStep() != gridStep || power.length != gridSize) {
+      map(waveform.getStartFrequency(), waveform.getStep(), power.length);
+    }
+    double floor = estimateNoiseFloor(power);
+    if (floor == floor) {
+      double level = floor + threshold;
+      long now = getTimeNanos(waveform);
+      synchronized (this) {
+        long interval = lastSweepTime == 0 ? 0 : now - lastSweepTime;
+        lastSweepTime = now;
+        noiseFloor = floor;
+        for (int c = 0; c < channels.length; c++) {
+          double sum = 0;
+          int count = 0;
+          for (int i = binStart[c]; i < binStop[c]; i++) {
+            double value = power[i];
+            if (value == value) {
+              sum += Math.pow(10, value / 10);
+              count++;
+            }
+          }
+          if (count == 0) {
+            continue;
+          }
+          double mean = sum / count;
+          double channelPower = 10 * Math.log10(mean);
+          sweepCount[c]++;
+          sumPower[c] += mean;
+          lastPower[c] = channelPower;
+          if (channelPower > maxPower[c]) {
+            maxPower[c] = channelPower;
+          }
+          if (channelPower > level) {
+            occupiedCount[c]++;
+            timeAboveThreshold[c] += interval;
+          }
+        }
+      }
+    }
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Compute the channel-to-bin mapping for a sweep grid.
+   */
+  private void map(double start, double step, int size) {
+    gridStart = start;
+    gridStep = step;
+    gridSize = size;
+    for (int c = 0; c < channels.length; c++) {
+      double first = (channels[c].getStartFrequency() - start) / step;
+      double last = (channels[c].getStopFrequency() - start) / step;
+      int from = Math.max(0, (int) Math.ceil(first - 1e-9));
+      int to = Math.min(size - 1, (int) Math.floor(last + 1e-9));
+      if (from > to && last >= -0.5 && first <= size - 0.5) {
+        /**
+         * The channel lies on the grid but between bin centres.
+         */
+        from = to = (int) Math.max(0, Math.min(size - 1, Math.round((first + last) / 2)));
+      }
+      binStart[c] = from;
+      binStop[c] = Math.max(from, to + 1);
+    }
+  }
+
+  /**
+   * Estimate the noise floor of a sweep as the configured percentile of its
+   * (non-NaN) power levels.
+   *
+   * @return the noise floor (dBm). NaN if the sweep has no samples.
+   */
+  private double estimateNoiseFloor(double[] power) {
+    if (scratch.length < power.length) {
+      scratch = new double[power.length];
+    }
+    int count = 0;
+    for (double value : power) {
+      if (value == value) {
+        scratch[count++] = value;
+      }
+    }
+    if (count == 0) {
+      return Double.NaN;
+    }
+    return select(scratch, count, (int) Math.round(noisePercentile * (count - 1)));
+  }
+
+  /**
+   * Find the k-th smallest of the first count values (quickselect). The array
+   * is reordered.
+   */
+  private static double select(double[] values, int count, int k) {
+    int left = 0;
+    int right = count - 1;
+    while (left < right) {
+      double pivot = values[(left + right) >>> 1];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          double swap = values[i];
+          values[i] = values[j];
+          values[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        break;
+      }
+    }
+    return values[k];
+  }
+
+  /**
+   * Get a snapshot of the statistics of each band plan channel, in band plan
+   * order.
+   *
+   * @return a non-null list of channel occupancy snapshots
+   */
+  public synchronized List<ChannelOccupancy> getOccupancy() {
+    List<ChannelOccupancy> occupancy = new ArrayList<>(channels.length);
+    for (int c = 0; c < channels.length; c++) {
+      occupancy.add(new ChannelOccupancy(channels[c],
+                                         sweepCount[c],
+                                         occupiedCount[c],
+                                         timeAboveThreshold[c],
+                                         sweepCount[c] == 0 ? Double.NaN : 10 * Math.log10(sumPower[c] / sweepCount[c]),
+                                         maxPower[c],
+                                         lastPower[c]));
+    }
+    return occupancy;
+  }
+
+  /**
+   * Clear all channel statistics.
+   */
+  public final synchronized void clear() {
+    Arrays.fill(sweepCount, 0);
+    Arrays.fill(occupiedCount, 0);
+    Arrays.fill(timeAboveThreshold, 0);
+    Arrays.fill(sumPower, 0);
+    Arrays.fill(maxPower, Double.NEGATIVE_INFINITY);
+    Arrays.fill(lastPower, Double.NaN);
+    noiseFloor = Double.NaN;
+    lastSweepTime = 0;
+  }
+}
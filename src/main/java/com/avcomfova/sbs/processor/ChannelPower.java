@@ -0,0 +1,120 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * A snapshot of the power measurements of one channel in one sweep, as
+ * returned by {@link ChannelPowerEngine#getChannelPower()}. Measurements that
+ * could not be made because the channel (or its adjacent channel) is not
+ * entirely within the sweep are NaN.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelPower {
+
+  /**
+   * The channel.
+   */
+  private final Channel channel;
+  /**
+   * The integrated channel power (dBm).
+   */
+  private final double power;
+  /**
+   * The lower and upper frequency (MHz) of the occupied bandwidth.
+   */
+  private final double occupiedStart, occupiedStop;
+  /**
+   * The lower and upper adjacent channel power ratio (dBc).
+   */
+  private final double lowerAdjacentRatio, upperAdjacentRatio;
+
+  ChannelPower(Channel channel, double power, double occupiedStart, double occupiedStop, double lowerAdjacentRatio, double upperAdjacentRatio) {
+    this.channel = channel;
+    this.power = power;
+    this.occupiedStart = occupiedStart;
+    this.occupiedStop = occupiedStop;
+    this.lowerAdjacentRatio = lowerAdjacentRatio;
+    this.upperAdjacentRatio = upperAdjacentRatio;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public Channel getChannel() {
+    return channel;
+  }
+
+  /**
+   * Get the integrated channel power.
+   *
+   * @return the channel power (dBm)
+   */
+  public double getPower() {
+    return power;
+  }
+
+  public double getOccupiedStart() {
+    return occupiedStart;
+  }
+
+  public double getOccupiedStop() {
+    return occupiedStop;
+  }
+
+  /**
+   * Get the occupied bandwidth: the width of the band containing the occupied
+   * power fraction (e.g. 99%) of the channel power.
+   *
+   * @return the occupied bandwidth (MHz)
+   */
+  public double getOccupiedBandwidth() {
+    return occupiedStop - occupiedStart;
+  }
+
+  /**
+   * Get the lower adjacent channel power ratio: the power in the adjacent
+   * channel below this channel relative to the channel power.
+   *
+   * @return the lower adjacent channel power ratio (dBc)
+   */
+  public double getLowerAdjacentRatio() {
+    return lowerAdjacentRatio;
+  }
+
+  /**
+   * Get the upper adjacent channel power ratio: the power in the adjacent
+   * channel above this channel relative to the channel power.
+   *
+   * @return the upper adjacent channel power ratio (dBc)
+   */
+  public double getUpperAdjacentRatio() {
+    return upperAdjacentRatio;
+  }//</editor-fold>
+
+  @Override
+  public String toString() {
+    return "ChannelPower [" + channel + ", " + power + " dBm, OBW " + getOccupiedBandwidth() + " MHz, ACR " + lowerAdjacentRatio + " / " + upperAdjacentRatio + " dBc]";
+  }
+}
@@ -0,0 +1,279 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A channel power and band integration engine. For each channel of a list
+ * every sweep it measures:
+ * <ul>
+ * <li>the integrated channel power,</li>
+ * <li>the occupied bandwidth: the band containing the occupied power fraction
+ * (by default 99%) of the channel power, with equal fractions excluded
+ * below and above it,</li>
+ * <li>the lower and upper adjacent channel power ratios: the power in the
+ * channels of equal width offset below and above the channel (by default by
+ * the channel width) relative to the channel power.</li>
+ * </ul>
+ * Each sweep is converted once to linear power and a prefix sum, in a single
+ * O(n) pass. Each bin is treated as spanning half a step either side of its
+ * center frequency, so that the power between any two frequencies (including
+ * partial edge bins) is an O(1) prefix sum difference. The occupied bandwidth
+ * edges are located by binary search of the prefix sum.
+ * <p>
+ * Each bin measures the power within the resolution bandwidth. Bin powers are
+ * therefore scaled by the bin step divided by the resolution bandwidth (from
+ * {@link com.avcomofva.sbs.enumerated.ResolutionBandwidth#getMHz()}) when
+ * integrated, so that the channel power does not depend on the bin density.
+ * <p>
+ * After each sweep the input Waveform is passed through to the listeners of
+ * this engine, which may then read the measurements with
+ * {@link #getChannelPower()}.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelPowerEngine extends AWaveformProcessor {
+
+  /**
+   * The default occupied power fraction.
+   */
+  public static final double DEFAULT_OCCUPIED_FRACTION = 0.99;
+
+  /**
+   * The channels.
+   */
+  private final Channel[] channels;
+  /**
+   * The occupied power fraction (0, 1).
+   */
+  private double occupiedFraction = DEFAULT_OCCUPIED_FRACTION;
+  /**
+   * The adjacent channel offset (MHz). Zero for the channel width.
+   */
+  private double adjacentOffset;
+  /**
+   * The sweep grid of the prefix sum.
+   */
+  private double start, step;
+  private int size;
+  /**
+   * The RBW-normalized linear power (mW) of each bin. NaN bins are zero.
+   */
+  private double[] linear = new double[0];
+  /**
+   * The prefix sum of the linear power: prefix[i] is the sum of bins 0 to i-1.
+   */
+  private double[] prefix = new double[1];
+  /**
+   * The measurements of each channel in the last sweep.
+   */
+  private final double[] power, occupiedStart, occupiedStop, lowerRatio, upperRatio;
+
+  /**
+   * Construct a new channel power engine.
+   *
+   * @param channels the channels. Must not be empty.
+   */
+  public ChannelPowerEngine(List<Channel> channels) {
+    if (channels == null || channels.isEmpty()) {
+      throw new IllegalArgumentException("At least one channel is required.");
+    }
+    this.channels = channels.toArray(new Channel[channels.size()]);
+    int count = this.channels.length;
+    this.power = new double[count];
+    this.occupiedStart = new double[count];
+    this.occupiedStop = new double[count];
+    this.lowerRatio = new double[count];
+    this.upperRatio = new double[count];
+    Arrays.fill(power, Double.NaN);
+    Arrays.fill(occupiedStart, Double.NaN);
+    Arrays.fill(occupiedStop, Double.NaN);
+    Arrays.fill(lowerRatio, Double.NaN);
+    Arrays.fill(upperRatio, Double.NaN);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public double getOccupiedFraction() {
+    return occupiedFraction;
+  }
+
+  /**
+   * Set the fraction of the channel power that defines the occupied
+   * bandwidth.
+   *
+   * @param occupiedFraction the fraction (0, 1). Default is 0.99.
+   */
+  public void setOccupiedFraction(double occupiedFraction) {
+    if (!(occupiedFraction > 0 && occupiedFraction < 1)) {
+      throw new IllegalArgumentException("Occupied fraction must be within (0, 1): " + occupiedFraction);
+    }
+    this.occupiedFraction = occupiedFraction;
+  }
+
+  public double getAdjacentOffset() {
+    return adjacentOffset;
+  }
+
+  /**
+   * Set the center frequency offset of the adjacent channels.
+   *
+   * @param adjacentOffset the offset (MHz). Zero (default) for the channel
+   *                       width, i.e. abutting adjacent channels.
+   */
+  public void setAdjacentOffset(double adjacentOffset) {
+    if (adjacentOffset < 0) {
+      throw new IllegalArgumentException("Adjacent offset must not be negative: " + adjacentOffset);
+    }
+    this.adjacentOffset = adjacentOffset;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    measure(waveform);
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Measure all channels in a sweep.
+   *
+   * @param waveform the stitched sweep
+   */
+  public synchronized void measure(Waveform waveform) {
+    double[] levels = getPowerLevels(waveform);
+    int n = levels.length;
+    if (linear.length != n) {
+      linear = new double[n];
+      prefix = new double[n + 1];
+    }
+    start = waveform.getStartFrequency();
+    step = waveform.getStep();
+    size = n;
+    double scale = waveform.getResolutionBandwidth() != null && step > 0
+                   ? step / waveform.getResolutionBandwidth().getMHz()
+                   : 1;
+    for (int i = 0; i < n; i++) {
+      double value = levels[i];
+      linear[i] = value == value ? Math.pow(10, value / 10) * scale : 0;
+      prefix[i + 1] = prefix[i] + linear[i];
+    }
+    double tail = (1 - occupiedFraction) / 2;
+    for (int c = 0; c < channels.length; c++) {
+      Channel channel = channels[c];
+      double from = edge(channel.getStartFrequency());
+      double to = edge(channel.getStopFrequency());
+      if (n == 0 || from < 0 || to > n) {
+        power[c] = occupiedStart[c] = occupiedStop[c] = lowerRatio[c] = upperRatio[c] = Double.NaN;
+        continue;
+      }
+      double low = cumulative(from);
+      double total = cumulative(to) - low;
+      power[c] = 10 * Math.log10(total);
+      occupiedStart[c] = frequency(Math.max(from, inverse(low + tail * total)));
+      occupiedStop[c] = frequency(Math.min(to, inverse(low + (1 - tail) * total)));
+      double offset = adjacentOffset > 0 ? adjacentOffset : channel.getWidth();
+      lowerRatio[c] = ratio(channel.getStartFrequency() - offset, channel.getStopFrequency() - offset, total);
+      upperRatio[c] = ratio(channel.getStartFrequency() + offset, channel.getStopFrequency() + offset, total);
+    }
+  }
+
+  /**
+   * Convert a frequency to a bin edge coordinate: bin i spans [i, i + 1).
+   */
+  private double edge(double frequency) {
+    return (frequency - start) / step + 0.5;
+  }
+
+  /**
+   * Convert a bin edge coordinate to a frequency.
+   */
+  private double frequency(double edge) {
+    return start + (edge - 0.5) * step;
+  }
+
+  /**
+   * The linear power from the lower edge of the sweep to a bin edge
+   * coordinate, interpolating within a partial bin.
+   */
+  private double cumulative(double edge) {
+    int k = (int) Math.floor(edge);
+    if (k >= size) {
+      return prefix[size];
+    }
+    return prefix[k] + (edge - k) * linear[k];
+  }
+
+  /**
+   * The bin edge coordinate at which the cumulative power reaches a value
+   * (binary search of the prefix sum).
+   */
+  private double inverse(double target) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (prefix[middle] <= target) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (low >= size || linear[low] == 0) {
+      return low;
+    }
+    return low + Math.min(1, (target - prefix[low]) / linear[low]);
+  }
+
+  /**
+   * The power in a band relative to a channel power (dB). NaN if the band is
+   * not entirely within the sweep.
+   */
+  private double ratio(double startFrequency, double stopFrequency, double total) {
+    double from = edge(startFrequency);
+    double to = edge(stopFrequency);
+    if (from < 0 || to > size) {
+      return Double.NaN;
+    }
+    return 10 * Math.log10((cumulative(to) - cumulative(from)) / total);
+  }
+
+  /**
+   * Get a snapshot of the measurements of each channel in the last sweep, in
+   * channel list order.
+   *
+   * @return a non-null list of channel power snapshots
+   */
+  public synchronized List<ChannelPower> getChannelPower() {
+    List<ChannelPower> list = new ArrayList<>(channels.length);
+    for (int c = 0; c < channels.length; c++) {
+      list.add(new ChannelPower(channels[c], power[c], occupiedStart[c], occupiedStop[c], lowerRatio[c], upperRatio[c]));
+    }
+    return list;
+  }
+}
@@ -0,0 +1,259 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomfova.sbs.datagram.WaveformDelta;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sweep-to-sweep change detection stage. Each sweep is compared bin by bin
+ * with the last published value of each bin and only the bins that differ by
+ * more than the tolerance are published, as a {@link WaveformDelta}.
+ * <p>
+ * Comparing against the last published value (not the previous sweep) bounds
+ * the error of a reconstructed trace by the tolerance: slow drift is published
+ * once it accumulates past the tolerance.
+ * <p>
+ * A keyframe carrying every bin is published for the first sweep, whenever the
+ * sweep grid or configuration changes, every keyframe interval sweeps, and
+ * whenever a delta would be larger than a keyframe. A consumer uses a
+ * {@link WaveformReconstructor} to rebuild full traces.
+ * <p>
+ * A sweep too large for one datagram is published as several consecutive
+ * datagrams (see {@link WaveformDelta#isPartial()}). Sweeps are limited to
+ * {@link WaveformDelta#MAX_SWEEP_SIZE} bins.
+ * <p>
+ * The published datagrams are reused and are only valid for the duration of
+ * the listener call.
+ *
+ * @author Key Bridge LLC
+ */
+public class DeltaEncoder extends AWaveformProcessor {
+
+  /**
+   * The default change tolerance (dB).
+   */
+  public static final double DEFAULT_TOLERANCE = 0.5;
+  /**
+   * The default keyframe interval (sweeps).
+   */
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+
+  /**
+   * The change tolerance (dB).
+   */
+  private double tolerance = DEFAULT_TOLERANCE;
+  /**
+   * The number of sweeps between keyframes.
+   */
+  private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+  /**
+   * The last published value of each bin (dBm).
+   */
+  private double[] reference = new double[0];
+  /**
+   * The bins changed in the current sweep.
+   */
+  private int[] changed = new int[0];
+  /**
+   * The configuration of the last keyframe.
+   */
+  private final Waveform keyframe = new Waveform();
+  /**
+   * The number of sweeps since the last keyframe. Negative to force a
+   * keyframe.
+   */
+  private int sinceKeyframe = -1;
+  /**
+   * The sequence number of the next datagram.
+   */
+  private long sequence;
+  /**
+   * The published datagrams. Reused; normally one per sweep.
+   */
+  private final List<WaveformDelta> deltas = new ArrayList<>();
+  /**
+   * The number of datagrams encoded for the current sweep.
+   */
+  private int count;
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Set the change tolerance: a bin is published if it differs from its last
+   * published value by more than this.
+   *
+   * @param tolerance the tolerance (dB). Default is 0.5 dB.
+   */
+  public void setTolerance(double tolerance) {
+    if (tolerance < 0) {
+      throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+    }
+    this.tolerance = tolerance;
+  }
+
+  public int getKeyframeInterval() {
+    return keyframeInterval;
+  }
+
+  /**
+   * Set the keyframe interval.
+   *
+   * @param keyframeInterval the number of sweeps between keyframes. Default is
+   *                         30.
+   */
+  public void setKeyframeInterval(int keyframeInterval) {
+    if (keyframeInterval < 1) {
+      throw new IllegalArgumentException("Keyframe interval must be positive: " + keyframeInterval);
+    }
+    this.keyframeInterval = keyframeInterval;
+  }//</editor-fold>
+
+  /**
+   * Force the next sweep to be published as a keyframe.
+   */
+  public void requestKeyframe() {
+    sinceKeyframe = -1;
+  }
+
+  @Override
+  protected void process(Waveform waveform) {
+    for (WaveformDelta delta : encode(waveform)) {
+      notifyListeners(delta);
+    }
+  }
+
+  /**
+   * Encode a sweep.
+   *
+   * @param waveform the stitched sweep
+   * @return the delta or keyframe datagrams, in sequence order. Normally one;
+   *         more if the sweep is too large for a single datagram. The list and
+   *         its datagrams are reused by the next call.
+   * @throws IllegalArgumentException if the sweep has more than
+   *                                  {@link WaveformDelta#MAX_SWEEP_SIZE} bins
+   */
+  public List<WaveformDelta> encode(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    int n = power.length;
+    if (n > WaveformDelta.MAX_SWEEP_SIZE) {
+      throw new IllegalArgumentException("Sweep too large to encode: " + n + " bins");
+    }
+    boolean isKeyframe = sinceKeyframe < 0
+                         || sinceKeyframe + 1 >= keyframeInterval
+                         || n != reference.length
+                         || waveform.getStartFrequency() != keyframe.getStartFrequency()
+                         || waveform.getStep() != keyframe.getStep()
+                         || waveform.getCenterFrequency() != keyframe.getCenterFrequency()
+                         || waveform.getSpan() != keyframe.getSpan()
+                         || waveform.getReferenceLevel() != keyframe.getReferenceLevel()
+                         || waveform.getResolutionBandwidth() != keyframe.getResolutionBandwidth();
+    int changedCount = 0;
+    if (!isKeyframe) {
+      if (changed.length < n) {
+        changed = new int[n];
+      }
+      for (int i = 0; i < n; i++) {
+        double value = power[i];
+        double last = reference[i];
+        boolean differs = value == value
+                          ? !(Math.abs(value - last) <= tolerance)
+                          : last == last;
+        if (differs) {
+          changed[changedCount++] = i;
+        }
+      }
+      /**
+       * A delta entry (index and value) is twice the size of a keyframe entry.
+       */
+      isKeyframe = 2 * changedCount >= n;
+    }
+    if (isKeyframe) {
+      if (reference.length != n) {
+        reference = new double[n];
+      }
+      keyframe.initialize(waveform.getCenterFrequency(), waveform.getSpan(), waveform.getStartFrequency(), waveform.getStep(), 0,
+                          waveform.getReferenceLevel(), waveform.getResolutionBandwidth());
+      count = 0;
+      WaveformDelta delta = next(waveform, true);
+      for (int i = 0; i < n; i++) {
+        if (delta.size() == (delta.isKeyframe() ? WaveformDelta.MAX_KEYFRAME_BINS : WaveformDelta.MAX_DELTA_BINS)) {
+          delta = next(waveform, false);
+        }
+        delta.add(i, power[i]);
+      }
+      System.arraycopy(power, 0, reference, 0, n);
+      sinceKeyframe = 0;
+    } else {
+      count = 0;
+      WaveformDelta delta = next(waveform, false);
+      for (int c = 0; c < changedCount; c++) {
+        if (delta.size() == WaveformDelta.MAX_DELTA_BINS) {
+          delta = next(waveform, false);
+        }
+        int i = changed[c];
+        delta.add(i, power[i]);
+        reference[i] = power[i];
+      }
+      sinceKeyframe++;
+    }
+    return deltas.subList(0, count);
+  }
+
+  /**
+   * Start the next datagram of the current sweep. The previous datagram, if
+   * any, is flagged as partial.
+   *
+   * @param waveform the sweep
+   * @param keyframe true for a keyframe
+   * @return the initialized datagram
+   */
+  private WaveformDelta next(Waveform waveform, boolean keyframe) {
+    if (count > 0) {
+      deltas.get(count - 1).setPartial(true);
+    }
+    if (count == deltas.size()) {
+      deltas.add(new WaveformDelta());
+    }
+    WaveformDelta delta = deltas.get(count++);
+    delta.initialize(waveform, sequence++, keyframe);
+    return delta;
+  }
+
+  /**
+   * Reset the encoder. The next sweep is published as a keyframe.
+   */
+  public void clear() {
+    Arrays.fill(reference, Double.NaN);
+    requestKeyframe();
+  }
+}
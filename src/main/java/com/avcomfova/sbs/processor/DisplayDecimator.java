@@ -0,0 +1,212 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.enumerated.Pooling;
+
+/**
+ * A display decimation stage. Each stitched sweep is reduced to at most a
+ * fixed number of display points by pooling blocks of adjacent bins, so that
+ * large sweeps (e.g. 10 kHz RBW across hundreds of MHz) can be rendered and
+ * transferred at display resolution without losing narrow peaks.
+ * <p>
+ * The sweep is divided into width blocks of (as near as possible) equal size.
+ * The block boundaries are computed once per sweep size and reused. Each sweep
+ * is then reduced in a single pass, computing the minimum, maximum and (for
+ * {@link Pooling#MEAN}) mean of each block; bins with no sample are skipped.
+ * <p>
+ * The decimated trace for the selected pooling is published to the listeners
+ * of this stage as a Waveform, which is reused and is only valid for the
+ * duration of the listener call. Each point is placed at the center of its
+ * block; the step is the average block width. The min/max envelope of the same
+ * sweep is available from {@link #getMinimum(double[])} and
+ * {@link #getMaximum(double[])}. Sweeps no larger than the width are passed
+ * through unchanged; their envelope is the sweep itself, padded with NaN to the
+ * width.
+ *
+ * @author Key Bridge LLC
+ */
+public class DisplayDecimator extends AWaveformProcessor {
+
+  /**
+   * The number of display points.
+   */
+  private final int width;
+  /**
+   * The pooling method of the published trace.
+   */
+  private final Pooling pooling;
+  /**
+   * The sweep size the block boundaries were computed for.
+   */
+  private int sweepSize = -1;
+  /**
+   * The block boundaries: block j covers bins boundary[j] (inclusive) to
+   * boundary[j + 1] (exclusive).
+   */
+  private final int[] boundary;
+  /**
+   * The pooled power levels (dBm) of each block.
+   */
+  private final double[] minimum, maximum, mean;
+  /**
+   * The published decimated trace.
+   */
+  private final Waveform output = new Waveform();
+
+  /**
+   * Construct a new display decimator.
+   *
+   * @param width   the number of display points. Must be positive.
+   * @param pooling the pooling method of the published trace
+   */
+  public DisplayDecimator(int width, Pooling pooling) {
+    if (width < 1) {
+      throw new IllegalArgumentException("Width must be positive: " + width);
+    }
+    if (pooling == null) {
+      throw new IllegalArgumentException("A pooling method is required.");
+    }
+    this.width = width;
+    this.pooling = pooling;
+    this.boundary = new int[width + 1];
+    this.minimum = new double[width];
+    this.maximum = new double[width];
+    this.mean = new double[width];
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public int getWidth() {
+    return width;
+  }
+
+  public Pooling getPooling() {
+    return pooling;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    if (waveform.size() <= width) {
+      passThrough(waveform);
+      notifyListeners(waveform);
+    } else {
+      notifyListeners(decimate(waveform));
+    }
+  }
+
+  /**
+   * Decimate a sweep to the display width.
+   *
+   * @param waveform the stitched sweep. Must be larger than the width.
+   * @return the decimated trace. This instance is reused by the next call.
+   */
+  public synchronized Waveform decimate(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    int n = power.length;
+    if (n <= width) {
+      throw new IllegalArgumentException("Sweep size " + n + " is not larger than the width " + width);
+    }
+    if (n != sweepSize) {
+      sweepSize = n;
+      for (int j = 0; j <= width; j++) {
+        boundary[j] = (int) ((long) j * n / width);
+      }
+    }
+    boolean pooledMean = pooling == Pooling.MEAN;
+    for (int j = 0; j < width; j++) {
+      double low = Double.POSITIVE_INFINITY;
+      double high = Double.NEGATIVE_INFINITY;
+      double sum = 0;
+      int count = 0;
+      for (int i = boundary[j]; i < boundary[j + 1]; i++) {
+        double value = power[i];
+        if (value == value) {
+          if (value < low) {
+            low = value;
+          }
+          if (value > high) {
+            high = value;
+          }
+          sum += value;
+          count++;
+        }
+      }
+      if (count == 0) {
+        minimum[j] = maximum[j] = mean[j] = Double.NaN;
+      } else {
+        minimum[j] = low;
+        maximum[j] = high;
+        mean[j] = pooledMean ? sum / count : Double.NaN;
+      }
+    }
+    double step = waveform.getStep() * n / width;
+    output.initialize(waveform.getCenterFrequency(), waveform.getSpan(),
+                      waveform.getStartFrequency() + (step - waveform.getStep()) / 2, step, width,
+                      waveform.getReferenceLevel(), waveform.getResolutionBandwidth());
+    double[] pooled = pooling == Pooling.MAX ? maximum : pooling == Pooling.MIN ? minimum : mean;
+    for (int j = 0; j < width; j++) {
+      output.setPower(j, pooled[j]);
+    }
+    output.setElapsedTime(waveform.getElapsedTime());
+    output.copyAcquisitionTime(waveform);
+    output.setTransactionId(waveform.getTransactionId());
+    return output;
+  }
+
+  /**
+   * Set the envelope of a sweep no larger than the width: each bin is its own
+   * block.
+   */
+  private synchronized void passThrough(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    for (int j = 0; j < width; j++) {
+      minimum[j] = maximum[j] = mean[j] = j < power.length ? power[j] : Double.NaN;
+    }
+  }
+
+  /**
+   * Copy the minimum power level of each block of the last sweep.
+   *
+   * @param output the output array. Must hold width values.
+   * @return the output array
+   */
+  public synchronized double[] getMinimum(double[] output) {
+    System.arraycopy(minimum, 0, output, 0, width);
+    return output;
+  }
+
+  /**
+   * Copy the maximum power level of each block of the last sweep.
+   *
+   * @param output the output array. Must hold width values.
+   * @return the output array
+   */
+  public synchronized double[] getMaximum(double[] output) {
+    System.arraycopy(maximum, 0, output, 0, width);
+    return output;
+  }
+}
@@ -0,0 +1,78 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * An exponential (video) average trace accumulator. Power levels are averaged
+ * in the log (dBm) domain:
+ * <pre>
+ * average = average + alpha * (sample - average)
+ * </pre> A larger alpha responds faster; alpha = 1 / N approximates an N-sweep
+ * average.
+ *
+ * @author Key Bridge LLC
+ */
+public class ExponentialAverageAccumulator extends ATraceAccumulator {
+
+  /**
+   * The smoothing factor, from zero (exclusive) to one (inclusive).
+   */
+  private final double alpha;
+
+  /**
+   * Construct a new exponential average accumulator.
+   *
+   * @param alpha the smoothing factor, from zero (exclusive) to one
+   *              (inclusive)
+   */
+  public ExponentialAverageAccumulator(double alpha) {
+    if (!(alpha > 0 && alpha <= 1)) {
+      throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+    }
+    this.alpha = alpha;
+  }
+
+  public double getAlpha() {
+    return alpha;
+  }
+
+  @Override
+  protected void reset(int size) {
+  }
+
+  @Override
+  protected void accumulate(double[] input, double[] output, int sweepCount) {
+    for (int i = 0; i < output.length; i++) {
+      double value = input[i];
+      double average = output[i];
+      if (average != average) {
+        output[i] = value;
+      } else if (value == value) {
+        output[i] = average + alpha * (value - average);
+      }
+    }
+  }
+}
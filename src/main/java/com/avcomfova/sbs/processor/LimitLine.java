@@ -0,0 +1,193 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import java.util.Arrays;
+
+/**
+ * A frequency-dependent limit line made of piecewise-linear sections. Each
+ * section spans a frequency band and interpolates linearly between a level at
+ * its start and a level at its stop frequency. Sections may not overlap; there
+ * is no limit between or outside the sections.
+ * <p>
+ * Limit lines are evaluated over ascending frequencies with a {@link Cursor},
+ * so that a trace of n bins is evaluated against a line of m sections in a
+ * single O(n + m) pass.
+ *
+ * @author Key Bridge LLC
+ */
+public class LimitLine {
+
+  /**
+   * The section start frequencies (MHz), ascending.
+   */
+  private double[] startFrequency = new double[0];
+  /**
+   * The section stop frequencies (MHz).
+   */
+  private double[] stopFrequency = new double[0];
+  /**
+   * The section start levels (dBm).
+   */
+  private double[] startLevel = new double[0];
+  /**
+   * The section stop levels (dBm).
+   */
+  private double[] stopLevel = new double[0];
+
+  /**
+   * Add a linear section.
+   *
+   * @param startMHz   the section start frequency (MHz)
+   * @param startLevel the limit level at the start frequency (dBm)
+   * @param stopMHz    the section stop frequency (MHz)
+   * @param stopLevel  the limit level at the stop frequency (dBm)
+   * @return this limit line
+   * @throws IllegalArgumentException if the section is empty or overlaps an
+   *                                  existing section
+   */
+  public LimitLine addSection(double startMHz, double startLevel, double stopMHz, double stopLevel) {
+    if (!(stopMHz > startMHz)) {
+      throw new IllegalArgumentException("Section stop must be above start: " + startMHz + " to " + stopMHz);
+    }
+    int n = this.startFrequency.length;
+    int index = 0;
+    while (index < n && this.startFrequency[index] < startMHz) {
+      index++;
+    }
+    if ((index > 0 && this.stopFrequency[index - 1] > startMHz)
+      || (index < n && this.startFrequency[index] < stopMHz)) {
+      throw new IllegalArgumentException("Section overlaps an existing section: " + startMHz + " to " + stopMHz);
+    }
+    this.startFrequency = insert(this.startFrequency, index, startMHz);
+    this.stopFrequency = insert(this.stopFrequency, index, stopMHz);
+    this.startLevel = insert(this.startLevel, index, startLevel);
+    this.stopLevel = insert(this.stopLevel, index, stopLevel);
+    return this;
+  }
+
+  /**
+   * Add a flat section.
+   *
+   * @param startMHz the section start frequency (MHz)
+   * @param stopMHz  the section stop frequency (MHz)
+   * @param level    the limit level (dBm)
+   * @return this limit line
+   */
+  public LimitLine addSection(double startMHz, double stopMHz, double level) {
+    return addSection(startMHz, level, stopMHz, level);
+  }
+
+  /**
+   * Add a polyline of contiguous linear sections through the indicated points.
+   *
+   * @param frequencies the point frequencies (MHz), ascending
+   * @param levels      the point levels (dBm)
+   * @return this limit line
+   */
+  public LimitLine addPoints(double[] frequencies, double[] levels) {
+    if (frequencies.length != levels.length) {
+      throw new IllegalArgumentException("Frequency and level counts do not match.");
+    }
+    for (int i = 1; i < frequencies.length; i++) {
+      addSection(frequencies[i - 1], levels[i - 1], frequencies[i], levels[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Get the number of sections.
+   *
+   * @return the number of sections
+   */
+  public int size() {
+    return startFrequency.length;
+  }
+
+  /**
+   * Get the limit level at a frequency.
+   *
+   * @param frequencyMHz the frequency (MHz)
+   * @return the limit level (dBm), NaN if there is no limit at the frequency
+   */
+  public double getLevel(double frequencyMHz) {
+    return cursor().getLevel(frequencyMHz);
+  }
+
+  /**
+   * Create a cursor for evaluating this line over ascending frequencies.
+   *
+   * @return a new cursor positioned at the first section
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  private static double[] insert(double[] array, int index, double value) {
+    double[] grown = Arrays.copyOf(array, array.length + 1);
+    System.arraycopy(array, index, grown, index + 1, array.length - index);
+    grown[index] = value;
+    return grown;
+  }
+
+  /**
+   * A forward-only limit line evaluator. Successive calls to
+   * {@link #getLevel(double)} must use non-decreasing frequencies until the
+   * cursor is {@link #reset()}.
+   */
+  public class Cursor {
+
+    /**
+     * The index of the current section.
+     */
+    private int section;
+
+    /**
+     * Rewind the cursor to the first section.
+     */
+    public void reset() {
+      section = 0;
+    }
+
+    /**
+     * Get the limit level at a frequency.
+     *
+     * @param frequencyMHz the frequency (MHz), not below the frequency of the
+     *                     previous call
+     * @return the limit level (dBm), NaN if there is no limit at the frequency
+     */
+    public double getLevel(double frequencyMHz) {
+      while (section < startFrequency.length && stopFrequency[section] < frequencyMHz) {
+        section++;
+      }
+      if (section == startFrequency.length || startFrequency[section] > frequencyMHz) {
+        return Double.NaN;
+      }
+      double fraction = (frequencyMHz - startFrequency[section]) / (stopFrequency[section] - startFrequency[section]);
+      return startLevel[section] + fraction * (stopLevel[section] - startLevel[section]);
+    }
+  }
+}
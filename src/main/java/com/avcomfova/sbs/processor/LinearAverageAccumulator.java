@@ -0,0 +1,136 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import java.util.Arrays;
+
+/**
+ * An N-sweep linear power average trace accumulator. Each bin holds the mean
+ * power of the last N sweeps, averaged in the linear (milliwatt) domain:
+ * <pre>
+ * average dBm = 10 * log10( sum(10^(dBm_k / 10)) / N )
+ * </pre> This is the true average power, unlike a log (dBm) average, which
+ * under-reads noise-like signals.
+ * <p>
+ * The last N sweeps are kept (in mW) in a ring buffer with a running sum per
+ * bin. The running sums are recomputed from the ring each time it wraps so that
+ * floating point error does not accumulate.
+ *
+ * @author Key Bridge LLC
+ */
+public class LinearAverageAccumulator extends ATraceAccumulator {
+
+  /**
+   * The number of sweeps to average.
+   */
+  private final int sweeps;
+  /**
+   * The last N sweeps (mW), indexed by [sweep][bin]. NaN for empty bins.
+   */
+  private double[][] ring;
+  /**
+   * The running sum of the ring (mW) per bin.
+   */
+  private double[] sum;
+  /**
+   * The number of non-empty ring entries per bin.
+   */
+  private int[] count;
+  /**
+   * The ring index to be written by the next sweep.
+   */
+  private int head;
+
+  /**
+   * Construct a new linear average accumulator.
+   *
+   * @param sweeps the number of sweeps to average. Must be positive.
+   */
+  public LinearAverageAccumulator(int sweeps) {
+    if (sweeps < 1) {
+      throw new IllegalArgumentException("Sweep count must be positive: " + sweeps);
+    }
+    this.sweeps = sweeps;
+  }
+
+  public int getSweeps() {
+    return sweeps;
+  }
+
+  @Override
+  protected void reset(int size) {
+    if (ring == null || ring[0].length != size) {
+      ring = new double[sweeps][size];
+      sum = new double[size];
+      count = new int[size];
+    } else {
+      Arrays.fill(sum, 0);
+      Arrays.fill(count, 0);
+    }
+    head = 0;
+  }
+
+  @Override
+  protected void accumulate(double[] input, double[] output, int sweepCount) {
+    final double[] slot = ring[head];
+    final boolean full = sweepCount >= sweeps;
+    for (int i = 0; i < output.length; i++) {
+      if (full) {
+        double old = slot[i];
+        if (old == old) {
+          sum[i] -= old;
+          count[i]--;
+        }
+      }
+      double value = input[i];
+      if (value == value) {
+        double milliwatts = Math.pow(10, value / 10);
+        slot[i] = milliwatts;
+        sum[i] += milliwatts;
+        count[i]++;
+      } else {
+        slot[i] = Double.NaN;
+      }
+    }
+    head = (head + 1) % sweeps;
+    /**
+     * Recompute the running sums when the ring wraps.
+     */
+    if (head == 0 && sweeps > 1) {
+      Arrays.fill(sum, 0);
+      for (double[] entry : ring) {
+        for (int i = 0; i < output.length; i++) {
+          if (entry[i] == entry[i]) {
+            sum[i] += entry[i];
+          }
+        }
+      }
+    }
+    for (int i = 0; i < output.length; i++) {
+      output[i] = count[i] > 0 ? 10 * Math.log10(sum[i] / count[i]) : Double.NaN;
+    }
+  }
+}
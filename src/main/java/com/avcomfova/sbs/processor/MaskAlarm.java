@@ -0,0 +1,132 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * A spectrum mask alarm event raised by a {@link SpectrumMaskMonitor} when a
+ * contiguous run of bins in a sweep segment crosses a limit line.
+ *
+ * @author Key Bridge LLC
+ */
+public class MaskAlarm {
+
+  /**
+   * Enumerated limit line types.
+   */
+  public enum Limit {
+
+    /**
+     * The power level rose above the upper limit line.
+     */
+    UPPER,
+    /**
+     * The power level fell below the lower limit line.
+     */
+    LOWER;
+  }
+
+  /**
+   * The limit line that was crossed.
+   */
+  private final Limit limit;
+  /**
+   * The frequency (MHz) of the first bin in the excursion.
+   */
+  private final double startFrequency;
+  /**
+   * The frequency (MHz) of the last bin in the excursion.
+   */
+  private final double stopFrequency;
+  /**
+   * The frequency (MHz) of the worst bin in the excursion.
+   */
+  private final double frequency;
+  /**
+   * The power level (dBm) of the worst bin.
+   */
+  private final double level;
+  /**
+   * The limit level (dBm) at the worst bin.
+   */
+  private final double limitLevel;
+  /**
+   * The time (milliseconds since the epoch) the alarm was raised.
+   */
+  private final long time;
+
+  public MaskAlarm(Limit limit, double startFrequency, double stopFrequency, double frequency, double level, double limitLevel, long time) {
+    this.limit = limit;
+    this.startFrequency = startFrequency;
+    this.stopFrequency = stopFrequency;
+    this.frequency = frequency;
+    this.level = level;
+    this.limitLevel = limitLevel;
+    this.time = time;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public Limit getLimit() {
+    return limit;
+  }
+
+  public double getStartFrequency() {
+    return startFrequency;
+  }
+
+  public double getStopFrequency() {
+    return stopFrequency;
+  }
+
+  public double getFrequency() {
+    return frequency;
+  }
+
+  public double getLevel() {
+    return level;
+  }
+
+  public double getLimitLevel() {
+    return limitLevel;
+  }
+
+  /**
+   * Get the amount (dB) by which the worst bin crossed the limit.
+   *
+   * @return the margin (dB), always positive
+   */
+  public double getMargin() {
+    return limit == Limit.UPPER ? level - limitLevel : limitLevel - level;
+  }
+
+  public long getTime() {
+    return time;
+  }//</editor-fold>
+
+  @Override
+  public String toString() {
+    return "MaskAlarm " + limit + " [" + startFrequency + " to " + stopFrequency + " MHz, " + level + " dBm at " + frequency + " MHz, limit " + limitLevel + " dBm]";
+  }
+}
@@ -0,0 +1,348 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.util.Arrays;
+
+/**
+ * A rolling per-bin noise floor estimator. The noise floor of each bin is a
+ * percentile of its last N unsigned 8-bit waveform samples.
+ * <p>
+ * 8-bit samples take only 256 values, so each bin keeps a 256-entry histogram
+ * of the samples in a sliding window rather than a sorted history. Each sweep
+ * adds the newest sample of each bin to its histogram and removes the sample
+ * that leaves the window. The percentile sample value of each bin is then
+ * moved up or down from its previous value, which is a few steps per sweep
+ * since the histogram changes by at most two counts. The update is constant
+ * time per bin and nothing is allocated after the first sweep.
+ * <p>
+ * Compact Waveforms are read sample for sample; other Waveforms are encoded to
+ * the nearest 8-bit sample at the reference level of each bin (see
+ * {@link Waveform#getReferenceLevel(int)}). Bins with no sample count as the
+ * lowest level. When the reference level of a bin changes (e.g. auto-ranging)
+ * the window history of that bin is re-encoded at the new level; the other
+ * bins are not affected. The estimator is reset when the sweep grid changes.
+ * <p>
+ * After each sweep the per-bin noise floor (dBm) and signal to noise ratio
+ * (dB) arrays are updated and the input Waveform is passed through to the
+ * listeners of this estimator.
+ *
+ * @author Key Bridge LLC
+ */
+public class NoiseFloorEstimator extends AWaveformProcessor {
+
+  /**
+   * The default noise floor percentile.
+   */
+  public static final double DEFAULT_PERCENTILE = 0.5;
+
+  /**
+   * The sliding window length (sweeps).
+   */
+  private final int window;
+  /**
+   * The percentile [0, 1] taken as the noise floor.
+   */
+  private final double percentile;
+
+  /**
+   * The reference levels, indexed by ordinal.
+   */
+  private static final ReferenceLevel[] REFERENCE_LEVELS = ReferenceLevel.values();
+
+  /**
+   * The sweep grid the estimate applies to.
+   */
+  private double startFrequency = Double.NaN, step = Double.NaN;
+  private int size = -1;
+  /**
+   * The per-bin reference level ordinal at which the window samples are
+   * encoded.
+   */
+  private byte[] levels = new byte[0];
+  /**
+   * The window sample history: window rows of size bytes.
+   */
+  private byte[] history = new byte[0];
+  /**
+   * The history row of the next sweep.
+   */
+  private int row;
+  /**
+   * The number of sweeps in the window.
+   */
+  private int count;
+  /**
+   * The per-bin sample histograms: 256 counts per bin.
+   */
+  private short[] histogram = new short[0];
+  /**
+   * The per-bin percentile sample value.
+   */
+  private int[] floorSample = new int[0];
+  /**
+   * The per-bin number of window samples below the percentile sample value.
+   */
+  private short[] below = new short[0];
+  /**
+   * The per-bin noise floor (dBm) and signal to noise ratio (dB).
+   */
+  private double[] noiseFloor = new double[0], snr = new double[0];
+
+  /**
+   * Construct a new noise floor estimator with the default (median)
+   * percentile.
+   *
+   * @param window the sliding window length (sweeps)
+   */
+  public NoiseFloorEstimator(int window) {
+    this(window, DEFAULT_PERCENTILE);
+  }
+
+  /**
+   * Construct a new noise floor estimator.
+   *
+   * @param window     the sliding window length (sweeps), from 1 to 32767
+   * @param percentile the percentile [0, 1] taken as the noise floor
+   */
+  public NoiseFloorEstimator(int window, double percentile) {
+    if (window < 1 || window > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Window must be within [1, " + Short.MAX_VALUE + "]: " + window);
+    }
+    if (!(percentile >= 0 && percentile <= 1)) {
+      throw new IllegalArgumentException("Percentile must be within [0, 1]: " + percentile);
+    }
+    this.window = window;
+    this.percentile = percentile;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public int getWindow() {
+    return window;
+  }
+
+  public double getPercentile() {
+    return percentile;
+  }
+
+  /**
+   * Get the number of sweeps currently in the window.
+   *
+   * @return the sweep count, at most the window length
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * Get the number of bins.
+   *
+   * @return the number of bins, zero if no sweep has been processed
+   */
+  public synchronized int size() {
+    return Math.max(0, size);
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    update(waveform);
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Add a sweep to the window and update the noise floor and signal to noise
+   * ratio arrays.
+   *
+   * @param waveform the stitched sweep
+   */
+  public synchronized void update(Waveform waveform) {
+    if (waveform.size() != size
+        || waveform.getStartFrequency() != startFrequency
+        || waveform.getStep() != step) {
+      reset(waveform);
+    }
+    double[] power = waveform.isCompact() ? null : waveform.getData();
+    boolean full = count == window;
+    if (!full) {
+      count++;
+    }
+    final int target = (int) Math.floor(percentile * (count - 1));
+    final int offset = row * size;
+    final int rows = full ? window : count - 1;
+    ReferenceLevel sweepLevel = waveform.getReferenceLevel();
+    boolean mixed = waveform.isMixedReferenceLevel();
+    for (int i = 0; i < size; i++) {
+      ReferenceLevel referenceLevel = mixed ? waveform.getReferenceLevel(i) : sweepLevel;
+      if (levels[i] != referenceLevel.ordinal()) {
+        reencode(i, rows, REFERENCE_LEVELS[levels[i]], referenceLevel);
+      }
+      int sample = power == null
+                   ? Math.max(0, waveform.getSample(i))
+                   : Waveform8BitResponse.encode(power[i], referenceLevel);
+      int base = i << 8;
+      int q = floorSample[i];
+      int b = below[i];
+      if (full) {
+        int old = history[offset + i] & 0xff;
+        histogram[base + old]--;
+        if (old < q) {
+          b--;
+        }
+      }
+      history[offset + i] = (byte) sample;
+      histogram[base + sample]++;
+      if (sample < q) {
+        b++;
+      }
+      /**
+       * Move the percentile sample value until the target rank falls within
+       * its histogram entry: below <= target < below + histogram[q].
+       */
+      while (b > target) {
+        q--;
+        b -= histogram[base + q];
+      }
+      while (b + histogram[base + q] <= target) {
+        b += histogram[base + q];
+        q++;
+      }
+      floorSample[i] = q;
+      below[i] = (short) b;
+      noiseFloor[i] = Waveform8BitResponse.decode(q, referenceLevel);
+      snr[i] = (power == null ? Waveform8BitResponse.decode(sample, referenceLevel) : power[i]) - noiseFloor[i];
+    }
+    row = (row + 1) % window;
+  }
+
+  /**
+   * Re-encode the window history of one bin at a new reference level and
+   * rebuild its histogram. The percentile sample value is restarted from zero
+   * and moved into place by the next update.
+   *
+   * @param bin      the bin index
+   * @param rows     the number of history rows in use
+   * @param previous the reference level of the history samples
+   * @param current  the new reference level
+   */
+  private void reencode(int bin, int rows, ReferenceLevel previous, ReferenceLevel current) {
+    int base = bin << 8;
+    Arrays.fill(histogram, base, base + 256, (short) 0);
+    for (int r = 0; r < rows; r++) {
+      int index = r * size + bin;
+      int sample = Waveform8BitResponse.encode(Waveform8BitResponse.decode(history[index] & 0xff, previous), current);
+      history[index] = (byte) sample;
+      histogram[base + sample]++;
+    }
+    floorSample[bin] = 0;
+    below[bin] = 0;
+    levels[bin] = (byte) current.ordinal();
+  }
+
+  /**
+   * Reset the estimator for a new sweep grid.
+   */
+  private void reset(Waveform waveform) {
+    size = waveform.size();
+    startFrequency = waveform.getStartFrequency();
+    step = waveform.getStep();
+    if (history.length != window * size) {
+      history = new byte[window * size];
+      histogram = new short[size << 8];
+      floorSample = new int[size];
+      below = new short[size];
+      levels = new byte[size];
+      noiseFloor = new double[size];
+      snr = new double[size];
+    } else {
+      Arrays.fill(histogram, (short) 0);
+      Arrays.fill(floorSample, 0);
+      Arrays.fill(below, (short) 0);
+    }
+    Arrays.fill(levels, (byte) waveform.getReferenceLevel().ordinal());
+    row = 0;
+    count = 0;
+  }
+
+  /**
+   * Copy the per-bin noise floor into an array.
+   *
+   * @param output the output array. Must hold size values.
+   * @return the output array
+   */
+  public synchronized double[] getNoiseFloor(double[] output) {
+    System.arraycopy(noiseFloor, 0, output, 0, Math.max(0, size));
+    return output;
+  }
+
+  /**
+   * Get a copy of the per-bin noise floor.
+   *
+   * @return the noise floor of each bin (dBm)
+   */
+  public synchronized double[] getNoiseFloor() {
+    return getNoiseFloor(new double[Math.max(0, size)]);
+  }
+
+  /**
+   * Get the noise floor of one bin.
+   *
+   * @param index the bin index
+   * @return the noise floor (dBm)
+   */
+  public synchronized double getNoiseFloor(int index) {
+    return noiseFloor[index];
+  }
+
+  /**
+   * Copy the per-bin signal to noise ratio of the last sweep into an array.
+   *
+   * @param output the output array. Must hold size values.
+   * @return the output array
+   */
+  public synchronized double[] getSnr(double[] output) {
+    System.arraycopy(snr, 0, output, 0, Math.max(0, size));
+    return output;
+  }
+
+  /**
+   * Get a copy of the per-bin signal to noise ratio of the last sweep.
+   *
+   * @return the signal to noise ratio of each bin (dB)
+   */
+  public synchronized double[] getSnr() {
+    return getSnr(new double[Math.max(0, size)]);
+  }
+
+  /**
+   * Clear the window. The next sweep restarts the estimate.
+   */
+  public synchronized void clear() {
+    size = -1;
+  }
+}
@@ -0,0 +1,147 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+/**
+ * A spectrum peak tracked across sweeps by a {@link PeakDetector}.
+ * <p>
+ * Peak instances held in the detector table are updated in place; instances
+ * returned by {@link PeakDetector#getPeaks()} are independent snapshots.
+ *
+ * @author Key Bridge LLC
+ */
+public class Peak {
+
+  /**
+   * The peak frequency (MHz) when last seen.
+   */
+  private double frequency;
+  /**
+   * The peak amplitude (dBm) when last seen.
+   */
+  private double amplitude;
+  /**
+   * The highest peak amplitude (dBm) seen.
+   */
+  private double maxAmplitude;
+  /**
+   * The time (milliseconds since the epoch) the peak was first seen.
+   */
+  private long firstSeen;
+  /**
+   * The time (milliseconds since the epoch) the peak was last seen.
+   */
+  private long lastSeen;
+  /**
+   * The monotonic time (nanoseconds) the peak was last seen. Used to expire
+   * the peak; only comparable with other monotonic times from the same clock.
+   */
+  private long lastSeenNanos;
+  /**
+   * The number of sweeps in which the peak was seen.
+   */
+  private long hitCount;
+
+  /**
+   * Construct an empty peak table entry.
+   */
+  Peak() {
+  }
+
+  /**
+   * Construct a snapshot copy of a peak.
+   *
+   * @param peak the peak to copy
+   */
+  Peak(Peak peak) {
+    this.frequency = peak.frequency;
+    this.amplitude = peak.amplitude;
+    this.maxAmplitude = peak.maxAmplitude;
+    this.firstSeen = peak.firstSeen;
+    this.lastSeen = peak.lastSeen;
+    this.lastSeenNanos = peak.lastSeenNanos;
+    this.hitCount = peak.hitCount;
+  }
+
+  /**
+   * Start tracking a new peak.
+   */
+  void initialize(double frequency, double amplitude, long time, long nanos) {
+    this.frequency = frequency;
+    this.amplitude = amplitude;
+    this.maxAmplitude = amplitude;
+    this.firstSeen = time;
+    this.lastSeen = time;
+    this.lastSeenNanos = nanos;
+    this.hitCount = 1;
+  }
+
+  /**
+   * Record a new observation of this peak.
+   */
+  void update(double frequency, double amplitude, long time, long nanos) {
+    this.frequency = frequency;
+    this.amplitude = amplitude;
+    this.maxAmplitude = Math.max(maxAmplitude, amplitude);
+    this.lastSeen = time;
+    this.lastSeenNanos = nanos;
+    this.hitCount++;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public double getFrequency() {
+    return frequency;
+  }
+
+  public double getAmplitude() {
+    return amplitude;
+  }
+
+  public double getMaxAmplitude() {
+    return maxAmplitude;
+  }
+
+  public long getFirstSeen() {
+    return firstSeen;
+  }
+
+  public long getLastSeen() {
+    return lastSeen;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  long getLastSeenNanos() {
+    return lastSeenNanos;
+  }//</editor-fold>
+
+  @Override
+  public String toString() {
+    return "Peak [" + frequency + " MHz, " + amplitude + " dBm, hits " + hitCount + "]";
+  }
+}
@@ -0,0 +1,343 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An incremental peak detector that maintains a table of the (top-K)
+ * strongest spectrum peaks across sweeps.
+ * <p>
+ * Each sweep is scanned once for peaks using a peak excursion criterion: a
+ * local maximum is a peak only if the trace rises at least {@code excursion}
+ * dB to it and falls at least {@code excursion} dB after it, and it is at or
+ * above the {@code threshold}. Of several peaks closer together than the
+ * minimum spacing only the strongest is kept.
+ * <p>
+ * Each detected peak is matched to the nearest table entry within the minimum
+ * spacing (or one bin if no spacing is set). A matched entry is updated; an
+ * unmatched peak is inserted if the table has room or replaces the weakest
+ * entry if it is stronger. Entries not seen within the expiry period are
+ * removed. The table is updated in place; no history is kept.
+ * <p>
+ * After each sweep the input Waveform is passed through to the listeners of
+ * this detector, which may then read the table with {@link #getPeaks()}.
+ *
+ * @author Key Bridge LLC
+ */
+public class PeakDetector extends AWaveformProcessor {
+
+  /**
+   * The default peak excursion (dB).
+   */
+  public static final double DEFAULT_EXCURSION = 6.0;
+
+  /**
+   * The peak table. Entries from zero to size - 1 are in use.
+   */
+  private final Peak[] table;
+  /**
+   * The number of peak table entries in use.
+   */
+  private int size;
+  /**
+   * The minimum peak amplitude (dBm).
+   */
+  private double threshold = Double.NEGATIVE_INFINITY;
+  /**
+   * The minimum rise and fall (dB) around a peak.
+   */
+  private double excursion = DEFAULT_EXCURSION;
+  /**
+   * The minimum spacing (MHz) between peaks. Zero for one bin.
+   */
+  private double spacing;
+  /**
+   * The period (milliseconds) after which an unseen peak is removed from the
+   * table. Zero to never expire.
+   */
+  private long expiry;
+  /**
+   * The bin indices of the peaks detected in the current sweep, in frequency
+   * order. Sized to the sweep.
+   */
+  private int[] candidates = new int[0];
+
+  /**
+   * Construct a new peak detector.
+   *
+   * @param capacity the peak table size (K). Must be positive.
+   */
+  public PeakDetector(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Peak table capacity must be positive: " + capacity);
+    }
+    this.table = new Peak[capacity];
+    for (int i = 0; i < capacity; i++) {
+      table[i] = new Peak();
+    }
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Set the minimum peak amplitude.
+   *
+   * @param threshold the threshold (dBm). Default is no threshold.
+   */
+  public void setThreshold(double threshold) {
+    this.threshold = threshold;
+  }
+
+  public double getExcursion() {
+    return excursion;
+  }
+
+  /**
+   * Set the peak excursion: the minimum rise and fall around a peak.
+   *
+   * @param excursion the excursion (dB). Default is 6 dB.
+   */
+  public void setExcursion(double excursion) {
+    if (excursion < 0) {
+      throw new IllegalArgumentException("Excursion must not be negative: " + excursion);
+    }
+    this.excursion = excursion;
+  }
+
+  public double getSpacing() {
+    return spacing;
+  }
+
+  /**
+   * Set the minimum spacing between peaks. This is also the tolerance used to
+   * match a peak to a table entry from a previous sweep.
+   *
+   * @param spacing the minimum spacing (MHz). Default is zero (one bin).
+   */
+  public void setSpacing(double spacing) {
+    if (spacing < 0) {
+      throw new IllegalArgumentException("Spacing must not be negative: " + spacing);
+    }
+    this.spacing = spacing;
+  }
+
+  public long getExpiry() {
+    return expiry;
+  }
+
+  /**
+   * Set the period after which a peak that has not been seen is removed from
+   * the table.
+   *
+   * @param expiry the expiry period (milliseconds). Zero (default) to never
+   *               expire.
+   */
+  public void setExpiry(long expiry) {
+    this.expiry = expiry;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    double[] power = getPowerLevels(waveform);
+    if (candidates.length < power.length) {
+      candidates = new int[power.length];
+    }
+    int count = detect(power);
+    double tolerance = Math.max(spacing, waveform.getStep());
+    count = enforceSpacing(power, waveform, count, tolerance);
+    synchronized (this) {
+      long now = getTimeMillis(waveform);
+      long nanos = getTimeNanos(waveform);
+      for (int c = 0; c < count; c++) {
+        update(waveform.getFrequency(candidates[c]), power[candidates[c]], tolerance, now, nanos);
+      }
+      /**
+       * Expiry is measured on the monotonic clock so that a wall clock step
+       * neither expires nor retains peaks early.
+       */
+      if (expiry > 0) {
+        for (int i = size - 1; i >= 0; i--) {
+          if (nanos - table[i].getLastSeenNanos() > expiry * 1000000L) {
+            remove(i);
+          }
+        }
+      }
+    }
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Scan a trace for peaks with the excursion criterion. The peak bin indices
+   * are written to the candidates array in frequency order.
+   *
+   * @param power the trace (dBm)
+   * @return the number of peaks detected
+   */
+  private int detect(double[] power) {
+    int count = 0;
+    boolean rising = true;
+    double low = Double.POSITIVE_INFINITY;
+    double high = Double.NEGATIVE_INFINITY;
+    double rise = Double.NEGATIVE_INFINITY;
+    int highIndex = -1;
+    for (int i = 0; i < power.length; i++) {
+      double value = power[i];
+      if (value != value) {
+        continue;
+      }
+      if (value < low) {
+        low = value;
+      }
+      if (rising) {
+        if (value > high) {
+          high = value;
+          highIndex = i;
+          rise = high - low;
+        } else if (value <= high - excursion) {
+          /**
+           * The trace has fallen by the excursion after the high point: confirm
+           * the peak if it also rose by the excursion. Then track the valley.
+           */
+          if (rise >= excursion && high >= threshold) {
+            candidates[count++] = highIndex;
+          }
+          rising = false;
+          low = value;
+        }
+      } else if (value >= low + excursion) {
+        /**
+         * The trace has risen out of the valley: track the next peak.
+         */
+        rising = true;
+        high = value;
+        highIndex = i;
+        rise = high - low;
+      }
+    }
+    /**
+     * A peak at the upper trace edge has no fall: accept it on its rise alone.
+     */
+    if (rising && highIndex >= 0 && rise >= excursion && high >= threshold) {
+      candidates[count++] = highIndex;
+    }
+    return count;
+  }
+
+  /**
+   * Keep only the strongest of any peaks closer together than the tolerance.
+   * Candidates are in frequency order so a single pass suffices.
+   *
+   * @return the number of remaining candidates
+   */
+  private int enforceSpacing(double[] power, Waveform waveform, int count, double tolerance) {
+    int kept = 0;
+    for (int c = 0; c < count; c++) {
+      int index = candidates[c];
+      if (kept > 0 && waveform.getFrequency(index) - waveform.getFrequency(candidates[kept - 1]) < tolerance) {
+        if (power[index] > power[candidates[kept - 1]]) {
+          candidates[kept - 1] = index;
+        }
+      } else {
+        candidates[kept++] = index;
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Match a detected peak to the table and update or insert it.
+   */
+  private void update(double frequency, double amplitude, double tolerance, long now, long nanos) {
+    int nearest = -1;
+    double distance = tolerance;
+    for (int i = 0; i < size; i++) {
+      double d = Math.abs(table[i].getFrequency() - frequency);
+      if (d <= distance) {
+        nearest = i;
+        distance = d;
+      }
+    }
+    if (nearest >= 0) {
+      table[nearest].update(frequency, amplitude, now, nanos);
+    } else if (size < table.length) {
+      table[size++].initialize(frequency, amplitude, now, nanos);
+    } else {
+      int weakest = 0;
+      for (int i = 1; i < size; i++) {
+        if (table[i].getAmplitude() < table[weakest].getAmplitude()) {
+          weakest = i;
+        }
+      }
+      if (amplitude > table[weakest].getAmplitude()) {
+        table[weakest].initialize(frequency, amplitude, now, nanos);
+      }
+    }
+  }
+
+  /**
+   * Remove a table entry, keeping the entry instance for reuse.
+   */
+  private void remove(int index) {
+    Peak removed = table[index];
+    table[index] = table[size - 1];
+    table[size - 1] = removed;
+    size--;
+  }
+
+  /**
+   * Get a snapshot of the peak table, sorted by descending amplitude.
+   *
+   * @return a non-null list of peak snapshots
+   */
+  public synchronized List<Peak> getPeaks() {
+    List<Peak> peaks = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      peaks.add(new Peak(table[i]));
+    }
+    Collections.sort(peaks, new Comparator<Peak>() {
+      @Override
+      public int compare(Peak o1, Peak o2) {
+        return Double.compare(o2.getAmplitude(), o1.getAmplitude());
+      }
+    });
+    return peaks;
+  }
+
+  /**
+   * Clear the peak table.
+   */
+  public synchronized void clear() {
+    size = 0;
+  }
+}
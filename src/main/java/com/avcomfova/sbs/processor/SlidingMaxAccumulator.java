@@ -0,0 +1,107 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import java.util.Arrays;
+
+/**
+ * A sliding-window max-hold trace accumulator. Each bin holds the highest power
+ * level received in the last N sweeps.
+ * <p>
+ * The last N sweeps are kept in a ring buffer. A bin is only rescanned when the
+ * sweep leaving the window held the bin maximum and the new sample is lower,
+ * so the amortized cost is close to one comparison per bin per sweep.
+ *
+ * @author Key Bridge LLC
+ */
+public class SlidingMaxAccumulator extends ATraceAccumulator {
+
+  /**
+   * The window length (sweeps).
+   */
+  private final int sweeps;
+  /**
+   * The last N sweeps (dBm), indexed by [sweep][bin]. NaN for empty bins.
+   */
+  private double[][] ring;
+  /**
+   * The ring index to be written by the next sweep.
+   */
+  private int head;
+
+  /**
+   * Construct a new sliding-window max accumulator.
+   *
+   * @param sweeps the window length (sweeps). Must be positive.
+   */
+  public SlidingMaxAccumulator(int sweeps) {
+    if (sweeps < 1) {
+      throw new IllegalArgumentException("Sweep count must be positive: " + sweeps);
+    }
+    this.sweeps = sweeps;
+  }
+
+  public int getSweeps() {
+    return sweeps;
+  }
+
+  @Override
+  protected void reset(int size) {
+    if (ring == null || ring[0].length != size) {
+      ring = new double[sweeps][size];
+    }
+    for (double[] entry : ring) {
+      Arrays.fill(entry, Double.NaN);
+    }
+    head = 0;
+  }
+
+  @Override
+  protected void accumulate(double[] input, double[] output, int sweepCount) {
+    final double[] slot = ring[head];
+    for (int i = 0; i < output.length; i++) {
+      double value = input[i];
+      double leaving = slot[i];
+      double current = output[i];
+      slot[i] = value;
+      if (sweepCount == 0 || value >= current || (current != current && value == value)) {
+        output[i] = value;
+      } else if (leaving == current) {
+        /**
+         * The window maximum is leaving: rescan the window for this bin.
+         */
+        double max = Double.NaN;
+        for (double[] entry : ring) {
+          if (entry[i] > max || max != max) {
+            max = entry[i];
+          }
+        }
+        output[i] = max;
+      }
+    }
+    head = (head + 1) % sweeps;
+  }
+}
@@ -0,0 +1,393 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A spectrum mask monitor. Each waveform response (sweep segment) is evaluated
+ * against an upper and/or lower limit line as soon as it is read, so that
+ * alarms are raised without waiting for a complete (possibly wide-band) sweep.
+ * <p>
+ * Each segment is evaluated against both limit lines in a single pass. Alarm
+ * state is kept per bin:
+ * <ul>
+ * <li>A bin becomes active when its power level crosses a limit line.</li>
+ * <li>Hysteresis: an active bin only clears once its level is back inside the
+ * limit by more than the hysteresis (dB).</li>
+ * <li>Hold-off: a cleared bin may not become active again until the hold-off
+ * period has elapsed.</li>
+ * </ul>
+ * One {@link MaskAlarm} is raised for each contiguous run of active bins that
+ * contains a newly activated bin. A run that remains active in later sweeps
+ * does not raise further alarms: alarms fire once per excursion.
+ * <p>
+ * Stitched Waveforms are passed through to the listeners of this monitor. The
+ * alarm state of a segment that was not part of the most recent complete sweep
+ * (e.g. after the settings have changed) is discarded when the sweep is
+ * received. Limit lines must be fully configured before the monitor is
+ * attached.
+ *
+ * @author Key Bridge LLC
+ */
+public class SpectrumMaskMonitor extends AWaveformProcessor {
+
+  /**
+   * The default hysteresis (dB).
+   */
+  public static final double DEFAULT_HYSTERESIS = 1.0;
+
+  /**
+   * The upper limit line. Null if none.
+   */
+  private final LimitLine upper;
+  /**
+   * The lower limit line. Null if none.
+   */
+  private final LimitLine lower;
+  /**
+   * The upper limit line evaluator.
+   */
+  private final LimitLine.Cursor upperCursor;
+  /**
+   * The lower limit line evaluator.
+   */
+  private final LimitLine.Cursor lowerCursor;
+  /**
+   * The hysteresis (dB) by which a level must return inside a limit to clear.
+   */
+  private double hysteresis = DEFAULT_HYSTERESIS;
+  /**
+   * The period (milliseconds) after a bin clears before it may alarm again.
+   */
+  private long holdOff;
+  /**
+   * The upper and lower limit line excursion in progress.
+   */
+  private final Excursion upperExcursion = new Excursion();
+  private final Excursion lowerExcursion = new Excursion();
+  /**
+   * The alarm state of each sweep segment, keyed by the segment start
+   * frequency (Hz).
+   */
+  private final Map<Long, SegmentState> states = new HashMap<>();
+  /**
+   * The number of complete sweeps received. Each segment state records the
+   * sweep in which it was last evaluated.
+   */
+  private long sweep;
+  /**
+   * Indicator that all alarm state should be cleared before the next segment.
+   * Set by {@link #clear()} from any thread; the state is only touched by the
+   * data capture thread.
+   */
+  private volatile boolean clearRequested;
+  /**
+   * The number of alarms raised.
+   */
+  private long alarmCount;
+  /**
+   * A set of IMaskAlarmListener instances. These will be notified when an
+   * alarm is raised.
+   */
+  private final List<IMaskAlarmListener> alarmListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Construct a new spectrum mask monitor.
+   *
+   * @param upper the upper limit line. Null if none.
+   * @param lower the lower limit line. Null if none.
+   */
+  public SpectrumMaskMonitor(LimitLine upper, LimitLine lower) {
+    if (upper == null && lower == null) {
+      throw new IllegalArgumentException("At least one limit line is required.");
+    }
+    this.upper = upper;
+    this.lower = lower;
+    this.upperCursor = upper != null ? upper.cursor() : null;
+    this.lowerCursor = lower != null ? lower.cursor() : null;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
+  public LimitLine getUpper() {
+    return upper;
+  }
+
+  public LimitLine getLower() {
+    return lower;
+  }
+
+  public double getHysteresis() {
+    return hysteresis;
+  }
+
+  /**
+   * Set the hysteresis: the amount by which a level must return inside a limit
+   * before an active bin clears.
+   *
+   * @param hysteresis the hysteresis (dB). Default is 1 dB.
+   */
+  public void setHysteresis(double hysteresis) {
+    if (hysteresis < 0) {
+      throw new IllegalArgumentException("Hysteresis must not be negative: " + hysteresis);
+    }
+    this.hysteresis = hysteresis;
+  }
+
+  public long getHoldOff() {
+    return holdOff;
+  }
+
+  /**
+   * Set the hold-off: the period after a bin clears before it may alarm again.
+   *
+   * @param holdOff the hold-off period (milliseconds). Default is zero.
+   */
+  public void setHoldOff(long holdOff) {
+    if (holdOff < 0) {
+      throw new IllegalArgumentException("Hold-off must not be negative: " + holdOff);
+    }
+    this.holdOff = holdOff;
+  }
+
+  /**
+   * Get the number of alarms raised.
+   *
+   * @return the alarm count
+   */
+  public long getAlarmCount() {
+    return alarmCount;
+  }//</editor-fold>
+
+  @Override
+  protected void processSegment(AWaveformResponse segment) {
+    double[] power = segment.getData();
+    double step = segment.getSpan() / power.length;
+    double start = segment.getCenterFrequency() - segment.getSpan() / 2;
+    if (clearRequested) {
+      clearRequested = false;
+      states.clear();
+    }
+    SegmentState state = getState(start, step, power.length);
+    long now = getTimeMillis(segment);
+    long nanos = getTimeNanos(segment);
+    if (upper != null) {
+      upperCursor.reset();
+      upperExcursion.reset();
+    }
+    if (lower != null) {
+      lowerCursor.reset();
+      lowerExcursion.reset();
+    }
+    /**
+     * One pass over the segment. The extra final iteration closes any run of
+     * active bins that extends to the segment edge.
+     */
+    for (int i = 0; i <= power.length; i++) {
+      double frequency = start + i * step;
+      if (upper != null) {
+        evaluate(MaskAlarm.Limit.UPPER, upperCursor, upperExcursion, state, power, i, frequency, start, step, now, nanos);
+      }
+      if (lower != null) {
+        evaluate(MaskAlarm.Limit.LOWER, lowerCursor, lowerExcursion, state, power, i, frequency, start, step, now, nanos);
+      }
+    }
+  }
+
+  /**
+   * Discard the alarm state of segments that were not evaluated during the
+   * sweep, then pass the sweep through.
+   */
+  @Override
+  protected void process(Waveform waveform) {
+    for (Iterator<SegmentState> iterator = states.values().iterator(); iterator.hasNext();) {
+      if (iterator.next().sweep != sweep) {
+        iterator.remove();
+      }
+    }
+    sweep++;
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Evaluate one segment bin against one limit line, updating the bin alarm
+   * state and raising an alarm when a newly active excursion ends. Index
+   * {@code power.length} ends any excursion in progress. The hold-off is
+   * measured on the monotonic clock ({@code nanos}); the wall clock time
+   * ({@code now}) only stamps the alarm.
+   */
+  private void evaluate(MaskAlarm.Limit limit, LimitLine.Cursor cursor, Excursion excursion, SegmentState state,
+                        double[] power, int i, double frequency, double start, double step, long now, long nanos) {
+    boolean inRun = false;
+    if (i < power.length) {
+      double limitLevel = cursor.getLevel(frequency);
+      double value = power[i];
+      if (limitLevel == limitLevel && value == value) {
+        final boolean[] active = state.active[limit.ordinal()];
+        final boolean[] cleared = state.cleared[limit.ordinal()];
+        final long[] clearedAt = state.clearedAt[limit.ordinal()];
+        double margin = limit == MaskAlarm.Limit.UPPER ? value - limitLevel : limitLevel - value;
+        if (active[i]) {
+          if (margin < -hysteresis) {
+            active[i] = false;
+            cleared[i] = true;
+            clearedAt[i] = nanos;
+          }
+        } else if (margin > 0 && (!cleared[i] || nanos - clearedAt[i] >= holdOff * 1000000L)) {
+          active[i] = true;
+          excursion.raised = true;
+        }
+        inRun = active[i];
+        if (inRun && (excursion.start < 0 || margin > excursion.worstMargin)) {
+          excursion.worst = i;
+          excursion.worstMargin = margin;
+          excursion.worstLimit = limitLevel;
+        }
+      }
+    }
+    if (inRun) {
+      if (excursion.start < 0) {
+        excursion.start = i;
+      }
+    } else if (excursion.start >= 0) {
+      /**
+       * End of a run of active bins: alarm if any bin was newly activated.
+       */
+      if (excursion.raised) {
+        fire(new MaskAlarm(limit, start + excursion.start * step, start + (i - 1) * step,
+                           start + excursion.worst * step, power[excursion.worst], excursion.worstLimit, now));
+      }
+      excursion.reset();
+    } else {
+      excursion.raised = false;
+    }
+  }
+
+  /**
+   * Get (or create) the alarm state of a sweep segment. A segment whose grid
+   * has changed gets a new state.
+   */
+  private SegmentState getState(double start, double step, int size) {
+    Long key = Math.round(start * 1e6);
+    SegmentState state = states.get(key);
+    if (state == null || Math.abs(state.step - step) > 1e-12 || state.size != size) {
+      state = new SegmentState(step, size);
+      states.put(key, state);
+    }
+    state.sweep = sweep;
+    return state;
+  }
+
+  /**
+   * Clear all alarm state. The state is cleared before the next segment is
+   * evaluated; any current excursion will then raise a new alarm.
+   */
+  public void clear() {
+    clearRequested = true;
+  }
+
+  private void fire(MaskAlarm alarm) {
+    alarmCount++;
+    for (IMaskAlarmListener listener : alarmListeners) {
+      listener.onMaskAlarm(alarm);
+    }
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="IMaskAlarmListener Manager methods">
+  /**
+   * Add a mask alarm listener.
+   *
+   * @param listener the listener instance
+   */
+  public void addAlarmListener(IMaskAlarmListener listener) {
+    this.alarmListeners.add(listener);
+  }
+
+  /**
+   * Remove a mask alarm listener.
+   *
+   * @param listener the listener instance
+   */
+  public void removeAlarmListener(IMaskAlarmListener listener) {
+    this.alarmListeners.remove(listener);
+  }//</editor-fold>
+
+  /**
+   * The per-bin alarm state of one sweep segment, indexed by
+   * [limit ordinal][bin].
+   */
+  private static class SegmentState {
+
+    private final double step;
+    private final int size;
+    private final boolean[][] active;
+    /**
+     * Whether each bin has cleared, and the monotonic time (nanoseconds) it
+     * last cleared.
+     */
+    private final boolean[][] cleared;
+    private final long[][] clearedAt;
+    /**
+     * The sweep in which this segment was last evaluated.
+     */
+    private long sweep;
+
+    SegmentState(double step, int size) {
+      this.step = step;
+      this.size = size;
+      this.active = new boolean[2][size];
+      this.cleared = new boolean[2][size];
+      this.clearedAt = new long[2][size];
+    }
+  }
+
+  /**
+   * A run of active bins in progress while a segment is evaluated against one
+   * limit line.
+   */
+  private static class Excursion {
+
+    private int start;
+    private boolean raised;
+    private int worst;
+    private double worstMargin;
+    private double worstLimit;
+
+    void reset() {
+      start = -1;
+      raised = false;
+      worst = -1;
+      worstMargin = 0;
+      worstLimit = 0;
+    }
+  }
+}
@@ -0,0 +1,446 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity waterfall (spectrogram) ring buffer holding the most recent
+ * stitched sweeps of a sweep plan.
+ * <p>
+ * Each sweep is stored as one row of unsigned 8-bit waveform samples (one byte
+ * per bin) in a single off-heap (direct) buffer, together with its timestamp
+ * and reference level. Appending a row overwrites the oldest row when the
+ * buffer is full; nothing is shifted or allocated. Rows and columns (power vs
+ * time at one frequency) are decoded directly from the buffer without creating
+ * Waveform objects.
+ * <p>
+ * Compact Waveforms are copied sample for sample. Other Waveforms are encoded
+ * to the nearest 8-bit sample (0.2 dB resolution). Bins with no sample are
+ * marked in a per-row bitmap and decode as NaN. A sweep with segments taken at different
+ * reference levels (auto-ranging) is encoded bin by bin at the level of each
+ * bin, which is kept with the row. The buffer is cleared when the sweep grid
+ * changes.
+ * <p>
+ * Rows are indexed from zero (oldest) to {@link #size()} - 1 (newest).
+ * Timestamps are non-decreasing so time-range queries use a binary search: a
+ * row timestamp earlier than that of the previous row (e.g. after a wall clock
+ * step) is raised to the previous timestamp.
+ * The buffer may be read from any thread while sweeps are appended.
+ *
+ * @author Key Bridge LLC
+ */
+public class WaterfallBuffer extends AWaveformProcessor {
+
+  /**
+   * The maximum number of rows.
+   */
+  private final int capacity;
+  /**
+   * The row sample storage: capacity rows of width bytes. Only absolute get and
+   * put methods are used so that the buffer position is never modified.
+   */
+  private ByteBuffer rows;
+  /**
+   * The number of bins per row. Zero until the first sweep.
+   */
+  private int width;
+  /**
+   * The sweep grid: the frequency (MHz) of the first bin and the bin step.
+   */
+  private double startFrequency, step;
+  /**
+   * The row timestamps (milliseconds since the epoch), by ring slot.
+   */
+  private final long[] timestamps;
+  /**
+   * The row reference levels, by ring slot.
+   */
+  private final ReferenceLevel[] referenceLevels;
+  /**
+   * The per-bin reference level ordinals of each row, by ring slot. Null for a
+   * row with a single reference level. The arrays are reused.
+   */
+  private final byte[][] binLevels;
+  private final boolean[] mixed;
+  /**
+   * The filled bin bitmap of each row, by ring slot. A clear bit marks a bin
+   * with no sample. The arrays are reused.
+   */
+  private final long[][] filled;
+  /**
+   * The reference levels, indexed by ordinal.
+   */
+  private static final ReferenceLevel[] REFERENCE_LEVELS = ReferenceLevel.values();
+  /**
+   * The ring slot of the oldest row.
+   */
+  private int head;
+  /**
+   * The number of rows held.
+   */
+  private int size;
+
+  /**
+   * Construct a new waterfall buffer.
+   *
+   * @param capacity the maximum number of rows (sweeps). Must be positive.
+   */
+  public WaterfallBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Waterfall capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.timestamps = new long[capacity];
+    this.referenceLevels = new ReferenceLevel[capacity];
+    this.binLevels = new byte[capacity][];
+    this.mixed = new boolean[capacity];
+    this.filled = new long[capacity][];
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the number of rows held.
+   *
+   * @return the number of rows
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of bins per row.
+   *
+   * @return the row width, zero if no sweep has been appended
+   */
+  public synchronized int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the frequency (MHz) of the first bin of each row.
+   *
+   * @return the start frequency (MHz)
+   */
+  public synchronized double getStartFrequency() {
+    return startFrequency;
+  }
+
+  /**
+   * Get the frequency step (MHz) between adjacent bins.
+   *
+   * @return the bin step (MHz)
+   */
+  public synchronized double getStep() {
+    return step;
+  }//</editor-fold>
+
+  @Override
+  protected void process(Waveform waveform) {
+    append(waveform, getTimeMillis(waveform));
+    notifyListeners(waveform);
+  }
+
+  /**
+   * Append a sweep as the newest row, overwriting the oldest row if the buffer
+   * is full. The buffer is cleared if the sweep grid has changed.
+   *
+   * @param waveform  the stitched sweep
+   * @param timestamp the sweep time (milliseconds since the epoch)
+   */
+  public synchronized void append(Waveform waveform, long timestamp) {
+    int bins = waveform.size();
+    if (bins != width || waveform.getStartFrequency() != startFrequency || waveform.getStep() != step) {
+      if (rows == null || rows.capacity() < capacity * bins) {
+        rows = ByteBuffer.allocateDirect(capacity * bins);
+      }
+      width = bins;
+      startFrequency = waveform.getStartFrequency();
+      step = waveform.getStep();
+      head = 0;
+      size = 0;
+    }
+    int slot = (head + size) % capacity;
+    if (size == capacity) {
+      head = (head + 1) % capacity;
+    } else {
+      size++;
+    }
+    ReferenceLevel referenceLevel = waveform.getReferenceLevel();
+    int offset = slot * width;
+    int words = (width + 63) >>> 6;
+    if (filled[slot] == null || filled[slot].length != words) {
+      filled[slot] = new long[words];
+    }
+    long[] bitmap = filled[slot];
+    Arrays.fill(bitmap, 0L);
+    if (waveform.isCompact()) {
+      for (int i = 0; i < width; i++) {
+        int sample = waveform.getSample(i);
+        if (sample >= 0) {
+          bitmap[i >>> 6] |= 1L << i;
+        }
+        rows.put(offset + i, (byte) Math.max(0, sample));
+      }
+    } else if (waveform.isMixedReferenceLevel()) {
+      if (binLevels[slot] == null || binLevels[slot].length != width) {
+        binLevels[slot] = new byte[width];
+      }
+      byte[] levels = binLevels[slot];
+      double[] power = waveform.getData();
+      for (int i = 0; i < width; i++) {
+        ReferenceLevel level = waveform.getReferenceLevel(i);
+        levels[i] = (byte) level.ordinal();
+        put(offset, bitmap, i, power[i], level);
+      }
+    } else {
+      double[] power = waveform.getData();
+      for (int i = 0; i < width; i++) {
+        put(offset, bitmap, i, power[i], referenceLevel);
+      }
+    }
+    /**
+     * Keep the timestamps non-decreasing for the binary search.
+     */
+    if (size > 1) {
+      timestamp = Math.max(timestamp, timestamps[(slot + capacity - 1) % capacity]);
+    }
+    timestamps[slot] = timestamp;
+    referenceLevels[slot] = referenceLevel;
+    mixed[slot] = waveform.isMixedReferenceLevel();
+  }
+
+  /**
+   * Encode the power level of one bin into a row, marking the bin filled if it
+   * has a sample.
+   */
+  private void put(int offset, long[] bitmap, int bin, double power, ReferenceLevel referenceLevel) {
+    if (power == power) {
+      bitmap[bin >>> 6] |= 1L << bin;
+      rows.put(offset + bin, (byte) Waveform8BitResponse.encode(power, referenceLevel));
+    } else {
+      rows.put(offset + bin, (byte) 0);
+    }
+  }
+
+  /**
+   * Determine if one bin of a ring slot has a sample.
+   */
+  private boolean isFilled(int slot, int bin) {
+    return (filled[slot][bin >>> 6] & (1L << bin)) != 0;
+  }
+
+  /**
+   * Decode the sample of one bin of a ring slot at the reference level of the
+   * bin. NaN if the bin has no sample.
+   */
+  private double decode(int slot, int bin) {
+    if (!isFilled(slot, bin)) {
+      return Double.NaN;
+    }
+    int sample = rows.get(slot * width + bin) & 0xff;
+    return Waveform8BitResponse.decode(sample, mixed[slot] ? REFERENCE_LEVELS[binLevels[slot][bin]] : referenceLevels[slot]);
+  }
+
+  /**
+   * Get the ring slot of a row, checking the row index.
+   */
+  private int slot(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+    }
+    return (head + row) % capacity;
+  }
+
+  /**
+   * Get the timestamp of a row.
+   *
+   * @param row the row index, from zero (oldest) to size - 1 (newest)
+   * @return the row timestamp (milliseconds since the epoch)
+   */
+  public synchronized long getTimestamp(int row) {
+    return timestamps[slot(row)];
+  }
+
+  /**
+   * Get the reference level of a row. For a row mixing reference levels this
+   * is the highest of them.
+   *
+   * @param row the row index, from zero (oldest) to size - 1 (newest)
+   * @return the row reference level
+   */
+  public synchronized ReferenceLevel getReferenceLevel(int row) {
+    return referenceLevels[slot(row)];
+  }
+
+  /**
+   * Find the first row with a timestamp at or after the indicated time.
+   *
+   * @param timestamp a time (milliseconds since the epoch)
+   * @return the row index, or size if all rows are older
+   */
+  public synchronized int indexOf(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (timestamps[(head + middle) % capacity] < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Get the bin index nearest to a frequency.
+   *
+   * @param frequencyMHz a frequency of interest (MHz)
+   * @return the bin index, -1 if the frequency is outside the rows
+   */
+  public synchronized int binOf(double frequencyMHz) {
+    if (width == 0) {
+      return -1;
+    }
+    int index = (int) Math.round((frequencyMHz - startFrequency) / step);
+    return index >= 0 && index < width ? index : -1;
+  }
+
+  /**
+   * Get the raw (unsigned 8-bit) sample of one bin of a row.
+   *
+   * @param row the row index
+   * @param bin the bin index
+   * @return the unsigned sample value, from 0 to 255, or -1 if the bin has no
+   *         sample
+   */
+  public synchronized int getSample(int row, int bin) {
+    if (bin < 0 || bin >= width) {
+      throw new IndexOutOfBoundsException("Bin " + bin + " of " + width);
+    }
+    int slot = slot(row);
+    return isFilled(slot, bin) ? rows.get(slot * width + bin) & 0xff : -1;
+  }
+
+  /**
+   * Decode a row into power levels (dBm). Bins with no sample decode as NaN.
+   *
+   * @param row          the row index
+   * @param output       the output array. Must hold width values from the
+   *                     offset.
+   * @param outputOffset the index of the first output element
+   * @return the output array
+   */
+  public synchronized double[] getRow(int row, double[] output, int outputOffset) {
+    int slot = slot(row);
+    if (mixed[slot]) {
+      for (int i = 0; i < width; i++) {
+        output[outputOffset + i] = decode(slot, i);
+      }
+      return output;
+    }
+    int offset = slot * width;
+    ReferenceLevel referenceLevel = referenceLevels[slot];
+    for (int i = 0; i < width; i++) {
+      output[outputOffset + i] = isFilled(slot, i)
+                                 ? Waveform8BitResponse.decode(rows.get(offset + i) & 0xff, referenceLevel)
+                                 : Double.NaN;
+    }
+    return output;
+  }
+
+  /**
+   * Extract a column: the power level (dBm) of one bin in each of a range of
+   * rows, and optionally the row timestamps. A row with no sample in the bin
+   * gives NaN.
+   *
+   * @param bin        the bin index
+   * @param fromRow    the first row index (inclusive)
+   * @param toRow      the last row index (exclusive)
+   * @param power      the output power levels. Must hold toRow - fromRow
+   *                   values.
+   * @param timestamps the output row timestamps. May be null.
+   * @return the number of values written
+   */
+  public synchronized int getColumn(int bin, int fromRow, int toRow, double[] power, long[] timestamps) {
+    if (bin < 0 || bin >= width) {
+      throw new IndexOutOfBoundsException("Bin " + bin + " of " + width);
+    }
+    if (fromRow < 0 || toRow > size || fromRow > toRow) {
+      throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " of " + size);
+    }
+    int count = 0;
+    for (int row = fromRow; row < toRow; row++, count++) {
+      int slot = (head + row) % capacity;
+      power[count] = decode(slot, bin);
+      if (timestamps != null) {
+        timestamps[count] = this.timestamps[slot];
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Extract a column for a time range: the power level (dBm) at the bin
+   * nearest a frequency in each row with a timestamp in the range.
+   *
+   * @param frequencyMHz the frequency (MHz)
+   * @param from         the start time (inclusive, milliseconds since the
+   *                     epoch)
+   * @param to           the end time (exclusive, milliseconds since the epoch)
+   * @param power        the output power levels. Must hold the number of rows
+   *                     in the range (at most size).
+   * @param timestamps   the output row timestamps. May be null.
+   * @return the number of values written. Zero if the frequency is outside the
+   *         rows.
+   */
+  public synchronized int getColumnMHz(double frequencyMHz, long from, long to, double[] power, long[] timestamps) {
+    int bin = binOf(frequencyMHz);
+    if (bin < 0) {
+      return 0;
+    }
+    int fromRow = indexOf(from);
+    int toRow = Math.max(fromRow, indexOf(to));
+    return getColumn(bin, fromRow, toRow, power, timestamps);
+  }
+
+  /**
+   * Clear all rows. The off-heap storage is retained.
+   */
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+  }
+}
@@ -0,0 +1,146 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.IDatagramListener;
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomfova.sbs.datagram.WaveformDelta;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Rebuilds full sweeps from a {@link WaveformDelta} stream produced by a
+ * {@link DeltaEncoder}. Each keyframe replaces the trace; each delta updates
+ * the changed bins in place. Once the last datagram of a sweep has been applied
+ * (see {@link WaveformDelta#isPartial()}) the rebuilt Waveform is published to
+ * the listeners of this reconstructor. The Waveform is reused and is only valid
+ * for the duration of the listener call.
+ * <p>
+ * If a datagram is lost (a gap in the sequence numbers) the trace can not be
+ * rebuilt; deltas are then dropped until the next keyframe.
+ * <p>
+ * Other datagram types are ignored.
+ *
+ * @author Key Bridge LLC
+ */
+public class WaveformReconstructor implements IDatagramListener {
+
+  /**
+   * A set of IDatagramListener instances. These will be notified when a sweep
+   * is rebuilt.
+   */
+  private final List<IDatagramListener> datagramListeners = new CopyOnWriteArrayList<>();
+  /**
+   * The rebuilt sweep.
+   */
+  private final Waveform waveform = new Waveform();
+  /**
+   * The sequence number of the next expected datagram. Negative if waiting for
+   * a keyframe.
+   */
+  private long expected = -1;
+  /**
+   * The number of deltas dropped while waiting for a keyframe.
+   */
+  private long droppedCount;
+
+  /**
+   * Get the number of deltas dropped because a previous datagram was lost.
+   *
+   * @return the dropped datagram count
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  @Override
+  public void onDatagram(IDatagram datagram) {
+    if (datagram instanceof WaveformDelta && apply((WaveformDelta) datagram)) {
+      notifyListeners(waveform);
+    }
+  }
+
+  /**
+   * Apply a keyframe or delta to the rebuilt sweep.
+   *
+   * @param delta the keyframe or delta
+   * @return true if the sweep was rebuilt, false if the delta was dropped or
+   *         if more datagrams of the sweep follow
+   */
+  public boolean apply(WaveformDelta delta) {
+    if (delta.isKeyframe()) {
+      waveform.initialize(delta.getCenterFrequency(), delta.getSpan(), delta.getStartFrequency(), delta.getStep(), delta.getSweepSize(),
+                          delta.getReferenceLevel(), delta.getResolutionBandwidth());
+    } else if (delta.getSequence() != expected) {
+      droppedCount++;
+      expected = -1;
+      return false;
+    }
+    for (int i = 0; i < delta.size(); i++) {
+      waveform.setPower(delta.getIndex(i), delta.getPower(i));
+    }
+    waveform.setElapsedTime(delta.getElapsedTime());
+    waveform.copyAcquisitionTime(delta);
+    waveform.setTransactionId(delta.getTransactionId());
+    expected = delta.getSequence() + 1;
+    return !delta.isPartial();
+  }
+
+  /**
+   * Get the rebuilt sweep.
+   *
+   * @return the rebuilt sweep, which is updated in place by each datagram
+   */
+  public Waveform getWaveform() {
+    return waveform;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="IDatagramListener Manager methods">
+  private void notifyListeners(IDatagram datagram) {
+    for (IDatagramListener iDatagramListener : datagramListeners) {
+      iDatagramListener.onDatagram(datagram);
+    }
+  }
+
+  /**
+   * Add a Datagram Listener to receive rebuilt sweeps.
+   *
+   * @param listener the listener instance
+   */
+  public void addListener(IDatagramListener listener) {
+    this.datagramListeners.add(listener);
+  }
+
+  /**
+   * Remove a DatagramListener
+   *
+   * @param listener the listener instance
+   */
+  public void removeListener(IDatagramListener listener) {
+    this.datagramListeners.remove(listener);
+  }//</editor-fold>
+}
@@ -0,0 +1,415 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.datagram.read;
+
+import com.avcomfova.sbs.datagram.ADatagram;
+import com.avcomfova.sbs.datagram.WaveformView;
+import com.avcomofva.sbs.enumerated.DatagramType;
+import com.avcomofva.sbs.enumerated.ProductID;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.usb3.utility.ByteUtility;
+
+/**
+ * An abstract Waveform Response Datagram with the header fields and lazy
+ * decoding common to the 8-bit (Table 9) and 12-bit (Table 11) waveform
+ * packets.
+ * <p>
+ * Both packets carry 320 trace points followed by an identical trailer of
+ * product, tuning and configuration fields. They differ only in the number of
+ * payload bytes (320 or 480) and in how each point is encoded.
+ * <p>
+ * Parsing is two-phase: the header fields (product, center frequency, span,
+ * reference level, RBW, etc.) are parsed immediately while the trace samples
+ * are decoded on first access from the retained datagram bytes. Consumers that
+ * only need the header, or that forward the raw bytes via {@link #serialize()},
+ * never pay for sample decoding.
+ *
+ * @author Jesse Caulfield
+ */
+public abstract class AWaveformResponse extends ADatagram {
+
+  /**
+   * 320 points. The number of trace points in every waveform response,
+   * regardless of the sample resolution. This is used by the AvcomSBS to
+   * create a piecewise SettingsRequest set.
+   */
+  public static final int WAVEFORM_POINTS = 320;
+  /**
+   * The signal level above which the sensor should be considered saturated. If
+   * any data points are above this level then a flag is raised and the waveform
+   * should be resampled at a lower reference level.
+   */
+  protected static final int SATURATED = 230;
+  /**
+   * The waveform scaling factor (dB per 8-bit step). Per Table 9 and Table 11:
+   * <code>dB = +0.20 * B + RL</code>.
+   */
+  protected static final double DB_PER_STEP = 0.20;
+
+  /**
+   * The number of payload bytes between the datagram header and the trailer.
+   */
+  private final int payloadLength;
+  /**
+   * The raw datagram bytes. These are retained so that trace samples may be
+   * decoded on first access and so that the datagram may be forwarded without
+   * re-encoding.
+   */
+  protected byte[] bytes;
+  /**
+   * A datagram buffer owned by this instance into which transient frames are
+   * copied by {@link #parseCopy(byte[], int)}. Reused when this instance is
+   * recycled.
+   */
+  private byte[] frameBuffer;
+  /**
+   * Indicator that the trace samples have been decoded into the data array.
+   */
+  private boolean decoded;
+  /**
+   * Indicator that the sensor detected saturation while reading data for this
+   * waveform. Set when the trace samples are decoded.
+   */
+  private boolean saturated = false; // did the sensor detect saturation?
+  /**
+   * The Product ID. First trailer byte.
+   */
+  private ProductID productId;
+  /**
+   * The center frequency (MHz).
+   */
+  private double centerFrequency;
+  /**
+   * The waveform span (MHz).
+   */
+  private double span;
+  /**
+   * The sensor reference level.
+   */
+  private ReferenceLevel referenceLevel;
+  /**
+   * The waveform resolution bandwidth.
+   */
+  private ResolutionBandwidth resolutionBandwidth;
+  /**
+   * The sensor input connector.
+   */
+  private int inputConnector;
+  /**
+   * The sensor internal extender.
+   */
+  private final byte[] internalExtender = new byte[2];
+  /**
+   * The sensor external extender.
+   */
+  private final byte[] externalExtender = new byte[2];
+  /**
+   * The sensor LNB power for current RF input.
+   */
+  private int lnbPower;
+  /**
+   * Reserved byte. Typically 0xff.
+   */
+  private int reserved01;
+  /**
+   * Reserved byte. Typically 0xff.
+   */
+  private int reserved02;
+
+  /**
+   * Construct a new waveform response.
+   *
+   * @param datagramType  the datagram type
+   * @param payloadLength the number of trace payload bytes
+   */
+  protected AWaveformResponse(DatagramType datagramType, int payloadLength) {
+    super(datagramType);
+    this.payloadLength = payloadLength;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
+  public double getCenterFrequency() {
+    return centerFrequency;
+  }
+
+  public byte[] getExternalExtender() {
+    return externalExtender;
+  }
+
+  public int getInputConnector() {
+    return inputConnector;
+  }
+
+  public byte[] getInternalExtender() {
+    return internalExtender;
+  }
+
+  public int getLnbPower() {
+    return lnbPower;
+  }
+
+  public ProductID getProductId() {
+    return productId;
+  }
+
+  public ReferenceLevel getReferenceLevel() {
+    return referenceLevel;
+  }
+
+  public ResolutionBandwidth getResolutionBandwidth() {
+    return resolutionBandwidth;
+  }
+
+  public double getSpan() {
+    return span;
+  }
+
+  protected int getReserved01() {
+    return reserved01;
+  }
+
+  protected int getReserved02() {
+    return reserved02;
+  }
+
+  /**
+   * Get the power level at which samples taken at a reference level are
+   * considered saturated.
+   *
+   * @param referenceLevel the reference level
+   * @return the saturation power level (dBm)
+   */
+  public static double getSaturationLevel(ReferenceLevel referenceLevel) {
+    return referenceLevel.getWaveformOffset() + SATURATED * DB_PER_STEP;
+  }
+
+  /**
+   * Get the saturation indicator. This decodes the trace samples if they have
+   * not already been decoded.
+   *
+   * @return true if any sample is at or above the saturation level
+   */
+  public boolean isSaturated() {
+    getData();
+    return saturated;
+  }//</editor-fold>
+
+  /**
+   * Get the trace data (dBm). Trace samples are decoded from the retained
+   * datagram bytes on the first call and cached.
+   *
+   * @return the decoded trace data array, null if no bytes have been parsed
+   */
+  @Override
+  public synchronized double[] getData() {
+    if (!decoded && bytes != null) {
+      if (data == null) {
+        data = new double[WAVEFORM_POINTS];
+      }
+      saturated = decodeInto(data, 0);
+      decoded = true;
+    }
+    return data;
+  }
+
+  /**
+   * Determine if the trace samples have been decoded.
+   *
+   * @return true if the trace samples have been decoded
+   */
+  public synchronized boolean isDecoded() {
+    return decoded;
+  }
+
+  /**
+   * Decode the retained trace samples into a caller-supplied array without
+   * caching them in this datagram. This allows trace data to be written
+   * directly into a larger (e.g. stitched) output array.
+   *
+   * @param output       the destination power level array (dBm)
+   * @param outputOffset the index of the first output value
+   * @return true if any sample is at or above the saturation level
+   */
+  public abstract boolean decodeInto(double[] output, int outputOffset);
+
+  /**
+   * Decode a single retained trace sample without decoding the trace. This is
+   * used to read the center sample of zero-span responses.
+   *
+   * @param index the sample index, from zero to 319
+   * @return the power level (dBm)
+   */
+  public abstract double getPower(int index);
+
+  /**
+   * Parse the byte array returned from the sensor and use it populate internal
+   * fields. Only the header fields are parsed; the byte array is retained and
+   * the trace samples are decoded by {@link #getData()}.
+   *
+   * @param bytes the byte array returned from the sensor
+   * @throws java.lang.Exception if the parse operation fails or encounters an
+   *                             error
+   */
+  @Override
+  public void parse(byte[] bytes) throws Exception {
+    int trailer = 4 + payloadLength;
+    this.productId = ProductID.fromByteCode(bytes[trailer]);
+    this.centerFrequency = ByteUtility.intFrom4Bytes(bytes, trailer + 1) / 10000d;
+    this.span = ByteUtility.intFrom4Bytes(bytes, trailer + 5) / 10000d;
+    this.referenceLevel = ReferenceLevel.fromByteCode(bytes[trailer + 9]);
+    this.resolutionBandwidth = ResolutionBandwidth.fromByteCode(bytes[trailer + 10]);
+    this.inputConnector = bytes[trailer + 11] - 9;
+    for (int i = 0; i < 2; i++) {
+      this.internalExtender[i] = bytes[trailer + 12 + i];
+    }
+    for (int i = 0; i < 2; i++) {
+      this.externalExtender[i] = bytes[trailer + 14 + i];
+    }
+    this.lnbPower = bytes[trailer + 16];
+    this.reserved01 = bytes[trailer + 17];
+    this.reserved02 = bytes[trailer + 18];
+    /**
+     * Error condition - if the ReferenceLevel was not read then FAIL parsing.
+     */
+    if (this.referenceLevel == null) {
+      throw new Exception("Invalid Reference Level value: " + bytes[trailer + 9]);
+    }
+    /**
+     * Finally, retain the data bytes for lazy decoding. Trace samples are
+     * converted to units dB by {@link #getData()}.
+     * <p>
+     * If the sensor value is above 230 (90% of 255) then raise the 'saturated'
+     * flag. This indicates to the controller that the reference level should be
+     * reduced and the waveform data should be resampled.
+     */
+    synchronized (this) {
+      this.bytes = bytes;
+      this.decoded = false;
+      this.saturated = false;
+    }
+    this.valid = true;
+  }
+
+  /**
+   * Parse a datagram held in a transient (e.g. reused read) buffer. The
+   * datagram bytes are copied into a buffer owned by this instance and then
+   * parsed. The buffer and the decoded trace data array are reused on
+   * subsequent calls, so that a recycled instance parses without allocation.
+   * <p>
+   * Any trace data previously returned by {@link #getData()} is overwritten
+   * when the new samples are decoded.
+   *
+   * @param frame       the datagram buffer, which may be longer than this
+   *                    datagram
+   * @param frameLength the number of datagram bytes read into the buffer
+   * @throws java.lang.Exception if the frame is incomplete or if the parse
+   *                             operation fails or encounters an error
+   */
+  public void parseCopy(byte[] frame, int frameLength) throws Exception {
+    int length = payloadLength + 24;
+    if (frameLength < length || frame.length < length) {
+      throw new Exception("Datagram too short: have " + Math.min(frameLength, frame.length) + " require " + length);
+    }
+    if (frameBuffer == null) {
+      frameBuffer = new byte[length];
+    }
+    System.arraycopy(frame, 0, frameBuffer, 0, length);
+    parse(frameBuffer);
+  }
+
+  /**
+   * Convert this datagram into a byte array. This returns the retained raw
+   * datagram bytes (not a copy) and does not decode the trace samples.
+   *
+   * @return a byte array, null if no bytes have been parsed
+   */
+  @Override
+  public byte[] serialize() {
+    return bytes;
+  }
+
+  /**
+   * Assemble a Map object from the waveform data. In a waveform, each sample
+   * byte can be described by it's own center frequency and span. Aggregated
+   * waveform data is stored at dBm values with centerFrequency indices.
+   * <pre>
+   * | <----------------------- span s --------------------> |
+   * | ^ startFrequency           ^ centerFrequency          |
+   * |[   ][   ][   ][   ][   ][   ][   ][   ][   ][   ][   ]|
+   * |  ^cf_i
+   * <p>
+   * Where:
+   *   startFrequency = centerFrequency - span / 2
+   *   i              = byte count (from 0 to length of sample
+   *   cf_i           = resolutionBandwidth * i + startFrequency
+   * </pre>
+   *
+   * @return a non-null TreeMap of center frequencies and corresponding power
+   *         level
+   */
+  public Map<Double, Double> getTraceMap() {
+    // need to scale the data if necessary
+    Map<Double, Double> traceMap = new TreeMap<>();
+    double[] trace = getData();
+    double startMHz = centerFrequency - span / 2;
+    double cfi;
+
+    double xScale = span / trace.length;
+    for (int i = 0; i < trace.length; i++) {
+      cfi = i * xScale + startMHz;
+      traceMap.put(cfi, trace[i]);
+    }
+    return traceMap;
+  }
+
+  /**
+   * Get a read-only view of the decoded trace data. The view is backed by the
+   * decoded trace data array (no copy is made). Bin {@code i} is at frequency
+   * {@code centerFrequency - span / 2 + i * span / 320}, consistent with
+   * {@link #getTraceMap()}.
+   *
+   * @return a read-only WaveformView, null if no bytes have been parsed
+   */
+  public WaveformView getView() {
+    double[] trace = getData();
+    return trace == null ? null : new WaveformView(centerFrequency - span / 2, span / WAVEFORM_POINTS, trace, 0, WAVEFORM_POINTS);
+  }
+
+  public String toStringData() {
+    if (valid) {
+      StringBuilder sb = new StringBuilder();
+      for (double element : getData()) {
+        sb.append("[").append(element).append("]");
+      }
+      return sb.toString();
+    } else {
+      return "Trace Response datagram not initialized.";
+    }
+  }
+}
@@ -319,13 +319,22 @@ public final class HardwareDescriptionResponse extends ADatagram {
     return currentSplitterGainCal;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getDatagramErrorCount() {
     return datagramErrorCount;
   }
 
   /**
    * Increment the datagram ERROR count by one.
+   *
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
    */
+  @Deprecated
   public void setDatagramError() {
     /**
      * Reset the counter if it is approaching its limit.
@@ -336,13 +345,22 @@ public final class HardwareDescriptionResponse extends ADatagram {
     this.datagramErrorCount += 1;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getDatagramReadCount() {
     return datagramReadCount;
   }
 
   /**
    * Increment the datagram READ count by one.
+   *
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
    */
+  @Deprecated
   public void setDatagramRead() {
     /**
      * Reset the counter if it is approaching its limit.
@@ -353,13 +371,22 @@ public final class HardwareDescriptionResponse extends ADatagram {
     this.datagramReadCount += 1;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getDatagramWriteCount() {
     return datagramWriteCount;
   }
 
   /**
    * Increment the datagram WRITE count by one.
+   *
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
    */
+  @Deprecated
   public void setDatagramWrite() {
     /**
      * Reset the counter if it is approaching its limit.
@@ -370,14 +397,29 @@ public final class HardwareDescriptionResponse extends ADatagram {
     this.datagramWriteCount += 1;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getElapsedTimeAve() {
     return elapsedTimeAve;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getElapsedTimeMax() {
     return elapsedTimeMax;
   }
 
+  /**
+   * @deprecated The AvcomSBS no longer updates this value. Use the AvcomSBS
+   * device metrics ({@code AvcomSBS.getMetrics()}).
+   */
+  @Deprecated
   public long getElapsedTimeMin() {
     return elapsedTimeMin;
   }
@@ -542,11 +584,11 @@ public final class HardwareDescriptionResponse extends ADatagram {
      * The current center frequency configuration (MHz). Divide by 10,000 to
      * convert to Mhz
      */
-    this.currentCenterFrequency = ByteUtility.intFrom4Bytes(bytes, 8) / 10000; // divide by 10,000 to get Mhz
+    this.currentCenterFrequency = ByteUtility.intFrom4Bytes(bytes, 8) / 10000d; // divide by 10,000 to get Mhz
     /**
      * The current span. Divide by 10,000 to convert to Mhz.
      */
-    this.currentSpan = ByteUtility.intFrom4Bytes(bytes, 12) / 10000;
+    this.currentSpan = ByteUtility.intFrom4Bytes(bytes, 12) / 10000d;
     this.currentReferenceLevel = ReferenceLevel.fromByteCode(bytes[16]);
     this.currentRBW = ResolutionBandwidth.fromByteCode(bytes[17]);
     this.availableRBW = ResolutionBandwidth.fromByteCode(bytes[18]);
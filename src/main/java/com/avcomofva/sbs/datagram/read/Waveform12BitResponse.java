@@ -25,25 +25,21 @@
  */
 package com.avcomofva.sbs.datagram.read;
 
-import com.avcomfova.sbs.datagram.ADatagram;
 import com.avcomofva.sbs.enumerated.DatagramType;
-import com.avcomofva.sbs.enumerated.ProductID;
 import com.avcomofva.sbs.enumerated.ReferenceLevel;
-import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
-import java.util.Map;
-import java.util.TreeMap;
 import javax.usb3.utility.ByteUtility;
 
 /**
  * Waveform Response Datagram from Avcom devices 12-bit waveform packet. Table
  * 11. (Firmware rev >= v2.10)
+ * <p>
+ * The 480 payload bytes pack 320 12-bit points, two points per three bytes.
+ * Parsing is two-phase as for the 8-bit response: the header is parsed
+ * immediately and the points are unpacked on first access.
  *
  * @author Jesse Caulfield
- * @deprecated 04/29/14 - 8 bits provides sufficient resolution for our needs.
- * This response datagram is not supported in the AvcomSBS extended data
- * handling implementation.
  */
-public class Waveform12BitResponse extends ADatagram {
+public class Waveform12BitResponse extends AWaveformResponse {
 
   /**
    * The Datagram type.
@@ -62,250 +58,129 @@ public class Waveform12BitResponse extends ADatagram {
    * points. This is used internally and by the AvcomSBS to create a piecewise
    * SettingsRequest set.
    */
-  private static final int DATAGRAM_PAYLOAD_LENGTH = 480;
-
-  /**
-   * Indicator that the sensor detected saturation while reading data for this
-   * waveform.
-   */
-  private boolean saturated = false;
-  /**
-   * The Product ID. Byte #484.
-   */
-  private ProductID productId;
-  /**
-   * The center frequency (MHz). Byte #485-488.
-   */
-  private double centerFrequency;
-  /**
-   * The waveform span (MHz). Byte #489-492.
-   */
-  private double span;
-  /**
-   * The sensor reference level. Byte #493
-   */
-  private ReferenceLevel referenceLevel;
-  /**
-   * The waveform resolution bandwidth. Byte #494
-   */
-  private ResolutionBandwidth resolutionBandwidth;
-  /**
-   * The sensor input connector. Byte #495.
-   */
-  private int inputConnector;
-  /**
-   * The sensor internal extender. Byte #496-497.
-   */
-  private final byte[] internalExtender = new byte[2];
+  public static final int DATAGRAM_PAYLOAD_LENGTH = 480;
   /**
-   * The sensor external extender. Byte #498-499.
+   * The scaling factor (dB per 12-bit step). A 12-bit point is an 8-bit
+   * integer value plus a 4-bit (1/16) fraction, so each step is 1/16 of the
+   * 8-bit step.
    */
-  private final byte[] externalExtender = new byte[2];
+  private static final double DB_PER_12BIT_STEP = DB_PER_STEP / 16;
   /**
-   * The sensor LNB power for current RF input. Byte #500.
+   * The 12-bit point value corresponding to the 8-bit saturation level.
    */
-  private int lnbPower;
+  private static final int SATURATED_12BIT = SATURATED << 4;
+
   /**
-   * Reserved byte. Byte #501. Typically 0xff.
+   * Empty constructor. The data must be parsed separately.
    */
-  private int reserved01;
+  public Waveform12BitResponse() {
+    super(TYPE, DATAGRAM_PAYLOAD_LENGTH);
+  }
+
   /**
-   * Reserved byte. Byte #502. Typically 0xff.
+   * Construct a new Waveform12BitResponse instance, automatically parsing the
+   * data byte array.
+   *
+   * @param bytes the data byte array provided by an Avcom sensor
+   * @throws java.lang.Exception if the bytes fail to parse correctly.
    */
-  private int reserved02;
-
   public Waveform12BitResponse(byte[] bytes) throws Exception {
-    super(TYPE);
+    super(TYPE, DATAGRAM_PAYLOAD_LENGTH);
     this.parse(bytes);
   }
 
-  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
-  public double getCenterFrequency() {
-    return centerFrequency;
-  }
-
-  public byte[] getExternalExtender() {
-    return externalExtender;
-  }
-
-  public int getInputConnector() {
-    return inputConnector;
-  }
-
-  public byte[] getInternalExtender() {
-    return internalExtender;
-  }
-
-  public int getLnbPower() {
-    return lnbPower;
-  }
-
-  public ProductID getProductId() {
-    return productId;
-  }
-
-  public ReferenceLevel getReferenceLevel() {
-    return referenceLevel;
-  }
-
-  public ResolutionBandwidth getResolutionBandwidth() {
-    return resolutionBandwidth;
-  }
-
-  public double getSpan() {
-    return span;
-  }
-
-  public boolean isSaturated() {
-    return saturated;
-  }//</editor-fold>
-
   /**
-   * Parse the byte array returned from the sensor and use it populate internal
-   * fields.
+   * Decode the retained trace samples into a caller-supplied array.
    *
-   * @param bytes the byte array returned from the sensor
-   * @throws java.lang.Exception if the parse operation fails or encounters an
-   *                             error
+   * @param output       the destination power level array (dBm)
+   * @param outputOffset the index of the first output value
+   * @return true if any sample is at or above the saturation level
    */
   @Override
-  public void parse(byte[] bytes) throws Exception {
-    this.productId = ProductID.fromByteCode(bytes[484]);
-    this.centerFrequency = ByteUtility.intFrom4Bytes(bytes, 485) / 10000;
-    this.span = ByteUtility.intFrom4Bytes(bytes, 489) / 10000;
-    this.referenceLevel = ReferenceLevel.fromByteCode(bytes[493]);
-    this.resolutionBandwidth = ResolutionBandwidth.fromByteCode(bytes[494]);
-    this.inputConnector = bytes[495] - 9;
-    for (int i = 0; i < 2; i++) {
-      this.internalExtender[i] = bytes[496 + i];
-    }
-    for (int i = 0; i < 2; i++) {
-      this.externalExtender[i] = bytes[498 + i];
-    }
-    this.lnbPower = bytes[500];
-    this.reserved01 = bytes[501];
-    this.reserved02 = bytes[502];
-    /**
-     * Finally, copy the data bytes into the local array, converting from byte
-     * to units dB.
-     * <p>
-     * Developer note: Trace data is 479 12-bit points covering a span range
-     * centered on the center frequency. Scale the byte value to dB using the
-     * following equation: <code>dB = +0.20 * B + RL </code> where RL is the the
-     * current reference level plus 40. (e.g. -10 dB would be -50.
-     * <p>
-     * Per Table 11, waveform data (dBm) = 0.20 * (unsigned int) byteValue +
-     * referenceLevelOffset
-     * <p>
-     * If the sensor value is above 230 (90% of 255) then raise the 'saturated'
-     * flag. This indicates that the reference level should be reduced and the
-     * scan should be repeated.
-     */
-    this.data = new double[DATAGRAM_PAYLOAD_LENGTH];
-    /**
-     * 12-bit Waveform data cover the span range centered on the
-     * CenterFrequency. Each set of 3 nibbles is a data point. Nibbles 1 and 2
-     * are the integer value. The third nibble value divided by 16 is the
-     * fractional value added to the integer. The sum then scaled according to
-     * the waveform scaling function (per Table 11):
-     * <p>
-     * dB = +0.20 * X + RLOffset.
-     *
-     * @TODO: Extract 12 bit data.
-     *
-     * Extracting 12 bit data requires wading through the bit array 12 bits at a
-     * time. Java is unfortunately ill-suited to this task.
-     */
-//    for (int i = 0; i < DATAGRAM_PAYLOAD_LENGTH; i += 3) {
-//      int unsignedInt = bytes[i + 4] < 0 ? bytes[i + 4] + 255 : bytes[i + 4];
-//      this.data[i] = 0.20 * unsignedInt + this.referenceLevel.getWaveformOffset();
-//      /**
-//       * Note the saturation status if greater than 90%
-//       */
-//      if (unsignedInt >= 225) {
-//        this.saturated = true;
-//      }
-//      this.data[i] = bytes[i + 4];
-//    }
-    this.valid = true;
-//    ByteUtility.twoByteIntFromBytes(bytes, 1) == TRACE_RESPONSE_LENGTH_12BIT;
-
-    throw new Exception("Parsing 12-bit data not yet implemented.");
-
+  public boolean decodeInto(double[] output, int outputOffset) {
+    return decode(bytes, 4, output, outputOffset, WAVEFORM_POINTS, getReferenceLevel());
   }
 
   /**
-   * Convert this datagram into a byte array so it may be sent to the detector
+   * Unpack a single 12-bit waveform point. Points are packed in pairs into
+   * three bytes; see {@link #decode(byte[], int, double[], int, int, ReferenceLevel)}.
    *
-   * @return a byte array
+   * @param index the point index, from zero to 319
+   * @return the power level (dBm)
    */
   @Override
-  public byte[] serialize() {
-    return null;
+  public double getPower(int index) {
+    int j = 4 + 3 * (index >>> 1);
+    int b1 = bytes[j + 1] & 0xff;
+    int point = (index & 1) == 0
+                ? (bytes[j] & 0xff) << 4 | b1 >>> 4
+                : (b1 & 0x0f) << 8 | bytes[j + 2] & 0xff;
+    return DB_PER_12BIT_STEP * point + getReferenceLevel().getWaveformOffset();
   }
 
   /**
-   * Assemble a Map object from the waveform data.
+   * Unpack 12-bit waveform points into power levels (dBm).
    * <p>
-   * In a waveform, each sample byte can be described by it's own center
-   * frequency and span. Aggregated waveform data is stored at dBm values with
-   * centerFrequency indices as follows:
-   * <pre>
-   * | <----------------------- span s -------------------->   |
-   * | ^ startFrequency          ^ centerFrequency             |
-   * | [   ][   ][   ][   ][   ][   ][   ][   ] [   ][   ][   ]|
-   * |   ^cfi
+   * 12-bit Waveform data cover the span range centered on the
+   * CenterFrequency. Each set of 3 nibbles is a data point. Nibbles 1 and 2
+   * are the integer value. The third nibble value divided by 16 is the
+   * fractional value added to the integer. The sum then scaled according to
+   * the waveform scaling function (per Table 11):
    * <p>
-   * Where: startFrequency = centerFrequency - span / 2 i = byte count (from 0
-   * to length of sample and  cfi = resolutionBandwidth * i + startFrequency.
+   * dB = +0.20 * X + RLOffset.
+   * <p>
+   * Developer note: Rather than wading through the bit array 12 bits at a time
+   * each iteration reads three whole bytes and unpacks two points:
+   * <pre>
+   *   byte   [ b0      ][ b1      ][ b2      ]
+   *   nibble [ n0 ][ n1 ][ n2 ][ n3 ][ n4 ][ n5 ]
+   *   point  [ p0           ][ p1           ]
    * </pre>
+   * The 12-bit value (X * 16) is scaled directly, so the fractional nibble
+   * needs no separate handling.
    *
-   * @return a non-null TreeMap of center frequencies and corresponding power
-   *         level
-   */
-  public Map<Double, Double> getTraceMap() {
-// need to scale the data if necessary
-    Map<Double, Double> traceMap = new TreeMap<>();
-//    double[] waveformDBm = getTraceDBm();
-//double rbwMHz = resolutionBandwidth.getMHz();
-    double startMHz = centerFrequency - span / 2;
-    double cfi;
-
-    double xScale = span / data.length;
-    for (int i = 0; i < data.length; i++) {
-      cfi = i * xScale + startMHz;
-      traceMap.put(cfi, data[i]);
+   * @param bytes          the source byte array
+   * @param offset         the index of the first payload byte
+   * @param output         the destination power level array (dBm)
+   * @param outputOffset   the index of the first output value
+   * @param points         the number of points to decode (must be even)
+   * @param referenceLevel the reference level at which the samples were taken
+   * @return true if any point is at or above the saturation level
+   */
+  public static boolean decode(byte[] bytes, int offset, double[] output, int outputOffset, int points, ReferenceLevel referenceLevel) {
+    final double rlOffset = referenceLevel.getWaveformOffset();
+    int max = 0;
+    for (int i = 0, j = offset; i < points; i += 2, j += 3) {
+      int b1 = bytes[j + 1] & 0xff;
+      int p0 = (bytes[j] & 0xff) << 4 | b1 >>> 4;
+      int p1 = (b1 & 0x0f) << 8 | bytes[j + 2] & 0xff;
+      output[outputOffset + i] = DB_PER_12BIT_STEP * p0 + rlOffset;
+      output[outputOffset + i + 1] = DB_PER_12BIT_STEP * p1 + rlOffset;
+      max = Math.max(max, Math.max(p0, p1));
     }
-    return traceMap;
+    return max >= SATURATED_12BIT;
   }
 
   @Override
   public String toString() {
-    //    return ByteUtility.toString(datagramData, true);
     if (valid) {
-      //      double[] wave = this.getWaveformDBm();
-      //      String s = "";
-      //      for (int i = 0; i < wave.length; i++) {
-      //        s += "[" + wave[i] + "]";
-      //      }
       return "Trace Response Datagram 12-bit"
              + "\n index   name             value"
              + "\n --------------------------------"
              + "\n this.datagramType            " + type
              + "\n this.isValid                 " + valid
-             + "\n 4-483   trace length         " + (data != null ? data.length : "null")
-             + "\n 484     productId            " + productId
-             + "\n 485-488 centerFrequencyMHz:  " + centerFrequency
-             + "\n 489-492 spanMHz              " + span
-             + "\n 293     referenceLevel       " + referenceLevel
-             + "\n 494     resolutionBandwidth: " + resolutionBandwidth
-             + "\n 495     inputConnector       " + inputConnector
-             + "\n 496-497 internalExtender     0x " + ByteUtility.toString(internalExtender)
-             + "\n 498-499 externalExtender     0x " + ByteUtility.toString(externalExtender)
-             + "\n 500     lnbPower             0x" + Integer.toHexString(lnbPower)
-             + "\n 501     reserved01           0x" + Integer.toHexString(reserved01)
-             + "\n 502     reserved02           0x" + Integer.toHexString(reserved02) //              + "\n waveform data in DBM           " + s
-              ;
+             + "\n 4-483   trace length         " + WAVEFORM_POINTS
+             + "\n 484     productId            " + getProductId()
+             + "\n 485-488 centerFrequencyMHz:  " + getCenterFrequency()
+             + "\n 489-492 spanMHz              " + getSpan()
+             + "\n 493     referenceLevel       " + getReferenceLevel()
+             + "\n 494     resolutionBandwidth: " + getResolutionBandwidth()
+             + "\n 495     inputConnector       " + getInputConnector()
+             + "\n 496-497 internalExtender     0x " + ByteUtility.toString(getInternalExtender())
+             + "\n 498-499 externalExtender     0x " + ByteUtility.toString(getExternalExtender())
+             + "\n 500     lnbPower             0x" + Integer.toHexString(getLnbPower())
+             + "\n 501     reserved01           0x" + Integer.toHexString(getReserved01())
+             + "\n 502     reserved02           0x" + Integer.toHexString(getReserved02());
     } else {
       return "Trace Response datagram not initialized.";
     }
@@ -313,22 +188,10 @@ public class Waveform12BitResponse extends ADatagram {
 
   public String toStringBrief() {
     if (valid) {
-      return "TR12: CF [" + centerFrequency
-             + "] Span [" + span
-             + "] RL [" + referenceLevel
-             + "] RBW [" + resolutionBandwidth + "]";
-    } else {
-      return "Trace Response datagram not initialized.";
-    }
-  }
-
-  public String toStringData() {
-    if (valid) {
-      String s = "";
-      for (double element : data) {
-        s += "[" + element + "]";
-      }
-      return s;
+      return "TR12: CF [" + getCenterFrequency()
+             + "] Span [" + getSpan()
+             + "] RL [" + getReferenceLevel()
+             + "] RBW [" + getResolutionBandwidth() + "]";
     } else {
       return "Trace Response datagram not initialized.";
     }
@@ -25,23 +25,24 @@
  */
 package com.avcomofva.sbs.datagram.read;
 
-import com.avcomfova.sbs.datagram.ADatagram;
 import com.avcomofva.sbs.enumerated.DatagramType;
-import com.avcomofva.sbs.enumerated.ProductID;
 import com.avcomofva.sbs.enumerated.ReferenceLevel;
-import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
-import java.util.Map;
-import java.util.TreeMap;
 import javax.usb3.utility.ByteUtility;
 
 /**
  * Waveform Response Datagram from Avcom devices 8-bit waveform packet
  * <p>
  * Table 9. (Firmware rev >= v1.9)
+ * <p>
+ * Parsing is two-phase: the header fields (product, center frequency, span,
+ * reference level, RBW, etc.) are parsed immediately while the 320 trace
+ * samples are decoded on first access from the retained datagram bytes.
+ * Consumers that only need the header, or that forward the raw bytes via
+ * {@link #serialize()}, never pay for sample decoding.
  *
  * @author Jesse Caulfield
  */
-public class Waveform8BitResponse extends ADatagram {
+public class Waveform8BitResponse extends AWaveformResponse {
 
   /**
    * The Datagram type.
@@ -54,11 +55,19 @@ public class Waveform8BitResponse extends ADatagram {
    */
   private static final int DATAGRAM_LENGTH = 0x0155;
   /**
-   * The signal level above which the sensor should be considered saturated. If
-   * any data points are above this level then a flag is raised and the waveform
-   * should be resampled at a lower reference level.
+   * Pre-computed 256-entry decode tables, one per reference level (indexed by
+   * ReferenceLevel ordinal). Each table maps an unsigned 8-bit sample value
+   * directly to its power level in dBm.
    */
-  private static final int SATURATED = 230;
+  private static final double[][] DECODE_TABLES = new double[ReferenceLevel.values().length][256];
+
+  static {
+    for (ReferenceLevel referenceLevel : ReferenceLevel.values()) {
+      for (int b = 0; b < 256; b++) {
+        DECODE_TABLES[referenceLevel.ordinal()][b] = DB_PER_STEP * b + referenceLevel.getWaveformOffset();
+      }
+    }
+  }
 
   /**
    * 320 bytes. The length of the data portion of this RESPONSE message.
@@ -68,61 +77,11 @@ public class Waveform8BitResponse extends ADatagram {
    */
   public static final int DATAGRAM_PAYLOAD_LENGTH = 320;
 
-  /**
-   * Indicator that the sensor detected saturation while reading data for this
-   * waveform.
-   */
-  private boolean saturated = false; // did the sensor detect saturation?
-  /**
-   * The Product ID. Byte #324.
-   */
-  private ProductID productId;
-  /**
-   * The center frequency (MHz). Byte #325-328.
-   */
-  private double centerFrequency;
-  /**
-   * The waveform span (MHz). Byte #329-332.
-   */
-  private double span;
-  /**
-   * The sensor reference level. Byte #333
-   */
-  private ReferenceLevel referenceLevel;
-  /**
-   * The waveform resolution bandwidth. Byte #334.
-   */
-  private ResolutionBandwidth resolutionBandwidth;
-  /**
-   * The sensor input connector. Byte #335.
-   */
-  private int inputConnector;
-  /**
-   * The sensor internal extender. Byte #336-337.
-   */
-  private final byte[] internalExtender = new byte[2];
-  /**
-   * The sensor external extender. Byte #338-339.
-   */
-  private final byte[] externalExtender = new byte[2];
-  /**
-   * The sensor LNB power for current RF input. Byte #340.
-   */
-  private int lnbPower;
-  /**
-   * Reserved byte. Byte #341. Typically 0xff.
-   */
-  private int reserved01;
-  /**
-   * Reserved byte. Byte #342. Typically 0xff.
-   */
-  private int reserved02;
-
   /**
    * Empty constructor. The data must be parsed separately.
    */
   public Waveform8BitResponse() {
-    super(TYPE);
+    super(TYPE, DATAGRAM_PAYLOAD_LENGTH);
   }
 
   /**
@@ -133,180 +92,126 @@ public class Waveform8BitResponse extends ADatagram {
    * @throws java.lang.Exception if the bytes fail to parse correctly.
    */
   public Waveform8BitResponse(byte[] bytes) throws Exception {
-    super(TYPE);
+    super(TYPE, DATAGRAM_PAYLOAD_LENGTH);
     this.parse(bytes);
   }
 
-  //<editor-fold defaultstate="collapsed" desc="Getter Methods">
-  public double getCenterFrequency() {
-    return centerFrequency;
-  }
-
-  public byte[] getExternalExtender() {
-    return externalExtender;
-  }
-
-  public int getInputConnector() {
-    return inputConnector;
-  }
-
-  public byte[] getInternalExtender() {
-    return internalExtender;
-  }
-
-  public int getLnbPower() {
-    return lnbPower;
-  }
-
-  public ProductID getProductId() {
-    return productId;
+  /**
+   * Decode the retained trace samples into a caller-supplied array.
+   * <p>
+   * Developer note: Per Table 9: waveform data is 320 8-bit points covering a
+   * span range centered on the center frequency. Scale the byte value to dB
+   * using the following equation: <code>dB = +0.20 * B + RL </code> where RL
+   * is the the current reference level plus 40. (e.g. -10 dB would be -50.
+   *
+   * @param output       the destination power level array (dBm)
+   * @param outputOffset the index of the first output value
+   * @return true if any sample is at or above the saturation level
+   */
+  @Override
+  public boolean decodeInto(double[] output, int outputOffset) {
+    return decode(bytes, 4, output, outputOffset, DATAGRAM_PAYLOAD_LENGTH, getReferenceLevel());
   }
 
-  public ReferenceLevel getReferenceLevel() {
-    return referenceLevel;
+  /**
+   * Decode unsigned 8-bit waveform samples into power levels (dBm) using the
+   * pre-computed table for the indicated reference level.
+   * <p>
+   * The loop body is a table load and an integer max with no data-dependent
+   * branches so that the JIT may unroll it. Saturation is evaluated once from
+   * the maximum sample value after the loop.
+   *
+   * @param bytes          the source byte array
+   * @param offset         the index of the first sample in the source array
+   * @param output         the destination power level array (dBm)
+   * @param outputOffset   the index of the first output value
+   * @param length         the number of samples to decode
+   * @param referenceLevel the reference level at which the samples were taken
+   * @return true if any sample is at or above the saturation level
+   */
+  public static boolean decode(byte[] bytes, int offset, double[] output, int outputOffset, int length, ReferenceLevel referenceLevel) {
+    final double[] table = DECODE_TABLES[referenceLevel.ordinal()];
+    int max = 0;
+    for (int i = 0; i < length; i++) {
+      int unsignedInt = bytes[offset + i] & 0xff;
+      output[outputOffset + i] = table[unsignedInt];
+      max = Math.max(max, unsignedInt);
+    }
+    return max >= SATURATED;
   }
 
-  public ResolutionBandwidth getResolutionBandwidth() {
-    return resolutionBandwidth;
+  @Override
+  public double getPower(int index) {
+    return decode(getSample(index), getReferenceLevel());
   }
 
-  public double getSpan() {
-    return span;
+  /**
+   * Get the raw (unsigned 8-bit) value of a retained trace sample without
+   * decoding the trace.
+   *
+   * @param index the sample index, from zero to 319
+   * @return the unsigned sample value, from 0 to 255
+   */
+  public int getSample(int index) {
+    return bytes[4 + index] & 0xff;
   }
 
-  public boolean isSaturated() {
-    return saturated;
-  }//</editor-fold>
-
   /**
-   * Parse the byte array returned from the sensor and use it populate internal
-   * fields.
+   * Decode a single unsigned 8-bit waveform sample into a power level (dBm).
    *
-   * @param bytes the byte array returned from the sensor
-   * @throws java.lang.Exception if the parse operation fails or encounters an
-   *                             error
+   * @param sample         the unsigned sample value, from 0 to 255
+   * @param referenceLevel the reference level at which the sample was taken
+   * @return the power level (dBm)
    */
-  @Override
-  public void parse(byte[] bytes) throws Exception {
-    this.productId = ProductID.fromByteCode(bytes[324]);
-    this.centerFrequency = ByteUtility.intFrom4Bytes(bytes, 325) / 10000;
-    this.span = ByteUtility.intFrom4Bytes(bytes, 329) / 10000;
-    this.referenceLevel = ReferenceLevel.fromByteCode(bytes[333]);
-    this.resolutionBandwidth = ResolutionBandwidth.fromByteCode(bytes[334]);
-    this.inputConnector = bytes[335] - 9;
-    for (int i = 0; i < 2; i++) {
-      this.internalExtender[i] = bytes[336 + i];
-    }
-    for (int i = 0; i < 2; i++) {
-      this.externalExtender[i] = bytes[338 + i];
-    }
-    this.lnbPower = bytes[340];
-    this.reserved01 = bytes[341];
-    this.reserved02 = bytes[342];
-    /**
-     * Finally, copy the data bytes into the local array (of doubles),
-     * converting from byte to units dB.
-     * <p>
-     * Developer note: Per Table 9: waveform data is 320 8-bit points covering a
-     * span range centered on the center frequency. Scale the byte value to dB
-     * using the following equation: <code>dB = +0.20 * B + RL </code> where RL
-     * is the the current reference level plus 40. (e.g. -10 dB would be -50.
-     * <p>
-     * If the sensor value is above 230 (90% of 255) then raise the 'saturated'
-     * flag. This indicates to the controller that the reference level should be
-     * reduced and the waveform data should be resampled.
-     */
-    this.data = new double[DATAGRAM_PAYLOAD_LENGTH];
-    /**
-     * Error condition - if the ReferenceLevel was not read then FAIL parsing.
-     */
-    if (this.referenceLevel == null) {
-      throw new Exception("Invalid Reference Level value: " + bytes[333]);
-    }
-    for (int i = 0; i < DATAGRAM_PAYLOAD_LENGTH; i++) {
-      /**
-       * Upshift negative byte values when converting to an unsigned int.
-       */
-      int unsignedInt = bytes[i + 4] < 0 ? bytes[i + 4] + 255 : bytes[i + 4];
-      this.data[i] = 0.20 * unsignedInt + this.referenceLevel.getWaveformOffset();
-      /**
-       * Note the saturation status if greater than 90%.
-       */
-      if (unsignedInt >= SATURATED) {
-        this.saturated = true;
-      }
-    }
-    this.valid = true;
+  public static double decode(int sample, ReferenceLevel referenceLevel) {
+    return DECODE_TABLES[referenceLevel.ordinal()][sample];
   }
 
   /**
-   * Convert this datagram into a byte array.
+   * Encode a power level (dBm) into the nearest unsigned 8-bit waveform sample
+   * at a reference level. This is the inverse of
+   * {@link #decode(int, ReferenceLevel)}; levels outside the 8-bit range are
+   * clamped.
    *
-   * @return a byte array
+   * @param power          the power level (dBm)
+   * @param referenceLevel the reference level
+   * @return the unsigned sample value, from 0 to 255
    */
-  @Override
-  public byte[] serialize() {
-    return null;
+  public static int encode(double power, ReferenceLevel referenceLevel) {
+    long sample = Math.round((power - referenceLevel.getWaveformOffset()) / DB_PER_STEP);
+    return (int) Math.max(0, Math.min(255, sample));
   }
 
   /**
-   * Assemble a Map object from the waveform data. In a waveform, each sample
-   * byte can be described by it's own center frequency and span. Aggregated
-   * waveform data is stored at dBm values with centerFrequency indices.
-   * <pre>
-   * | <----------------------- span s --------------------> |
-   * | ^ startFrequency           ^ centerFrequency          |
-   * |[   ][   ][   ][   ][   ][   ][   ][   ][   ][   ][   ]|
-   * |  ^cf_i
-   * <p>
-   * Where:
-   *   startFrequency = centerFrequency - span / 2
-   *   i              = byte count (from 0 to length of sample
-   *   cf_i           = resolutionBandwidth * i + startFrequency
-   * </pre>
+   * Determine if an unsigned 8-bit waveform sample indicates saturation.
    *
-   * @return
+   * @param sample the unsigned sample value, from 0 to 255
+   * @return true if the sample is at or above the saturation level
    */
-  public Map<Double, Double> getTraceMap() {
-    // need to scale the data if necessary
-    Map<Double, Double> traceMap = new TreeMap<>();
-    double startMHz = centerFrequency - span / 2;
-    double cfi;
-
-    double xScale = span / data.length;
-    for (int i = 0; i < data.length; i++) {
-      cfi = i * xScale + startMHz;
-      traceMap.put(cfi, data[i]);
-    }
-    return traceMap;
+  public static boolean isSaturated(int sample) {
+    return sample >= SATURATED;
   }
 
   public String toStringFull() {
     //    return ByteUtility.toString(datagramData, true);
     if (valid) {
-      //      double[] wave = this.getWaveformDBm();
-      //      String s = "";
-      //      for (int i = 0; i < wave.length; i++) {
-      //        s += "[" + wave[i] + "]";
-      //      }
       return "Trace Response Datagram"
              + "\n index   name             value"
              + "\n --------------------------------"
              + "\n this.datagramType            " + type
              + "\n this.isValid                 " + valid
-             + "\n 4-324   trace length         " + (data != null ? data.length : "null")
-             + "\n 324     productId            " + productId
-             + "\n 325-328 centerFrequencyMHz:  " + centerFrequency
-             + "\n 329-332 spanMHz              " + span
-             + "\n 333     referenceLevel       " + referenceLevel
-             + "\n 334     resolutionBandwidth: " + resolutionBandwidth
-             + "\n 335     inputConnector       " + inputConnector
-             + "\n 336-337 internalExtender     0x " + ByteUtility.toString(internalExtender)
-             + "\n 338-339 externalExtender     0x " + ByteUtility.toString(externalExtender)
-             + "\n 340     lnbPower             0x" + Integer.toHexString(lnbPower)
-             + "\n 341     reserved01           0x" + Integer.toHexString(reserved01)
-             + "\n 342     reserved02           0x" + Integer.toHexString(reserved02) //              + "\n waveform data in DBM           " + s
-              ;
+             + "\n 4-324   trace length         " + DATAGRAM_PAYLOAD_LENGTH
+             + "\n 324     productId            " + getProductId()
+             + "\n 325-328 centerFrequencyMHz:  " + getCenterFrequency()
+             + "\n 329-332 spanMHz              " + getSpan()
+             + "\n 333     referenceLevel       " + getReferenceLevel()
+             + "\n 334     resolutionBandwidth: " + getResolutionBandwidth()
+             + "\n 335     inputConnector       " + getInputConnector()
+             + "\n 336-337 internalExtender     0x " + ByteUtility.toString(getInternalExtender())
+             + "\n 338-339 externalExtender     0x " + ByteUtility.toString(getExternalExtender())
+             + "\n 340     lnbPower             0x" + Integer.toHexString(getLnbPower())
+             + "\n 341     reserved01           0x" + Integer.toHexString(getReserved01())
+             + "\n 342     reserved02           0x" + Integer.toHexString(getReserved02());
     } else {
       return "Waveform Response datagram not initialized.";
     }
@@ -315,22 +220,10 @@ public class Waveform8BitResponse extends ADatagram {
   @Override
   public String toString() {
     if (valid) {
-      return "TR8: CF [" + centerFrequency
-             + "] Span [" + span
-             + "] RL [" + referenceLevel
-             + "] RBW [" + resolutionBandwidth + "]";
-    } else {
-      return "Trace Response datagram not initialized.";
-    }
-  }
-
-  public String toStringData() {
-    if (valid) {
-      String s = "";
-      for (double element : data) {
-        s += "[" + element + "]";
-      }
-      return s;
+      return "TR8: CF [" + getCenterFrequency()
+             + "] Span [" + getSpan()
+             + "] RL [" + getReferenceLevel()
+             + "] RBW [" + getResolutionBandwidth() + "]";
     } else {
       return "Trace Response datagram not initialized.";
     }
@@ -125,6 +125,31 @@ public class SettingsRequest extends ADatagram {
     return new SettingsRequest(1250, 1250, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
   }
 
+  /**
+   * Get a zero-span (fixed frequency) SettingsRequest instance. This configures
+   * the AVCOM sensor with the minimum (zero) span so that each waveform
+   * response measures the power at the center frequency. The AvcomSBS streams
+   * zero-span responses into a time series rather than assembling sweeps.
+   *
+   * @param centerFrequencyMHz  the monitored frequency (MHz)
+   * @param referenceLevel      the reference level (dB)
+   * @param resolutionBandwidth the resolution bandwidth (MHz)
+   * @return a zero-span SettingsRequest instance
+   */
+  public static SettingsRequest getZeroSpanInstance(double centerFrequencyMHz, ReferenceLevel referenceLevel, ResolutionBandwidth resolutionBandwidth) {
+    return new SettingsRequest(centerFrequencyMHz, 0, referenceLevel, resolutionBandwidth);
+  }
+
+  /**
+   * Determine if this is a zero-span (fixed frequency) request. A span below
+   * the 100 Hz encoding resolution is encoded as zero span.
+   *
+   * @return true if the encoded span is zero
+   */
+  public boolean isZeroSpan() {
+    return (long) (spanMHz * 10000) == 0;
+  }
+
   //<editor-fold defaultstate="collapsed" desc="Getter and Setter">
   public double getCenterFrequencyMHz() {
     return centerFrequencyMHz;
@@ -26,6 +26,7 @@
 package com.avcomofva.sbs.datagram.write;
 
 import com.avcomfova.sbs.datagram.ADatagram;
+import com.avcomofva.sbs.datagram.read.Waveform12BitResponse;
 import com.avcomofva.sbs.enumerated.DatagramType;
 import com.avcomofva.sbs.enumerated.StreamingType;
 import javax.usb3.utility.ByteUtility;
@@ -33,11 +34,10 @@ import javax.usb3.utility.ByteUtility;
 /**
  * Avcom 12-bit Waveform Datagram (Firmware >= v2.10). From Table 6: Waveform
  * Transmission Settings.
+ * <p>
+ * The device responds with a {@link Waveform12BitResponse}
  *
  * @author Jesse Caulfield
- * @deprecated 04/29/14 - 8 bits provides sufficient resolution for our needs.
- * The 12-bit trace response datagram is not supported in the AvcomSBS extended
- * data handling implementation.
  */
 public class Waveform12BitRequest extends ADatagram {
 
@@ -94,7 +94,15 @@ public enum DatagramType {
   /**
    * Key Bridge extended Trace data container.
    */
-  WAVEFORM((byte) 0xFF);
+  WAVEFORM((byte) 0xFF),
+  /**
+   * Key Bridge extended signal detection container.
+   */
+  SIGNAL_DETECTIONS((byte) 0xFE),
+  /**
+   * Key Bridge extended changed-bin (delta) trace container.
+   */
+  WAVEFORM_DELTA((byte) 0xFD);
 
   /**
    * The datagram ID (byte-code).
@@ -0,0 +1,55 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.enumerated;
+
+/**
+ * Enumerated policies for resolving the power level of a waveform bin that is
+ * covered by more than one sweep segment.
+ * <p>
+ * Segments are stitched onto the sweep frequency grid in sweep plan order
+ * (ascending center frequency), so every policy produces the same result for
+ * the same input.
+ *
+ * @author Key Bridge LLC
+ */
+public enum OverlapPolicy {
+
+  /**
+   * Keep the highest power level. Conservative for signal detection.
+   */
+  MAX,
+  /**
+   * Keep the arithmetic mean of the overlapping power levels (dBm).
+   */
+  MEAN,
+  /**
+   * Keep the sample nearest to the center of its segment. Samples near the
+   * segment edges are the most affected by IF filter roll-off. Ties keep the
+   * sample from the earlier segment.
+   */
+  PREFER_CENTER;
+
+}
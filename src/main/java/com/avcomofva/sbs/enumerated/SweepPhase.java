@@ -0,0 +1,74 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.enumerated;
+
+/**
+ * Enumerated phases of a sweep segment acquisition, in order. The AvcomSBS
+ * records the duration of each phase of each segment, and of the dispatch of
+ * each completed sweep, so that slow sweeps may be attributed to the USB link,
+ * the device or the host.
+ *
+ * @author Key Bridge LLC
+ */
+public enum SweepPhase {
+
+  /**
+   * Writing the segment SettingsRequest, including the settling delay.
+   */
+  SETTINGS_WRITE,
+  /**
+   * Writing the waveform request, including the settling delay.
+   */
+  WAVEFORM_REQUEST_WRITE,
+  /**
+   * From the end of the waveform request write to the first byte of the
+   * response. This is the device acquisition and USB latency.
+   */
+  FIRST_BYTE,
+  /**
+   * From the first to the last byte of the response. This is the USB transfer
+   * time.
+   */
+  LAST_BYTE,
+  /**
+   * Parsing the response bytes into a datagram.
+   */
+  PARSE,
+  /**
+   * Stitching the waveform response into the sweep Waveform.
+   */
+  STITCH,
+  /**
+   * Notifying the segment listeners of each segment.
+   */
+  DISPATCH,
+  /**
+   * Notifying the datagram listeners of each completed sweep. This is recorded
+   * once per sweep, not per segment.
+   */
+  SWEEP_DISPATCH;
+
+}
@@ -0,0 +1,75 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.utility;
+
+/**
+ * A time source providing both a monotonic nanosecond clock, for measuring
+ * durations, and a wall clock, for labeling measurements.
+ * <p>
+ * Device controllers and processing stages read the time through this
+ * interface so that simulations and tests may inject a {@link ManualClock}.
+ *
+ * @author Key Bridge LLC
+ */
+public interface IClock {
+
+  /**
+   * The system clock: {@link System#nanoTime()} and
+   * {@link System#currentTimeMillis()}.
+   */
+  public static final IClock SYSTEM = new IClock() {
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+      return "SYSTEM";
+    }
+  };
+
+  /**
+   * Get the current value of the monotonic clock. The value has no relation to
+   * the wall clock and is only meaningful when compared with another value
+   * from the same clock.
+   *
+   * @return the monotonic time (nanoseconds)
+   */
+  public long nanoTime();
+
+  /**
+   * Get the current wall clock time.
+   *
+   * @return the time (milliseconds since the epoch)
+   */
+  public long currentTimeMillis();
+}
@@ -0,0 +1,258 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets.
+ * <p>
+ * Values (nanoseconds) below 32 have a bucket each. Larger values are bucketed
+ * by their power of two, and each power of two is divided into 32 linear sub
+ * buckets, so the bucket width is at most 1/32 (about 3%) of the value. Values
+ * up to 2<sup>44</sup> ns (about 4.9 hours) are resolved; larger values are
+ * counted in the last bucket.
+ * <p>
+ * Recording is a bucket index computation and three atomic updates, with no
+ * locking or allocation, and may be called from any thread. Percentiles are
+ * read from a {@link Snapshot}.
+ *
+ * @author Key Bridge LLC
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of bits of sub bucket resolution within each power of two.
+   */
+  private static final int SUB_BUCKET_BITS = 5;
+  /**
+   * The number of sub buckets per power of two.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /**
+   * The largest resolved power of two.
+   */
+  private static final int MAX_EXPONENT = 44;
+  /**
+   * The number of buckets.
+   */
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  /**
+   * The bucket counts.
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  /**
+   * The number of recorded values.
+   */
+  private final LongAdder count = new LongAdder();
+  /**
+   * The sum of the recorded values (nanoseconds).
+   */
+  private final LongAdder sum = new LongAdder();
+  /**
+   * The largest recorded value (nanoseconds).
+   */
+  private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+  /**
+   * The smallest recorded value (nanoseconds).
+   */
+  private final LongAccumulator min = new LongAccumulator(Long::min, Long.MAX_VALUE);
+
+  /**
+   * Record a value. Negative values are recorded as zero.
+   *
+   * @param nanos the value (nanoseconds)
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+    min.accumulate(value);
+  }
+
+  /**
+   * Get the number of recorded values.
+   *
+   * @return the number of recorded values
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Take a snapshot of this histogram. Values recorded concurrently with the
+   * snapshot may or may not be included.
+   *
+   * @return a snapshot
+   */
+  public Snapshot getSnapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    return new Snapshot(copy, total, sum.sum(), total == 0 ? 0 : min.get(), max.get());
+  }
+
+  /**
+   * Remove all recorded values. Values recorded concurrently with the reset may
+   * or may not be removed.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.reset();
+    min.reset();
+  }
+
+  /**
+   * Get the bucket index of a (non-negative) value.
+   */
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Get the midpoint value of a bucket.
+   */
+  static long valueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + ((1L << shift) >>> 1);
+  }
+
+  @Override
+  public String toString() {
+    return getSnapshot().toString();
+  }
+
+  /**
+   * An immutable snapshot of a latency histogram.
+   */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long sum, long min, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.min = min;
+      this.max = max;
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Get the mean value.
+     *
+     * @return the mean value (nanoseconds), zero if there are no values
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the smallest value.
+     *
+     * @return the smallest value (nanoseconds), zero if there are no values
+     */
+    public long getMin() {
+      return min;
+    }
+
+    /**
+     * Get the largest value.
+     *
+     * @return the largest value (nanoseconds), zero if there are no values
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Get the value at a percentile. The value is the midpoint of the bucket
+     * holding the percentile, limited to the largest value.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value (nanoseconds), zero if there are no values
+     */
+    public long getPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long cumulative = 0;
+      for (int i = 0; i < counts.length; i++) {
+        cumulative += counts[i];
+        if (cumulative >= rank) {
+          return Math.max(min, Math.min(valueOf(i), max));
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count %d, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                           count, getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, max / 1e6);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.utility;
+
+/**
+ * A clock that only moves when told to. Used to drive simulations and tests
+ * with deterministic time. The wall clock and the monotonic clock advance
+ * together.
+ *
+ * @author Key Bridge LLC
+ */
+public class ManualClock implements IClock {
+
+  /**
+   * The monotonic time (nanoseconds).
+   */
+  private volatile long nanoTime;
+  /**
+   * The wall clock time (milliseconds since the epoch) at monotonic time zero.
+   */
+  private final long epochMillis;
+
+  /**
+   * Construct a new manual clock at monotonic time zero and wall clock time
+   * zero (the epoch).
+   */
+  public ManualClock() {
+    this(0);
+  }
+
+  /**
+   * Construct a new manual clock at monotonic time zero.
+   *
+   * @param epochMillis the wall clock time (milliseconds since the epoch) at
+   *                    monotonic time zero
+   */
+  public ManualClock(long epochMillis) {
+    this.epochMillis = epochMillis;
+  }
+
+  @Override
+  public long nanoTime() {
+    return nanoTime;
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return epochMillis + nanoTime / 1000000;
+  }
+
+  /**
+   * Advance the clock.
+   *
+   * @param nanos the time to advance (nanoseconds). Must not be negative.
+   */
+  public synchronized void advance(long nanos) {
+    if (nanos < 0) {
+      throw new IllegalArgumentException("A clock cannot go backwards: " + nanos);
+    }
+    nanoTime += nanos;
+  }
+
+  /**
+   * Advance the clock.
+   *
+   * @param millis the time to advance (milliseconds). Must not be negative.
+   */
+  public void advanceMillis(long millis) {
+    advance(millis * 1000000);
+  }
+
+  @Override
+  public String toString() {
+    return "ManualClock [" + nanoTime + " ns]";
+  }
+}
@@ -25,28 +25,28 @@
  */
 package com.avcomofva.utility;
 
-import java.util.Calendar;
-
 /**
  * A simple stopwatch timer utility that may be used to measure lap and elapsed
- * times in milliseconds or seconds.
+ * times in nanoseconds, milliseconds or seconds.
  * <p/>
- * This class makes use of the internal system clock. If the system clock is
- * updated while a stopwatch measurement is running then (perhaps obviously) the
- * reported elapsed times will be invalid.
+ * This class reads the monotonic clock of an {@link IClock} (by default
+ * {@link System#nanoTime()}), so measurements are not affected by updates to
+ * the system wall clock.
  * <p/>
  * @author Jesse Caulfield
  */
 public class StopWatch {
 
   /**
-   * The stopwatch start time, recorded in milliseconds on the current system
-   * clock.
+   * The clock.
+   */
+  private final IClock clock;
+  /**
+   * The stopwatch start time, recorded in nanoseconds on the monotonic clock.
    */
   private long startTime = 0;
   /**
-   * The stopwatch stop time, recorded in milliseconds on the current system
-   * clock.
+   * The stopwatch stop time, recorded in nanoseconds on the monotonic clock.
    */
   private long stopTime = 0;
   /**
@@ -56,7 +56,17 @@ public class StopWatch {
   private boolean running = false;
 
   public StopWatch() {
-    this.startTime = Calendar.getInstance().getTimeInMillis();
+    this(IClock.SYSTEM);
+  }
+
+  /**
+   * Construct a new, running stopwatch reading the indicated clock.
+   *
+   * @param clock the clock
+   */
+  public StopWatch(IClock clock) {
+    this.clock = clock;
+    this.startTime = clock.nanoTime();
     this.running = true;
   }
 
@@ -64,7 +74,7 @@ public class StopWatch {
    * Start the StopWatch timer.
    */
   public void startTimer() {
-    this.startTime = Calendar.getInstance().getTimeInMillis();
+    this.startTime = clock.nanoTime();
     this.running = true;
   }
 
@@ -74,9 +84,9 @@ public class StopWatch {
    * @return The (total) elapsed time in milliseconds.
    */
   public long stopTimer() {
-    this.stopTime = Calendar.getInstance().getTimeInMillis();
+    this.stopTime = clock.nanoTime();
     this.running = false;
-    return stopTime - startTime;
+    return (stopTime - startTime) / 1000000;
   }
 
   /**
@@ -85,7 +95,7 @@ public class StopWatch {
    * @return The lap time in milliseconds.
    */
   public int getLapTimeMillis() {
-    return (int) (Calendar.getInstance().getTimeInMillis() - startTime);
+    return (int) ((clock.nanoTime() - startTime) / 1000000);
   }
 
   /**
@@ -94,30 +104,36 @@ public class StopWatch {
    * @return The lap time in seconds.
    */
   public double getLapTimeSeconds() {
-    return (Calendar.getInstance().getTimeInMillis() - startTime) / 1000d;
+    return (clock.nanoTime() - startTime) / 1e9;
   }
 
   /**
-   * The elapsed time in milliseconds. This method STOPS the clock.
+   * The elapsed time in nanoseconds. This method STOPS the clock.
    * <p/>
-   * @return The (total) elapsed time in milliseconds.
+   * @return The (total) elapsed time in nanoseconds.
    */
-  public long getElapsedTimeMillis() {
+  public long getElapsedTimeNanos() {
     if (running) {
       stopTimer();
     }
     return stopTime - startTime;
   }
 
+  /**
+   * The elapsed time in milliseconds. This method STOPS the clock.
+   * <p/>
+   * @return The (total) elapsed time in milliseconds.
+   */
+  public long getElapsedTimeMillis() {
+    return getElapsedTimeNanos() / 1000000;
+  }
+
   /**
    * The elapsed time in seconds. This method STOPS the clock.
    * <p/>
    * @return The elapsed time in seconds.
    */
   public double getElapsedTimeSeconds() {
-    if (running) {
-      stopTimer();
-    }
-    return (stopTime - startTime) / 1000d;
+    return getElapsedTimeNanos() / 1e9;
   }
 }
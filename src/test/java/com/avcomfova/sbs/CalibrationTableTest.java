@@ -0,0 +1,126 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for amplitude calibration tables.
+ *
+ * @author Key Bridge LLC
+ */
+public class CalibrationTableTest {
+
+  private static final String TABLE = "# test table\n"
+                                      + "1000, 1.0\n"
+                                      + "2000, 3.0   # mid band\n"
+                                      + "\n"
+                                      + "3000, 2.0\n"
+                                      + "2, 1000, 5.0\n"
+                                      + "2, 3000, 7.0\n";
+
+  @Test
+  public void testInterpolation() throws Exception {
+    CalibrationTable table = CalibrationTable.load(new StringReader(TABLE), " 12345  ");
+    assertEquals("12345", table.getSerialNumber());
+    assertEquals(1.0, table.getCorrection(1, 500), 1e-9);
+    assertEquals(2.0, table.getCorrection(1, 1500), 1e-9);
+    assertEquals(3.0, table.getCorrection(1, 2000), 1e-9);
+    assertEquals(2.5, table.getCorrection(1, 2500), 1e-9);
+    assertEquals(2.0, table.getCorrection(1, 4000), 1e-9);
+    /**
+     * Input connector 2 has its own points.
+     */
+    assertEquals(6.0, table.getCorrection(2, 2000), 1e-9);
+  }
+
+  @Test
+  public void testGridCorrection() throws Exception {
+    CalibrationTable table = CalibrationTable.load(new StringReader(TABLE), "12345");
+    double[] correction = table.getCorrection(1, 500, 250, 15);
+    assertEquals(15, correction.length);
+    for (int i = 0; i < correction.length; i++) {
+      assertEquals(table.getCorrection(1, 500 + i * 250), correction[i], 1e-9);
+    }
+    /**
+     * The grid correction is cached per sweep plan.
+     */
+    assertSame(correction, table.getCorrection(1, 500, 250, 15));
+    assertNotSame(correction, table.getCorrection(2, 500, 250, 15));
+    table.addPoint(1, 2000, 4.0);
+    assertNotSame(correction, table.getCorrection(1, 500, 250, 15));
+  }
+
+  @Test
+  public void testEmptyTable() {
+    CalibrationTable table = new CalibrationTable("12345");
+    assertNull(table.getCorrection(1, 1000, 1, 10));
+    assertEquals(0, table.getCorrection(1, 1000), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidLine() throws Exception {
+    CalibrationTable.load(new StringReader("1000, 1.0, 2.0, 3.0\n"), "12345");
+  }
+
+  @Test
+  public void testLoadBySerialNumber() throws Exception {
+    Path directory = Files.createTempDirectory("calibration");
+    try {
+      Path file = directory.resolve("12345" + CalibrationTable.FILE_EXTENSION);
+      Files.write(file, TABLE.getBytes("UTF-8"));
+      assertNotNull(CalibrationTable.load(directory, "12345  "));
+      assertNull(CalibrationTable.load(directory, "99999"));
+      Files.delete(file);
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testWaveformCorrection() throws Exception {
+    CalibrationTable table = CalibrationTable.load(new StringReader(TABLE), "12345");
+    Waveform waveform = new Waveform(false);
+    waveform.initialize(1500, 1000, 1000, 100, 11, ReferenceLevel.MINUS_10, ResolutionBandwidth.ONE_MHZ);
+    for (int i = 0; i < 10; i++) {
+      waveform.setPower(i, -100);
+    }
+    waveform.addCorrection(table.getCorrection(1, waveform.getStartFrequency(), waveform.getStep(), waveform.size()));
+    double[] power = waveform.getData();
+    assertEquals(-99.0, power[0], 1e-9);
+    assertEquals(-98.0, power[5], 1e-9);
+    assertTrue(Double.isNaN(power[10]));
+  }
+}
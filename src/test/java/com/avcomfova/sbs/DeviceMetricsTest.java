@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.enumerated.ErrorType;
+import com.avcomofva.sbs.enumerated.SweepPhase;
+import com.avcomofva.utility.ManualClock;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the device metrics registry.
+ *
+ * @author Key Bridge LLC
+ */
+public class DeviceMetricsTest {
+
+  @Test
+  public void testSnapshot() {
+    ManualClock clock = new ManualClock();
+    DeviceMetrics metrics = new DeviceMetrics();
+    metrics.setClock(clock);
+    DeviceMetrics.Snapshot start = metrics.getSnapshot();
+    for (int sweep = 0; sweep < 10; sweep++) {
+      for (int segment = 0; segment < 4; segment++) {
+        metrics.recordWrite(18);
+        metrics.recordWrite(5);
+        metrics.recordRead(345);
+        metrics.recordSegment(25000000);
+        metrics.recordPhase(SweepPhase.FIRST_BYTE, 5000000);
+        clock.advanceMillis(25);
+      }
+      metrics.recordSweep(100000000);
+    }
+    metrics.recordError(ErrorType.NO_RESPONSE);
+    metrics.recordError(ErrorType.ERROR_RESPONSE);
+    metrics.recordError(ErrorType.ERROR_RESPONSE);
+    metrics.recordResync();
+
+    DeviceMetrics.Snapshot end = metrics.getSnapshot();
+    assertEquals(40, end.getDatagramsRead());
+    assertEquals(80, end.getDatagramsWritten());
+    assertEquals(40 * 345, end.getBytesRead());
+    assertEquals(40 * 23, end.getBytesWritten());
+    assertEquals(40, end.getSegments());
+    assertEquals(10, end.getSweeps());
+    assertEquals(1, end.getResyncs());
+    assertEquals(2, end.getErrorCount(ErrorType.ERROR_RESPONSE));
+    assertEquals(0, end.getErrorCount(ErrorType.USB));
+    assertEquals(3, end.getErrorCount());
+    assertEquals(25000000, end.getSegmentLatency().getPercentile(50), 25000000 / 32);
+    assertEquals(40, metrics.getPhaseLatency(SweepPhase.FIRST_BYTE).getCount());
+    /**
+     * One second of simulated time.
+     */
+    assertEquals(10, end.getSweepRate(start), 1e-9);
+    assertEquals(40, end.getSegmentRate(start), 1e-9);
+    /**
+     * Snapshots are immutable.
+     */
+    metrics.reset();
+    assertEquals(40, end.getSegments());
+    assertEquals(0, metrics.getSnapshot().getSegments());
+    assertEquals(0, metrics.getPhaseLatency(SweepPhase.FIRST_BYTE).getCount());
+  }
+}
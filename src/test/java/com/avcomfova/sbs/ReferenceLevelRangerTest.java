@@ -0,0 +1,95 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for per-segment reference level auto-ranging.
+ *
+ * @author Key Bridge LLC
+ */
+public class ReferenceLevelRangerTest {
+
+  /**
+   * Simulate a segment response at a reference level for a signal of the
+   * indicated power on a -100 dBm floor.
+   */
+  static Waveform8BitResponse response(double signal, ReferenceLevel referenceLevel) throws Exception {
+    int[] samples = new int[320];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = Waveform8BitResponse.encode(i == 160 ? signal : -100, referenceLevel);
+    }
+    return new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 320, referenceLevel, ResolutionBandwidth.ONE_MHZ, samples));
+  }
+
+  /**
+   * Run sweeps until the segment level is stable.
+   */
+  static ReferenceLevel settle(ReferenceLevelRanger ranger, SettingsRequest segment, double signal) throws Exception {
+    for (int sweep = 0; sweep < 10; sweep++) {
+      ReferenceLevel level = ranger.getReferenceLevel(segment);
+      if (ranger.update(segment, response(signal, level)) == level) {
+        return level;
+      }
+    }
+    throw new AssertionError("Reference level did not settle");
+  }
+
+  @Test
+  public void testRanging() throws Exception {
+    ReferenceLevelRanger ranger = new ReferenceLevelRanger();
+    SettingsRequest segment = new SettingsRequest(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    /**
+     * A -30 dBm signal saturates at -50 dBm RL (saturation at -44 dBm): step
+     * up to -30 dBm RL (saturation at -24 dBm).
+     */
+    assertEquals(ReferenceLevel.MINUS_30, settle(ranger, segment, -30));
+    assertEquals(ReferenceLevel.MINUS_30, ranger.getReferenceLevels().get(1000.0));
+    /**
+     * The signal drops: step down to the most sensitive level with 6 dB
+     * headroom (-70 dBm RL saturates at -64 dBm).
+     */
+    assertEquals(ReferenceLevel.MINUS_70, settle(ranger, segment, -75));
+    /**
+     * A signal just below saturation at -50 dBm RL does not step down.
+     */
+    assertEquals(ReferenceLevel.MINUS_50, settle(ranger, segment, -50));
+    assertEquals(ReferenceLevel.MINUS_50, settle(ranger, segment, -55));
+
+    SettingsRequest other = new SettingsRequest(1320, 320, ReferenceLevel.MINUS_10, ResolutionBandwidth.ONE_MHZ);
+    assertEquals(ReferenceLevel.MINUS_10, ranger.getReferenceLevel(other));
+    ranger.clear();
+    assertEquals(ReferenceLevel.MINUS_50, ranger.getReferenceLevel(segment));
+  }
+}
@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs;
+
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the zero-span time series ring buffer.
+ *
+ * @author Key Bridge LLC
+ */
+public class TimeSeriesBufferTest {
+
+  @Test
+  public void testRing() {
+    TimeSeriesBuffer buffer = new TimeSeriesBuffer(4);
+    for (int i = 0; i < 6; i++) {
+      buffer.add(1000 + i, -100 + i);
+    }
+    assertEquals(4, buffer.size());
+    assertEquals(6, buffer.getSequence());
+    assertEquals(2, buffer.getOldestSequence());
+    assertEquals(1002, buffer.getTimestamp(0));
+    assertEquals(-95, buffer.getPower(3), 0);
+    buffer.clear();
+    assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void testStreamingRead() {
+    TimeSeriesBuffer buffer = new TimeSeriesBuffer(8);
+    long[] timestamp = new long[5];
+    double[] power = new double[5];
+    long next = 0;
+    int total = 0;
+    for (int i = 0; i < 30; i++) {
+      buffer.add(i, i);
+      if (i % 3 == 2) {
+        int count = buffer.read(next, timestamp, power);
+        for (int j = 0; j < count; j++) {
+          assertEquals(next + j, timestamp[j]);
+          assertEquals(next + j, power[j], 0);
+        }
+        next += count;
+        total += count;
+      }
+    }
+    assertEquals(30, total);
+    assertEquals(0, buffer.read(next, timestamp, power));
+  }
+
+  @Test
+  public void testOverrunRead() {
+    TimeSeriesBuffer buffer = new TimeSeriesBuffer(8);
+    for (int i = 0; i < 20; i++) {
+      buffer.add(i, i);
+    }
+    long[] timestamp = new long[16];
+    double[] power = new double[16];
+    assertEquals(8, buffer.read(0, timestamp, power));
+    assertEquals(12, timestamp[0]);
+    assertEquals(19, power[7], 0);
+  }
+
+  @Test
+  public void testZeroSpanSettings() {
+    SettingsRequest settings = SettingsRequest.getZeroSpanInstance(1575.42, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    assertTrue(settings.isZeroSpan());
+    assertEquals(1575.42, settings.getStartFrequencyMHz(), 0);
+    assertFalse(SettingsRequest.getInstance().isZeroSpan());
+  }
+}
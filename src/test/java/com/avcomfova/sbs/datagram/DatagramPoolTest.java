@@ -0,0 +1,132 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for pooled, reference counted datagrams.
+ *
+ * @author Key Bridge LLC
+ */
+public class DatagramPoolTest {
+
+  @Test
+  public void testRecycleResponse() throws Exception {
+    DatagramPool pool = new DatagramPool();
+    /**
+     * Read into a buffer longer than the datagram, as the controller does.
+     */
+    byte[] buffer = new byte[1024];
+    byte[] frame = TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100));
+    System.arraycopy(frame, 0, buffer, 0, frame.length);
+
+    Waveform8BitResponse first = (Waveform8BitResponse) pool.parse(buffer, frame.length);
+    assertEquals(0.2 * 100 - 90, first.getData()[0], 1e-9);
+    assertEquals(1, pool.getOutstanding());
+    first.release();
+    assertEquals(0, pool.getOutstanding());
+
+    frame = TestFrames.waveform8Bit(1320, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(120));
+    System.arraycopy(frame, 0, buffer, 0, frame.length);
+    Waveform8BitResponse second = (Waveform8BitResponse) pool.parse(buffer, frame.length);
+    assertSame(first, second);
+    assertEquals(1, pool.getCreated());
+    assertFalse(second.isDecoded());
+    assertEquals(1320, second.getCenterFrequency(), 0);
+    assertEquals(0.2 * 120 - 90, second.getData()[319], 1e-9);
+    second.release();
+  }
+
+  @Test
+  public void testRejectShortFrame() throws Exception {
+    DatagramPool pool = new DatagramPool();
+    byte[] buffer = new byte[1024];
+    byte[] frame = TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100));
+    System.arraycopy(frame, 0, buffer, 0, frame.length);
+    pool.parse(buffer, frame.length).release();
+    /**
+     * Only the head of the second frame is read. The remainder of the buffer
+     * still holds the first frame trailer, which must not be parsed.
+     */
+    frame = TestFrames.waveform8Bit(1320, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(120));
+    System.arraycopy(frame, 0, buffer, 0, 100);
+    try {
+      pool.parse(buffer, 100);
+      fail("A short frame must be rejected");
+    } catch (Exception expected) {
+    }
+    assertEquals(0, pool.getOutstanding());
+  }
+
+  @Test
+  public void testReferenceCount() throws Exception {
+    DatagramPool pool = new DatagramPool();
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    Waveform waveform = pool.acquireWaveform(settings);
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    double[] data = waveform.getData();
+    /**
+     * A listener retains the waveform: the controller release must not recycle
+     * it.
+     */
+    waveform.retain();
+    waveform.release();
+    assertEquals(1, pool.getOutstanding());
+    waveform.release();
+    assertEquals(0, pool.getOutstanding());
+    try {
+      waveform.release();
+      fail("Double release must be rejected");
+    } catch (IllegalStateException expected) {
+    }
+    /**
+     * The recycled waveform is reset and reuses its power level array.
+     */
+    Waveform recycled = pool.acquireWaveform(settings);
+    assertSame(waveform, recycled);
+    assertSame(data, recycled.getData());
+    assertFalse(recycled.isValid());
+    assertNull(recycled.getReferenceLevel());
+    assertTrue(Double.isNaN(recycled.getPower(0)));
+    assertEquals(1, pool.checkLeaks());
+    recycled.release();
+  }
+
+  @Test
+  public void testUnpooledReleaseIsNoOp() throws Exception {
+    Waveform waveform = new Waveform();
+    waveform.release();
+    waveform.release();
+  }
+}
@@ -0,0 +1,219 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.OverlapPolicy;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the primitive-array Waveform representation.
+ *
+ * @author Key Bridge LLC
+ */
+public class WaveformTest {
+
+  @Test
+  public void testAddData() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    Waveform waveform = Waveform.getInstance(settings);
+    assertEquals(640, waveform.size());
+    assertEquals(680, waveform.getStartFrequency(), 0);
+    assertEquals(1, waveform.getStep(), 0);
+
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    assertTrue(Double.isNaN(waveform.getPowerAt(1100)));
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(120))));
+
+    assertEquals(640, waveform.size());
+    assertEquals(0.2 * 100 - 90, waveform.getPower(0), 1e-9);
+    assertEquals(0.2 * 120 - 90, waveform.getPowerAt(1100), 1e-9);
+    assertEquals(-1, waveform.indexOf(1400));
+
+    Map<Double, Double> trace = waveform.getTraceData();
+    assertEquals(640, trace.size());
+    assertEquals(0.2 * 120 - 90, trace.get(1100d), 1e-9);
+    double previous = Double.NEGATIVE_INFINITY;
+    for (Double frequency : trace.keySet()) {
+      assertTrue(frequency > previous);
+      previous = frequency;
+    }
+  }
+
+  @Test
+  public void testMixedReferenceLevel() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    Waveform waveform = Waveform.getInstance(settings);
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_20, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    assertEquals(ReferenceLevel.MINUS_20, waveform.getReferenceLevel());
+    assertEquals(0.2 * 100 - 90, waveform.getPower(0), 1e-9);
+    assertEquals(0.2 * 100 - 60, waveform.getPower(639), 1e-9);
+    assertTrue(waveform.isMixedReferenceLevel());
+    assertEquals(ReferenceLevel.MINUS_50, waveform.getReferenceLevel(0));
+    assertEquals(ReferenceLevel.MINUS_20, waveform.getReferenceLevel(639));
+    /**
+     * Growing below the first segment shifts the per-bin levels with the bins.
+     */
+    Waveform grown = TestFrames.waveform(ReferenceLevel.MINUS_20, TestFrames.flat(100), ReferenceLevel.MINUS_50, TestFrames.flat(100));
+    grown.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(520, 320, ReferenceLevel.MINUS_70, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    assertEquals(960, grown.size());
+    assertEquals(ReferenceLevel.MINUS_70, grown.getReferenceLevel(0));
+    assertEquals(ReferenceLevel.MINUS_20, grown.getReferenceLevel(320));
+    assertEquals(ReferenceLevel.MINUS_50, grown.getReferenceLevel(959));
+    assertEquals(ReferenceLevel.MINUS_20, grown.getReferenceLevel());
+    assertFalse(TestFrames.waveform(TestFrames.flat(100), false).isMixedReferenceLevel());
+
+    Waveform compact = Waveform.getInstance(settings, true);
+    compact.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    try {
+      compact.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_20, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+      fail("Compact waveforms require a single reference level");
+    } catch (Exception ex) {
+    }
+  }
+
+  @Test
+  public void testGrowWithoutSettings() throws Exception {
+    Waveform waveform = new Waveform();
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    assertEquals(640, waveform.size());
+    assertEquals(680, waveform.getStartFrequency(), 1e-9);
+    assertEquals(640, waveform.getTraceData().size());
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 960, ReferenceLevel.MINUS_30, ResolutionBandwidth.ONE_MHZ);
+    Waveform full = Waveform.getInstance(settings);
+    Waveform compact = Waveform.getInstance(settings, true);
+    int[] ramp = new int[320];
+    for (int i = 0; i < ramp.length; i++) {
+      ramp[i] = i % 256;
+    }
+    /**
+     * Leave the middle segment empty so that NaN bins are exercised.
+     */
+    for (double cf : new double[]{680, 1320}) {
+      byte[] frame = TestFrames.waveform8Bit(cf, 320, ReferenceLevel.MINUS_30, ResolutionBandwidth.ONE_MHZ, ramp);
+      full.addData(new Waveform8BitResponse(frame));
+      compact.addData(new Waveform8BitResponse(frame));
+    }
+    assertTrue(compact.isCompact());
+    assertEquals(full.size(), compact.size());
+    assertEquals(full.isSaturated(), compact.isSaturated());
+    assertArrayEquals(full.getData(), compact.getData(), 0);
+    assertArrayEquals(full.getData(), compact.getData(new double[compact.size()], 0), 0);
+    assertEquals(full.getTraceData(), compact.getTraceData());
+    assertEquals(255, compact.getSample(255));
+    assertEquals(-1, compact.getSample(400));
+    assertEquals(full.getPowerAt(1200), compact.getPowerAt(1200), 0);
+    assertEquals(full.toString(), compact.toString());
+  }
+
+  @Test
+  public void testCompactGrow() throws Exception {
+    Waveform compact = new Waveform(true);
+    compact.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    compact.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(60))));
+    assertEquals(640, compact.size());
+    assertEquals(680, compact.getStartFrequency(), 1e-9);
+    assertEquals(60, compact.getSample(0));
+    assertEquals(50, compact.getSample(639));
+    assertEquals(640, compact.getTraceData().size());
+  }
+
+  @Test
+  public void testOverlapPolicy() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    byte[] low = TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100));
+    byte[] middle = TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(120));
+    for (boolean compact : new boolean[]{false, true}) {
+      Map<OverlapPolicy, Waveform> waveforms = new EnumMap<>(OverlapPolicy.class);
+      for (OverlapPolicy policy : OverlapPolicy.values()) {
+        Waveform waveform = Waveform.getInstance(settings, compact);
+        waveform.setOverlapPolicy(policy);
+        waveform.addData(new Waveform8BitResponse(low));
+        waveform.addData(new Waveform8BitResponse(middle));
+        assertEquals(640, waveform.size());
+        assertEquals(0.2 * 100 - 90, waveform.getPowerAt(700), 1e-9);
+        assertEquals(0.2 * 120 - 90, waveform.getPowerAt(1100), 1e-9);
+        waveforms.put(policy, waveform);
+      }
+      assertEquals(0.2 * 120 - 90, waveforms.get(OverlapPolicy.MAX).getPowerAt(900), 1e-9);
+      assertEquals(0.2 * 110 - 90, waveforms.get(OverlapPolicy.MEAN).getPowerAt(900), 1e-9);
+      /**
+       * 900 MHz is sample 220 of the low segment and sample 60 of the middle
+       * segment; 990 MHz is sample 310 and sample 150.
+       */
+      assertEquals(0.2 * 100 - 90, waveforms.get(OverlapPolicy.PREFER_CENTER).getPowerAt(900), 1e-9);
+      assertEquals(0.2 * 120 - 90, waveforms.get(OverlapPolicy.PREFER_CENTER).getPowerAt(990), 1e-9);
+    }
+  }
+
+  @Test
+  public void testFractionalFrequency() throws Exception {
+    Waveform8BitResponse response = new Waveform8BitResponse(TestFrames.waveform8Bit(1000.25, 3.2, ReferenceLevel.MINUS_50, ResolutionBandwidth.TEN_KHZ, TestFrames.flat(100)));
+    assertEquals(1000.25, response.getCenterFrequency(), 1e-9);
+    assertEquals(3.2, response.getSpan(), 1e-9);
+    Waveform waveform = new Waveform();
+    waveform.addData(response);
+    assertEquals(320, waveform.size());
+    assertEquals(998.65, waveform.getStartFrequency(), 1e-9);
+  }
+
+  @Test
+  public void testAcquisitionTime() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    Waveform waveform = Waveform.getInstance(settings);
+    assertFalse(waveform.isTimestamped());
+    Waveform8BitResponse low = new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100)));
+    low.setAcquisitionTime(5000, 100, 5002, 2000100);
+    Waveform8BitResponse high = new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100)));
+    high.setAcquisitionTime(5002, 2000200, 5004, 4000200);
+    waveform.addData(low);
+    waveform.addData(high);
+    assertTrue(waveform.isTimestamped());
+    assertEquals(5000, waveform.getAcquisitionStartMillis());
+    assertEquals(100, waveform.getAcquisitionStartNanos());
+    assertEquals(5004, waveform.getAcquisitionEndMillis());
+    assertEquals(4000200, waveform.getAcquisitionEndNanos());
+
+    Waveform copy = new Waveform();
+    copy.copyFrom(waveform);
+    assertEquals(100, copy.getAcquisitionStartNanos());
+    assertEquals(4000200, copy.getAcquisitionEndNanos());
+  }
+}
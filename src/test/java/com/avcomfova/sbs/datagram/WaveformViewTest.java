@@ -0,0 +1,99 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.datagram;
+
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for read-only waveform views.
+ *
+ * @author Key Bridge LLC
+ */
+public class WaveformViewTest {
+
+  @Test
+  public void testView() throws Exception {
+    SettingsRequest settings = new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+    Waveform waveform = Waveform.getInstance(settings);
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(120))));
+
+    WaveformView view = waveform.getView();
+    assertSame(view, waveform.getView());
+    assertEquals(640, view.size());
+    assertEquals(680, view.getStartFrequency(), 0);
+    assertEquals(1320, view.getStopFrequency(), 0);
+    assertEquals(waveform.getPowerAt(1100), view.getPowerAt(1100), 0);
+
+    DoubleBuffer buffer = view.getBuffer();
+    assertTrue(buffer.isReadOnly());
+    try {
+      buffer.put(0, 1);
+      fail("View buffers must be read-only");
+    } catch (ReadOnlyBufferException expected) {
+    }
+    /**
+     * Relative reads on one buffer do not move another consumer's position.
+     */
+    buffer.get();
+    assertEquals(0, view.getBuffer().position());
+  }
+
+  @Test
+  public void testSlice() throws Exception {
+    Waveform waveform = new Waveform();
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    WaveformView view = waveform.getView();
+
+    WaveformView slice = view.sliceMHz(900, 909.5);
+    assertEquals(10, slice.size());
+    assertEquals(900, slice.getStartFrequency(), 1e-9);
+    assertEquals(waveform.getPowerAt(905), slice.getPowerAt(905), 0);
+    assertEquals(-1, slice.indexOf(920));
+
+    WaveformView nested = slice.slice(2, 4);
+    assertEquals(902, nested.getStartFrequency(), 1e-9);
+    assertEquals(2, nested.size());
+    assertEquals(0, view.sliceMHz(2000, 3000).size());
+
+    double[] copy = nested.copyTo(new double[3], 1);
+    assertEquals(waveform.getPowerAt(903), copy[2], 0);
+    /**
+     * Views share the backing array: no data is copied.
+     */
+    waveform.getData()[waveform.indexOf(903)] = 1;
+    assertEquals(1, nested.getPower(1), 0);
+  }
+}
@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Datagram;
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.SignalDetections;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the CA-CFAR signal detector.
+ *
+ * @author Key Bridge LLC
+ */
+public class CfarDetectorTest {
+
+  /**
+   * Add signals to a floor of raw sample 50.
+   *
+   * @param signals triples of bin from (inclusive), bin to (exclusive) and raw
+   *                sample value
+   */
+  static Waveform sweep(int... signals) throws Exception {
+    int[] samples = TestFrames.flat(50);
+    for (int s = 0; s < signals.length; s += 3) {
+      for (int i = signals[s]; i < signals[s + 1]; i++) {
+        samples[i] = signals[s + 2];
+      }
+    }
+    return TestFrames.waveform(samples, true);
+  }
+
+  @Test
+  public void testDetect() throws Exception {
+    CfarDetector detector = new CfarDetector(8, 2);
+    List<IDatagram> published = new ArrayList<>();
+    detector.addListener(published::add);
+    /**
+     * A 3 bin signal 20 dB up, a single bin 12 dB up at the sweep edge, and a
+     * single bin 5 dB up (below the 10 dB threshold).
+     */
+    detector.onDatagram(sweep(100, 103, 150, 200, 201, 75, 319, 320, 110));
+    assertEquals(1, published.size());
+    SignalDetections detections = (SignalDetections) published.get(0);
+    assertEquals(2, detections.size());
+    assertEquals(939.5, detections.getStartFrequency(0), 1e-9);
+    assertEquals(942.5, detections.getStopFrequency(0), 1e-9);
+    assertEquals(940, detections.getPeakFrequency(0), 1e-9);
+    assertEquals(-60, detections.getPeakPower(0), 1e-9);
+    assertEquals(10 * Math.log10(3e-6), detections.getIntegratedPower(0), 1e-9);
+    assertEquals(1159, detections.getPeakFrequency(1), 1e-9);
+
+    detector.setThreshold(15);
+    detector.setPassThrough(true);
+    detector.onDatagram(sweep(100, 103, 150, 319, 320, 110));
+    assertEquals(3, published.size());
+    assertEquals(1, detections.size());
+    assertTrue(published.get(2) instanceof Waveform);
+  }
+
+  @Test
+  public void testUnfilledBins() throws Exception {
+    /**
+     * A 960 MHz sweep with the middle segment missing. Bin 318, 8 dB up, is
+     * next to the unfilled bins: its right training cells are all NaN and must
+     * not dilute the noise estimate.
+     */
+    Waveform waveform = Waveform.getInstance(new SettingsRequest(1000, 960, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ));
+    int[] samples = TestFrames.flat(50);
+    samples[318] = 90;
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(680, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, samples)));
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1320, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    assertTrue(Double.isNaN(waveform.getPower(330)));
+    assertEquals(0, new CfarDetector(8, 2).detect(waveform).size());
+    CfarDetector detector = new CfarDetector(8, 2);
+    detector.setThreshold(5);
+    SignalDetections detections = detector.detect(waveform);
+    assertEquals(1, detections.size());
+    assertEquals(838, detections.getPeakFrequency(0), 1e-9);
+  }
+
+  @Test
+  public void testSerialize() throws Exception {
+    SignalDetections detections = new CfarDetector(8, 2).detect(sweep(100, 103, 150, 250, 252, 130));
+    assertEquals(2, detections.size());
+    byte[] bytes = detections.serialize();
+    assertEquals(7 + 2 * 16, bytes.length);
+    SignalDetections copy = (SignalDetections) Datagram.getInstance(bytes);
+    assertEquals(2, copy.size());
+    for (int i = 0; i < 2; i++) {
+      assertEquals(detections.getStartFrequency(i), copy.getStartFrequency(i), 1e-4);
+      assertEquals(detections.getStopFrequency(i), copy.getStopFrequency(i), 1e-4);
+      assertEquals(detections.getPeakFrequency(i), copy.getPeakFrequency(i), 1e-4);
+      assertEquals(detections.getPeakPower(i), copy.getPeakPower(i), 0.01);
+      assertEquals(detections.getIntegratedPower(i), copy.getIntegratedPower(i), 0.01);
+    }
+  }
+}
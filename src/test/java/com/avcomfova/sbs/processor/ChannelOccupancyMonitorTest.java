@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the channel occupancy monitor.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelOccupancyMonitorTest {
+
+  /**
+   * Raise the bins from (inclusive) to (exclusive) of a -80 dBm floor to -60
+   * dBm.
+   */
+  static Waveform sweep(int from, int to) throws Exception {
+    int[] samples = TestFrames.flat(50);
+    for (int i = from; i < to; i++) {
+      samples[i] = 150;
+    }
+    return TestFrames.waveform(samples, false);
+  }
+
+  @Test
+  public void testOccupancy() throws Exception {
+    ChannelOccupancyMonitor monitor = new ChannelOccupancyMonitor(Arrays.asList(
+      new Channel("A", 940, 10),
+      new Channel("B", 1040, 0.5),
+      new Channel("C", 2000, 10)));
+    monitor.onDatagram(sweep(95, 106));
+    assertEquals(-80, monitor.getNoiseFloor(), 1e-9);
+    monitor.onDatagram(sweep(0, 0));
+    monitor.onDatagram(sweep(95, 100));
+    monitor.onDatagram(sweep(95, 106));
+
+    List<ChannelOccupancy> occupancy = monitor.getOccupancy();
+    ChannelOccupancy a = occupancy.get(0);
+    assertEquals(4, a.getSweepCount());
+    /**
+     * Half of channel A at -60 dBm is 3 dB above -63 dBm; the threshold is
+     * -70 dBm.
+     */
+    assertEquals(3, a.getOccupiedCount());
+    assertEquals(0.75, a.getDutyCycle(), 1e-9);
+    assertEquals(-60, a.getMaxPower(), 1e-9);
+    assertEquals(-60, a.getLastPower(), 1e-9);
+    double partial = (5 * 1e-6 + 6 * 1e-8) / 11;
+    double mean = (1e-6 + 1e-8 + partial + 1e-6) / 4;
+    assertEquals(10 * Math.log10(mean), a.getMeanPower(), 1e-9);
+    assertTrue(a.getTimeAboveThreshold() > 0);
+
+    ChannelOccupancy b = occupancy.get(1);
+    assertEquals(4, b.getSweepCount());
+    assertEquals(0, b.getDutyCycle(), 1e-9);
+    assertEquals(-80, b.getMaxPower(), 1e-9);
+    assertEquals(0, b.getTimeAboveThreshold());
+
+    ChannelOccupancy c = occupancy.get(2);
+    assertEquals(0, c.getSweepCount());
+    assertTrue(Double.isNaN(c.getMeanPower()));
+
+    monitor.setThreshold(30);
+    monitor.clear();
+    monitor.onDatagram(sweep(95, 106));
+    assertEquals(0, monitor.getOccupancy().get(0).getOccupiedCount());
+  }
+}
@@ -0,0 +1,94 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the channel power engine.
+ *
+ * @author Key Bridge LLC
+ */
+public class ChannelPowerEngineTest {
+
+  /**
+   * Set bin 100 (940 MHz) of a floor of raw sample 50 to the indicated raw
+   * sample.
+   */
+  static Waveform sweep(int sample, ResolutionBandwidth rbw) throws Exception {
+    int[] samples = TestFrames.flat(50);
+    samples[100] = sample;
+    return TestFrames.waveform(samples, false, ReferenceLevel.MINUS_50, rbw);
+  }
+
+  @Test
+  public void testFlat() throws Exception {
+    ChannelPowerEngine engine = new ChannelPowerEngine(Arrays.asList(new Channel("A", 940, 10), new Channel("B", 1158, 10)));
+    assertTrue(Double.isNaN(engine.getChannelPower().get(0).getPower()));
+    engine.onDatagram(sweep(50, ResolutionBandwidth.ONE_MHZ));
+    List<ChannelPower> list = engine.getChannelPower();
+    ChannelPower a = list.get(0);
+    /**
+     * Ten 1 MHz bins at -80 dBm (including two half bins at the edges).
+     */
+    assertEquals(-70, a.getPower(), 1e-9);
+    assertEquals(9.9, a.getOccupiedBandwidth(), 1e-9);
+    assertEquals(935.05, a.getOccupiedStart(), 1e-9);
+    assertEquals(0, a.getLowerAdjacentRatio(), 1e-9);
+    assertEquals(0, a.getUpperAdjacentRatio(), 1e-9);
+    /**
+     * Channel B extends past the end of the sweep.
+     */
+    assertTrue(Double.isNaN(list.get(1).getPower()));
+  }
+
+  @Test
+  public void testSignal() throws Exception {
+    ChannelPowerEngine engine = new ChannelPowerEngine(Arrays.asList(new Channel("A", 940, 10)));
+    engine.setAdjacentOffset(20);
+    engine.measure(sweep(150, ResolutionBandwidth.ONE_MHZ));
+    ChannelPower a = engine.getChannelPower().get(0);
+    double total = 9e-8 + 1e-6;
+    assertEquals(10 * Math.log10(total), a.getPower(), 1e-9);
+    assertEquals(10 * Math.log10(1e-7 / total), a.getLowerAdjacentRatio(), 1e-9);
+    assertTrue(a.getOccupiedBandwidth() < 9.9);
+    assertTrue(a.getOccupiedStart() < 939.5 && a.getOccupiedStop() > 940.5);
+    /**
+     * Bins measured at 300 kHz RBW each hold 1/0.3 of the RBW's worth of
+     * spectrum: the normalized channel power rises by 10 log10(1 / 0.3).
+     */
+    engine.measure(sweep(150, ResolutionBandwidth.THREE_HUNDRED_KHZ));
+    assertEquals(10 * Math.log10(total / 0.3), engine.getChannelPower().get(0).getPower(), 1e-9);
+  }
+}
@@ -0,0 +1,148 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Datagram;
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomfova.sbs.datagram.WaveformDelta;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the delta encoder and waveform reconstructor.
+ *
+ * @author Key Bridge LLC
+ */
+public class DeltaEncoderTest {
+
+  @Test
+  public void testEncode() throws Exception {
+    DeltaEncoder encoder = new DeltaEncoder();
+    encoder.setTolerance(0.5);
+    encoder.setKeyframeInterval(10);
+    WaveformReconstructor reconstructor = new WaveformReconstructor();
+    encoder.addListener(reconstructor);
+    Random random = new Random(41);
+    int[] samples = TestFrames.flat(50);
+    for (int s = 0; s < 25; s++) {
+      /**
+       * Mostly +/- 1 sample (0.2 dB) noise with a few large changes.
+       */
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = 50 + random.nextInt(3) - 1;
+      }
+      samples[random.nextInt(320)] = 150;
+      Waveform waveform = TestFrames.waveform(samples, false);
+      List<WaveformDelta> deltas = encoder.encode(waveform);
+      assertEquals(1, deltas.size());
+      WaveformDelta delta = deltas.get(0);
+      assertEquals(s % 10 == 0, delta.isKeyframe());
+      if (!delta.isKeyframe()) {
+        assertTrue(delta.size() < 20);
+      }
+      reconstructor.onDatagram(Datagram.getInstance(delta.serialize()));
+      Waveform rebuilt = reconstructor.getWaveform();
+      assertEquals(320, rebuilt.size());
+      assertEquals(waveform.getStartFrequency(), rebuilt.getStartFrequency(), 1e-12);
+      assertEquals(waveform.getStep(), rebuilt.getStep(), 1e-12);
+      assertEquals(ReferenceLevel.MINUS_50, rebuilt.getReferenceLevel());
+      for (int i = 0; i < 320; i++) {
+        assertEquals(waveform.getPower(i), rebuilt.getPower(i), 0.5 + 0.005);
+      }
+    }
+  }
+
+  @Test
+  public void testLoss() throws Exception {
+    DeltaEncoder encoder = new DeltaEncoder();
+    encoder.setKeyframeInterval(3);
+    WaveformReconstructor reconstructor = new WaveformReconstructor();
+    int[] samples = TestFrames.flat(50);
+    assertTrue(reconstructor.apply(encoder.encode(TestFrames.waveform(samples, false)).get(0)));
+    samples[10] = 100;
+    encoder.encode(TestFrames.waveform(samples, false));
+    /**
+     * The second datagram is lost: the third is dropped, the keyframe resyncs.
+     */
+    samples[20] = 100;
+    assertFalse(reconstructor.apply(encoder.encode(TestFrames.waveform(samples, false)).get(0)));
+    assertEquals(1, reconstructor.getDroppedCount());
+    WaveformDelta keyframe = encoder.encode(TestFrames.waveform(samples, false)).get(0);
+    assertTrue(keyframe.isKeyframe());
+    assertTrue(reconstructor.apply(keyframe));
+    assertEquals(TestFrames.waveform(samples, false).getPower(10), reconstructor.getWaveform().getPower(10), 1e-9);
+    assertEquals(TestFrames.waveform(samples, false).getPower(20), reconstructor.getWaveform().getPower(20), 1e-9);
+  }
+
+  @Test
+  public void testLargeSweep() throws Exception {
+    int size = 40000;
+    Waveform waveform = new Waveform();
+    waveform.initialize(1000, 400, 800, 0.01, size, ReferenceLevel.MINUS_50, ResolutionBandwidth.TEN_KHZ);
+    for (int i = 0; i < size; i++) {
+      waveform.setPower(i, -80 + (i % 7) * 0.1);
+    }
+    DeltaEncoder encoder = new DeltaEncoder();
+    WaveformReconstructor reconstructor = new WaveformReconstructor();
+    List<IDatagram> rebuilt = new ArrayList<>();
+    reconstructor.addListener(rebuilt::add);
+    List<byte[]> published = new ArrayList<>();
+    encoder.addListener(datagram -> published.add(datagram.serialize()));
+    /**
+     * The keyframe is split: a full keyframe datagram, then the remaining bins
+     * as a delta.
+     */
+    List<WaveformDelta> deltas = encoder.encode(waveform);
+    assertEquals(2, deltas.size());
+    assertTrue(deltas.get(0).isKeyframe());
+    assertTrue(deltas.get(0).isPartial());
+    assertEquals(WaveformDelta.MAX_KEYFRAME_BINS, deltas.get(0).size());
+    assertFalse(deltas.get(1).isKeyframe());
+    assertFalse(deltas.get(1).isPartial());
+    assertEquals(size - WaveformDelta.MAX_KEYFRAME_BINS, deltas.get(1).size());
+    encoder.requestKeyframe();
+    encoder.onDatagram(waveform);
+    assertEquals(2, published.size());
+    reconstructor.onDatagram(Datagram.getInstance(published.get(0)));
+    assertTrue(rebuilt.isEmpty());
+    reconstructor.onDatagram(Datagram.getInstance(published.get(1)));
+    assertEquals(1, rebuilt.size());
+    Waveform copy = reconstructor.getWaveform();
+    assertEquals(size, copy.size());
+    for (int i = 0; i < size; i += 997) {
+      assertEquals(waveform.getPower(i), copy.getPower(i), 0.005);
+    }
+    assertEquals(waveform.getPower(size - 1), copy.getPower(size - 1), 0.005);
+  }
+}
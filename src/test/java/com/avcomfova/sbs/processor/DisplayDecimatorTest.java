@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.enumerated.Pooling;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the display decimator.
+ *
+ * @author Key Bridge LLC
+ */
+public class DisplayDecimatorTest {
+
+  /**
+   * A -80 dBm floor with bin 105 at -60 dBm.
+   */
+  static Waveform sweep() throws Exception {
+    int[] samples = TestFrames.flat(50);
+    samples[105] = 150;
+    return TestFrames.waveform(samples, true);
+  }
+
+  @Test
+  public void testPooling() throws Exception {
+    Waveform max = new DisplayDecimator(32, Pooling.MAX).decimate(sweep());
+    assertEquals(32, max.size());
+    assertEquals(10, max.getStep(), 1e-9);
+    assertEquals(844.5, max.getStartFrequency(), 1e-9);
+    assertEquals(-60, max.getPower(10), 1e-9);
+    assertEquals(-80, max.getPower(11), 1e-9);
+
+    assertEquals(-80, new DisplayDecimator(32, Pooling.MIN).decimate(sweep()).getPower(10), 1e-9);
+    assertEquals(-78, new DisplayDecimator(32, Pooling.MEAN).decimate(sweep()).getPower(10), 1e-9);
+
+    /**
+     * Uneven blocks: 320 bins in 100 points.
+     */
+    DisplayDecimator decimator = new DisplayDecimator(100, Pooling.MAX);
+    Waveform uneven = decimator.decimate(sweep());
+    int peaks = 0;
+    for (int j = 0; j < 100; j++) {
+      if (uneven.getPower(j) == -60) {
+        peaks++;
+        assertEquals(945, uneven.getFrequency(j), 2);
+      }
+    }
+    assertEquals(1, peaks);
+    double[] minimum = decimator.getMinimum(new double[100]);
+    assertEquals(-80, minimum[0], 1e-9);
+  }
+
+  @Test
+  public void testPassThrough() throws Exception {
+    DisplayDecimator decimator = new DisplayDecimator(320, Pooling.MAX);
+    List<IDatagram> published = new ArrayList<>();
+    decimator.addListener(published::add);
+    Waveform waveform = sweep();
+    decimator.onDatagram(TestFrames.waveform(ReferenceLevel.MINUS_50, TestFrames.flat(50), ReferenceLevel.MINUS_50, TestFrames.flat(50)));
+    decimator.onDatagram(waveform);
+    assertSame(waveform, published.get(1));
+    /**
+     * The envelope is that of the pass-through sweep, not of the larger sweep
+     * decimated before it.
+     */
+    assertEquals(-60, decimator.getMaximum(new double[320])[105], 1e-9);
+    assertEquals(-60, decimator.getMinimum(new double[320])[105], 1e-9);
+  }
+}
@@ -0,0 +1,121 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the rolling noise floor estimator.
+ *
+ * @author Key Bridge LLC
+ */
+public class NoiseFloorEstimatorTest {
+
+  /**
+   * The incremental percentile must match a sort of the window history.
+   */
+  @Test
+  public void testSlidingPercentile() throws Exception {
+    int window = 7;
+    double percentile = 0.3;
+    NoiseFloorEstimator estimator = new NoiseFloorEstimator(window, percentile);
+    Random random = new Random(39);
+    int[][] history = new int[40][];
+    for (int s = 0; s < history.length; s++) {
+      history[s] = new int[320];
+      for (int i = 0; i < 320; i++) {
+        history[s][i] = random.nextInt(256);
+      }
+      estimator.onDatagram(TestFrames.waveform(history[s], s % 2 == 0));
+      int count = Math.min(window, s + 1);
+      assertEquals(count, estimator.getCount());
+      double[] floor = estimator.getNoiseFloor();
+      double[] snr = estimator.getSnr();
+      for (int i = 0; i < 320; i += 17) {
+        int[] values = new int[count];
+        for (int k = 0; k < count; k++) {
+          values[k] = history[s - k][i];
+        }
+        Arrays.sort(values);
+        double expected = Waveform8BitResponse.decode(values[(int) Math.floor(percentile * (count - 1))], ReferenceLevel.MINUS_50);
+        assertEquals("sweep " + s + " bin " + i, expected, floor[i], 1e-9);
+        assertEquals(Waveform8BitResponse.decode(history[s][i], ReferenceLevel.MINUS_50) - expected, snr[i], 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    NoiseFloorEstimator estimator = new NoiseFloorEstimator(4);
+    estimator.onDatagram(TestFrames.waveform(TestFrames.flat(100), true));
+    estimator.onDatagram(TestFrames.waveform(TestFrames.flat(100), true));
+    Waveform other = new Waveform();
+    other.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1100, 320, ReferenceLevel.MINUS_10, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    estimator.onDatagram(other);
+    assertEquals(1, estimator.getCount());
+    assertEquals(Waveform8BitResponse.decode(50, ReferenceLevel.MINUS_10), estimator.getNoiseFloor(5), 1e-9);
+    assertEquals(0, estimator.getSnr()[5], 1e-9);
+  }
+
+  @Test
+  public void testReferenceLevelChange() throws Exception {
+    NoiseFloorEstimator estimator = new NoiseFloorEstimator(4);
+    estimator.onDatagram(TestFrames.waveform(TestFrames.flat(100), true));
+    estimator.onDatagram(TestFrames.waveform(TestFrames.flat(100), true));
+    /**
+     * -70 dBm at the MINUS_50 reference level is sample 0 at MINUS_30: the
+     * window is re-encoded, not reset.
+     */
+    estimator.onDatagram(TestFrames.waveform(TestFrames.flat(5), true, ReferenceLevel.MINUS_30, ResolutionBandwidth.ONE_MHZ));
+    assertEquals(3, estimator.getCount());
+    assertEquals(-70, estimator.getNoiseFloor(5), 1e-9);
+    assertEquals(1, estimator.getSnr()[5], 1e-9);
+  }
+
+  @Test
+  public void testMixedReferenceLevel() throws Exception {
+    NoiseFloorEstimator estimator = new NoiseFloorEstimator(4);
+    /**
+     * -40 dBm at MINUS_10 and -90 dBm at MINUS_70: the -90 dBm bins are below
+     * the MINUS_10 range and must be encoded at their own level.
+     */
+    for (int s = 0; s < 3; s++) {
+      estimator.onDatagram(TestFrames.waveform(ReferenceLevel.MINUS_10, TestFrames.flat(50), ReferenceLevel.MINUS_70, TestFrames.flat(100)));
+    }
+    assertEquals(3, estimator.getCount());
+    assertEquals(-40, estimator.getNoiseFloor(5), 1e-9);
+    assertEquals(-90, estimator.getNoiseFloor(400), 1e-9);
+  }
+}
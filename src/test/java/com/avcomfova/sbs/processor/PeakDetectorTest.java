@@ -0,0 +1,130 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the incremental peak detector.
+ *
+ * @author Key Bridge LLC
+ */
+public class PeakDetectorTest {
+
+  /**
+   * Add peaks, with shoulders, to a floor of raw sample 50.
+   *
+   * @param peaks pairs of bin index and raw sample value
+   */
+  static Waveform sweep(int... peaks) throws Exception {
+    int[] samples = TestFrames.flat(50);
+    for (int p = 0; p < peaks.length; p += 2) {
+      samples[peaks[p]] = peaks[p + 1];
+      samples[peaks[p] - 1] = (peaks[p + 1] + 50) / 2;
+      samples[peaks[p] + 1] = (peaks[p + 1] + 50) / 2;
+    }
+    return TestFrames.waveform(samples, false);
+  }
+
+  @Test
+  public void testDetect() throws Exception {
+    PeakDetector detector = new PeakDetector(10);
+    detector.setSpacing(10);
+    /**
+     * Peaks 100 and 105 are closer than the spacing; the bump at 250 is below
+     * the excursion (1 dB).
+     */
+    detector.onDatagram(sweep(100, 150, 105, 140, 200, 120, 250, 55));
+    List<Peak> peaks = detector.getPeaks();
+    assertEquals(2, peaks.size());
+    assertEquals(940, peaks.get(0).getFrequency(), 1e-9);
+    assertEquals(0.2 * 150 - 90, peaks.get(0).getAmplitude(), 1e-9);
+    assertEquals(1040, peaks.get(1).getFrequency(), 1e-9);
+
+    detector.setThreshold(-60);
+    detector.clear();
+    detector.onDatagram(sweep(100, 150, 200, 120));
+    assertEquals(1, detector.getPeaks().size());
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    PeakDetector detector = new PeakDetector(2);
+    detector.setSpacing(3);
+    detector.onDatagram(sweep(100, 150, 200, 120));
+    Peak first = detector.getPeaks().get(0);
+    /**
+     * The strong peak drifts by one bin; a third, weaker peak does not fit in
+     * the table; a stronger one replaces the weakest entry.
+     */
+    detector.onDatagram(sweep(101, 160, 200, 120, 300, 100));
+    List<Peak> peaks = detector.getPeaks();
+    assertEquals(2, peaks.size());
+    assertEquals(941, peaks.get(0).getFrequency(), 1e-9);
+    assertEquals(2, peaks.get(0).getHitCount());
+    assertEquals(first.getFirstSeen(), peaks.get(0).getFirstSeen());
+    assertEquals(0.2 * 160 - 90, peaks.get(0).getMaxAmplitude(), 1e-9);
+    assertEquals(1040, peaks.get(1).getFrequency(), 1e-9);
+
+    detector.onDatagram(sweep(101, 160, 300, 140));
+    peaks = detector.getPeaks();
+    assertEquals(1140, peaks.get(1).getFrequency(), 1e-9);
+    assertEquals(1, peaks.get(1).getHitCount());
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    PeakDetector detector = new PeakDetector(4);
+    detector.setExpiry(1);
+    detector.onDatagram(sweep(100, 150));
+    assertEquals(1, detector.getPeaks().size());
+    Thread.sleep(5);
+    detector.onDatagram(sweep());
+    assertTrue(detector.getPeaks().isEmpty());
+  }
+
+  @Test
+  public void testExpiryClockStep() throws Exception {
+    PeakDetector detector = new PeakDetector(4);
+    detector.setExpiry(1000);
+    Waveform first = sweep(100, 150);
+    first.setAcquisitionTime(10000, 0, 10000, 0);
+    detector.onDatagram(first);
+    /**
+     * The wall clock steps back but two seconds pass on the monotonic clock:
+     * the peak expires.
+     */
+    Waveform second = sweep();
+    second.setAcquisitionTime(5000, 2000000000L, 5000, 2000000000L);
+    detector.onDatagram(second);
+    assertTrue(detector.getPeaks().isEmpty());
+  }
+}
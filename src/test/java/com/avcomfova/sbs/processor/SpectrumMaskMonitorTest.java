@@ -0,0 +1,241 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the spectrum mask monitor.
+ *
+ * @author Key Bridge LLC
+ */
+public class SpectrumMaskMonitorTest {
+
+  /**
+   * Set the indicated bins of a floor of raw sample 50 to a raw sample.
+   */
+  static Waveform8BitResponse segment(int sample, int... bins) throws Exception {
+    int[] samples = TestFrames.flat(50);
+    for (int bin : bins) {
+      samples[bin] = sample;
+    }
+    return TestFrames.segment(samples, ReferenceLevel.MINUS_50);
+  }
+
+  @Test
+  public void testLimitLine() {
+    LimitLine line = new LimitLine()
+      .addSection(900, -70, 1000, -50)
+      .addSection(1000, 1100, -40);
+    assertEquals(-60, line.getLevel(950), 1e-9);
+    assertEquals(-40, line.getLevel(1050), 1e-9);
+    assertTrue(Double.isNaN(line.getLevel(850)));
+    assertTrue(Double.isNaN(line.getLevel(1150)));
+    LimitLine.Cursor cursor = line.cursor();
+    assertTrue(Double.isNaN(cursor.getLevel(850)));
+    assertEquals(-65, cursor.getLevel(925), 1e-9);
+    assertEquals(-40, cursor.getLevel(1100), 1e-9);
+    try {
+      line.addSection(1050, 1200, -30);
+      fail("Overlapping sections must be rejected");
+    } catch (IllegalArgumentException ex) {
+    }
+  }
+
+  @Test
+  public void testFireOnce() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    /**
+     * Two separate excursions (-60 dBm) raise one alarm each.
+     */
+    monitor.onDatagram(segment(150, 100, 101, 102, 200));
+    assertEquals(2, alarms.size());
+    MaskAlarm alarm = alarms.get(0);
+    assertEquals(MaskAlarm.Limit.UPPER, alarm.getLimit());
+    assertEquals(940, alarm.getStartFrequency(), 1e-9);
+    assertEquals(942, alarm.getStopFrequency(), 1e-9);
+    assertEquals(10, alarm.getMargin(), 1e-9);
+    assertEquals(1040, alarms.get(1).getFrequency(), 1e-9);
+    /**
+     * The same excursion in the next sweep does not alarm again.
+     */
+    monitor.onDatagram(segment(150, 100, 101, 102, 200));
+    assertEquals(2, alarms.size());
+    /**
+     * Widening an active excursion raises a new alarm for that run only.
+     */
+    monitor.onDatagram(segment(150, 100, 101, 102, 103, 200));
+    assertEquals(3, alarms.size());
+    assertEquals(943, alarms.get(2).getStopFrequency(), 1e-9);
+  }
+
+  @Test
+  public void testHysteresis() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(1, alarms.size());
+    /**
+     * Dropping 0.6 dB inside the limit stays within the 1 dB hysteresis: the
+     * return above the limit is the same excursion.
+     */
+    monitor.onDatagram(segment(97, 100));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(1, alarms.size());
+    /**
+     * Dropping to the floor clears the bin and re-arms it.
+     */
+    monitor.onDatagram(segment(50, 100));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(2, alarms.size());
+  }
+
+  @Test
+  public void testLowerLimit() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(null, new LimitLine().addSection(900, 1000, -75));
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    /**
+     * The floor (-80 dBm) is below the lower limit across the whole section;
+     * bins outside the section have no limit.
+     */
+    monitor.onDatagram(segment(150, 110));
+    assertEquals(2, alarms.size());
+    assertEquals(MaskAlarm.Limit.LOWER, alarms.get(0).getLimit());
+    assertEquals(900, alarms.get(0).getStartFrequency(), 1e-9);
+    assertEquals(949, alarms.get(0).getStopFrequency(), 1e-9);
+    assertEquals(951, alarms.get(1).getStartFrequency(), 1e-9);
+    assertEquals(1000, alarms.get(1).getStopFrequency(), 1e-9);
+    assertEquals(5, alarms.get(1).getMargin(), 1e-9);
+  }
+
+  @Test
+  public void testUpperAndLower() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70),
+                                                          new LimitLine().addSection(840, 1160, -85));
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(0, 200));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(2, alarms.size());
+    assertEquals(MaskAlarm.Limit.LOWER, alarms.get(0).getLimit());
+    assertEquals(1040, alarms.get(0).getFrequency(), 1e-9);
+    assertEquals(MaskAlarm.Limit.UPPER, alarms.get(1).getLimit());
+    assertEquals(940, alarms.get(1).getFrequency(), 1e-9);
+  }
+
+  @Test
+  public void testStaleSegmentState() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(150, 100));
+    monitor.onDatagram(TestFrames.waveform(TestFrames.flat(50), false));
+    monitor.onDatagram(segment(150, 100));
+    monitor.onDatagram(TestFrames.waveform(TestFrames.flat(50), false));
+    assertEquals(1, alarms.size());
+    /**
+     * A sweep without the 1000 MHz segment (e.g. new settings) discards its
+     * state: the excursion is new when the segment returns.
+     */
+    monitor.onDatagram(new Waveform8BitResponse(TestFrames.waveform8Bit(1400, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    monitor.onDatagram(TestFrames.waveform(TestFrames.flat(50), false));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(2, alarms.size());
+  }
+
+  @Test
+  public void testHoldOff() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    monitor.setHoldOff(60000);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(1, alarms.size());
+    /**
+     * Clear, then exceed again within the hold-off period: no alarm.
+     */
+    monitor.onDatagram(segment(50, 100));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(1, alarms.size());
+    monitor.setHoldOff(0);
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(2, alarms.size());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(150, 100));
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(1, alarms.size());
+    /**
+     * The continuing excursion alarms again after the state is cleared.
+     */
+    monitor.clear();
+    monitor.onDatagram(segment(150, 100));
+    assertEquals(2, alarms.size());
+  }
+
+  @Test
+  public void testHoldOffClockStep() throws Exception {
+    SpectrumMaskMonitor monitor = new SpectrumMaskMonitor(new LimitLine().addSection(840, 1160, -70), null);
+    monitor.setHoldOff(1000);
+    List<MaskAlarm> alarms = new ArrayList<>();
+    monitor.addAlarmListener(alarms::add);
+    monitor.onDatagram(segment(150, 100, 1000000, 0));
+    monitor.onDatagram(segment(50, 100, 1000000, 1000000000L));
+    /**
+     * The wall clock steps back but the hold-off has passed on the monotonic
+     * clock: the excursion alarms.
+     */
+    monitor.onDatagram(segment(150, 100, 0, 3000000000L));
+    assertEquals(2, alarms.size());
+    assertEquals(0, alarms.get(1).getTime());
+  }
+
+  /**
+   * Build a timestamped single-segment response.
+   */
+  static Waveform8BitResponse segment(int sample, int bin, long millis, long nanos) throws Exception {
+    Waveform8BitResponse segment = segment(sample, bin);
+    segment.setAcquisitionTime(millis, nanos, millis, nanos);
+    return segment;
+  }
+}
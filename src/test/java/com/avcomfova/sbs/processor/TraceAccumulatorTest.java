@@ -0,0 +1,153 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.IDatagramListener;
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming trace accumulators.
+ *
+ * @author Key Bridge LLC
+ */
+public class TraceAccumulatorTest {
+
+  /**
+   * Build a single-segment 320 bin Waveform at 1000 MHz with a flat trace.
+   *
+   * @param sample the raw 8-bit sample value of every bin
+   * @return a Waveform with power level 0.2 * sample - 90 dBm
+   */
+  static Waveform sweep(int sample) throws Exception {
+    return TestFrames.waveform(TestFrames.flat(sample), false);
+  }
+
+  static double dBm(int sample) {
+    return 0.2 * sample - 90;
+  }
+
+  @Test
+  public void testHold() throws Exception {
+    MaxHoldAccumulator max = new MaxHoldAccumulator();
+    MinHoldAccumulator min = new MinHoldAccumulator();
+    for (int sample : new int[]{100, 150, 50, 120}) {
+      max.onDatagram(sweep(sample));
+      min.onDatagram(sweep(sample));
+    }
+    assertEquals(4, max.getSweepCount());
+    assertEquals(dBm(150), max.getOutput().getPower(10), 1e-9);
+    assertEquals(dBm(50), min.getOutput().getPower(10), 1e-9);
+    max.clear();
+    max.onDatagram(sweep(80));
+    assertEquals(1, max.getSweepCount());
+    assertEquals(dBm(80), max.getOutput().getPower(10), 1e-9);
+  }
+
+  @Test
+  public void testExponentialAverage() throws Exception {
+    ExponentialAverageAccumulator average = new ExponentialAverageAccumulator(0.5);
+    average.onDatagram(sweep(100));
+    average.onDatagram(sweep(200));
+    assertEquals((dBm(100) + dBm(200)) / 2, average.getOutput().getPower(0), 1e-9);
+  }
+
+  @Test
+  public void testLinearAverage() throws Exception {
+    LinearAverageAccumulator average = new LinearAverageAccumulator(2);
+    average.onDatagram(sweep(100));
+    average.onDatagram(sweep(150));
+    double expected = 10 * Math.log10((Math.pow(10, dBm(100) / 10) + Math.pow(10, dBm(150) / 10)) / 2);
+    assertEquals(expected, average.getOutput().getPower(0), 1e-9);
+    /**
+     * The first sweep leaves the two-sweep window.
+     */
+    average.onDatagram(sweep(150));
+    assertEquals(dBm(150), average.getOutput().getPower(0), 1e-9);
+    average.onDatagram(sweep(150));
+    assertEquals(dBm(150), average.getOutput().getPower(319), 1e-9);
+  }
+
+  @Test
+  public void testSlidingMax() throws Exception {
+    SlidingMaxAccumulator max = new SlidingMaxAccumulator(2);
+    max.onDatagram(sweep(150));
+    max.onDatagram(sweep(100));
+    assertEquals(dBm(150), max.getOutput().getPower(0), 1e-9);
+    max.onDatagram(sweep(50));
+    assertEquals(dBm(100), max.getOutput().getPower(0), 1e-9);
+    max.onDatagram(sweep(60));
+    assertEquals(dBm(60), max.getOutput().getPower(0), 1e-9);
+  }
+
+  @Test
+  public void testAcquisitionTime() throws Exception {
+    MaxHoldAccumulator max = new MaxHoldAccumulator();
+    for (int i = 1; i <= 3; i++) {
+      Waveform waveform = sweep(100);
+      waveform.setAcquisitionTime(1000 * i, 2000 * i, 1000 * i + 10, 2000 * i + 10);
+      waveform.setElapsedTime(10 * i);
+      waveform.setTransactionId((long) i);
+      max.onDatagram(waveform);
+      assertEquals(1000 * i + 10, max.getOutput().getAcquisitionEndMillis());
+      assertEquals(2000 * i + 10, max.getOutput().getAcquisitionEndNanos());
+      assertEquals(10 * i, max.getOutput().getElapsedTime());
+      assertEquals(Long.valueOf(i), max.getOutput().getTransactionId());
+    }
+    assertEquals(3, max.getSweepCount());
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    final List<IDatagram> published = new ArrayList<>();
+    MaxHoldAccumulator max = new MaxHoldAccumulator();
+    max.addListener(new IDatagramListener() {
+      @Override
+      public void onDatagram(IDatagram datagram) {
+        published.add(datagram);
+      }
+    });
+    max.onDatagram(sweep(100));
+    max.onDatagram(sweep(110));
+    assertEquals(2, published.size());
+    assertSame(max.getOutput(), published.get(0));
+    /**
+     * A long publication period suppresses publication; sweeps are still
+     * accumulated.
+     */
+    max.setPublishPeriod(60000);
+    max.onDatagram(sweep(120));
+    max.onDatagram(sweep(130));
+    assertEquals(2, published.size());
+    assertEquals(dBm(130), max.getOutput().getPower(0), 1e-9);
+  }
+}
@@ -0,0 +1,145 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomfova.sbs.processor;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the waterfall ring buffer.
+ *
+ * @author Key Bridge LLC
+ */
+public class WaterfallBufferTest {
+
+  /**
+   * All bins at the indicated raw sample except bin 100, which is at sample +
+   * 10.
+   */
+  static Waveform sweep(int sample, boolean compact) throws Exception {
+    int[] samples = TestFrames.flat(sample);
+    samples[100] = sample + 10;
+    return TestFrames.waveform(samples, compact);
+  }
+
+  @Test
+  public void testMixedReferenceLevel() throws Exception {
+    WaterfallBuffer waterfall = new WaterfallBuffer(2);
+    waterfall.append(TestFrames.waveform(ReferenceLevel.MINUS_10, TestFrames.flat(50), ReferenceLevel.MINUS_70, TestFrames.flat(100)), 1000);
+    waterfall.append(TestFrames.waveform(ReferenceLevel.MINUS_50, TestFrames.flat(50), ReferenceLevel.MINUS_50, TestFrames.flat(50)), 2000);
+    waterfall.append(TestFrames.waveform(ReferenceLevel.MINUS_10, TestFrames.flat(50), ReferenceLevel.MINUS_70, TestFrames.flat(100)), 3000);
+    assertEquals(-80, waterfall.getRow(0, new double[640], 0)[400], 1e-9);
+    assertEquals(ReferenceLevel.MINUS_10, waterfall.getReferenceLevel(1));
+    double[] row = waterfall.getRow(1, new double[640], 0);
+    assertEquals(-40, row[5], 1e-9);
+    assertEquals(-90, row[400], 1e-9);
+    double[] column = new double[1];
+    waterfall.getColumn(400, 1, 2, column, null);
+    assertEquals(-90, column[0], 1e-9);
+  }
+
+  @Test
+  public void testRing() throws Exception {
+    WaterfallBuffer waterfall = new WaterfallBuffer(3);
+    for (int i = 0; i < 5; i++) {
+      waterfall.append(sweep(50 + i, i % 2 == 0), 1000 + i * 100);
+    }
+    assertEquals(3, waterfall.size());
+    assertEquals(320, waterfall.getWidth());
+    assertEquals(1200, waterfall.getTimestamp(0));
+    assertEquals(1400, waterfall.getTimestamp(2));
+    assertEquals(52, waterfall.getSample(0, 0));
+    assertEquals(64, waterfall.getSample(2, 100));
+
+    double[] row = waterfall.getRow(1, new double[320], 0);
+    assertEquals(Waveform8BitResponse.decode(53, ReferenceLevel.MINUS_50), row[0], 1e-9);
+    assertEquals(Waveform8BitResponse.decode(63, ReferenceLevel.MINUS_50), row[100], 1e-9);
+
+    assertEquals(0, waterfall.indexOf(0));
+    assertEquals(1, waterfall.indexOf(1250));
+    assertEquals(3, waterfall.indexOf(2000));
+
+    double[] power = new double[3];
+    long[] times = new long[3];
+    assertEquals(2, waterfall.getColumnMHz(940, 1250, 1500, power, times));
+    assertEquals(Waveform8BitResponse.decode(63, ReferenceLevel.MINUS_50), power[0], 1e-9);
+    assertEquals(Waveform8BitResponse.decode(64, ReferenceLevel.MINUS_50), power[1], 1e-9);
+    assertEquals(1300, times[0]);
+    assertEquals(0, waterfall.getColumnMHz(2000, 0, 2000, power, null));
+  }
+
+  @Test
+  public void testUnfilledBins() throws Exception {
+    WaterfallBuffer waterfall = new WaterfallBuffer(4);
+    for (boolean compact : new boolean[]{true, false}) {
+      /**
+       * Segments at 1000 and 1400 MHz leave the bins from 1160 to 1240 MHz
+       * without a sample.
+       */
+      Waveform waveform = new Waveform(compact);
+      waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+      waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1400, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+      waterfall.onDatagram(waveform);
+    }
+    int gap = waterfall.binOf(1200);
+    assertEquals(-1, waterfall.getSample(0, gap));
+    assertEquals(50, waterfall.getSample(0, 0));
+    double[] column = new double[2];
+    waterfall.getColumn(gap, 0, 2, column, null);
+    assertTrue(Double.isNaN(column[0]));
+    assertTrue(Double.isNaN(column[1]));
+    assertTrue(Double.isNaN(waterfall.getRow(1, new double[waterfall.getWidth()], 0)[gap]));
+  }
+
+  @Test
+  public void testTimestampStep() throws Exception {
+    WaterfallBuffer waterfall = new WaterfallBuffer(4);
+    waterfall.append(sweep(50, false), 2000);
+    waterfall.append(sweep(50, false), 1000);
+    waterfall.append(sweep(50, false), 3000);
+    assertEquals(2000, waterfall.getTimestamp(1));
+    assertEquals(2, waterfall.indexOf(2001));
+  }
+
+  @Test
+  public void testGridChange() throws Exception {
+    WaterfallBuffer waterfall = new WaterfallBuffer(4);
+    waterfall.onDatagram(sweep(50, true));
+    waterfall.onDatagram(sweep(50, false));
+    assertEquals(2, waterfall.size());
+    Waveform other = new Waveform();
+    other.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(2000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(50))));
+    waterfall.onDatagram(other);
+    assertEquals(1, waterfall.size());
+    assertEquals(1840, waterfall.getStartFrequency(), 1e-9);
+  }
+}
@@ -0,0 +1,188 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs;
+
+import com.avcomfova.sbs.datagram.IDatagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.DatagramType;
+import com.avcomofva.sbs.enumerated.ProductID;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+
+/**
+ * Utility to build synthetic Avcom response datagrams for unit tests that run
+ * without an attached device.
+ *
+ * @author Key Bridge LLC
+ */
+public class TestFrames {
+
+  /**
+   * Build a well formed 8-bit waveform response byte array.
+   *
+   * @param centerFrequencyMHz the center frequency (MHz)
+   * @param spanMHz            the span (MHz)
+   * @param referenceLevel     the reference level
+   * @param rbw                the resolution bandwidth
+   * @param samples            320 unsigned sample values [0, 255]
+   * @return a 344-byte waveform response datagram
+   */
+  public static byte[] waveform8Bit(double centerFrequencyMHz, double spanMHz, ReferenceLevel referenceLevel, ResolutionBandwidth rbw, int[] samples) {
+    byte[] b = new byte[344];
+    b[0] = IDatagram.STX;
+    b[1] = 0x01;
+    b[2] = 0x55;
+    b[3] = DatagramType.WAVEFORM_8BIT_RESPONSE.getByteCode();
+    for (int i = 0; i < 320; i++) {
+      b[4 + i] = (byte) samples[i];
+    }
+    writeTrailer(b, 324, centerFrequencyMHz, spanMHz, referenceLevel, rbw);
+    return b;
+  }
+
+  /**
+   * Build a well formed 12-bit waveform response byte array.
+   *
+   * @param centerFrequencyMHz the center frequency (MHz)
+   * @param spanMHz            the span (MHz)
+   * @param referenceLevel     the reference level
+   * @param rbw                the resolution bandwidth
+   * @param points             320 unsigned 12-bit point values [0, 4095]
+   * @return a 504-byte waveform response datagram
+   */
+  public static byte[] waveform12Bit(double centerFrequencyMHz, double spanMHz, ReferenceLevel referenceLevel, ResolutionBandwidth rbw, int[] points) {
+    byte[] b = new byte[504];
+    b[0] = IDatagram.STX;
+    b[1] = 0x01;
+    b[2] = (byte) 0xF5;
+    b[3] = DatagramType.WAVEFORM_12BIT_RESPONSE.getByteCode();
+    for (int i = 0, j = 4; i < 320; i += 2, j += 3) {
+      b[j] = (byte) (points[i] >>> 4);
+      b[j + 1] = (byte) ((points[i] & 0x0f) << 4 | points[i + 1] >>> 8);
+      b[j + 2] = (byte) points[i + 1];
+    }
+    writeTrailer(b, 484, centerFrequencyMHz, spanMHz, referenceLevel, rbw);
+    return b;
+  }
+
+  /**
+   * Build a 320 bin 8-bit waveform response segment from 840 to 1160 MHz (1
+   * MHz bins, 1 MHz RBW). At the MINUS_50 reference level a raw sample value
+   * is 0.2 * sample - 90 dBm; e.g. sample 50 is -80 dBm.
+   *
+   * @param samples        320 unsigned sample values [0, 255]
+   * @param referenceLevel the reference level
+   * @return a parsed waveform response
+   * @throws Exception if the response fails to parse
+   */
+  public static Waveform8BitResponse segment(int[] samples, ReferenceLevel referenceLevel) throws Exception {
+    return new Waveform8BitResponse(waveform8Bit(1000, 320, referenceLevel, ResolutionBandwidth.ONE_MHZ, samples));
+  }
+
+  /**
+   * Build a single segment 320 bin Waveform from 840 to 1160 MHz (1 MHz bins)
+   * at the MINUS_50 reference level and 1 MHz RBW.
+   *
+   * @param samples 320 unsigned sample values [0, 255]
+   * @param compact true to build a compact (raw sample) Waveform
+   * @return a new Waveform
+   * @throws Exception if the segment fails to parse
+   */
+  public static Waveform waveform(int[] samples, boolean compact) throws Exception {
+    return waveform(samples, compact, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+  }
+
+  /**
+   * Build a single segment 320 bin Waveform from 840 to 1160 MHz (1 MHz bins).
+   *
+   * @param samples        320 unsigned sample values [0, 255]
+   * @param compact        true to build a compact (raw sample) Waveform
+   * @param referenceLevel the reference level
+   * @param rbw            the resolution bandwidth
+   * @return a new Waveform
+   * @throws Exception if the segment fails to parse
+   */
+  public static Waveform waveform(int[] samples, boolean compact, ReferenceLevel referenceLevel, ResolutionBandwidth rbw) throws Exception {
+    Waveform waveform = new Waveform(compact);
+    waveform.addData(new Waveform8BitResponse(waveform8Bit(1000, 320, referenceLevel, rbw, samples)));
+    return waveform;
+  }
+
+  /**
+   * Build a two segment 640 bin Waveform from 680 to 1320 MHz (1 MHz bins) in
+   * which each segment may be taken at a different reference level, as with
+   * auto-ranging.
+   *
+   * @param lowerLevel   the reference level of the lower (840 MHz) segment
+   * @param lowerSamples the 320 samples of the lower segment
+   * @param upperLevel   the reference level of the upper (1160 MHz) segment
+   * @param upperSamples the 320 samples of the upper segment
+   * @return a new Waveform
+   * @throws Exception if a segment fails to parse
+   */
+  public static Waveform waveform(ReferenceLevel lowerLevel, int[] lowerSamples, ReferenceLevel upperLevel, int[] upperSamples) throws Exception {
+    Waveform waveform = new Waveform();
+    waveform.addData(new Waveform8BitResponse(waveform8Bit(840, 320, lowerLevel, ResolutionBandwidth.ONE_MHZ, lowerSamples)));
+    waveform.addData(new Waveform8BitResponse(waveform8Bit(1160, 320, upperLevel, ResolutionBandwidth.ONE_MHZ, upperSamples)));
+    return waveform;
+  }
+
+  /**
+   * Build an array of 320 samples all set to the indicated value.
+   *
+   * @param value the unsigned sample value [0, 255]
+   * @return a new sample array
+   */
+  public static int[] flat(int value) {
+    int[] samples = new int[320];
+    java.util.Arrays.fill(samples, value);
+    return samples;
+  }
+
+  /**
+   * Write the product, tuning and configuration trailer common to the 8-bit
+   * and 12-bit waveform responses.
+   */
+  static void writeTrailer(byte[] b, int offset, double centerFrequencyMHz, double spanMHz, ReferenceLevel referenceLevel, ResolutionBandwidth rbw) {
+    long cf = Math.round(centerFrequencyMHz * 10000);
+    long span = Math.round(spanMHz * 10000);
+    b[offset] = ProductID.RSA2500.getByteCode();
+    for (int i = 0; i < 4; i++) {
+      b[offset + 1 + i] = (byte) (cf >>> (24 - 8 * i));
+      b[offset + 5 + i] = (byte) (span >>> (24 - 8 * i));
+    }
+    b[offset + 9] = (byte) referenceLevel.getByteCode();
+    b[offset + 10] = (byte) rbw.getByteCode();
+    b[offset + 11] = 10;
+    b[offset + 17] = (byte) 0xff;
+    b[offset + 18] = (byte) 0xff;
+    b[b.length - 1] = IDatagram.ETX;
+  }
+
+  private TestFrames() {
+  }
+}
@@ -0,0 +1,102 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.benchmark;
+
+import com.avcomofva.sbs.datagram.read.AWaveformResponse;
+import com.avcomofva.sbs.datagram.read.Waveform12BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing a nibble-walking 12-bit waveform decoder (a literal
+ * reading of Table 11) to the three-byte unpacking decoder in
+ * {@link Waveform12BitResponse#decode}.
+ *
+ * @author Key Bridge LLC
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Waveform12BitDecodeBenchmark {
+
+  private final byte[] frame = new byte[504];
+  private final double[] output = new double[AWaveformResponse.WAVEFORM_POINTS];
+
+  @Setup
+  public void setup() {
+    new Random(0).nextBytes(frame);
+  }
+
+  /**
+   * The reference decoder. Each point is read as three 4-bit nibbles: nibbles
+   * 1 and 2 are the integer value and nibble 3 divided by 16 is the fraction.
+   *
+   * @param bytes          the source byte array
+   * @param offset         the index of the first payload byte
+   * @param output         the destination array (dBm)
+   * @param referenceLevel the reference level
+   * @return true if saturated
+   */
+  public static boolean referenceDecode(byte[] bytes, int offset, double[] output, ReferenceLevel referenceLevel) {
+    boolean saturated = false;
+    for (int i = 0; i < output.length; i++) {
+      int integer = nibble(bytes, offset, 3 * i) << 4 | nibble(bytes, offset, 3 * i + 1);
+      double x = integer + nibble(bytes, offset, 3 * i + 2) / 16d;
+      output[i] = 0.20 * x + referenceLevel.getWaveformOffset();
+      if (x >= 230) {
+        saturated = true;
+      }
+    }
+    return saturated;
+  }
+
+  private static int nibble(byte[] bytes, int offset, int index) {
+    int b = bytes[offset + index / 2] & 0xff;
+    return index % 2 == 0 ? b >>> 4 : b & 0x0f;
+  }
+
+  @Benchmark
+  public boolean nibbles() {
+    return referenceDecode(frame, 4, output, ReferenceLevel.MINUS_50);
+  }
+
+  @Benchmark
+  public boolean unpacked() {
+    return Waveform12BitResponse.decode(frame, 4, output, 0, output.length, ReferenceLevel.MINUS_50);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(Waveform12BitDecodeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
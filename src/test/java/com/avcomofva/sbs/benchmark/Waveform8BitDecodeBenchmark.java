@@ -0,0 +1,97 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.benchmark;
+
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing the per-sample arithmetic 8-bit waveform decoder to
+ * the table-driven decoder in {@link Waveform8BitResponse#decode}.
+ * <p>
+ * Run from the IDE or with
+ * <code>java -cp target/test-classes:... com.avcomofva.sbs.benchmark.Waveform8BitDecodeBenchmark</code>.
+ *
+ * @author Key Bridge LLC
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Waveform8BitDecodeBenchmark {
+
+  private final byte[] frame = new byte[344];
+  private final double[] output = new double[Waveform8BitResponse.DATAGRAM_PAYLOAD_LENGTH];
+
+  @Setup
+  public void setup() {
+    new Random(0).nextBytes(frame);
+  }
+
+  /**
+   * The reference decoder: the arithmetic scaling used before the decode
+   * tables were introduced (with the unsigned conversion corrected).
+   *
+   * @param bytes          the source byte array
+   * @param offset         the index of the first sample
+   * @param output         the destination array (dBm)
+   * @param referenceLevel the reference level
+   * @return true if saturated
+   */
+  public static boolean referenceDecode(byte[] bytes, int offset, double[] output, ReferenceLevel referenceLevel) {
+    boolean saturated = false;
+    for (int i = 0; i < output.length; i++) {
+      int unsignedInt = bytes[i + offset] < 0 ? bytes[i + offset] + 256 : bytes[i + offset];
+      output[i] = 0.20 * unsignedInt + referenceLevel.getWaveformOffset();
+      if (unsignedInt >= 230) {
+        saturated = true;
+      }
+    }
+    return saturated;
+  }
+
+  @Benchmark
+  public boolean arithmetic() {
+    return referenceDecode(frame, 4, output, ReferenceLevel.MINUS_50);
+  }
+
+  @Benchmark
+  public boolean table() {
+    return Waveform8BitResponse.decode(frame, 4, output, 0, output.length, ReferenceLevel.MINUS_50);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(Waveform8BitDecodeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.benchmark;
+
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.datagram.read.Waveform8BitResponse;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing the original frequency-keyed map merge of sweep
+ * segments to the fixed-grid stitching in {@link Waveform#addData}. The sweep
+ * is 16 overlapping segments of 320 points.
+ * <p>
+ * Run from the IDE or with
+ * <code>java -cp target/test-classes:... com.avcomofva.sbs.benchmark.WaveformStitchBenchmark</code>.
+ *
+ * @author Key Bridge LLC
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveformStitchBenchmark {
+
+  private static final int SEGMENTS = 16;
+
+  private final Waveform8BitResponse[] segments = new Waveform8BitResponse[SEGMENTS];
+  private SettingsRequest settings;
+
+  @Setup
+  public void setup() throws Exception {
+    Random random = new Random(0);
+    /**
+     * Segments advance by 300 MHz so that adjacent segments overlap by 20 bins.
+     */
+    for (int s = 0; s < SEGMENTS; s++) {
+      int[] samples = new int[320];
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = random.nextInt(200);
+      }
+      segments[s] = new Waveform8BitResponse(TestFrames.waveform8Bit(1160 + s * 300, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, samples));
+      segments[s].getData();
+    }
+    settings = new SettingsRequest(1000 + SEGMENTS * 150 + 10, SEGMENTS * 300 + 20, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ);
+  }
+
+  /**
+   * The original merge: each segment trace map is put into a sorted map keyed
+   * by frequency.
+   *
+   * @return the merged trace
+   */
+  @Benchmark
+  public Map<Double, Double> mapMerge() {
+    Map<Double, Double> traceData = new TreeMap<>();
+    for (Waveform8BitResponse segment : segments) {
+      traceData.putAll(segment.getTraceMap());
+    }
+    return traceData;
+  }
+
+  @Benchmark
+  public Waveform grid() throws Exception {
+    Waveform waveform = Waveform.getInstance(settings);
+    for (Waveform8BitResponse segment : segments) {
+      waveform.addData(segment);
+    }
+    return waveform;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(WaveformStitchBenchmark.class.getSimpleName()).build()).run();
+  }
+}
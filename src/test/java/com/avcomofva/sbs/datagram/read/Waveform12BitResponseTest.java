@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.datagram.read;
+
+import com.avcomfova.sbs.datagram.Datagram;
+import com.avcomfova.sbs.datagram.Waveform;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.benchmark.Waveform12BitDecodeBenchmark;
+import com.avcomofva.sbs.datagram.write.SettingsRequest;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for 12-bit waveform unpacking.
+ *
+ * @author Key Bridge LLC
+ */
+public class Waveform12BitResponseTest {
+
+  @Test
+  public void testDecodeMatchesReference() {
+    byte[] bytes = new byte[484];
+    new Random(12).nextBytes(bytes);
+    double[] expected = new double[320];
+    double[] actual = new double[320];
+    for (ReferenceLevel referenceLevel : ReferenceLevel.values()) {
+      boolean expectedSaturated = Waveform12BitDecodeBenchmark.referenceDecode(bytes, 4, expected, referenceLevel);
+      boolean actualSaturated = Waveform12BitResponse.decode(bytes, 4, actual, 0, 320, referenceLevel);
+      assertArrayEquals(expected, actual, 1e-9);
+      assertEquals(expectedSaturated, actualSaturated);
+    }
+  }
+
+  @Test
+  public void testParseAndStitch() throws Exception {
+    int[] points = new int[320];
+    for (int i = 0; i < 320; i++) {
+      points[i] = 16 * 100 + i % 16;
+    }
+    Waveform12BitResponse response = (Waveform12BitResponse) Datagram.getInstance(TestFrames.waveform12Bit(840, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, points));
+    assertEquals(840, response.getCenterFrequency(), 0);
+    assertFalse(response.isSaturated());
+    assertEquals(0.2 * (100 + 5 / 16d) - 90, response.getData()[5], 1e-9);
+
+    Waveform waveform = Waveform.getInstance(new SettingsRequest(1000, 640, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ));
+    waveform.addData(response);
+    waveform.addData(new Waveform8BitResponse(TestFrames.waveform8Bit(1160, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100))));
+    assertEquals(640, waveform.getTraceData().size());
+  }
+
+  @Test
+  public void testGetPower() throws Exception {
+    int[] points = new int[320];
+    for (int i = 0; i < 320; i++) {
+      points[i] = 7 * i;
+    }
+    Waveform12BitResponse response = new Waveform12BitResponse(TestFrames.waveform12Bit(1000, 0, ReferenceLevel.MINUS_30, ResolutionBandwidth.ONE_MHZ, points));
+    double[] data = response.getData().clone();
+    for (int i = 0; i < 320; i++) {
+      assertEquals(data[i], response.getPower(i), 1e-9);
+    }
+  }
+}
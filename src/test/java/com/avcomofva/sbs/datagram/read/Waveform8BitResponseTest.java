@@ -0,0 +1,105 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.sbs.datagram.read;
+
+import com.avcomfova.sbs.datagram.Datagram;
+import com.avcomofva.sbs.TestFrames;
+import com.avcomofva.sbs.benchmark.Waveform8BitDecodeBenchmark;
+import com.avcomofva.sbs.enumerated.ReferenceLevel;
+import com.avcomofva.sbs.enumerated.ResolutionBandwidth;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for 8-bit waveform decoding.
+ *
+ * @author Key Bridge LLC
+ */
+public class Waveform8BitResponseTest {
+
+  /**
+   * The table decoder must match the reference decoder for every byte value
+   * at every reference level.
+   */
+  @Test
+  public void testDecodeMatchesReference() {
+    byte[] bytes = new byte[256];
+    for (int i = 0; i < 256; i++) {
+      bytes[i] = (byte) i;
+    }
+    double[] expected = new double[256];
+    double[] actual = new double[256];
+    for (ReferenceLevel referenceLevel : ReferenceLevel.values()) {
+      boolean expectedSaturated = Waveform8BitDecodeBenchmark.referenceDecode(bytes, 0, expected, referenceLevel);
+      boolean actualSaturated = Waveform8BitResponse.decode(bytes, 0, actual, 0, 256, referenceLevel);
+      assertArrayEquals(expected, actual, 1e-12);
+      assertEquals(expectedSaturated, actualSaturated);
+    }
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    int[] samples = TestFrames.flat(200);
+    Waveform8BitResponse response = new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_10, ResolutionBandwidth.ONE_MHZ, samples));
+    assertFalse(response.isSaturated());
+    assertEquals(0.2 * 200 - 50, response.getData()[0], 1e-9);
+
+    samples[100] = 255;
+    response = new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_10, ResolutionBandwidth.ONE_MHZ, samples));
+    assertTrue(response.isSaturated());
+    assertEquals(0.2 * 255 - 50, response.getData()[100], 1e-9);
+  }
+
+  @Test
+  public void testLazyDecode() throws Exception {
+    byte[] frame = TestFrames.waveform8Bit(1000, 320, ReferenceLevel.MINUS_50, ResolutionBandwidth.ONE_MHZ, TestFrames.flat(100));
+    Waveform8BitResponse response = (Waveform8BitResponse) Datagram.getInstance(frame);
+    assertTrue(response.isValid());
+    assertEquals(1000, response.getCenterFrequency(), 0);
+    assertEquals(ReferenceLevel.MINUS_50, response.getReferenceLevel());
+    assertFalse(response.isDecoded());
+    assertSame(frame, response.serialize());
+    assertFalse(response.isDecoded());
+    assertEquals(0.2 * 100 - 90, response.getData()[0], 1e-9);
+    assertTrue(response.isDecoded());
+  }
+
+  @Test
+  public void testGetPower() throws Exception {
+    int[] samples = new int[320];
+    for (int i = 0; i < 320; i++) {
+      samples[i] = i % 256;
+    }
+    Waveform8BitResponse response = new Waveform8BitResponse(TestFrames.waveform8Bit(1000, 0, ReferenceLevel.MINUS_30, ResolutionBandwidth.ONE_MHZ, samples));
+    assertEquals(0.2 * 160 - 70, response.getPower(160), 1e-9);
+    assertFalse(response.isDecoded());
+    double[] data = response.getData();
+    for (int i = 0; i < 320; i++) {
+      assertEquals(data[i], response.getPower(i), 1e-9);
+    }
+  }
+}
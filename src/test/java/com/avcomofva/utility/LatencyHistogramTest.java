@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.utility;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the log-linear latency histogram.
+ *
+ * @author Key Bridge LLC
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketIndex() {
+    /**
+     * Bucket indexes are contiguous and every bucket midpoint maps back to its
+     * own bucket.
+     */
+    int previous = -1;
+    for (long value = 0; value < 1 << 16; value++) {
+      int index = LatencyHistogram.indexOf(value);
+      assertTrue(index == previous || index == previous + 1);
+      previous = index;
+    }
+    for (int index = 0; index < previous; index++) {
+      assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.valueOf(index)));
+    }
+    assertEquals(LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram.indexOf(1L << 50));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Random random = new Random(48);
+    long[] values = new long[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = 1000000 + random.nextInt(9000000);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(values.length, snapshot.getCount());
+    assertEquals(values[values.length - 1], snapshot.getMax());
+    for (double percentile : new double[]{1, 50, 90, 99, 100}) {
+      long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      assertEquals(expected, snapshot.getPercentile(percentile), expected / 32d);
+    }
+    histogram.reset();
+    assertEquals(0, histogram.getSnapshot().getCount());
+    assertEquals(0, histogram.getSnapshot().getPercentile(99));
+  }
+
+  @Test
+  public void testConcurrentRecording() throws Exception {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          histogram.record(i);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, histogram.getCount());
+    assertEquals(40000, histogram.getSnapshot().getCount());
+    assertEquals(9999, histogram.getSnapshot().getMax());
+  }
+}
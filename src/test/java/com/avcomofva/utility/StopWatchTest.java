@@ -0,0 +1,69 @@
+/* 
+ * Copyright (c) 2017, Key Bridge
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.avcomofva.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the stopwatch and manual clock.
+ *
+ * @author Key Bridge LLC
+ */
+public class StopWatchTest {
+
+  @Test
+  public void testManualClock() {
+    ManualClock clock = new ManualClock(1000);
+    StopWatch stopwatch = new StopWatch(clock);
+    clock.advance(1500000);
+    assertEquals(1, stopwatch.getLapTimeMillis());
+    clock.advanceMillis(2);
+    assertEquals(3500000, stopwatch.getElapsedTimeNanos());
+    assertEquals(3, stopwatch.getElapsedTimeMillis());
+    /**
+     * The elapsed time is fixed once the stopwatch is stopped.
+     */
+    clock.advanceMillis(10);
+    assertEquals(0.0035, stopwatch.getElapsedTimeSeconds(), 1e-12);
+    assertEquals(1013, clock.currentTimeMillis());
+    stopwatch.startTimer();
+    clock.advanceMillis(4);
+    assertEquals(4, stopwatch.stopTimer());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBackwards() {
+    new ManualClock().advance(-1);
+  }
+
+  @Test
+  public void testSystemClock() {
+    StopWatch stopwatch = new StopWatch();
+    assertTrue(stopwatch.getElapsedTimeNanos() >= 0);
+  }
+}